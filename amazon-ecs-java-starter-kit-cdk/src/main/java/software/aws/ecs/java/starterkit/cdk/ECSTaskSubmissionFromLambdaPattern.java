@@ -4,6 +4,7 @@
 package software.aws.ecs.java.starterkit.cdk;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 
@@ -14,12 +15,21 @@ import software.amazon.awscdk.core.Fn;
 import software.amazon.awscdk.core.RemovalPolicy;
 import software.amazon.awscdk.core.Stack;
 import software.amazon.awscdk.core.StackProps;
+import software.amazon.awscdk.services.applicationautoscaling.AdjustmentType;
+import software.amazon.awscdk.services.applicationautoscaling.BasicStepScalingPolicyProps;
+import software.amazon.awscdk.services.applicationautoscaling.EnableScalingProps;
+import software.amazon.awscdk.services.applicationautoscaling.ScalingInterval;
+import software.amazon.awscdk.services.autoscaling.AutoScalingGroup;
+import software.amazon.awscdk.services.cloudwatch.IMetric;
+import software.amazon.awscdk.services.cloudwatch.MathExpression;
 import software.amazon.awscdk.services.dynamodb.Attribute;
 import software.amazon.awscdk.services.dynamodb.AttributeType;
+import software.amazon.awscdk.services.dynamodb.GlobalSecondaryIndexProps;
 import software.amazon.awscdk.services.dynamodb.Table;
 import software.amazon.awscdk.services.ec2.GatewayVpcEndpointAwsService;
 import software.amazon.awscdk.services.ec2.GatewayVpcEndpointOptions;
 import software.amazon.awscdk.services.ec2.InterfaceVpcEndpointAwsService;
+import software.amazon.awscdk.services.ec2.InstanceType;
 import software.amazon.awscdk.services.ec2.InterfaceVpcEndpointOptions;
 import software.amazon.awscdk.services.ec2.SecurityGroup;
 import software.amazon.awscdk.services.ec2.SubnetSelection;
@@ -28,21 +38,40 @@ import software.amazon.awscdk.services.ec2.Vpc;
 import software.amazon.awscdk.services.ecr.assets.DockerImageAsset;
 import software.amazon.awscdk.services.ecs.AwsLogDriver;
 import software.amazon.awscdk.services.ecs.AwsLogDriverProps;
+import software.amazon.awscdk.services.ecs.CfnCapacityProvider;
+import software.amazon.awscdk.services.ecs.CfnCluster;
 import software.amazon.awscdk.services.ecs.Cluster;
 import software.amazon.awscdk.services.ecs.ContainerDefinition;
+import software.amazon.awscdk.services.ecs.ContainerDefinitionOptions;
+import software.amazon.awscdk.services.ecs.Compatibility;
 import software.amazon.awscdk.services.ecs.ContainerImage;
+import software.amazon.awscdk.services.ecs.EcsOptimizedImage;
+import software.amazon.awscdk.services.ecs.FargatePlatformVersion;
+import software.amazon.awscdk.services.ecs.FargateService;
+import software.amazon.awscdk.services.ecs.ScalableTaskCount;
 import software.amazon.awscdk.services.ecs.FargateTaskDefinition;
+import software.amazon.awscdk.services.ecs.NetworkMode;
+import software.amazon.awscdk.services.ecs.TaskDefinition;
+import software.amazon.awscdk.services.events.CfnRule;
+import software.amazon.awscdk.services.iam.ManagedPolicy;
 import software.amazon.awscdk.services.iam.PolicyStatement;
+import software.amazon.awscdk.services.iam.ServicePrincipal;
 import software.amazon.awscdk.services.lambda.Code;
 import software.amazon.awscdk.services.lambda.Function;
+import software.amazon.awscdk.services.lambda.Permission;
 import software.amazon.awscdk.services.lambda.Runtime;
 import software.amazon.awscdk.services.logs.LogGroup;
 import software.amazon.awscdk.services.logs.RetentionDays;
 import software.amazon.awscdk.services.s3.BlockPublicAccess;
 import software.amazon.awscdk.services.s3.Bucket;
+import software.amazon.awscdk.services.sqs.DeadLetterQueue;
+import software.amazon.awscdk.services.sqs.Queue;
 import software.amazon.awscdk.services.stepfunctions.Chain;
 import software.amazon.awscdk.services.stepfunctions.Choice;
 import software.amazon.awscdk.services.stepfunctions.Condition;
+import software.amazon.awscdk.services.stepfunctions.Errors;
+import software.amazon.awscdk.services.stepfunctions.Pass;
+import software.amazon.awscdk.services.stepfunctions.RetryProps;
 import software.amazon.awscdk.services.stepfunctions.StateMachine;
 import software.amazon.awscdk.services.stepfunctions.StateMachineType;
 import software.amazon.awscdk.services.stepfunctions.Succeed;
@@ -97,6 +126,8 @@ public class ECSTaskSubmissionFromLambdaPattern extends Stack {
                 .service(InterfaceVpcEndpointAwsService.ECS_AGENT).subnets(privateSubnets).build());
         vpc.addInterfaceEndpoint("ECREndPoint", InterfaceVpcEndpointOptions.builder()
                 .service(InterfaceVpcEndpointAwsService.ECR).subnets(privateSubnets).build());
+        vpc.addInterfaceEndpoint("SQSEndPoint", InterfaceVpcEndpointOptions.builder()
+                .service(InterfaceVpcEndpointAwsService.SQS).subnets(privateSubnets).build());
 
         // S3 Bucket
         Bucket s3Bucket = Bucket.Builder.create(this, "S3Bucket")
@@ -118,6 +149,7 @@ public class ECSTaskSubmissionFromLambdaPattern extends Stack {
                 .partitionKey(
                         Attribute.builder().name(workflowSummaryPartitionKeyName).type(AttributeType.STRING).build())
                 .sortKey(Attribute.builder().name(workflowSummarySortKeyName).type(AttributeType.NUMBER).build())
+                .timeToLiveAttribute("expire_at")
                 .build();
 
         String workflowDetailsPartitionKeyName = "workflow_run_id";
@@ -127,37 +159,145 @@ public class ECSTaskSubmissionFromLambdaPattern extends Stack {
                 .partitionKey(
                         Attribute.builder().name(workflowDetailsPartitionKeyName).type(AttributeType.NUMBER).build())
                 .sortKey(Attribute.builder().name(workflowDetailsSortKeyName).type(AttributeType.STRING).build())
+                .timeToLiveAttribute("expire_at")
+                .build();
+
+        // Status indexes, to query the workflow runs and tasks by status and time without scanning
+        workflow_summary.addGlobalSecondaryIndex(GlobalSecondaryIndexProps.builder()
+                .indexName("status-start_time_millis-index")
+                .partitionKey(Attribute.builder().name("status").type(AttributeType.STRING).build())
+                .sortKey(Attribute.builder().name("start_time_millis").type(AttributeType.NUMBER).build())
+                .build());
+        workflow_details.addGlobalSecondaryIndex(GlobalSecondaryIndexProps.builder()
+                .indexName("status-update_time_millis-index")
+                .partitionKey(Attribute.builder().name("status").type(AttributeType.STRING).build())
+                .sortKey(Attribute.builder().name("update_time_millis").type(AttributeType.NUMBER).build())
+                .build());
+
+        // Task slots of each cluster shared by the workflow runs launching on it
+        Table workflow_scheduler = Table.Builder.create(this, "DDBWorkFlowScheduler").tableName("workflow_scheduler_pattern_1")
+                .removalPolicy(RemovalPolicy.DESTROY)
+                .partitionKey(Attribute.builder().name("cluster_name").type(AttributeType.STRING).build())
+                .sortKey(Attribute.builder().name("run_key").type(AttributeType.STRING).build())
+                .build();
+
+        // Results of completed tasks by task definition, task config and source ETag
+        Table result_cache = Table.Builder.create(this, "DDBResultCache").tableName("result_cache_pattern_1")
+                .removalPolicy(RemovalPolicy.DESTROY)
+                .partitionKey(Attribute.builder().name("cache_key").type(AttributeType.STRING).build())
                 .build();
 
         // ECS Cluster
-        Cluster cluster = Cluster.Builder.create(this, "StarterKitCluster").clusterName("amazon-ecs-java-starter-kit-pattern-1")
+        String clusterName = "amazon-ecs-java-starter-kit-pattern-1";
+        Cluster cluster = Cluster.Builder.create(this, "StarterKitCluster").clusterName(clusterName)
                 .vpc(vpc).build();
 
-        // ECR Image
+        // EC2 instances for the tasks sized larger than Fargate allows, see the executors of the workflow specs.
+        // They join the cluster by its name, a reference would make the cluster and its capacity provider circular.
+        // Managed scaling starts them when a task is placed on their capacity provider, and stops them when idle.
+        AutoScalingGroup ec2Instances = AutoScalingGroup.Builder.create(this, "StarterKitEC2Instances").vpc(vpc)
+                .vpcSubnets(privateSubnets).instanceType(new InstanceType("r5.2xlarge"))
+                .machineImage(EcsOptimizedImage.amazonLinux2()).minCapacity(0).maxCapacity(2).build();
+        ec2Instances.addUserData("echo ECS_CLUSTER=" + clusterName + " >> /etc/ecs/ecs.config");
+        ec2Instances.getRole().addManagedPolicy(
+                ManagedPolicy.fromAwsManagedPolicyName("service-role/AmazonEC2ContainerServiceforEC2Role"));
+        CfnCapacityProvider ec2CapacityProvider = CfnCapacityProvider.Builder.create(this, "StarterKitEC2CapacityProvider")
+                .autoScalingGroupProvider(CfnCapacityProvider.AutoScalingGroupProviderProperty.builder()
+                        .autoScalingGroupArn(ec2Instances.getAutoScalingGroupName())
+                        .managedScaling(CfnCapacityProvider.ManagedScalingProperty.builder().status("ENABLED")
+                                .targetCapacity(100).build())
+                        .managedTerminationProtection("DISABLED").build())
+                .build();
+
+        // Fargate, Fargate Spot and EC2 capacity providers, so that a workflow can
+        // spread its tasks with a capacity provider strategy
+        CfnCluster cfnCluster = (CfnCluster) cluster.getNode().getDefaultChild();
+        cfnCluster.setCapacityProviders(Arrays.asList("FARGATE", "FARGATE_SPOT", ec2CapacityProvider.getRef()));
+
+        // ECR Image, the GraalVM native image of the task with -c nativeImage=true
         String ecrRepoName = "amazon-ecs-java-starter-kit-pattern-1";
         @SuppressWarnings("deprecation")
         DockerImageAsset dockerImageAsset = DockerImageAsset.Builder.create(this, "StarterKitECRImage")
-                .directory("../amazon-ecs-java-starter-kit-task").repositoryName(ecrRepoName).build();
+                .directory("../amazon-ecs-java-starter-kit-task").repositoryName(ecrRepoName)
+                .file("true".equals(String.valueOf(getNode().tryGetContext("nativeImage"))) ? "Dockerfile.native"
+                        : "Dockerfile")
+                .build();
 
-        // Fargate Task Definition
-        FargateTaskDefinition fargateTaskDefinition = FargateTaskDefinition.Builder
-                .create(this, "StarterKitFargateTaskDefinition").family("amazon-ecs-java-starter-kit-pattern-1").cpu(1024)
-                .memoryLimitMiB(2048).build();
+        // Task Definition, for Fargate and for the EC2 capacity provider alike
+        TaskDefinition taskDefinition = TaskDefinition.Builder
+                .create(this, "StarterKitFargateTaskDefinition").family("amazon-ecs-java-starter-kit-pattern-1")
+                .compatibility(Compatibility.EC2_AND_FARGATE).networkMode(NetworkMode.AWS_VPC).cpu("1024")
+                .memoryMiB("2048").build();
 
         // Container Definition
+        LogGroup ecsLogGroup = LogGroup.Builder.create(this, "ECSLogGroup")
+                .logGroupName("/ecs/amazon-ecs-java-starter-kit-pattern-1").removalPolicy(RemovalPolicy.DESTROY)
+                .retention(RetentionDays.ONE_DAY).build();
         ContainerDefinition containerDefinition = ContainerDefinition.Builder
-                .create(this, "amazon-ecs-java-starter-kit").taskDefinition(fargateTaskDefinition).essential(true)
+                .create(this, "amazon-ecs-java-starter-kit").taskDefinition(taskDefinition).essential(true)
                 .image(ContainerImage.fromDockerImageAsset(dockerImageAsset))
-                .logging(AwsLogDriver.awsLogs(AwsLogDriverProps.builder()
-                        .logGroup(LogGroup.Builder.create(this, "ECSLogGroup")
-                                .logGroupName("/ecs/amazon-ecs-java-starter-kit-pattern-1").removalPolicy(RemovalPolicy.DESTROY)
-                                .retention(RetentionDays.ONE_DAY).build())
+                // the longest grace period, which a Spot task gets before it is reclaimed, to save its checkpoint
+                .stopTimeout(Duration.seconds(120))
+                .logging(AwsLogDriver.awsLogs(AwsLogDriverProps.builder().logGroup(ecsLogGroup)
                         .streamPrefix("amazon-ecs-java-starter-kit").build()))
                 .build();
 
         // Container IAM permissions
-        workflow_details.grantReadWriteData(fargateTaskDefinition.getTaskRole());
-        s3Bucket.grantReadWrite(fargateTaskDefinition.getTaskRole());
+        workflow_details.grantReadWriteData(taskDefinition.getTaskRole());
+        s3Bucket.grantReadWrite(taskDefinition.getTaskRole());
+        result_cache.grantWriteData(taskDefinition.getTaskRole());
+
+        // Worker pool: work items sent by the TaskLauncher Lambda to a queue are
+        // processed by a service of long running ECS tasks, scaled on the queue depth
+        // a work item which fails on every delivery is moved aside instead of being retried forever
+        Queue workDeadLetterQueue = Queue.Builder.create(this, "WorkDeadLetterQueue")
+                .queueName("amazon-ecs-java-starter-kit-pattern-1-work-dlq").retentionPeriod(Duration.days(14))
+                .build();
+        Queue workQueue = Queue.Builder.create(this, "WorkQueue")
+                .queueName("amazon-ecs-java-starter-kit-pattern-1-work-queue")
+                .visibilityTimeout(Duration.minutes(15))
+                .deadLetterQueue(DeadLetterQueue.builder().queue(workDeadLetterQueue).maxReceiveCount(3).build())
+                .build();
+        FargateTaskDefinition workerTaskDefinition = FargateTaskDefinition.Builder
+                .create(this, "StarterKitWorkerTaskDefinition").family("amazon-ecs-java-starter-kit-pattern-1-worker")
+                .cpu(1024).memoryLimitMiB(2048).build();
+        workerTaskDefinition.addContainer("amazon-ecs-java-starter-kit-worker", ContainerDefinitionOptions.builder()
+                .essential(true).image(ContainerImage.fromDockerImageAsset(dockerImageAsset))
+                .environment(new HashMap<String, String>() {
+                    private static final long serialVersionUID = 6158349302546416523L;
+                    {
+                        put("region", getRegion());
+                        put("work_queue_url", workQueue.getQueueUrl());
+                    }
+                })
+                .logging(AwsLogDriver.awsLogs(AwsLogDriverProps.builder().logGroup(ecsLogGroup)
+                        .streamPrefix("amazon-ecs-java-starter-kit-worker").build()))
+                .build());
+        workflow_details.grantReadWriteData(workerTaskDefinition.getTaskRole());
+        s3Bucket.grantReadWrite(workerTaskDefinition.getTaskRole());
+        workQueue.grantConsumeMessages(workerTaskDefinition.getTaskRole());
+
+        FargateService workerService = FargateService.Builder.create(this, "StarterKitWorkerService")
+                .serviceName("amazon-ecs-java-starter-kit-pattern-1-workers").cluster(cluster)
+                .taskDefinition(workerTaskDefinition).desiredCount(0).vpcSubnets(privateSubnets)
+                .platformVersion(FargatePlatformVersion.VERSION1_4).build();
+        // items in flight count too, so that workers are not scaled in while they are busy
+        IMetric queueDepth = MathExpression.Builder.create().expression("visible + inFlight")
+                .usingMetrics(new HashMap<String, IMetric>() {
+                    private static final long serialVersionUID = -3188476457146627398L;
+                    {
+                        put("visible", workQueue.metricApproximateNumberOfMessagesVisible());
+                        put("inFlight", workQueue.metricApproximateNumberOfMessagesNotVisible());
+                    }
+                }).period(Duration.minutes(1)).build();
+        ScalableTaskCount workerCount = workerService
+                .autoScaleTaskCount(EnableScalingProps.builder().minCapacity(0).maxCapacity(10).build());
+        workerCount.scaleOnMetric("ScaleOnQueueDepth", BasicStepScalingPolicyProps.builder().metric(queueDepth)
+                .adjustmentType(AdjustmentType.CHANGE_IN_CAPACITY)
+                .scalingSteps(Arrays.asList(ScalingInterval.builder().upper(0).change(-1).build(),
+                        ScalingInterval.builder().lower(1).change(1).build(),
+                        ScalingInterval.builder().lower(100).change(5).build()))
+                .build());
 
         // TaskLauncher Lambda
         Function taskLauncher = Function.Builder.create(this, "TaskLauncherLambda")
@@ -178,7 +318,7 @@ public class ECSTaskSubmissionFromLambdaPattern extends Stack {
                     private static final long serialVersionUID = 1133379137898541366L;
 
                     {
-                        add(fargateTaskDefinition.getTaskDefinitionArn());
+                        add(taskDefinition.getTaskDefinitionArn());
                         add(cluster.getClusterArn());
                     }
                 }).build());
@@ -187,11 +327,25 @@ public class ECSTaskSubmissionFromLambdaPattern extends Stack {
                     private static final long serialVersionUID = 306435034815975097L;
 
                     {
-                        add(fargateTaskDefinition.getTaskRole().getRoleArn());
-                        add(fargateTaskDefinition.getExecutionRole().getRoleArn());
+                        add(taskDefinition.getTaskRole().getRoleArn());
+                        add(taskDefinition.getExecutionRole().getRoleArn());
                     }
                 }).build());
 
+        // Permissions to find the tasks of an interrupted launch by their launch token
+        taskLauncher.getRole().addToPrincipalPolicy(PolicyStatement.Builder.create()
+                .actions(Collections.singletonList("ecs:ListTasks")).resources(Collections.singletonList("*"))
+                .conditions(Collections.singletonMap("ArnEquals",
+                        Collections.singletonMap("ecs:cluster", cluster.getClusterArn())))
+                .build());
+
+        // Permissions to place tasks in the subnets with free IP addresses
+        taskLauncher.getRole().addToPrincipalPolicy(PolicyStatement.Builder.create()
+                .actions(Collections.singletonList("ec2:DescribeSubnets")).resources(Collections.singletonList("*"))
+                .build());
+
+        workQueue.grantSendMessages(taskLauncher);
+
         // TaskMonitor Lambda
         Function taskMonitor = Function.Builder.create(this, "TaskMonitorLambda")
                 .functionName("amazon-ecs-java-starter-kit-pattern-1-ecs-task-monitor")
@@ -213,14 +367,104 @@ public class ECSTaskSubmissionFromLambdaPattern extends Stack {
                         put("workflow_details_ddb_table_name", workflow_details.getTableName());
                         put("workflow_details_hash_key", workflowDetailsPartitionKeyName);
                         put("workflow_details_range_key", workflowDetailsSortKeyName);
+                        // copy tasks running 1.5 times longer than 90% of the completed tasks
+                        put("speculation_percentile", "0.9");
+                    }
+                }).build();
+
+        // Permissions to run, find and stop speculative copies of straggling tasks
+        grantMonitorPermissions(taskMonitor, taskDefinition, cluster);
+
+        // FleetMonitor Lambda, it runs the tick of the monitor for many workflow runs in one invocation
+        Function fleetMonitor = Function.Builder.create(this, "FleetMonitorLambda")
+                .functionName("amazon-ecs-java-starter-kit-pattern-1-ecs-fleet-monitor")
+                .code(Code.fromAsset(
+                        "../amazon-ecs-java-starter-kit-taskmonitor/target/amazon-ecs-java-starter-kit-taskmonitor-1.0.jar"))
+                .handler("software.aws.ecs.java.starterkit.monitor.ECSFleetMonitor").runtime(Runtime.JAVA_8_CORRETTO)
+                .timeout(Duration.minutes(5)).memorySize(512).logRetention(RetentionDays.ONE_DAY).vpc(vpc)
+                .vpcSubnets(privateSubnets)
+                .securityGroups(Collections.singletonList(SecurityGroup.Builder.create(this, "FleetMonitorSG").vpc(vpc)
+                        .securityGroupName("amazon-ecs-java-starter-kit-pattern-1-ecs-fleet-monitor").allowAllOutbound(true)
+                        .build()))
+                .environment(new HashMap<String, String>() {
+                    private static final long serialVersionUID = 7391865072416386511L;
+                    {
+                        put("region", getRegion());
+                        put("workflow_summary_ddb_table_name", workflow_summary.getTableName());
+                        put("workflow_summary_hash_key", workflowSummaryPartitionKeyName);
+                        put("workflow_summary_range_key", workflowSummarySortKeyName);
+                        put("workflow_details_ddb_table_name", workflow_details.getTableName());
+                        put("workflow_details_hash_key", workflowDetailsPartitionKeyName);
+                        put("workflow_details_range_key", workflowDetailsSortKeyName);
+                        put("speculation_percentile", "0.9");
+                        put("fleet_monitor_concurrency", "16");
                     }
                 }).build();
 
+        // Same ECS permissions as the monitor, for dead tasks, retries and speculative copies
+        grantMonitorPermissions(fleetMonitor, taskDefinition, cluster);
+        // every 2 minutes, as the WaitForECS state, with no iterators it monitors every running workflow run
+        CfnRule fleetMonitorSchedule = CfnRule.Builder.create(this, "FleetMonitorSchedule")
+                .scheduleExpression("rate(2 minutes)")
+                .targets(Collections.singletonList(CfnRule.TargetProperty.builder().id("FleetMonitor")
+                        .arn(fleetMonitor.getFunctionArn()).input("{\"iterators\": []}").build()))
+                .build();
+        fleetMonitor.addPermission("FleetMonitorSchedulePermission", Permission.builder()
+                .principal(new ServicePrincipal("events.amazonaws.com")).sourceArn(fleetMonitorSchedule.getAttrArn())
+                .build());
+
         // IAM permissions for Lambdas
         workflow_details.grantReadWriteData(taskLauncher.getRole());
         workflow_details.grantReadWriteData(taskMonitor.getRole());
         workflow_summary.grantReadWriteData(taskLauncher.getRole());
         workflow_summary.grantReadWriteData(taskMonitor.getRole());
+        workflow_scheduler.grantReadWriteData(taskLauncher.getRole());
+        workflow_scheduler.grantReadWriteData(taskMonitor.getRole());
+        workflow_details.grantReadWriteData(fleetMonitor.getRole());
+        workflow_summary.grantReadWriteData(fleetMonitor.getRole());
+        workflow_scheduler.grantReadWriteData(fleetMonitor.getRole());
+        // the launcher reads the ETags of the source objects and looks them up in the result cache,
+        // and runs the business logic of small tasks itself with the in-process executor
+        result_cache.grantReadWriteData(taskLauncher.getRole());
+        s3Bucket.grantReadWrite(taskLauncher);
+
+        // Archiver Lambda, it moves finished workflow runs to S3 and lets DynamoDB TTL delete them
+        Function workflowArchiver = Function.Builder.create(this, "WorkflowArchiverLambda")
+                .functionName("amazon-ecs-java-starter-kit-pattern-1-workflow-archiver")
+                .code(Code.fromAsset(
+                        "../amazon-ecs-java-starter-kit-taskmonitor/target/amazon-ecs-java-starter-kit-taskmonitor-1.0.jar"))
+                .handler("software.aws.ecs.java.starterkit.monitor.WorkflowArchiver").runtime(Runtime.JAVA_8_CORRETTO)
+                .timeout(Duration.minutes(5)).memorySize(512).logRetention(RetentionDays.ONE_DAY).vpc(vpc)
+                .vpcSubnets(privateSubnets)
+                .securityGroups(Collections.singletonList(SecurityGroup.Builder.create(this, "WorkflowArchiverSG").vpc(vpc)
+                        .securityGroupName("amazon-ecs-java-starter-kit-pattern-1-workflow-archiver").allowAllOutbound(true)
+                        .build()))
+                .environment(new HashMap<String, String>() {
+                    private static final long serialVersionUID = 3419065312587226012L;
+                    {
+                        put("region", getRegion());
+                        put("workflow_summary_ddb_table_name", workflow_summary.getTableName());
+                        put("workflow_summary_hash_key", workflowSummaryPartitionKeyName);
+                        put("workflow_summary_range_key", workflowSummarySortKeyName);
+                        put("workflow_details_ddb_table_name", workflow_details.getTableName());
+                        put("workflow_details_hash_key", workflowDetailsPartitionKeyName);
+                        put("workflow_details_range_key", workflowDetailsSortKeyName);
+                        put("archive_bucket_name", s3Bucket.getBucketName());
+                        put("archive_after_days", "7");
+                        put("expire_after_days", "1");
+                    }
+                }).build();
+        workflow_details.grantReadWriteData(workflowArchiver.getRole());
+        workflow_summary.grantReadWriteData(workflowArchiver.getRole());
+        s3Bucket.grantPut(workflowArchiver);
+        CfnRule archiveSchedule = CfnRule.Builder.create(this, "WorkflowArchiverSchedule")
+                .scheduleExpression("rate(1 hour)")
+                .targets(Collections.singletonList(CfnRule.TargetProperty.builder().id("WorkflowArchiver")
+                        .arn(workflowArchiver.getFunctionArn()).build()))
+                .build();
+        workflowArchiver.addPermission("WorkflowArchiverSchedulePermission", Permission.builder()
+                .principal(new ServicePrincipal("events.amazonaws.com")).sourceArn(archiveSchedule.getAttrArn())
+                .build());
 
         // Monitor State in StateMachine
         LambdaInvoke invokeMonitorState = LambdaInvoke.Builder.create(this, "InvokeTaskMonitor")
@@ -232,18 +476,43 @@ public class ECSTaskSubmissionFromLambdaPattern extends Stack {
                     }
                 })).resultPath("$.iterator").payloadResponseOnly(true).build();
 
+        // Launcher State in StateMachine, a failed launch is retried and resumes from its launch cursor
+        LambdaInvoke invokeLauncherState = LambdaInvoke.Builder.create(this, "InvokeTaskLauncher")
+                .lambdaFunction(taskLauncher).resultPath("$.iterator").payloadResponseOnly(true).build();
+        invokeLauncherState.addRetry(RetryProps.builder().errors(Collections.singletonList(Errors.ALL))
+                .interval(Duration.seconds(5)).maxAttempts(3).backoffRate(2).build());
+
+        // Execution name and start time stay the same across retries, the launcher derives the run id from them
+        Pass addExecutionContext = Pass.Builder.create(this, "AddExecutionContext")
+                .parameters(new HashMap<String, Object>() {
+                    private static final long serialVersionUID = -2178466404339164405L;
+                    {
+                        put("name.$", "$$.Execution.Name");
+                        put("startTime.$", "$$.Execution.StartTime");
+                    }
+                }).resultPath("$.execution").build();
+
+        // Launch loop, it moves on to the monitor when all tasks are launched or the in-flight window is full
+        Choice checkTasksLaunched = Choice.Builder.create(this, "CheckIfTasksLaunched").build()
+                .when(Condition.and(Condition.booleanEquals("$.iterator.launchComplete", false),
+                        Condition.booleanEquals("$.iterator.waitForSlots", false)), invokeLauncherState)
+                .otherwise(invokeMonitorState);
+
+        // Pending tasks are launched after every wait, as finished tasks free slots of the window
+        Choice checkTasksPending = Choice.Builder.create(this, "CheckIfTasksPending").build()
+                .when(Condition.booleanEquals("$.iterator.launchComplete", false), invokeLauncherState)
+                .otherwise(invokeMonitorState);
+
+        invokeMonitorState.next(Choice.Builder.create(this, "CheckIfTasksCompleted").build()
+                .when(Condition.booleanEquals("$.iterator.continue", true),
+                        Wait.Builder.create(this, "WaitForECS").time(WaitTime.duration(Duration.seconds(120))).build()
+                                .next(checkTasksPending))
+                .otherwise(Succeed.Builder.create(this, "Done").build()));
+
         // StateMachine
         StateMachine.Builder.create(this, "amazon-ecs-java-starter-kit-state-machine")
                 .stateMachineName("amazon-ecs-java-starter-kit-pattern-1").stateMachineType(StateMachineType.STANDARD)
-                .definition(Chain
-                        .start(LambdaInvoke.Builder.create(this, "InvokeTaskLauncher").lambdaFunction(taskLauncher)
-                                .resultPath("$.iterator").payloadResponseOnly(true).build())
-                        .next(invokeMonitorState)
-                        .next(Choice.Builder.create(this, "CheckIfTasksCompleted").build().when(
-                                Condition.booleanEquals("$.iterator.continue", true),
-                                Wait.Builder.create(this, "WaitForECS").time(WaitTime.duration(Duration.seconds(120)))
-                                        .build().next(invokeMonitorState))
-                                .otherwise(Succeed.Builder.create(this, "Done").build())))
+                .definition(Chain.start(addExecutionContext).next(invokeLauncherState).next(checkTasksLaunched))
                 .build();
 
         // Outputs
@@ -251,7 +520,7 @@ public class ECSTaskSubmissionFromLambdaPattern extends Stack {
         CfnOutput.Builder.create(this, "clusterName").value(cluster.getClusterName()).build();
         CfnOutput.Builder.create(this, "containerName").value(containerDefinition.getContainerName()).build();
         CfnOutput.Builder.create(this, "taskDefinition")
-                .value(Fn.select(1, Fn.split("/", fargateTaskDefinition.getTaskDefinitionArn()))).build();
+                .value(Fn.select(1, Fn.split("/", taskDefinition.getTaskDefinitionArn()))).build();
         CfnOutput.Builder.create(this, "securityGroupId").value(vpc.getVpcDefaultSecurityGroup()).build();
         CfnOutput.Builder.create(this, "subnetIdLiteral").value(vpc.getPrivateSubnets().get(0).getSubnetId()).build();
         CfnOutput.Builder.create(this, "ddbTableNameWFSummary").value(workflow_summary.getTableName()).build();
@@ -260,8 +529,49 @@ public class ECSTaskSubmissionFromLambdaPattern extends Stack {
         CfnOutput.Builder.create(this, "ddbTableNameWFDetails").value(workflow_details.getTableName()).build();
         CfnOutput.Builder.create(this, "hashKeyWFDetails").value(workflowDetailsPartitionKeyName).build();
         CfnOutput.Builder.create(this, "rangeKeyWFDetails").value(workflowDetailsSortKeyName).build();
+        CfnOutput.Builder.create(this, "schedulerTableName").value(workflow_scheduler.getTableName()).build();
+        CfnOutput.Builder.create(this, "resultCacheTableName").value(result_cache.getTableName()).build();
+        CfnOutput.Builder.create(this, "ec2CapacityProvider").value(ec2CapacityProvider.getRef()).build();
+        CfnOutput.Builder.create(this, "workQueueUrl").value(workQueue.getQueueUrl()).build();
+        CfnOutput.Builder.create(this, "workDeadLetterQueueUrl").value(workDeadLetterQueue.getQueueUrl()).build();
+        CfnOutput.Builder.create(this, "fleetMonitorFunctionName").value(fleetMonitor.getFunctionName()).build();
         CfnOutput.Builder.create(this, "s3BucketName").value(s3Bucket.getBucketName()).build();
         CfnOutput.Builder.create(this, "workflowName").value("amazon_ecs_starter_kit-pattern-1").build();
         CfnOutput.Builder.create(this, "separator").value("$").build();
     }
+
+    /**
+     * This method grants a monitor Lambda the permissions to find dead tasks and to run, find and stop retries and
+     * speculative copies of the tasks of the task definition in the cluster.
+     *
+     * @param monitor
+     * @param taskDefinition
+     * @param cluster
+     */
+    private static void grantMonitorPermissions(Function monitor, TaskDefinition taskDefinition, Cluster cluster) {
+        monitor.getRole().addToPrincipalPolicy(PolicyStatement.Builder.create()
+                .actions(Collections.singletonList("ecs:RunTask")).resources(new ArrayList<String>() {
+                    private static final long serialVersionUID = -2412508916436208773L;
+
+                    {
+                        add(taskDefinition.getTaskDefinitionArn());
+                        add(cluster.getClusterArn());
+                    }
+                }).build());
+        monitor.getRole().addToPrincipalPolicy(PolicyStatement.Builder.create()
+                .actions(Collections.singletonList("iam:PassRole")).resources(new ArrayList<String>() {
+                    private static final long serialVersionUID = 5024957714960432183L;
+
+                    {
+                        add(taskDefinition.getTaskRole().getRoleArn());
+                        add(taskDefinition.getExecutionRole().getRoleArn());
+                    }
+                }).build());
+        monitor.getRole().addToPrincipalPolicy(PolicyStatement.Builder.create()
+                .actions(Arrays.asList("ecs:DescribeTasks", "ecs:ListTasks", "ecs:StopTask"))
+                .resources(Collections.singletonList("*"))
+                .conditions(Collections.singletonMap("ArnEquals",
+                        Collections.singletonMap("ecs:cluster", cluster.getClusterArn())))
+                .build());
+    }
 }
@@ -4,6 +4,7 @@
 package software.aws.ecs.java.starterkit.cdk;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 
@@ -17,6 +18,7 @@ import software.amazon.awscdk.core.Stack;
 import software.amazon.awscdk.core.StackProps;
 import software.amazon.awscdk.services.dynamodb.Attribute;
 import software.amazon.awscdk.services.dynamodb.AttributeType;
+import software.amazon.awscdk.services.dynamodb.GlobalSecondaryIndexProps;
 import software.amazon.awscdk.services.dynamodb.Table;
 import software.amazon.awscdk.services.ec2.GatewayVpcEndpointAwsService;
 import software.amazon.awscdk.services.ec2.GatewayVpcEndpointOptions;
@@ -29,14 +31,19 @@ import software.amazon.awscdk.services.ec2.Vpc;
 import software.amazon.awscdk.services.ecr.assets.DockerImageAsset;
 import software.amazon.awscdk.services.ecs.AwsLogDriver;
 import software.amazon.awscdk.services.ecs.AwsLogDriverProps;
+import software.amazon.awscdk.services.ecs.CfnCluster;
 import software.amazon.awscdk.services.ecs.Cluster;
 import software.amazon.awscdk.services.ecs.ContainerDefinition;
 import software.amazon.awscdk.services.ecs.ContainerDefinitionOptions;
 import software.amazon.awscdk.services.ecs.ContainerImage;
 import software.amazon.awscdk.services.ecs.FargatePlatformVersion;
 import software.amazon.awscdk.services.ecs.FargateTaskDefinition;
+import software.amazon.awscdk.services.events.CfnRule;
+import software.amazon.awscdk.services.iam.PolicyStatement;
+import software.amazon.awscdk.services.iam.ServicePrincipal;
 import software.amazon.awscdk.services.lambda.Code;
 import software.amazon.awscdk.services.lambda.Function;
+import software.amazon.awscdk.services.lambda.Permission;
 import software.amazon.awscdk.services.lambda.Runtime;
 import software.amazon.awscdk.services.logs.LogGroup;
 import software.amazon.awscdk.services.logs.RetentionDays;
@@ -135,6 +142,7 @@ public class ECSTaskSubmissionFromStepFunctionsPattern extends Stack {
                 .partitionKey(
                         Attribute.builder().name(workflowSummaryPartitionKeyName).type(AttributeType.STRING).build())
                 .sortKey(Attribute.builder().name(workflowSummarySortKeyName).type(AttributeType.NUMBER).build())
+                .timeToLiveAttribute("expire_at")
                 .build();
 
         String workflowDetailsPartitionKeyName = "workflow_run_id";
@@ -144,17 +152,38 @@ public class ECSTaskSubmissionFromStepFunctionsPattern extends Stack {
                 .partitionKey(
                         Attribute.builder().name(workflowDetailsPartitionKeyName).type(AttributeType.NUMBER).build())
                 .sortKey(Attribute.builder().name(workflowDetailsSortKeyName).type(AttributeType.STRING).build())
+                .timeToLiveAttribute("expire_at")
                 .build();
 
+        // Status indexes, to query the workflow runs and tasks by status and time without scanning
+        workflow_summary.addGlobalSecondaryIndex(GlobalSecondaryIndexProps.builder()
+                .indexName("status-start_time_millis-index")
+                .partitionKey(Attribute.builder().name("status").type(AttributeType.STRING).build())
+                .sortKey(Attribute.builder().name("start_time_millis").type(AttributeType.NUMBER).build())
+                .build());
+        workflow_details.addGlobalSecondaryIndex(GlobalSecondaryIndexProps.builder()
+                .indexName("status-update_time_millis-index")
+                .partitionKey(Attribute.builder().name("status").type(AttributeType.STRING).build())
+                .sortKey(Attribute.builder().name("update_time_millis").type(AttributeType.NUMBER).build())
+                .build());
+
         // ECS Cluster
         Cluster cluster = Cluster.Builder.create(this, "StarterKitCluster").clusterName("amazon-ecs-java-starter-kit-pattern-2")
                 .vpc(vpc).build();
 
-        // ECR Image
+        // Fargate and Fargate Spot capacity providers, so that a workflow can
+        // spread its tasks with a capacity provider strategy
+        CfnCluster cfnCluster = (CfnCluster) cluster.getNode().getDefaultChild();
+        cfnCluster.setCapacityProviders(Arrays.asList("FARGATE", "FARGATE_SPOT"));
+
+        // ECR Image, the GraalVM native image of the task with -c nativeImage=true
         String ecrRepoName = "amazon-ecs-java-starter-kit-pattern-2";
         @SuppressWarnings("deprecation")
         DockerImageAsset dockerImageAsset = DockerImageAsset.Builder.create(this, "StarterKitECRImage")
-                .directory("../amazon-ecs-java-starter-kit-task").repositoryName(ecrRepoName).build();
+                .directory("../amazon-ecs-java-starter-kit-task").repositoryName(ecrRepoName)
+                .file("true".equals(String.valueOf(getNode().tryGetContext("nativeImage"))) ? "Dockerfile.native"
+                        : "Dockerfile")
+                .build();
 
         // Fargate Task Definition
         FargateTaskDefinition fargateTaskDefinition = FargateTaskDefinition.Builder
@@ -203,6 +232,50 @@ public class ECSTaskSubmissionFromStepFunctionsPattern extends Stack {
         // IAM permissions for Lambdas
         workflow_details.grantReadWriteData(taskMonitor.getRole());
         workflow_summary.grantReadWriteData(taskMonitor.getRole());
+        // Permissions to find tasks which stopped without a final status
+        taskMonitor.getRole().addToPrincipalPolicy(PolicyStatement.Builder.create()
+                .actions(Collections.singletonList("ecs:DescribeTasks")).resources(Collections.singletonList("*"))
+                .conditions(Collections.singletonMap("ArnEquals",
+                        Collections.singletonMap("ecs:cluster", cluster.getClusterArn())))
+                .build());
+
+        // Archiver Lambda, it moves finished workflow runs to S3 and lets DynamoDB TTL delete them
+        Function workflowArchiver = Function.Builder.create(this, "WorkflowArchiverLambda")
+                .functionName("amazon-ecs-java-starter-kit-pattern-2-workflow-archiver")
+                .code(Code.fromAsset(
+                        "../amazon-ecs-java-starter-kit-taskmonitor/target/amazon-ecs-java-starter-kit-taskmonitor-1.0.jar"))
+                .handler("software.aws.ecs.java.starterkit.monitor.WorkflowArchiver").runtime(Runtime.JAVA_8_CORRETTO)
+                .timeout(Duration.minutes(5)).memorySize(512).logRetention(RetentionDays.ONE_DAY).vpc(vpc)
+                .vpcSubnets(privateSubnets)
+                .securityGroups(Collections.singletonList(SecurityGroup.Builder.create(this, "WorkflowArchiverSG").vpc(vpc)
+                        .securityGroupName("amazon-ecs-java-starter-kit-pattern-2-workflow-archiver").allowAllOutbound(true)
+                        .build()))
+                .environment(new HashMap<String, String>() {
+                    private static final long serialVersionUID = -6312864587109512243L;
+                    {
+                        put("region", getRegion());
+                        put("workflow_summary_ddb_table_name", workflow_summary.getTableName());
+                        put("workflow_summary_hash_key", workflowSummaryPartitionKeyName);
+                        put("workflow_summary_range_key", workflowSummarySortKeyName);
+                        put("workflow_details_ddb_table_name", workflow_details.getTableName());
+                        put("workflow_details_hash_key", workflowDetailsPartitionKeyName);
+                        put("workflow_details_range_key", workflowDetailsSortKeyName);
+                        put("archive_bucket_name", s3Bucket.getBucketName());
+                        put("archive_after_days", "7");
+                        put("expire_after_days", "1");
+                    }
+                }).build();
+        workflow_details.grantReadWriteData(workflowArchiver.getRole());
+        workflow_summary.grantReadWriteData(workflowArchiver.getRole());
+        s3Bucket.grantPut(workflowArchiver);
+        CfnRule archiveSchedule = CfnRule.Builder.create(this, "WorkflowArchiverSchedule")
+                .scheduleExpression("rate(1 hour)")
+                .targets(Collections.singletonList(CfnRule.TargetProperty.builder().id("WorkflowArchiver")
+                        .arn(workflowArchiver.getFunctionArn()).build()))
+                .build();
+        workflowArchiver.addPermission("WorkflowArchiverSchedulePermission", Permission.builder()
+                .principal(new ServicePrincipal("events.amazonaws.com")).sourceArn(archiveSchedule.getAttrArn())
+                .build());
 
         // Environment variables being passed to ECS Tasks
         ArrayList<TaskEnvironmentVariable> containerEnvVars = new ArrayList<TaskEnvironmentVariable>() {
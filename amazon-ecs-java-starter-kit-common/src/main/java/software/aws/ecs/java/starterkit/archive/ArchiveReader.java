@@ -0,0 +1,167 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import software.aws.ecs.java.starterkit.dag.TaskGraph;
+
+/**
+ * Aggregates the statuses and durations of the tasks of archived workflow
+ * runs, without reading DynamoDB. Copy the archive to a local directory, for
+ * e.g. with aws s3 sync, and run:
+ *
+ * <pre>
+ * java -cp amazon-ecs-java-starter-kit-taskmonitor/target/amazon-ecs-java-starter-kit-taskmonitor-1.0.jar software.aws.ecs.java.starterkit.archive.ArchiveReader ./archive
+ * </pre>
+ *
+ * Each task counts once: node rows, speculation markers and the rows of retry
+ * attempts are left out, their outcome is on the row of the task.
+ *
+ */
+public class ArchiveReader {
+
+	public static final String FILE_SUFFIX = ".json.gz";
+
+	private final Map<String, Map<String, Integer>> statusCounts = new TreeMap<String, Map<String, Integer>>();
+	private final Map<String, List<Long>> durations = new TreeMap<String, List<Long>>();
+	private int runs;
+
+	/**
+	 * This method adds the tasks of an archived workflow run to the aggregates
+	 *
+	 * @param file
+	 */
+	public void add(ColumnarFile file) {
+		runs++;
+		String workflowName = file.getMetadata().getOrDefault("workflow_name", "unknown");
+		List<String> ecsTaskIds = file.getColumn("ecs_task_id");
+		List<String> taskNames = file.getColumn("task_name");
+		List<String> statuses = file.getColumn("status");
+		List<String> execTimes = file.getColumn("exec_time_in_seconds");
+		List<String> retryOf = file.getColumn("retry_of");
+		for (int row = 0; row < file.getRowCount(); row++) {
+			String ecsTaskId = ecsTaskIds.get(row);
+			if (ecsTaskId == null || TaskGraph.isNodeId(ecsTaskId) || ecsTaskId.startsWith("speculative/")
+					|| retryOf.get(row) != null)
+				continue;
+			String key = workflowName + "/" + (taskNames.get(row) == null ? "unknown" : taskNames.get(row));
+			String status = statuses.get(row) == null ? "Unknown" : statuses.get(row);
+			statusCounts.computeIfAbsent(key, k -> new TreeMap<String, Integer>()).merge(status, 1, Integer::sum);
+			if (execTimes.get(row) != null)
+				durations.computeIfAbsent(key, k -> new ArrayList<Long>())
+						.add((long) Double.parseDouble(execTimes.get(row)));
+		}
+	}
+
+	/**
+	 * This method reads every archive file below a directory
+	 *
+	 * @param directory
+	 * @throws IOException
+	 * @throws IllegalArgumentException if the directory does not exist
+	 */
+	public void addDirectory(Path directory) throws IOException {
+		if (!Files.isDirectory(directory))
+			throw new IllegalArgumentException("Not a directory: " + directory);
+		List<Path> files;
+		try (Stream<Path> paths = Files.walk(directory)) {
+			files = paths.filter(path -> path.toString().endsWith(FILE_SUFFIX)).sorted().collect(Collectors.toList());
+		}
+		for (Path path : files) {
+			try (InputStream inputStream = Files.newInputStream(path)) {
+				add(ColumnarFile.readFrom(inputStream));
+			}
+		}
+	}
+
+	public int getRuns() {
+		return runs;
+	}
+
+	/**
+	 * Number of tasks by status, by workflow name and task name
+	 */
+	public Map<String, Map<String, Integer>> getStatusCounts() {
+		return statusCounts;
+	}
+
+	/**
+	 * This method returns a percentile of the execution times of a task
+	 *
+	 * @param key        workflow name and task name, separated by a slash
+	 * @param percentile between 0 and 1
+	 * @return seconds, or -1 without execution times
+	 */
+	public long durationPercentile(String key, double percentile) {
+		List<Long> values = new ArrayList<Long>(durations.getOrDefault(key, Collections.<Long>emptyList()));
+		if (values.isEmpty())
+			return -1;
+		Collections.sort(values);
+		int rank = (int) Math.ceil(percentile * values.size());
+		return values.get(Math.max(0, rank - 1));
+	}
+
+	public double durationMean(String key) {
+		return durations.getOrDefault(key, Collections.<Long>emptyList()).stream().mapToLong(Long::longValue)
+				.average().orElse(-1);
+	}
+
+	public String report() {
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("Workflow runs: %d%n", runs));
+		report.append(String.format("%-50s %-40s %8s %8s %8s %8s%n", "workflow/task", "statuses", "mean", "p50",
+				"p95", "max"));
+		for (Map.Entry<String, Map<String, Integer>> entry : statusCounts.entrySet()) {
+			String key = entry.getKey();
+			report.append(String.format("%-50s %-40s %8.1f %8d %8d %8d%n", key, entry.getValue(), durationMean(key),
+					durationPercentile(key, 0.5), durationPercentile(key, 0.95), durationPercentile(key, 1)));
+		}
+		return report.toString();
+	}
+
+	public static void main(String[] args) {
+		int status = run(args, System.out, System.err);
+		if (status != 0)
+			System.exit(status);
+	}
+
+	/**
+	 * This method prints the report of the archived workflow runs of the
+	 * directory passed on the command line
+	 *
+	 * @param args
+	 * @param out
+	 * @param err
+	 * @return the exit status: 0 on success, 1 if the archive cannot be read
+	 *         and 2 on a usage error
+	 */
+	static int run(String[] args, PrintStream out, PrintStream err) {
+		if (args.length != 1) {
+			err.println("Usage: ArchiveReader <directory with archived workflow runs>");
+			return 2;
+		}
+		ArchiveReader reader = new ArchiveReader();
+		try {
+			reader.addDirectory(Paths.get(args[0]));
+		} catch (IOException | IllegalArgumentException e) {
+			err.println("Cannot read the archive: " + e.getMessage());
+			return 1;
+		}
+		out.print(reader.report());
+		return 0;
+	}
+}
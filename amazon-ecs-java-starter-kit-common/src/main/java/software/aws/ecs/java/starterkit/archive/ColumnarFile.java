@@ -0,0 +1,197 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * DynamoDB items stored column by column in a gzip compressed JSON document,
+ * with metadata about where the items come from. Values of one attribute are
+ * next to each other, so repeated values like statuses and task names compress
+ * well and a reader only converts the columns it aggregates.
+ *
+ * Only string and number attributes are kept. A missing attribute is a null
+ * value of its column.
+ *
+ */
+public class ColumnarFile {
+
+	public static final String FORMAT = "columnar-json-gzip/1";
+	public static final String STRING = "S";
+	public static final String NUMBER = "N";
+
+	private final Map<String, String> metadata;
+	private final int rowCount;
+	private final Map<String, String> columnTypes;
+	private final Map<String, List<String>> columns;
+
+	private ColumnarFile(Map<String, String> metadata, int rowCount, Map<String, String> columnTypes,
+			Map<String, List<String>> columns) {
+		this.metadata = metadata;
+		this.rowCount = rowCount;
+		this.columnTypes = columnTypes;
+		this.columns = columns;
+	}
+
+	/**
+	 * This method turns items into columns, in the order the attributes are
+	 * first seen
+	 *
+	 * @param metadata
+	 * @param items
+	 * @return
+	 */
+	public static ColumnarFile of(Map<String, String> metadata, List<Map<String, AttributeValue>> items) {
+		Map<String, String> columnTypes = new LinkedHashMap<String, String>();
+		for (Map<String, AttributeValue> item : items) {
+			for (Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+				if (!columnTypes.containsKey(attribute.getKey()) && typeOf(attribute.getValue()) != null)
+					columnTypes.put(attribute.getKey(), typeOf(attribute.getValue()));
+			}
+		}
+		Map<String, List<String>> columns = new LinkedHashMap<String, List<String>>();
+		for (String name : columnTypes.keySet()) {
+			List<String> values = new ArrayList<String>(items.size());
+			for (Map<String, AttributeValue> item : items) {
+				AttributeValue value = item.get(name);
+				values.add(value == null ? null : value.s() != null ? value.s() : value.n());
+			}
+			columns.put(name, values);
+		}
+		return new ColumnarFile(new LinkedHashMap<String, String>(metadata), items.size(), columnTypes, columns);
+	}
+
+	public void writeTo(OutputStream outputStream) throws IOException {
+		JsonObject json = new JsonObject();
+		json.addProperty("format", FORMAT);
+		JsonObject metadataJson = new JsonObject();
+		for (Map.Entry<String, String> entry : metadata.entrySet()) {
+			metadataJson.addProperty(entry.getKey(), entry.getValue());
+		}
+		json.add("metadata", metadataJson);
+		json.addProperty("rowCount", rowCount);
+		JsonArray columnsJson = new JsonArray();
+		for (Map.Entry<String, List<String>> column : columns.entrySet()) {
+			String type = columnTypes.get(column.getKey());
+			JsonArray values = new JsonArray();
+			for (String value : column.getValue()) {
+				if (value == null)
+					values.add(JsonNull.INSTANCE);
+				else if (NUMBER.equals(type) && isNumber(value))
+					values.add(new JsonPrimitive(new BigDecimal(value)));
+				else
+					values.add(value);
+			}
+			JsonObject columnJson = new JsonObject();
+			columnJson.addProperty("name", column.getKey());
+			columnJson.addProperty("type", type);
+			columnJson.add("values", values);
+			columnsJson.add(columnJson);
+		}
+		json.add("columns", columnsJson);
+		GZIPOutputStream gzip = new GZIPOutputStream(outputStream);
+		Writer writer = new OutputStreamWriter(gzip, StandardCharsets.UTF_8);
+		writer.write(json.toString());
+		writer.flush();
+		gzip.finish();
+	}
+
+	public static ColumnarFile readFrom(InputStream inputStream) throws IOException {
+		try (Reader reader = new InputStreamReader(new GZIPInputStream(inputStream), StandardCharsets.UTF_8)) {
+			JsonObject json = JsonParser.parseReader(reader).getAsJsonObject();
+			if (!FORMAT.equals(json.get("format").getAsString()))
+				throw new IOException("Unsupported format " + json.get("format").getAsString());
+			Map<String, String> metadata = new LinkedHashMap<String, String>();
+			for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject("metadata").entrySet()) {
+				metadata.put(entry.getKey(), entry.getValue().getAsString());
+			}
+			Map<String, String> columnTypes = new LinkedHashMap<String, String>();
+			Map<String, List<String>> columns = new LinkedHashMap<String, List<String>>();
+			for (JsonElement element : json.getAsJsonArray("columns")) {
+				JsonObject column = element.getAsJsonObject();
+				List<String> values = new ArrayList<String>();
+				for (JsonElement value : column.getAsJsonArray("values")) {
+					values.add(value.isJsonNull() ? null : value.getAsString());
+				}
+				columnTypes.put(column.get("name").getAsString(), column.get("type").getAsString());
+				columns.put(column.get("name").getAsString(), values);
+			}
+			return new ColumnarFile(metadata, json.get("rowCount").getAsInt(), columnTypes, columns);
+		}
+	}
+
+	public Map<String, String> getMetadata() {
+		return Collections.unmodifiableMap(metadata);
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	public Set<String> getColumnNames() {
+		return Collections.unmodifiableSet(columns.keySet());
+	}
+
+	/**
+	 * @param name
+	 * @return S or N, null for an unknown column
+	 */
+	public String getColumnType(String name) {
+		return columnTypes.get(name);
+	}
+
+	/**
+	 * This method returns the values of a column as strings, one per row
+	 *
+	 * @param name
+	 * @return nulls for a column which is not in the file
+	 */
+	public List<String> getColumn(String name) {
+		List<String> values = columns.get(name);
+		return values != null ? Collections.unmodifiableList(values)
+				: Collections.<String>nCopies(rowCount, null);
+	}
+
+	private static String typeOf(AttributeValue value) {
+		if (value.s() != null)
+			return STRING;
+		if (value.n() != null)
+			return NUMBER;
+		return null;
+	}
+
+	private static boolean isNumber(String value) {
+		try {
+			new BigDecimal(value);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.cache;
+
+/**
+ * Where the result of a completed task is and which task produced it
+ *
+ */
+public class CachedResult {
+
+	private String outputKey;
+	private long workflowRunId;
+	private String ecsTaskId;
+	private String createTime;
+
+	public CachedResult() {
+	}
+
+	public CachedResult(String outputKey, long workflowRunId, String ecsTaskId, String createTime) {
+		this.outputKey = outputKey;
+		this.workflowRunId = workflowRunId;
+		this.ecsTaskId = ecsTaskId;
+		this.createTime = createTime;
+	}
+
+	/**
+	 * Object key of the output, in the bucket of the source object
+	 */
+	public String getOutputKey() {
+		return outputKey;
+	}
+
+	public void setOutputKey(String outputKey) {
+		this.outputKey = outputKey;
+	}
+
+	public long getWorkflowRunId() {
+		return workflowRunId;
+	}
+
+	public void setWorkflowRunId(long workflowRunId) {
+		this.workflowRunId = workflowRunId;
+	}
+
+	public String getEcsTaskId() {
+		return ecsTaskId;
+	}
+
+	public void setEcsTaskId(String ecsTaskId) {
+		this.ecsTaskId = ecsTaskId;
+	}
+
+	public String getCreateTime() {
+		return createTime;
+	}
+
+	public void setCreateTime(String createTime) {
+		this.createTime = createTime;
+	}
+}
@@ -0,0 +1,97 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.cache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+
+/**
+ * ResultCache backed by a DynamoDB table with the hash key cache_key. An entry
+ * is written once its task completed, so reads need not be consistent: a
+ * lookup which misses a fresh entry only runs the task again.
+ *
+ * The cache works on a synchronous or on an asynchronous client, so a process
+ * which keeps its rows on an asynchronous client needs no other.
+ *
+ */
+public class DynamoDbResultCache implements ResultCache {
+
+	public static final String HASH_KEY = "cache_key";
+
+	private final Function<GetItemRequest, GetItemResponse> getItem;
+	private final Function<PutItemRequest, PutItemResponse> putItem;
+	private final String tableName;
+	private final Metrics metrics;
+
+	public DynamoDbResultCache(DynamoDbClient dynamoDB, String tableName) {
+		this(dynamoDB, tableName, Metrics.getInstance());
+	}
+
+	public DynamoDbResultCache(DynamoDbClient dynamoDB, String tableName, Metrics metrics) {
+		this(dynamoDB::getItem, dynamoDB::putItem, tableName, metrics);
+	}
+
+	public DynamoDbResultCache(DynamoDbAsyncClient dynamoDB, String tableName, Metrics metrics) {
+		this(request -> WorkflowStore.join(dynamoDB.getItem(request)),
+				request -> WorkflowStore.join(dynamoDB.putItem(request)), tableName, metrics);
+	}
+
+	private DynamoDbResultCache(Function<GetItemRequest, GetItemResponse> getItem,
+			Function<PutItemRequest, PutItemResponse> putItem, String tableName, Metrics metrics) {
+		this.getItem = getItem;
+		this.putItem = putItem;
+		this.tableName = tableName;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public CachedResult lookup(String cacheKey) {
+		GetItemRequest request = GetItemRequest.builder().tableName(tableName)
+				.key(Collections.singletonMap(HASH_KEY, AttributeValue.builder().s(cacheKey).build())).build();
+		try {
+			Map<String, AttributeValue> item = metrics.time("DDBGetItemLatency", () -> getItem.apply(request))
+					.item();
+			if (item == null || item.isEmpty()) {
+				metrics.count("ResultCacheMisses");
+				return null;
+			}
+			metrics.count("ResultCacheHits");
+			return new CachedResult(item.get("output_key").s(), Long.parseLong(item.get("workflow_run_id").n()),
+					item.get("ecs_task_id").s(), item.get("create_time").s());
+		} catch (DynamoDbException e) {
+			metrics.count("DDBErrors");
+			throw e;
+		}
+	}
+
+	@Override
+	public void put(String cacheKey, CachedResult result) {
+		Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+		item.put(HASH_KEY, AttributeValue.builder().s(cacheKey).build());
+		item.put("output_key", AttributeValue.builder().s(result.getOutputKey()).build());
+		item.put("workflow_run_id", AttributeValue.builder().n(Long.toString(result.getWorkflowRunId())).build());
+		item.put("ecs_task_id", AttributeValue.builder().s(result.getEcsTaskId()).build());
+		item.put("create_time", AttributeValue.builder().s(result.getCreateTime()).build());
+		PutItemRequest request = PutItemRequest.builder().tableName(tableName).item(item).build();
+		try {
+			metrics.time("DDBPutItemLatency", () -> putItem.apply(request));
+		} catch (DynamoDbException e) {
+			metrics.count("DDBErrors");
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,29 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ResultCache kept in memory, for tests and local runs
+ *
+ */
+public class InMemoryResultCache implements ResultCache {
+
+	private final ConcurrentHashMap<String, CachedResult> results = new ConcurrentHashMap<String, CachedResult>();
+
+	@Override
+	public CachedResult lookup(String cacheKey) {
+		return results.get(cacheKey);
+	}
+
+	@Override
+	public void put(String cacheKey, CachedResult result) {
+		results.put(cacheKey, result);
+	}
+
+	public int size() {
+		return results.size();
+	}
+}
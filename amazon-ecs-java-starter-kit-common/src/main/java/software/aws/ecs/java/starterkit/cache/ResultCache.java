@@ -0,0 +1,62 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.cache;
+
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Results of tasks which completed, by the content they were computed from.
+ * The key covers the task definition, the task config and the ETag of the
+ * source object, so a rerun over unchanged inputs finds the results of the
+ * previous run and only the changed or failed inputs are processed again.
+ *
+ */
+public interface ResultCache {
+
+	// status of a task whose result was taken from the cache instead of running it
+	String CACHED_STATUS = "Completed (cached)";
+
+	/**
+	 * This method returns the result recorded for a cache key
+	 *
+	 * @param cacheKey
+	 * @return the result, or null on a cache miss
+	 */
+	CachedResult lookup(String cacheKey);
+
+	/**
+	 * This method records the result of a completed task
+	 *
+	 * @param cacheKey
+	 * @param result
+	 */
+	void put(String cacheKey, CachedResult result);
+
+	/**
+	 * This method computes the cache key of a task. The ETag is used rather
+	 * than the version id because it changes with the content only.
+	 *
+	 * @param taskDefinition
+	 * @param taskConfig     JSON of the settings the result depends on
+	 * @param sourceETag     ETag of the source object
+	 * @return hex SHA-256 of the inputs
+	 */
+	static String cacheKey(String taskDefinition, String taskConfig, String sourceETag) {
+		return Hashing.sha256().hashString(String.join("\n", taskDefinition, taskConfig, sourceETag),
+				StandardCharsets.UTF_8).toString();
+	}
+
+	/**
+	 * This method tells whether a task status is Completed, from a run or from
+	 * the cache
+	 *
+	 * @param status
+	 * @return
+	 */
+	static boolean isCompleted(String status) {
+		return "Completed".equalsIgnoreCase(status) || CACHED_STATUS.equalsIgnoreCase(status);
+	}
+}
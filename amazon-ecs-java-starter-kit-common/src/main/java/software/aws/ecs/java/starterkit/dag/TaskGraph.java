@@ -0,0 +1,137 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.dag;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dependencies between the tasks of a workflow, by task name. The graph is
+ * validated when it is built: dependencies must name tasks of the workflow
+ * and must not form a cycle.
+ *
+ * Each task of a workflow with dependencies has a node row in workflow_details
+ * with the range key {@link #nodeId(String)} and one of the node statuses
+ * below. The ECS task of a launched node writes its own rows under its task
+ * ARN as before.
+ *
+ */
+public class TaskGraph {
+
+	public static final String NODE_PREFIX = "node/";
+
+	// waiting for its dependencies to complete
+	public static final String BLOCKED = "Blocked";
+	// RunTask may have been called, the ECS task is not recorded yet
+	public static final String LAUNCHING = "Launching";
+	public static final String LAUNCHED = "Launched";
+	// never launched because a dependency failed or was skipped
+	public static final String SKIPPED = "Skipped";
+
+	private final Map<String, List<String>> dependencies;
+	private final List<String> topologicalOrder;
+
+	/**
+	 * @param dependencies task names in task list order, each with the names of
+	 *                     the tasks it depends on
+	 * @throws IllegalArgumentException if a dependency is unknown or the
+	 *                                  dependencies form a cycle
+	 */
+	public TaskGraph(LinkedHashMap<String, List<String>> dependencies) {
+		this.dependencies = dependencies;
+		for (Map.Entry<String, List<String>> entry : dependencies.entrySet()) {
+			for (String dependency : entry.getValue()) {
+				if (!dependencies.containsKey(dependency))
+					throw new IllegalArgumentException(
+							String.format("Task %s depends on unknown task %s", entry.getKey(), dependency));
+			}
+		}
+		this.topologicalOrder = sort();
+	}
+
+	public static String nodeId(String taskName) {
+		return NODE_PREFIX + taskName;
+	}
+
+	public static boolean isNodeId(String ecsTaskId) {
+		return ecsTaskId != null && ecsTaskId.startsWith(NODE_PREFIX);
+	}
+
+	public List<String> getDependencies(String taskName) {
+		return dependencies.get(taskName);
+	}
+
+	/**
+	 * Task names ordered so that every task comes after its dependencies
+	 */
+	public List<String> getTopologicalOrder() {
+		return topologicalOrder;
+	}
+
+	public int size() {
+		return dependencies.size();
+	}
+
+	private List<String> sort() {
+		Map<String, Integer> unmetDependencies = new HashMap<String, Integer>();
+		Map<String, List<String>> dependents = new HashMap<String, List<String>>();
+		Deque<String> ready = new ArrayDeque<String>();
+		for (Map.Entry<String, List<String>> entry : dependencies.entrySet()) {
+			Set<String> distinct = new LinkedHashSet<String>(entry.getValue());
+			unmetDependencies.put(entry.getKey(), distinct.size());
+			for (String dependency : distinct) {
+				dependents.computeIfAbsent(dependency, k -> new ArrayList<String>()).add(entry.getKey());
+			}
+			if (distinct.isEmpty())
+				ready.add(entry.getKey());
+		}
+		List<String> order = new ArrayList<String>();
+		while (!ready.isEmpty()) {
+			String taskName = ready.poll();
+			order.add(taskName);
+			for (String dependent : dependents.getOrDefault(taskName, Collections.<String>emptyList())) {
+				if (unmetDependencies.merge(dependent, -1, Integer::sum) == 0)
+					ready.add(dependent);
+			}
+		}
+		if (order.size() < dependencies.size())
+			throw new IllegalArgumentException("Task dependencies form a cycle: " + findCycle(unmetDependencies));
+		return Collections.unmodifiableList(order);
+	}
+
+	/**
+	 * Every task left unsorted has a dependency which is left unsorted too, so
+	 * following those dependencies from any of them ends in a cycle
+	 */
+	private String findCycle(Map<String, Integer> unmetDependencies) {
+		String taskName = null;
+		for (String candidate : dependencies.keySet()) {
+			if (unmetDependencies.get(candidate) > 0) {
+				taskName = candidate;
+				break;
+			}
+		}
+		List<String> path = new ArrayList<String>();
+		while (!path.contains(taskName)) {
+			path.add(taskName);
+			for (String dependency : dependencies.get(taskName)) {
+				if (unmetDependencies.get(dependency) > 0) {
+					taskName = dependency;
+					break;
+				}
+			}
+		}
+		List<String> cycle = new ArrayList<String>(path.subList(path.indexOf(taskName), path.size()));
+		cycle.add(taskName);
+		return String.join(" -> ", cycle);
+	}
+}
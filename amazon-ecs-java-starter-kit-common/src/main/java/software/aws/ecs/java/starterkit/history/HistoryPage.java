@@ -0,0 +1,42 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.history;
+
+import java.util.List;
+import java.util.Map;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * One page of a workflow history query, with the token of the next page
+ *
+ */
+public class HistoryPage {
+
+	private final List<Map<String, AttributeValue>> items;
+	private final Map<String, AttributeValue> nextPageToken;
+
+	public HistoryPage(List<Map<String, AttributeValue>> items, Map<String, AttributeValue> nextPageToken) {
+		this.items = items;
+		this.nextPageToken = nextPageToken;
+	}
+
+	/**
+	 * Items of the page, the most recent first
+	 */
+	public List<Map<String, AttributeValue>> getItems() {
+		return items;
+	}
+
+	/**
+	 * Token to pass to the same query for the next page, null on the last page
+	 */
+	public Map<String, AttributeValue> getNextPageToken() {
+		return nextPageToken;
+	}
+
+	public boolean hasNextPage() {
+		return nextPageToken != null;
+	}
+}
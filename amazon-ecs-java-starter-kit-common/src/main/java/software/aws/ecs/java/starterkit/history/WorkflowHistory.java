@@ -0,0 +1,111 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.history;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+
+/**
+ * Queries workflow runs and tasks by status and time through the status
+ * indexes of the Workflow Summary and Workflow Details tables, so that
+ * operational queries read only the items they return instead of scanning the
+ * tables.
+ *
+ * The indexes have the status as partition key and a time in epoch
+ * milliseconds as sort key: start_time_millis for workflow runs and
+ * update_time_millis for tasks. Items written before these attributes existed
+ * are not in the indexes.
+ *
+ */
+public class WorkflowHistory {
+
+	public static final String SUMMARY_STATUS_INDEX = "status-start_time_millis-index";
+	public static final String DETAILS_STATUS_INDEX = "status-update_time_millis-index";
+	public static final String START_TIME_MILLIS = "start_time_millis";
+	public static final String UPDATE_TIME_MILLIS = "update_time_millis";
+
+	private final DynamoDbClient dynamoDB;
+	private final String summaryTableName;
+	private final String detailsTableName;
+	private final Metrics metrics;
+
+	public WorkflowHistory(DynamoDbClient dynamoDB, String summaryTableName, String detailsTableName) {
+		this(dynamoDB, summaryTableName, detailsTableName, Metrics.getInstance());
+	}
+
+	public WorkflowHistory(DynamoDbClient dynamoDB, String summaryTableName, String detailsTableName,
+			Metrics metrics) {
+		this.dynamoDB = dynamoDB;
+		this.summaryTableName = summaryTableName;
+		this.detailsTableName = detailsTableName;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * This method returns a page of the workflow runs with the given status
+	 * which started in the given interval, the most recent first
+	 *
+	 * @param status     for e.g. Running or Completed
+	 * @param fromMillis start of the interval, inclusive
+	 * @param toMillis   end of the interval, inclusive
+	 * @param pageSize   maximum number of items of the page
+	 * @param pageToken  null for the first page
+	 * @return
+	 */
+	public HistoryPage runsByStatus(String status, long fromMillis, long toMillis, int pageSize,
+			Map<String, AttributeValue> pageToken) {
+		return query(summaryTableName, SUMMARY_STATUS_INDEX, START_TIME_MILLIS, status, fromMillis, toMillis,
+				pageSize, pageToken);
+	}
+
+	/**
+	 * This method returns a page of the tasks with the given status which
+	 * changed in the given interval, the most recent first
+	 *
+	 * @param status     for e.g. Running or Failed
+	 * @param fromMillis start of the interval, inclusive
+	 * @param toMillis   end of the interval, inclusive
+	 * @param pageSize   maximum number of items of the page
+	 * @param pageToken  null for the first page
+	 * @return
+	 */
+	public HistoryPage tasksByStatus(String status, long fromMillis, long toMillis, int pageSize,
+			Map<String, AttributeValue> pageToken) {
+		return query(detailsTableName, DETAILS_STATUS_INDEX, UPDATE_TIME_MILLIS, status, fromMillis, toMillis,
+				pageSize, pageToken);
+	}
+
+	private HistoryPage query(String tableName, String indexName, String timeAttribute, String status,
+			long fromMillis, long toMillis, int pageSize, Map<String, AttributeValue> pageToken) {
+		Map<String, String> expressionAttributeNames = new HashMap<String, String>();
+		expressionAttributeNames.put("#status", "status");
+		expressionAttributeNames.put("#time", timeAttribute);
+		Map<String, AttributeValue> expressionAttributeValues = new HashMap<String, AttributeValue>();
+		expressionAttributeValues.put(":status", AttributeValue.builder().s(status).build());
+		expressionAttributeValues.put(":from", AttributeValue.builder().n(Long.toString(fromMillis)).build());
+		expressionAttributeValues.put(":to", AttributeValue.builder().n(Long.toString(toMillis)).build());
+		QueryRequest request = QueryRequest.builder().tableName(tableName).indexName(indexName)
+				.keyConditionExpression("#status = :status AND #time BETWEEN :from AND :to")
+				.expressionAttributeNames(expressionAttributeNames)
+				.expressionAttributeValues(expressionAttributeValues).scanIndexForward(false).limit(pageSize)
+				.exclusiveStartKey(pageToken).build();
+		try {
+			QueryResponse response = metrics.time("DDBQueryLatency", () -> dynamoDB.query(request));
+			return new HistoryPage(response.items(),
+					response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+							? response.lastEvaluatedKey()
+							: null);
+		} catch (DynamoDbException e) {
+			metrics.count(e.isThrottlingException() ? "DDBThrottles" : "DDBErrors");
+			throw e;
+		}
+	}
+}
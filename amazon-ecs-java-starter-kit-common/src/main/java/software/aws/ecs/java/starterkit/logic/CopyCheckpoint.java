@@ -0,0 +1,162 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.logic;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+
+/**
+ * The progress of a task, saved so that the next attempt of an interrupted
+ * task resumes where it stopped: the objects copied with the key of their
+ * copy, the multipart copy in progress with the ETags of its completed parts,
+ * and the time worked after the copies. The bytes copied, including the
+ * completed parts, are the progress the task reports in its heartbeats. The
+ * task updates it while its shutdown hook and heartbeat read it, so all
+ * methods are synchronized.
+ *
+ */
+public class CopyCheckpoint {
+
+	// source key to destination key of the copied objects, in copy order
+	private Map<String, String> copied = new LinkedHashMap<String, String>();
+	private PartialCopy partialCopy;
+	private long copiedBytes;
+	private long workedMillis;
+
+	/**
+	 * A multipart copy which was started but not completed
+	 */
+	public static class PartialCopy {
+
+		private String sourceKey;
+		private String destinationKey;
+		private String uploadId;
+		private long partBytes;
+		// ETags of the completed parts, part n at index n - 1
+		private List<String> partETags = new ArrayList<String>();
+		private long copiedBytes;
+
+		public String getSourceKey() {
+			return sourceKey;
+		}
+
+		public String getDestinationKey() {
+			return destinationKey;
+		}
+
+		public String getUploadId() {
+			return uploadId;
+		}
+
+		public long getPartBytes() {
+			return partBytes;
+		}
+
+		public List<String> getPartETags() {
+			return partETags;
+		}
+	}
+
+	/**
+	 * This method returns the key of the copy of an object
+	 *
+	 * @param sourceKey
+	 * @return null when the object was not copied yet
+	 */
+	public synchronized String destinationOf(String sourceKey) {
+		return copied.get(sourceKey);
+	}
+
+	/**
+	 * This method records a copied object
+	 *
+	 * @param sourceKey
+	 * @param destinationKey
+	 * @param objectBytes    size of the object, including the parts recorded
+	 *                       for its multipart copy
+	 */
+	public synchronized void copied(String sourceKey, String destinationKey, long objectBytes) {
+		copied.put(sourceKey, destinationKey);
+		copiedBytes += objectBytes;
+		if (partialCopy != null && partialCopy.sourceKey.equals(sourceKey)) {
+			copiedBytes -= partialCopy.copiedBytes;
+			partialCopy = null;
+		}
+	}
+
+	/**
+	 * This method returns the multipart copy in progress of an object
+	 *
+	 * @param sourceKey
+	 * @return a copy of it, null when none was started for the object
+	 */
+	public synchronized PartialCopy partialCopyOf(String sourceKey) {
+		if (partialCopy == null || !partialCopy.sourceKey.equals(sourceKey))
+			return null;
+		PartialCopy copy = new PartialCopy();
+		copy.sourceKey = partialCopy.sourceKey;
+		copy.destinationKey = partialCopy.destinationKey;
+		copy.uploadId = partialCopy.uploadId;
+		copy.partBytes = partialCopy.partBytes;
+		copy.partETags = new ArrayList<String>(partialCopy.partETags);
+		copy.copiedBytes = partialCopy.copiedBytes;
+		return copy;
+	}
+
+	/**
+	 * This method records the start of a multipart copy, in place of the one
+	 * in progress, whose parts no longer count as copied
+	 *
+	 * @param sourceKey
+	 * @param destinationKey
+	 * @param uploadId
+	 * @param partBytes
+	 */
+	public synchronized void startPartialCopy(String sourceKey, String destinationKey, String uploadId,
+			long partBytes) {
+		if (partialCopy != null)
+			copiedBytes -= partialCopy.copiedBytes;
+		partialCopy = new PartialCopy();
+		partialCopy.sourceKey = sourceKey;
+		partialCopy.destinationKey = destinationKey;
+		partialCopy.uploadId = uploadId;
+		partialCopy.partBytes = partBytes;
+	}
+
+	public synchronized void partCopied(String uploadId, String eTag, long bytes) {
+		if (partialCopy != null && partialCopy.uploadId.equals(uploadId)) {
+			partialCopy.partETags.add(eTag);
+			partialCopy.copiedBytes += bytes;
+			copiedBytes += bytes;
+		}
+	}
+
+	public synchronized int getCopiedObjects() {
+		return copied.size();
+	}
+
+	public synchronized long getCopiedBytes() {
+		return copiedBytes;
+	}
+
+	public synchronized long getWorkedMillis() {
+		return workedMillis;
+	}
+
+	public synchronized void setWorkedMillis(long workedMillis) {
+		this.workedMillis = workedMillis;
+	}
+
+	public synchronized String toJson() {
+		return new Gson().toJson(this);
+	}
+
+	public static CopyCheckpoint fromJson(String json) {
+		return new Gson().fromJson(json, CopyCheckpoint.class);
+	}
+}
@@ -0,0 +1,73 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.logic;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * The business logic of a task, a copy of its input object. It is shared by
+ * ECS Task, the workers of the worker pool and the in-process executor of ECS
+ * Task Launcher, so a task gives the same output wherever it runs.
+ *
+ */
+public class ObjectCopy {
+
+	private ObjectCopy() {
+	}
+
+	/**
+	 * This method creates a copy of the input object if its ETag still matches
+	 * 
+	 * @param s3
+	 * @param bucketName
+	 * @param objectKey
+	 * @param destinationKey
+	 * @param sourceETag     null to copy whatever the object holds
+	 * @return true if the object was copied
+	 */
+	public static boolean copy(S3Client s3, String bucketName, String objectKey, String destinationKey,
+			String sourceETag) {
+		boolean objectCopied = false;
+		// Copy object request
+		CopyObjectRequest copyReq = CopyObjectRequest.builder().copySource(copySource(bucketName, objectKey))
+				.destinationBucket(bucketName).destinationKey(destinationKey).copySourceIfMatch(sourceETag).build();
+		try {
+			CopyObjectResponse copyRes = s3.copyObject(copyReq);
+			if (copyRes.sdkHttpResponse().isSuccessful()) {
+				System.out.println("Copy operation successful");
+				objectCopied = true;
+			}
+			else
+				System.out.println("Copy operation not successful");
+		} catch (S3Exception e) {
+			System.out.println("Exception thrown while copying S3 object");
+			System.err.println(e.awsErrorDetails().errorMessage());
+		}
+		return objectCopied;
+	}
+
+	/**
+	 * This method builds the URL encoded copy source of an object
+	 * 
+	 * @param bucketName
+	 * @param objectKey
+	 * @return null when it cannot be encoded
+	 */
+	static String copySource(String bucketName, String objectKey) {
+		String encodedUrl = null;
+		try {
+			encodedUrl = URLEncoder.encode(bucketName + "/" + objectKey, StandardCharsets.UTF_8.toString());
+		} catch (UnsupportedEncodingException e) {
+			System.out.println("URL could not be encoded: " + e.getMessage());
+		}
+		return encodedUrl;
+	}
+}
@@ -0,0 +1,174 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+import software.aws.ecs.java.starterkit.logic.CopyCheckpoint.PartialCopy;
+
+/**
+ * The copy of ECS Task, which can be stopped between two steps and resumed
+ * from its checkpoint. Objects up to the part size are copied with CopyObject,
+ * larger ones with a multipart copy of one UploadPartCopy per part. The
+ * checkpoint records each copied object and each completed part with their
+ * bytes, and the progress callback is called after each of them, so that the
+ * task can save the checkpoint. A resumed copy skips the copied objects and goes on with the
+ * parts of the multipart copy in progress; when S3 no longer knows its upload,
+ * the object is copied again from the first part.
+ *
+ */
+public class ResumableCopy {
+
+	public static final long DEFAULT_PART_BYTES = 256L * 1024 * 1024;
+	// limits of a multipart upload
+	static final long MIN_PART_BYTES = 5L * 1024 * 1024;
+	static final int MAX_PARTS = 10000;
+
+	private final S3Client s3;
+	private final String bucketName;
+	private final long partBytes;
+	private final CopyCheckpoint checkpoint;
+	private final Runnable progress;
+	private volatile boolean stopped;
+
+	/**
+	 * @param s3
+	 * @param bucketName
+	 * @param partBytes  size of the parts of a multipart copy, and the largest
+	 *                   object copied with CopyObject
+	 * @param checkpoint the checkpoint of the previous attempt to resume from,
+	 *                   or a new one
+	 * @param progress   called after each copied object and part
+	 */
+	public ResumableCopy(S3Client s3, String bucketName, long partBytes, CopyCheckpoint checkpoint,
+			Runnable progress) {
+		this.s3 = s3;
+		this.bucketName = bucketName;
+		this.partBytes = Math.max(MIN_PART_BYTES, partBytes);
+		this.checkpoint = checkpoint;
+		this.progress = progress;
+	}
+
+	/**
+	 * This method copies an object if its ETag still matches, unless the
+	 * checkpoint has it copied already
+	 *
+	 * @param objectKey
+	 * @param destinationKey the key of the copy, unless the checkpoint has a
+	 *                       multipart copy of the object in progress
+	 * @param sourceETag     null to copy whatever the object holds
+	 * @return true if the object was copied, false if the copy failed or was
+	 *         stopped
+	 */
+	public boolean copy(String objectKey, String destinationKey, String sourceETag) {
+		if (checkpoint.destinationOf(objectKey) != null)
+			return true;
+		if (stopped)
+			return false;
+		long objectBytes;
+		try {
+			objectBytes = s3.headObject(HeadObjectRequest.builder().bucket(bucketName).key(objectKey)
+					.ifMatch(sourceETag).build()).contentLength();
+		} catch (S3Exception e) {
+			System.out.println("Exception thrown while reading the size of S3 object " + objectKey);
+			return false;
+		}
+		if (objectBytes <= partBytes) {
+			if (!ObjectCopy.copy(s3, bucketName, objectKey, destinationKey, sourceETag))
+				return false;
+			checkpoint.copied(objectKey, destinationKey, objectBytes);
+			progress.run();
+			return true;
+		}
+		return copyInParts(objectKey, destinationKey, sourceETag, objectBytes);
+	}
+
+	private boolean copyInParts(String objectKey, String destinationKey, String sourceETag, long objectBytes) {
+		PartialCopy partialCopy = checkpoint.partialCopyOf(objectKey);
+		if (partialCopy == null)
+			partialCopy = startPartialCopy(objectKey, destinationKey, objectBytes);
+		else
+			System.out.printf("Resuming the copy of %s at part %d \n", objectKey,
+					partialCopy.getPartETags().size() + 1);
+		try {
+			return copyParts(partialCopy, sourceETag, objectBytes);
+		} catch (NoSuchUploadException e) {
+			// aborted, or removed by a lifecycle rule
+			System.out.printf("Upload %s not found, copying %s again \n", partialCopy.getUploadId(), objectKey);
+			return copyParts(startPartialCopy(objectKey, partialCopy.getDestinationKey(), objectBytes), sourceETag,
+					objectBytes);
+		}
+	}
+
+	private PartialCopy startPartialCopy(String objectKey, String destinationKey, long objectBytes) {
+		String uploadId = s3.createMultipartUpload(
+				CreateMultipartUploadRequest.builder().bucket(bucketName).key(destinationKey).build()).uploadId();
+		checkpoint.startPartialCopy(objectKey, destinationKey, uploadId,
+				Math.max(partBytes, (objectBytes + MAX_PARTS - 1) / MAX_PARTS));
+		return checkpoint.partialCopyOf(objectKey);
+	}
+
+	private boolean copyParts(PartialCopy partialCopy, String sourceETag, long objectBytes) {
+		String copySource = ObjectCopy.copySource(bucketName, partialCopy.getSourceKey());
+		List<String> partETags = new ArrayList<String>(partialCopy.getPartETags());
+		int parts = (int) ((objectBytes + partialCopy.getPartBytes() - 1) / partialCopy.getPartBytes());
+		try {
+			for (int partNumber = partETags.size() + 1; partNumber <= parts; partNumber++) {
+				if (stopped)
+					return false;
+				long first = (partNumber - 1) * partialCopy.getPartBytes();
+				long last = Math.min(objectBytes, first + partialCopy.getPartBytes()) - 1;
+				String eTag = s3.uploadPartCopy(UploadPartCopyRequest.builder().copySource(copySource)
+						.copySourceRange("bytes=" + first + "-" + last).copySourceIfMatch(sourceETag)
+						.bucket(bucketName).key(partialCopy.getDestinationKey()).uploadId(partialCopy.getUploadId())
+						.partNumber(partNumber).build()).copyPartResult().eTag();
+				partETags.add(eTag);
+				checkpoint.partCopied(partialCopy.getUploadId(), eTag, last - first + 1);
+				progress.run();
+			}
+			List<CompletedPart> completedParts = new ArrayList<CompletedPart>();
+			for (int i = 0; i < partETags.size(); i++) {
+				completedParts.add(CompletedPart.builder().partNumber(i + 1).eTag(partETags.get(i)).build());
+			}
+			s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder().bucket(bucketName)
+					.key(partialCopy.getDestinationKey()).uploadId(partialCopy.getUploadId())
+					.multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build()).build());
+		} catch (NoSuchUploadException e) {
+			throw e;
+		} catch (S3Exception e) {
+			System.out.println("Exception thrown while copying S3 object in parts");
+			System.err.println(e.awsErrorDetails().errorMessage());
+			// the source changed or cannot be read, the parts would never be completed
+			s3.abortMultipartUpload(AbortMultipartUploadRequest.builder().bucket(bucketName)
+					.key(partialCopy.getDestinationKey()).uploadId(partialCopy.getUploadId()).build());
+			return false;
+		}
+		checkpoint.copied(partialCopy.getSourceKey(), partialCopy.getDestinationKey(), objectBytes);
+		progress.run();
+		return true;
+	}
+
+	/**
+	 * This method makes the copy return after the object or part in flight,
+	 * leaving the rest to the next attempt
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	public boolean isStopped() {
+		return stopped;
+	}
+}
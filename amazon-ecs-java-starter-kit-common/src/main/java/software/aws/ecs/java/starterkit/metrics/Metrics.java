@@ -0,0 +1,288 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.metrics;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * A small in-process metrics facade. Counters, gauges and latency histograms
+ * are aggregated in memory and written as CloudWatch Embedded Metric Format (EMF)
+ * JSON documents when {@link #flush()} is called, typically at the end of a
+ * Lambda invocation or an ECS task.
+ *
+ * Latencies are rounded to two significant digits so that a histogram keeps a
+ * bounded number of distinct values. EMF allows at most 100 values per metric
+ * in a document, larger histograms are split across several documents.
+ *
+ * A gauge keeps the last value set before a flush. It is meant for
+ * point-in-time values such as the number of running tasks, which are read
+ * with the Average or Maximum statistic instead of Sum.
+ *
+ */
+public class Metrics {
+
+	public static final String DEFAULT_NAMESPACE = "ECSJavaStarterKit";
+	public static final String UNIT_COUNT = "Count";
+	public static final String UNIT_MILLISECONDS = "Milliseconds";
+	static final int MAX_VALUES_PER_METRIC = 100;
+
+	private static final Metrics INSTANCE = new Metrics(
+			Optional.ofNullable(System.getenv("metrics_namespace")).orElse(DEFAULT_NAMESPACE), System.out::println);
+
+	private final String namespace;
+	private final Consumer<String> sink;
+	private final Map<String, String> dimensions = new LinkedHashMap<String, String>();
+	private final Map<String, Object> properties = new LinkedHashMap<String, Object>();
+	private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<String, LongAdder>();
+	private final ConcurrentHashMap<String, Long> gauges = new ConcurrentHashMap<String, Long>();
+	private final ConcurrentHashMap<String, ConcurrentHashMap<Long, LongAdder>> latencies = new ConcurrentHashMap<String, ConcurrentHashMap<Long, LongAdder>>();
+
+	public Metrics(String namespace, Consumer<String> sink) {
+		this.namespace = namespace;
+		this.sink = sink;
+	}
+
+	/**
+	 * This method returns the process wide instance. It writes EMF documents to
+	 * standard output, which Lambda and the awslogs driver ship to CloudWatch
+	 * Logs.
+	 *
+	 * @return
+	 */
+	public static Metrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * This method sets a dimension for all metrics in the next flush
+	 *
+	 * @param name
+	 * @param value
+	 * @return
+	 */
+	public synchronized Metrics putDimension(String name, String value) {
+		dimensions.put(name, value);
+		return this;
+	}
+
+	/**
+	 * This method sets a searchable property, which is not a dimension
+	 *
+	 * @param name
+	 * @param value
+	 * @return
+	 */
+	public synchronized Metrics putProperty(String name, Object value) {
+		properties.put(name, value);
+		return this;
+	}
+
+	public void count(String name) {
+		count(name, 1);
+	}
+
+	public void count(String name, long delta) {
+		counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+	}
+
+	/**
+	 * This method sets the current value of a gauge, replacing the value set
+	 * since the last flush
+	 *
+	 * @param name
+	 * @param value
+	 */
+	public void gauge(String name, long value) {
+		gauges.put(name, value);
+	}
+
+	/**
+	 * This method records a latency sample in milliseconds
+	 *
+	 * @param name
+	 * @param millis
+	 */
+	public void recordLatency(String name, long millis) {
+		latencies.computeIfAbsent(name, k -> new ConcurrentHashMap<Long, LongAdder>())
+				.computeIfAbsent(roundToTwoSignificantDigits(millis), k -> new LongAdder()).increment();
+	}
+
+	/**
+	 * This method records the time elapsed since startNanos, as returned by
+	 * System.nanoTime()
+	 *
+	 * @param name
+	 * @param startNanos
+	 */
+	public void recordLatencySince(String name, long startNanos) {
+		recordLatency(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+	}
+
+	/**
+	 * This method runs the supplier and records its latency
+	 *
+	 * @param name
+	 * @param supplier
+	 * @return
+	 */
+	public <T> T time(String name, Supplier<T> supplier) {
+		long start = System.nanoTime();
+		try {
+			return supplier.get();
+		} finally {
+			recordLatencySince(name, start);
+		}
+	}
+
+	/**
+	 * This method writes all recorded metrics as EMF documents to the sink and
+	 * resets counters, gauges and histograms. Dimensions and properties are kept.
+	 *
+	 * @return the documents written
+	 */
+	public synchronized List<String> flush() {
+		Map<String, Long> counterSnapshot = new TreeMap<String, Long>();
+		for (String name : new ArrayList<String>(counters.keySet())) {
+			LongAdder adder = counters.remove(name);
+			if (adder != null)
+				counterSnapshot.put(name, adder.sum());
+		}
+		Map<String, Long> gaugeSnapshot = new TreeMap<String, Long>();
+		for (String name : new ArrayList<String>(gauges.keySet())) {
+			Long value = gauges.remove(name);
+			if (value != null)
+				gaugeSnapshot.put(name, value);
+		}
+		Map<String, List<Map.Entry<Long, Long>>> latencySnapshot = new TreeMap<String, List<Map.Entry<Long, Long>>>();
+		for (String name : new ArrayList<String>(latencies.keySet())) {
+			Map<Long, LongAdder> histogram = latencies.remove(name);
+			if (histogram == null)
+				continue;
+			List<Map.Entry<Long, Long>> values = new ArrayList<Map.Entry<Long, Long>>();
+			new TreeMap<Long, LongAdder>(histogram)
+					.forEach((value, adder) -> values.add(new AbstractMap.SimpleEntry<Long, Long>(value, adder.sum())));
+			latencySnapshot.put(name, values);
+		}
+
+		List<String> documents = new ArrayList<String>();
+		long timestamp = System.currentTimeMillis();
+		boolean first = true;
+		// every document carries one chunk of each histogram, counters and gauges go in the first
+		for (int offset = 0; first || hasMoreValues(latencySnapshot, offset); offset += MAX_VALUES_PER_METRIC) {
+			JsonObject document = newDocument(timestamp);
+			JsonArray metricDefinitions = document.getAsJsonObject("_aws").getAsJsonArray("CloudWatchMetrics").get(0)
+					.getAsJsonObject().getAsJsonArray("Metrics");
+			if (first) {
+				for (Map.Entry<String, Long> counter : counterSnapshot.entrySet()) {
+					metricDefinitions.add(metricDefinition(counter.getKey(), UNIT_COUNT));
+					document.addProperty(counter.getKey(), counter.getValue());
+				}
+				for (Map.Entry<String, Long> gauge : gaugeSnapshot.entrySet()) {
+					metricDefinitions.add(metricDefinition(gauge.getKey(), UNIT_COUNT));
+					document.addProperty(gauge.getKey(), gauge.getValue());
+				}
+			}
+			for (Map.Entry<String, List<Map.Entry<Long, Long>>> latency : latencySnapshot.entrySet()) {
+				List<Map.Entry<Long, Long>> entries = latency.getValue();
+				if (offset >= entries.size())
+					continue;
+				JsonArray values = new JsonArray();
+				JsonArray counts = new JsonArray();
+				for (Map.Entry<Long, Long> entry : entries.subList(offset,
+						Math.min(entries.size(), offset + MAX_VALUES_PER_METRIC))) {
+					values.add(entry.getKey());
+					counts.add(entry.getValue());
+				}
+				JsonObject histogram = new JsonObject();
+				histogram.add("Values", values);
+				histogram.add("Counts", counts);
+				metricDefinitions.add(metricDefinition(latency.getKey(), UNIT_MILLISECONDS));
+				document.add(latency.getKey(), histogram);
+			}
+			if (metricDefinitions.size() > 0)
+				documents.add(new Gson().toJson(document));
+			first = false;
+		}
+		for (String document : documents) {
+			sink.accept(document);
+		}
+		return documents;
+	}
+
+	private JsonObject newDocument(long timestamp) {
+		JsonArray dimensionKeys = new JsonArray();
+		JsonObject document = new JsonObject();
+		for (Map.Entry<String, String> dimension : dimensions.entrySet()) {
+			dimensionKeys.add(dimension.getKey());
+			document.addProperty(dimension.getKey(), dimension.getValue());
+		}
+		Gson gson = new Gson();
+		for (Map.Entry<String, Object> property : properties.entrySet()) {
+			document.add(property.getKey(), gson.toJsonTree(property.getValue()));
+		}
+		JsonArray dimensionSets = new JsonArray();
+		dimensionSets.add(dimensionKeys);
+
+		JsonObject directive = new JsonObject();
+		directive.addProperty("Namespace", namespace);
+		directive.add("Dimensions", dimensionSets);
+		directive.add("Metrics", new JsonArray());
+		JsonArray directives = new JsonArray();
+		directives.add(directive);
+
+		JsonObject metadata = new JsonObject();
+		metadata.addProperty("Timestamp", timestamp);
+		metadata.add("CloudWatchMetrics", directives);
+		document.add("_aws", metadata);
+		return document;
+	}
+
+	private static JsonObject metricDefinition(String name, String unit) {
+		JsonObject definition = new JsonObject();
+		definition.addProperty("Name", name);
+		definition.addProperty("Unit", unit);
+		return definition;
+	}
+
+	private static boolean hasMoreValues(Map<String, List<Map.Entry<Long, Long>>> latencySnapshot, int offset) {
+		Iterator<List<Map.Entry<Long, Long>>> it = latencySnapshot.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().size() > offset)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * This method rounds a value to two significant digits, for e.g. 1234 becomes
+	 * 1200
+	 *
+	 * @param value
+	 * @return
+	 */
+	static long roundToTwoSignificantDigits(long value) {
+		if (value < 100)
+			return Math.max(0, value);
+		long scale = 1;
+		while (value / scale >= 100)
+			scale *= 10;
+		return Math.round((double) value / scale) * scale;
+	}
+}
@@ -0,0 +1,83 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.queue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WorkQueue kept in memory, for tests and for running the worker pool
+ * locally. Received items stay in flight until they are deleted or returned
+ * with {@link #releaseInFlight()}, which stands in for the SQS visibility
+ * timeout.
+ *
+ */
+public class InMemoryWorkQueue implements WorkQueue {
+
+	private final LinkedBlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+	private final Map<String, String> inFlight = new ConcurrentHashMap<String, String>();
+
+	@Override
+	public void send(List<WorkItem> items) {
+		for (WorkItem item : items) {
+			messages.add(item.toJson());
+		}
+	}
+
+	@Override
+	public List<WorkItem> receive(int maxItems, int waitSeconds) {
+		List<WorkItem> items = new ArrayList<WorkItem>();
+		try {
+			String first = messages.poll(waitSeconds, TimeUnit.SECONDS);
+			if (first == null)
+				return items;
+			List<String> bodies = new ArrayList<String>();
+			bodies.add(first);
+			messages.drainTo(bodies, maxItems - 1);
+			for (String body : bodies) {
+				WorkItem item = WorkItem.fromJson(body);
+				item.setReceiptHandle(UUID.randomUUID().toString());
+				inFlight.put(item.getReceiptHandle(), body);
+				items.add(item);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return items;
+	}
+
+	@Override
+	public void delete(WorkItem item) {
+		inFlight.remove(item.getReceiptHandle());
+	}
+
+	@Override
+	public int approximateDepth() {
+		return messages.size();
+	}
+
+	/**
+	 * This method makes all received but not deleted items visible again
+	 *
+	 * @return the number of items released
+	 */
+	public int releaseInFlight() {
+		List<String> released = new ArrayList<String>(inFlight.keySet());
+		for (String receiptHandle : released) {
+			String body = inFlight.remove(receiptHandle);
+			if (body != null)
+				messages.add(body);
+		}
+		return released.size();
+	}
+
+	public int inFlightCount() {
+		return inFlight.size();
+	}
+}
@@ -0,0 +1,101 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.queue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+
+/**
+ * WorkQueue backed by an Amazon SQS standard queue
+ *
+ */
+public class SqsWorkQueue implements WorkQueue {
+
+	// SQS limits for SendMessageBatch and ReceiveMessage
+	static final int MAX_BATCH_SIZE = 10;
+	static final int MAX_WAIT_SECONDS = 20;
+
+	private final SqsClient sqs;
+	private final String queueUrl;
+	private final Metrics metrics;
+
+	public SqsWorkQueue(SqsClient sqs, String queueUrl) {
+		this(sqs, queueUrl, Metrics.getInstance());
+	}
+
+	public SqsWorkQueue(SqsClient sqs, String queueUrl, Metrics metrics) {
+		this.sqs = sqs;
+		this.queueUrl = queueUrl;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void send(List<WorkItem> items) {
+		for (int start = 0; start < items.size(); start += MAX_BATCH_SIZE) {
+			List<SendMessageBatchRequestEntry> entries = new ArrayList<SendMessageBatchRequestEntry>();
+			List<WorkItem> batch = items.subList(start, Math.min(items.size(), start + MAX_BATCH_SIZE));
+			for (int i = 0; i < batch.size(); i++) {
+				entries.add(SendMessageBatchRequestEntry.builder().id(Integer.toString(i))
+						.messageBody(batch.get(i).toJson()).build());
+			}
+			SendMessageBatchRequest request = SendMessageBatchRequest.builder().queueUrl(queueUrl).entries(entries)
+					.build();
+			try {
+				SendMessageBatchResponse response = metrics.time("SQSSendLatency", () -> sqs.sendMessageBatch(request));
+				metrics.count("WorkItemsSent", response.successful().size());
+				if (!response.failed().isEmpty()) {
+					for (BatchResultErrorEntry failure : response.failed()) {
+						System.out.println("SendMessageBatch failure: " + failure.code() + " " + failure.message());
+					}
+					throw new IllegalStateException(
+							String.format("%d work items could not be sent to %s", response.failed().size(), queueUrl));
+				}
+			} catch (SqsException e) {
+				metrics.count("SQSErrors");
+				throw e;
+			}
+		}
+	}
+
+	@Override
+	public List<WorkItem> receive(int maxItems, int waitSeconds) {
+		ReceiveMessageRequest request = ReceiveMessageRequest.builder().queueUrl(queueUrl)
+				.maxNumberOfMessages(Math.min(maxItems, MAX_BATCH_SIZE))
+				.waitTimeSeconds(Math.min(waitSeconds, MAX_WAIT_SECONDS)).build();
+		List<WorkItem> items = new ArrayList<WorkItem>();
+		for (Message message : sqs.receiveMessage(request).messages()) {
+			WorkItem item = WorkItem.fromJson(message.body());
+			item.setReceiptHandle(message.receiptHandle());
+			items.add(item);
+		}
+		return items;
+	}
+
+	@Override
+	public void delete(WorkItem item) {
+		sqs.deleteMessage(
+				DeleteMessageRequest.builder().queueUrl(queueUrl).receiptHandle(item.getReceiptHandle()).build());
+	}
+
+	@Override
+	public int approximateDepth() {
+		String depth = sqs.getQueueAttributes(GetQueueAttributesRequest.builder().queueUrl(queueUrl)
+				.attributeNames(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES).build()).attributes()
+				.get(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES);
+		return depth == null ? 0 : Integer.parseInt(depth);
+	}
+}
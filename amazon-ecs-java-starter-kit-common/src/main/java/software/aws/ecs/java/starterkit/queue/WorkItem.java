@@ -0,0 +1,145 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.queue;
+
+import com.google.gson.Gson;
+
+/**
+ * A unit of work sent by ECS Task Launcher to the worker pool. It carries the
+ * same values which are otherwise passed to an ECS task as environment
+ * variables. The itemId is written to workflow_details in place of the ECS
+ * task ARN, so ECS Task Monitor tracks work items like tasks.
+ *
+ */
+public class WorkItem {
+
+	private String itemId;
+	private String region;
+	private String ddbTableNameWFDetails;
+	private String hashKeyWFDetails;
+	private String rangeKeyWFDetails;
+	private String workflowName;
+	private long workflowRunId;
+	private String taskName;
+	private String s3BucketName;
+	private String objectKey;
+	private String traceParent;
+	// set by the queue on receive, never serialized
+	private transient String receiptHandle;
+
+	/**
+	 * This method builds the id of the n-th work item of a workflow run
+	 *
+	 * @param workflowRunId
+	 * @param index
+	 * @return
+	 */
+	public static String itemId(long workflowRunId, int index) {
+		return String.format("work-item/%d/%d", workflowRunId, index);
+	}
+
+	public String toJson() {
+		return new Gson().toJson(this);
+	}
+
+	public static WorkItem fromJson(String json) {
+		return new Gson().fromJson(json, WorkItem.class);
+	}
+
+	public String getItemId() {
+		return itemId;
+	}
+
+	public void setItemId(String itemId) {
+		this.itemId = itemId;
+	}
+
+	public String getRegion() {
+		return region;
+	}
+
+	public void setRegion(String region) {
+		this.region = region;
+	}
+
+	public String getDdbTableNameWFDetails() {
+		return ddbTableNameWFDetails;
+	}
+
+	public void setDdbTableNameWFDetails(String ddbTableNameWFDetails) {
+		this.ddbTableNameWFDetails = ddbTableNameWFDetails;
+	}
+
+	public String getHashKeyWFDetails() {
+		return hashKeyWFDetails;
+	}
+
+	public void setHashKeyWFDetails(String hashKeyWFDetails) {
+		this.hashKeyWFDetails = hashKeyWFDetails;
+	}
+
+	public String getRangeKeyWFDetails() {
+		return rangeKeyWFDetails;
+	}
+
+	public void setRangeKeyWFDetails(String rangeKeyWFDetails) {
+		this.rangeKeyWFDetails = rangeKeyWFDetails;
+	}
+
+	public String getWorkflowName() {
+		return workflowName;
+	}
+
+	public void setWorkflowName(String workflowName) {
+		this.workflowName = workflowName;
+	}
+
+	public long getWorkflowRunId() {
+		return workflowRunId;
+	}
+
+	public void setWorkflowRunId(long workflowRunId) {
+		this.workflowRunId = workflowRunId;
+	}
+
+	public String getTaskName() {
+		return taskName;
+	}
+
+	public void setTaskName(String taskName) {
+		this.taskName = taskName;
+	}
+
+	public String getS3BucketName() {
+		return s3BucketName;
+	}
+
+	public void setS3BucketName(String s3BucketName) {
+		this.s3BucketName = s3BucketName;
+	}
+
+	public String getObjectKey() {
+		return objectKey;
+	}
+
+	public void setObjectKey(String objectKey) {
+		this.objectKey = objectKey;
+	}
+
+	public String getTraceParent() {
+		return traceParent;
+	}
+
+	public void setTraceParent(String traceParent) {
+		this.traceParent = traceParent;
+	}
+
+	public String getReceiptHandle() {
+		return receiptHandle;
+	}
+
+	public void setReceiptHandle(String receiptHandle) {
+		this.receiptHandle = receiptHandle;
+	}
+}
@@ -0,0 +1,46 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.queue;
+
+import java.util.List;
+
+/**
+ * A queue of work items between ECS Task Launcher and the worker pool. Items
+ * are delivered at least once: a received item which is not deleted becomes
+ * visible again, for e.g. when a worker dies while processing it.
+ *
+ */
+public interface WorkQueue {
+
+	/**
+	 * This method sends work items to the queue
+	 *
+	 * @param items
+	 */
+	void send(List<WorkItem> items);
+
+	/**
+	 * This method receives up to maxItems work items, waiting up to waitSeconds
+	 * when the queue is empty
+	 *
+	 * @param maxItems
+	 * @param waitSeconds
+	 * @return
+	 */
+	List<WorkItem> receive(int maxItems, int waitSeconds);
+
+	/**
+	 * This method deletes a received work item once it is processed
+	 *
+	 * @param item
+	 */
+	void delete(WorkItem item);
+
+	/**
+	 * This method returns the approximate number of items waiting to be received
+	 *
+	 * @return
+	 */
+	int approximateDepth();
+}
@@ -0,0 +1,144 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.retry;
+
+import java.util.List;
+
+/**
+ * How often and when a failed task is launched again. It is part of the
+ * workflow specs, for the whole workflow or for one task config.
+ *
+ * A failure is retryable when the policy lists neither exit codes nor stop
+ * reasons, or when the exit code of the task is listed, or when its stop
+ * reason contains one of the listed reasons. Failures written by the task
+ * itself have neither, so a policy with filters only retries tasks which ECS
+ * stopped.
+ *
+ */
+public class RetryPolicy {
+
+	private int maxAttempts = 1;
+	private long backoffSeconds;
+	private double backoffMultiplier = 2;
+	private long maxBackoffSeconds;
+	private List<Integer> retryableExitCodes;
+	private List<String> retryableStopReasons;
+
+	public RetryPolicy() {
+	}
+
+	public RetryPolicy(int maxAttempts, long backoffSeconds, double backoffMultiplier, long maxBackoffSeconds) {
+		this.maxAttempts = maxAttempts;
+		this.backoffSeconds = backoffSeconds;
+		this.backoffMultiplier = backoffMultiplier;
+		this.maxBackoffSeconds = maxBackoffSeconds;
+	}
+
+	/**
+	 * This method returns the policy of a task: its own, else the one of its
+	 * workflow
+	 *
+	 * @param workflowPolicy may be null
+	 * @param taskPolicy     may be null
+	 * @return null when neither has a policy
+	 */
+	public static RetryPolicy effective(RetryPolicy workflowPolicy, RetryPolicy taskPolicy) {
+		return taskPolicy != null ? taskPolicy : workflowPolicy;
+	}
+
+	/**
+	 * This method decides if a task which failed after the given number of
+	 * attempts is launched again
+	 *
+	 * @param attempts   attempts made so far, including the failed one
+	 * @param exitCode   exit code of the container, may be null
+	 * @param stopReason reason ECS stopped the task for, may be null
+	 * @return
+	 */
+	public boolean shouldRetry(int attempts, Integer exitCode, String stopReason) {
+		return attempts < maxAttempts && isRetryable(exitCode, stopReason);
+	}
+
+	public boolean isRetryable(Integer exitCode, String stopReason) {
+		boolean noExitCodes = retryableExitCodes == null || retryableExitCodes.isEmpty();
+		boolean noStopReasons = retryableStopReasons == null || retryableStopReasons.isEmpty();
+		if (noExitCodes && noStopReasons)
+			return true;
+		if (!noExitCodes && exitCode != null && retryableExitCodes.contains(exitCode))
+			return true;
+		return !noStopReasons && stopReason != null
+				&& retryableStopReasons.stream().anyMatch(reason -> stopReason.contains(reason));
+	}
+
+	/**
+	 * This method returns the delay before the next attempt: backoffSeconds
+	 * after the first failure, multiplied by backoffMultiplier after each
+	 * further one, and at most maxBackoffSeconds when set
+	 *
+	 * @param attempts attempts made so far
+	 * @return
+	 */
+	public long backoffMillis(int attempts) {
+		double backoff = backoffSeconds * Math.pow(backoffMultiplier, Math.max(0, attempts - 1));
+		if (maxBackoffSeconds > 0)
+			backoff = Math.min(backoff, maxBackoffSeconds);
+		return (long) (backoff * 1000);
+	}
+
+	/**
+	 * Attempts in total, including the first one. 1, the default, disables
+	 * retries.
+	 */
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	public void setMaxAttempts(int maxAttempts) {
+		this.maxAttempts = maxAttempts;
+	}
+
+	public long getBackoffSeconds() {
+		return backoffSeconds;
+	}
+
+	public void setBackoffSeconds(long backoffSeconds) {
+		this.backoffSeconds = backoffSeconds;
+	}
+
+	public double getBackoffMultiplier() {
+		return backoffMultiplier;
+	}
+
+	public void setBackoffMultiplier(double backoffMultiplier) {
+		this.backoffMultiplier = backoffMultiplier;
+	}
+
+	public long getMaxBackoffSeconds() {
+		return maxBackoffSeconds;
+	}
+
+	public void setMaxBackoffSeconds(long maxBackoffSeconds) {
+		this.maxBackoffSeconds = maxBackoffSeconds;
+	}
+
+	public List<Integer> getRetryableExitCodes() {
+		return retryableExitCodes;
+	}
+
+	public void setRetryableExitCodes(List<Integer> retryableExitCodes) {
+		this.retryableExitCodes = retryableExitCodes;
+	}
+
+	/**
+	 * Substrings of the ECS stopped reason, for example "Spot" for Spot
+	 * interruptions
+	 */
+	public List<String> getRetryableStopReasons() {
+		return retryableStopReasons;
+	}
+
+	public void setRetryableStopReasons(List<String> retryableStopReasons) {
+		this.retryableStopReasons = retryableStopReasons;
+	}
+}
@@ -0,0 +1,46 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.scheduler;
+
+import java.util.List;
+
+/**
+ * Slots of a cluster and the workflow runs holding or waiting for them
+ *
+ */
+public class ClusterState {
+
+	private final int taskLimit;
+	private final int inFlight;
+	private final List<RunShare> runs;
+
+	public ClusterState(int taskLimit, int inFlight, List<RunShare> runs) {
+		this.taskLimit = taskLimit;
+		this.inFlight = inFlight;
+		this.runs = runs;
+	}
+
+	/**
+	 * Maximum number of tasks in flight on the cluster, 0 for no limit
+	 */
+	public int getTaskLimit() {
+		return taskLimit;
+	}
+
+	public int getInFlight() {
+		return inFlight;
+	}
+
+	public List<RunShare> getRuns() {
+		return runs;
+	}
+
+	public RunShare getRun(String runKey) {
+		for (RunShare run : runs) {
+			if (run.getRunKey().equals(runKey))
+				return run;
+		}
+		return null;
+	}
+}
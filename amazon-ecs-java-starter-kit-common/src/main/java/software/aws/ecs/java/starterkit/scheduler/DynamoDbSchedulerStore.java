@@ -0,0 +1,213 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.scheduler;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+
+/**
+ * SchedulerStore backed by a DynamoDB table with the hash key cluster_name and
+ * the range key run_key. Each cluster has one row with the range key
+ * {@link #CLUSTER_ROW} holding its task limit and slots in flight, and one row
+ * per workflow run. Slots move between the cluster row and a run row in a
+ * single transaction, conditioned on the cluster having them.
+ *
+ */
+public class DynamoDbSchedulerStore implements SchedulerStore {
+
+	public static final String HASH_KEY = "cluster_name";
+	public static final String RANGE_KEY = "run_key";
+	static final String CLUSTER_ROW = "#cluster";
+
+	private final DynamoDbClient dynamoDB;
+	private final String tableName;
+	private final Metrics metrics;
+
+	public DynamoDbSchedulerStore(DynamoDbClient dynamoDB, String tableName) {
+		this(dynamoDB, tableName, Metrics.getInstance());
+	}
+
+	public DynamoDbSchedulerStore(DynamoDbClient dynamoDB, String tableName, Metrics metrics) {
+		this.dynamoDB = dynamoDB;
+		this.tableName = tableName;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void registerCluster(String clusterName, int taskLimit) {
+		Map<String, AttributeValue> values = new HashMap<String, AttributeValue>();
+		values.put(":limit", number(taskLimit));
+		values.put(":zero", number(0));
+		update(UpdateItemRequest.builder().tableName(tableName).key(key(clusterName, CLUSTER_ROW))
+				.updateExpression("SET task_limit = if_not_exists(task_limit, :limit), "
+						+ "in_flight = if_not_exists(in_flight, :zero)")
+				.expressionAttributeValues(values).build());
+	}
+
+	@Override
+	public ClusterState getClusterState(String clusterName) {
+		Map<String, AttributeValue> values = new HashMap<String, AttributeValue>();
+		values.put(":cluster", AttributeValue.builder().s(clusterName).build());
+		int taskLimit = 0;
+		int inFlight = 0;
+		List<RunShare> runs = new ArrayList<RunShare>();
+		Map<String, AttributeValue> startKey = null;
+		do {
+			QueryRequest request = QueryRequest.builder().tableName(tableName)
+					.keyConditionExpression(HASH_KEY + " = :cluster").expressionAttributeValues(values)
+					.consistentRead(true).exclusiveStartKey(startKey).build();
+			QueryResponse response = call("DDBQueryLatency", () -> dynamoDB.query(request));
+			for (Map<String, AttributeValue> item : response.items()) {
+				if (CLUSTER_ROW.equals(item.get(RANGE_KEY).s())) {
+					taskLimit = intOf(item, "task_limit");
+					inFlight = intOf(item, "in_flight");
+					continue;
+				}
+				RunShare run = new RunShare(item.get(RANGE_KEY).s(), intOf(item, "priority"), intOf(item, "weight"),
+						intOf(item, "task_limit"), intOf(item, "pending"));
+				run.setInFlight(intOf(item, "in_flight"));
+				run.setFinished(intOf(item, "finished"));
+				runs.add(run);
+			}
+			startKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+					? response.lastEvaluatedKey()
+					: null;
+		} while (startKey != null);
+		return new ClusterState(taskLimit, inFlight, runs);
+	}
+
+	@Override
+	public void putRun(String clusterName, RunShare run) {
+		Map<String, AttributeValue> values = new HashMap<String, AttributeValue>();
+		values.put(":priority", number(run.getPriority()));
+		values.put(":weight", number(run.getWeight()));
+		values.put(":limit", number(run.getTaskLimit()));
+		values.put(":pending", number(run.getPending()));
+		values.put(":time", AttributeValue.builder().s(Instant.now().toString()).build());
+		values.put(":zero", number(0));
+		update(UpdateItemRequest.builder().tableName(tableName).key(key(clusterName, run.getRunKey()))
+				.updateExpression("SET priority = :priority, weight = :weight, task_limit = :limit, "
+						+ "pending = :pending, update_time = :time, in_flight = if_not_exists(in_flight, :zero), "
+						+ "finished = if_not_exists(finished, :zero)")
+				.expressionAttributeValues(values).build());
+	}
+
+	@Override
+	public boolean tryAcquire(String clusterName, String runKey, int tasks, int taskLimit) {
+		Map<String, AttributeValue> clusterValues = new HashMap<String, AttributeValue>();
+		clusterValues.put(":tasks", number(tasks));
+		clusterValues.put(":limit", number(taskLimit));
+		String condition = "task_limit = :limit";
+		if (taskLimit > 0) {
+			clusterValues.put(":max", number(taskLimit - tasks));
+			condition += " AND in_flight <= :max";
+		}
+		Update cluster = Update.builder().tableName(tableName).key(key(clusterName, CLUSTER_ROW))
+				.updateExpression("ADD in_flight :tasks").conditionExpression(condition)
+				.expressionAttributeValues(clusterValues).build();
+		Update run = Update.builder().tableName(tableName).key(key(clusterName, runKey))
+				.updateExpression("ADD in_flight :tasks").conditionExpression("attribute_exists(" + RANGE_KEY + ")")
+				.expressionAttributeValues(Collections.singletonMap(":tasks", number(tasks))).build();
+		return transact(cluster, run);
+	}
+
+	@Override
+	public void release(String clusterName, String runKey, int tasks) {
+		Map<String, AttributeValue> values = Collections.singletonMap(":tasks", number(-tasks));
+		Update cluster = Update.builder().tableName(tableName).key(key(clusterName, CLUSTER_ROW))
+				.updateExpression("ADD in_flight :tasks").expressionAttributeValues(values).build();
+		Update run = Update.builder().tableName(tableName).key(key(clusterName, runKey))
+				.updateExpression("ADD in_flight :tasks").expressionAttributeValues(values).build();
+		if (!transact(cluster, run))
+			throw new IllegalStateException(
+					String.format("Could not release %d slots of %s on %s", tasks, runKey, clusterName));
+	}
+
+	@Override
+	public boolean recordFinished(String clusterName, String runKey, int previousFinished, int finished) {
+		Map<String, AttributeValue> runValues = new HashMap<String, AttributeValue>();
+		runValues.put(":old", number(previousFinished));
+		runValues.put(":new", number(finished));
+		runValues.put(":tasks", number(previousFinished - finished));
+		Update run = Update.builder().tableName(tableName).key(key(clusterName, runKey))
+				.updateExpression("SET finished = :new ADD in_flight :tasks").conditionExpression("finished = :old")
+				.expressionAttributeValues(runValues).build();
+		Update cluster = Update.builder().tableName(tableName).key(key(clusterName, CLUSTER_ROW))
+				.updateExpression("ADD in_flight :tasks")
+				.expressionAttributeValues(Collections.singletonMap(":tasks", runValues.get(":tasks")))
+				.build();
+		return transact(run, cluster);
+	}
+
+	@Override
+	public void removeRun(String clusterName, String runKey) {
+		DeleteItemRequest request = DeleteItemRequest.builder().tableName(tableName).key(key(clusterName, runKey))
+				.build();
+		call("DDBDeleteItemLatency", () -> dynamoDB.deleteItem(request));
+	}
+
+	private boolean transact(Update... updates) {
+		List<TransactWriteItem> items = new ArrayList<TransactWriteItem>();
+		for (Update update : updates) {
+			items.add(TransactWriteItem.builder().update(update).build());
+		}
+		TransactWriteItemsRequest request = TransactWriteItemsRequest.builder().transactItems(items).build();
+		try {
+			call("DDBTransactWriteItemsLatency", () -> dynamoDB.transactWriteItems(request));
+			return true;
+		} catch (TransactionCanceledException e) {
+			System.out.println("Scheduler transaction cancelled: " + e.cancellationReasons());
+			return false;
+		}
+	}
+
+	private void update(UpdateItemRequest request) {
+		call("DDBUpdateItemLatency", () -> dynamoDB.updateItem(request));
+	}
+
+	private <T> T call(String latencyMetric, Supplier<T> operation) {
+		try {
+			return metrics.time(latencyMetric, operation);
+		} catch (TransactionCanceledException e) {
+			throw e;
+		} catch (DynamoDbException e) {
+			metrics.count("DDBErrors");
+			throw e;
+		}
+	}
+
+	private static Map<String, AttributeValue> key(String clusterName, String runKey) {
+		Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+		key.put(HASH_KEY, AttributeValue.builder().s(clusterName).build());
+		key.put(RANGE_KEY, AttributeValue.builder().s(runKey).build());
+		return key;
+	}
+
+	private static AttributeValue number(int value) {
+		return AttributeValue.builder().n(Integer.toString(value)).build();
+	}
+
+	private static int intOf(Map<String, AttributeValue> item, String attribute) {
+		AttributeValue value = item.get(attribute);
+		return value == null || value.n() == null ? 0 : Integer.parseInt(value.n());
+	}
+}
@@ -0,0 +1,184 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+
+/**
+ * Shares the task slots of a cluster between the workflow runs launching on
+ * it. Runs with a higher priority are served first; runs with the same
+ * priority split what is left in proportion to their weights, and a run never
+ * gets more slots than it has tasks to run or than its own task limit.
+ *
+ * The scheduler does not preempt: a run holding more slots than its share
+ * keeps them until its tasks finish, it just gets no new ones. A high
+ * priority run arriving behind a long backfill therefore gets the slots the
+ * backfill frees, one monitor cycle at a time.
+ *
+ */
+public class FairShareScheduler {
+
+	// attempts to take slots when other launchers change the cluster meanwhile
+	static final int MAX_ATTEMPTS = 3;
+
+	private final SchedulerStore store;
+	private final Metrics metrics;
+
+	public FairShareScheduler(SchedulerStore store) {
+		this(store, Metrics.getInstance());
+	}
+
+	public FairShareScheduler(SchedulerStore store, Metrics metrics) {
+		this.store = store;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * This method records the task limit of a cluster unless it already has one
+	 *
+	 * @param clusterName
+	 * @param taskLimit   0 for no limit
+	 */
+	public void registerCluster(String clusterName, int taskLimit) {
+		store.registerCluster(clusterName, taskLimit);
+	}
+
+	/**
+	 * This method registers the demand of a workflow run and takes as many slots
+	 * as its share allows
+	 *
+	 * @param clusterName
+	 * @param run         the run with its pending tasks
+	 * @param requested   the number of tasks the caller wants to launch now
+	 * @return the number of tasks the caller may launch, between 0 and requested
+	 */
+	public int acquire(String clusterName, RunShare run, int requested) {
+		store.putRun(clusterName, run);
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+			ClusterState state = store.getClusterState(clusterName);
+			RunShare current = state.getRun(run.getRunKey());
+			int share = allocate(state.getTaskLimit(), state.getRuns()).getOrDefault(run.getRunKey(), 0);
+			int grant = Math.min(requested, share - current.getInFlight());
+			if (state.getTaskLimit() > 0)
+				grant = Math.min(grant, state.getTaskLimit() - state.getInFlight());
+			if (grant <= 0) {
+				metrics.count("SchedulerThrottled");
+				return 0;
+			}
+			if (store.tryAcquire(clusterName, run.getRunKey(), grant, state.getTaskLimit())) {
+				metrics.count("SchedulerSlotsGranted", grant);
+				return grant;
+			}
+			metrics.count("SchedulerConflicts");
+		}
+		return 0;
+	}
+
+	/**
+	 * This method gives back slots a launcher acquired but did not use
+	 *
+	 * @param clusterName
+	 * @param runKey
+	 * @param tasks
+	 */
+	public void returnUnused(String clusterName, String runKey, int tasks) {
+		if (tasks > 0)
+			store.release(clusterName, runKey, tasks);
+	}
+
+	/**
+	 * This method gives back the slots of finished tasks. It takes the total
+	 * number of finished tasks of the run, so calling it again with the same
+	 * total changes nothing.
+	 *
+	 * @param clusterName
+	 * @param runKey
+	 * @param finished    completed and failed tasks of the run
+	 */
+	public void recordFinished(String clusterName, String runKey, int finished) {
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+			RunShare run = store.getClusterState(clusterName).getRun(runKey);
+			if (run == null || finished <= run.getFinished())
+				return;
+			if (store.recordFinished(clusterName, runKey, run.getFinished(), finished)) {
+				metrics.count("SchedulerSlotsReleased", finished - run.getFinished());
+				return;
+			}
+			metrics.count("SchedulerConflicts");
+		}
+	}
+
+	/**
+	 * This method removes a workflow run which has no more tasks
+	 *
+	 * @param clusterName
+	 * @param runKey
+	 */
+	public void removeRun(String clusterName, String runKey) {
+		store.removeRun(clusterName, runKey);
+	}
+
+	/**
+	 * This method computes how many slots each run should hold. The demand of a
+	 * run is its tasks in flight plus its pending tasks, capped by its task
+	 * limit. Priority classes are served from the highest down; within a class
+	 * the capacity left is filled in rounds, each round splitting it by weight
+	 * among the runs whose demand is not met yet, with at least one slot per
+	 * run so that small weights still progress.
+	 *
+	 * @param capacity slots of the cluster, 0 for no limit
+	 * @param runs
+	 * @return slots per run key
+	 */
+	public static Map<String, Integer> allocate(int capacity, Collection<RunShare> runs) {
+		Map<String, Integer> allocation = new LinkedHashMap<String, Integer>();
+		Map<String, Integer> demand = new HashMap<String, Integer>();
+		TreeMap<Integer, List<RunShare>> classes = new TreeMap<Integer, List<RunShare>>();
+		for (RunShare run : runs) {
+			int wanted = run.getInFlight() + run.getPending();
+			if (run.getTaskLimit() > 0)
+				wanted = Math.min(wanted, run.getTaskLimit());
+			demand.put(run.getRunKey(), Math.max(0, wanted));
+			allocation.put(run.getRunKey(), capacity > 0 ? 0 : Math.max(0, wanted));
+			classes.computeIfAbsent(run.getPriority(), k -> new ArrayList<RunShare>()).add(run);
+		}
+		if (capacity <= 0)
+			return allocation;
+		int remaining = capacity;
+		for (List<RunShare> priorityClass : classes.descendingMap().values()) {
+			List<RunShare> active = new ArrayList<RunShare>();
+			for (RunShare run : priorityClass) {
+				if (demand.get(run.getRunKey()) > 0)
+					active.add(run);
+			}
+			while (remaining > 0 && !active.isEmpty()) {
+				long totalWeight = 0;
+				for (RunShare run : active) {
+					totalWeight += Math.max(1, run.getWeight());
+				}
+				int budget = remaining;
+				List<RunShare> unmet = new ArrayList<RunShare>();
+				for (RunShare run : active) {
+					int allocated = allocation.get(run.getRunKey());
+					int share = (int) Math.max(1, budget * (long) Math.max(1, run.getWeight()) / totalWeight);
+					int given = Math.min(Math.min(share, demand.get(run.getRunKey()) - allocated), remaining);
+					allocation.put(run.getRunKey(), allocated + given);
+					remaining -= given;
+					if (allocated + given < demand.get(run.getRunKey()))
+						unmet.add(run);
+				}
+				active = unmet;
+			}
+		}
+		return allocation;
+	}
+}
@@ -0,0 +1,97 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.scheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SchedulerStore kept in memory, for tests and for trying scheduling policies
+ * locally. All operations are synchronized, which gives them the same
+ * atomicity as the conditional writes of {@link DynamoDbSchedulerStore}.
+ *
+ */
+public class InMemorySchedulerStore implements SchedulerStore {
+
+	private final Map<String, int[]> clusters = new HashMap<String, int[]>();
+	private final Map<String, Map<String, RunShare>> runs = new HashMap<String, Map<String, RunShare>>();
+
+	@Override
+	public synchronized void registerCluster(String clusterName, int taskLimit) {
+		clusters.putIfAbsent(clusterName, new int[] { taskLimit, 0 });
+	}
+
+	@Override
+	public synchronized ClusterState getClusterState(String clusterName) {
+		int[] cluster = cluster(clusterName);
+		List<RunShare> copies = new ArrayList<RunShare>();
+		for (RunShare run : runs(clusterName).values()) {
+			copies.add(copy(run));
+		}
+		return new ClusterState(cluster[0], cluster[1], copies);
+	}
+
+	@Override
+	public synchronized void putRun(String clusterName, RunShare run) {
+		RunShare existing = runs(clusterName).get(run.getRunKey());
+		RunShare stored = copy(run);
+		stored.setInFlight(existing == null ? 0 : existing.getInFlight());
+		stored.setFinished(existing == null ? 0 : existing.getFinished());
+		runs(clusterName).put(run.getRunKey(), stored);
+	}
+
+	@Override
+	public synchronized boolean tryAcquire(String clusterName, String runKey, int tasks, int taskLimit) {
+		int[] cluster = cluster(clusterName);
+		if (cluster[0] != taskLimit || (taskLimit > 0 && cluster[1] + tasks > taskLimit))
+			return false;
+		cluster[1] += tasks;
+		RunShare run = runs(clusterName).get(runKey);
+		run.setInFlight(run.getInFlight() + tasks);
+		return true;
+	}
+
+	@Override
+	public synchronized void release(String clusterName, String runKey, int tasks) {
+		cluster(clusterName)[1] -= tasks;
+		RunShare run = runs(clusterName).get(runKey);
+		run.setInFlight(run.getInFlight() - tasks);
+	}
+
+	@Override
+	public synchronized boolean recordFinished(String clusterName, String runKey, int previousFinished,
+			int finished) {
+		RunShare run = runs(clusterName).get(runKey);
+		if (run == null || run.getFinished() != previousFinished)
+			return false;
+		run.setFinished(finished);
+		run.setInFlight(run.getInFlight() - (finished - previousFinished));
+		cluster(clusterName)[1] -= finished - previousFinished;
+		return true;
+	}
+
+	@Override
+	public synchronized void removeRun(String clusterName, String runKey) {
+		runs(clusterName).remove(runKey);
+	}
+
+	private int[] cluster(String clusterName) {
+		return clusters.computeIfAbsent(clusterName, k -> new int[] { 0, 0 });
+	}
+
+	private Map<String, RunShare> runs(String clusterName) {
+		return runs.computeIfAbsent(clusterName, k -> new LinkedHashMap<String, RunShare>());
+	}
+
+	private static RunShare copy(RunShare run) {
+		RunShare copy = new RunShare(run.getRunKey(), run.getPriority(), run.getWeight(), run.getTaskLimit(),
+				run.getPending());
+		copy.setInFlight(run.getInFlight());
+		copy.setFinished(run.getFinished());
+		return copy;
+	}
+}
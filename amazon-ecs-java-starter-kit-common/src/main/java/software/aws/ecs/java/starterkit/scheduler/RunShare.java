@@ -0,0 +1,108 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.scheduler;
+
+/**
+ * A workflow run as seen by the scheduler: how it is scheduled, how many of
+ * its tasks wait for a launch and how many of its tasks hold a slot of the
+ * cluster.
+ *
+ */
+public class RunShare {
+
+	private String runKey;
+	private int priority;
+	private int weight = 1;
+	private int taskLimit;
+	private int pending;
+	private int inFlight;
+	private int finished;
+
+	public RunShare() {
+	}
+
+	public RunShare(String runKey, int priority, int weight, int taskLimit, int pending) {
+		this.runKey = runKey;
+		this.priority = priority;
+		this.weight = weight;
+		this.taskLimit = taskLimit;
+		this.pending = pending;
+	}
+
+	/**
+	 * The key of a workflow run, unique within a cluster
+	 */
+	public static String runKey(String workflowName, long workflowRunId) {
+		return workflowName + "/" + workflowRunId;
+	}
+
+	public String getRunKey() {
+		return runKey;
+	}
+
+	public void setRunKey(String runKey) {
+		this.runKey = runKey;
+	}
+
+	/**
+	 * Runs with a higher priority are served first, the others share what is
+	 * left
+	 */
+	public int getPriority() {
+		return priority;
+	}
+
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * Relative share of the capacity among runs of the same priority
+	 */
+	public int getWeight() {
+		return weight;
+	}
+
+	public void setWeight(int weight) {
+		this.weight = weight;
+	}
+
+	/**
+	 * Maximum number of tasks of the run in flight, 0 for no limit
+	 */
+	public int getTaskLimit() {
+		return taskLimit;
+	}
+
+	public void setTaskLimit(int taskLimit) {
+		this.taskLimit = taskLimit;
+	}
+
+	public int getPending() {
+		return pending;
+	}
+
+	public void setPending(int pending) {
+		this.pending = pending;
+	}
+
+	public int getInFlight() {
+		return inFlight;
+	}
+
+	public void setInFlight(int inFlight) {
+		this.inFlight = inFlight;
+	}
+
+	/**
+	 * Number of finished tasks whose slots were released
+	 */
+	public int getFinished() {
+		return finished;
+	}
+
+	public void setFinished(int finished) {
+		this.finished = finished;
+	}
+}
@@ -0,0 +1,80 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.scheduler;
+
+/**
+ * Shared state of the {@link FairShareScheduler}: the slots of each cluster
+ * and the workflow runs using them. Slot counts only change through the
+ * conditional operations below, so concurrent launchers cannot overrun a
+ * cluster limit.
+ *
+ */
+public interface SchedulerStore {
+
+	/**
+	 * This method records the task limit of a cluster unless it already has one
+	 *
+	 * @param clusterName
+	 * @param taskLimit   0 for no limit
+	 */
+	void registerCluster(String clusterName, int taskLimit);
+
+	/**
+	 * This method reads the slots of a cluster and all its workflow runs
+	 *
+	 * @param clusterName
+	 * @return
+	 */
+	ClusterState getClusterState(String clusterName);
+
+	/**
+	 * This method creates or updates the scheduling attributes and the pending
+	 * tasks of a workflow run, keeping its slot counts
+	 *
+	 * @param clusterName
+	 * @param run
+	 */
+	void putRun(String clusterName, RunShare run);
+
+	/**
+	 * This method takes slots for a workflow run if the cluster still has them
+	 *
+	 * @param clusterName
+	 * @param runKey
+	 * @param tasks
+	 * @param taskLimit   the task limit of the cluster the slots were computed
+	 *                    with
+	 * @return false if the cluster has fewer free slots or another limit
+	 */
+	boolean tryAcquire(String clusterName, String runKey, int tasks, int taskLimit);
+
+	/**
+	 * This method gives slots of a workflow run back
+	 *
+	 * @param clusterName
+	 * @param runKey
+	 * @param tasks
+	 */
+	void release(String clusterName, String runKey, int tasks);
+
+	/**
+	 * This method gives back the slots of the tasks which finished since the
+	 * previous call
+	 *
+	 * @param clusterName
+	 * @param runKey
+	 * @param previousFinished the finished count read from the store
+	 * @param finished
+	 * @return false if the finished count changed since it was read
+	 */
+	boolean recordFinished(String clusterName, String runKey, int previousFinished, int finished);
+
+	/**
+	 * This method removes a workflow run which has no more tasks
+	 *
+	 * @param clusterName
+	 * @param runKey
+	 */
+	void removeRun(String clusterName, String runKey);
+}
@@ -0,0 +1,63 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.store;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+
+/**
+ * Calls of the asynchronous DynamoDB client shared by the stores. Each call
+ * records its latency, and failed calls count as DDBThrottles or DDBErrors; a
+ * failed condition is an outcome of the call, not an error.
+ *
+ */
+final class DynamoDbCalls {
+
+	private DynamoDbCalls() {
+	}
+
+	static <T> CompletableFuture<T> call(Metrics metrics, String latencyMetric,
+			Supplier<CompletableFuture<T>> operation) {
+		long start = System.nanoTime();
+		CompletableFuture<T> response;
+		try {
+			response = operation.get();
+		} catch (RuntimeException e) {
+			response = new CompletableFuture<T>();
+			response.completeExceptionally(e);
+		}
+		return response.whenComplete((result, error) -> {
+			metrics.recordLatencySince(latencyMetric, start);
+			Throwable cause = causeOf(error);
+			if (cause instanceof DynamoDbException && !(cause instanceof ConditionalCheckFailedException))
+				metrics.count(((DynamoDbException) cause).isThrottlingException() ? "DDBThrottles" : "DDBErrors");
+		});
+	}
+
+	/**
+	 * This method returns the outcome of a conditional write: false when its
+	 * condition failed, its other errors being thrown
+	 *
+	 * @param write
+	 * @return
+	 */
+	static CompletableFuture<Boolean> conditional(CompletableFuture<?> write) {
+		return write.handle((response, error) -> {
+			if (error == null)
+				return true;
+			if (causeOf(error) instanceof ConditionalCheckFailedException)
+				return false;
+			throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+		});
+	}
+
+	static Throwable causeOf(Throwable error) {
+		return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+	}
+}
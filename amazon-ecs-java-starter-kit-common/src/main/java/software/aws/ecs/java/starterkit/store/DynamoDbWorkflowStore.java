@@ -0,0 +1,277 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+
+/**
+ * WorkflowStore backed by the Workflow Details table, with the asynchronous
+ * DynamoDB client. The hash key is the numeric workflow run id and the range
+ * key the ECS task id; their names come from the table config.
+ *
+ * Many rows are written with BatchWriteItem, 25 at a time. The items DynamoDB
+ * leaves unprocessed are written again after an exponential backoff with
+ * jitter, up to a maximum number of attempts; throttled and failed calls are
+ * retried by the SDK. Each call records its latency, and failed calls count
+ * as DDBThrottles or DDBErrors.
+ *
+ */
+public class DynamoDbWorkflowStore implements WorkflowStore {
+
+	// DynamoDB limit for BatchWriteItem
+	static final int MAX_BATCH_WRITE_SIZE = 25;
+	static final int DEFAULT_MAX_ATTEMPTS = 8;
+	static final long DEFAULT_BACKOFF_MILLIS = 50;
+	static final long MAX_BACKOFF_MILLIS = 5000;
+
+	// delays the retries of unprocessed items without holding a thread of the client
+	private static final ScheduledExecutorService RETRIES = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "workflow-store-retries");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final DynamoDbAsyncClient dynamoDB;
+	private final String tableName;
+	private final String hashKey;
+	private final String rangeKey;
+	private final Metrics metrics;
+	private final int maxAttempts;
+	private final long backoffMillis;
+
+	public DynamoDbWorkflowStore(DynamoDbAsyncClient dynamoDB, String tableName, String hashKey, String rangeKey) {
+		this(dynamoDB, tableName, hashKey, rangeKey, Metrics.getInstance());
+	}
+
+	public DynamoDbWorkflowStore(DynamoDbAsyncClient dynamoDB, String tableName, String hashKey, String rangeKey,
+			Metrics metrics) {
+		this(dynamoDB, tableName, hashKey, rangeKey, metrics, DEFAULT_MAX_ATTEMPTS, DEFAULT_BACKOFF_MILLIS);
+	}
+
+	/**
+	 * @param dynamoDB
+	 * @param tableName
+	 * @param hashKey
+	 * @param rangeKey
+	 * @param metrics
+	 * @param maxAttempts   attempts to write the items of a batch
+	 * @param backoffMillis delay before the second attempt, doubled for each
+	 *                      further one
+	 */
+	public DynamoDbWorkflowStore(DynamoDbAsyncClient dynamoDB, String tableName, String hashKey, String rangeKey,
+			Metrics metrics, int maxAttempts, long backoffMillis) {
+		this.dynamoDB = dynamoDB;
+		this.tableName = tableName;
+		this.hashKey = hashKey;
+		this.rangeKey = rangeKey;
+		this.metrics = metrics;
+		this.maxAttempts = maxAttempts;
+		this.backoffMillis = backoffMillis;
+	}
+
+	@Override
+	public CompletableFuture<List<Map<String, AttributeValue>>> getTasks(long workflowRunId,
+			Collection<String> attributes) {
+		Map<String, String> names = new HashMap<String, String>();
+		names.put("#hk", hashKey);
+		String projection = null;
+		if (attributes != null) {
+			names.put("#rk", rangeKey);
+			StringBuilder expression = new StringBuilder("#rk");
+			int index = 0;
+			for (String attribute : attributes) {
+				names.put("#a" + index, attribute);
+				expression.append(", #a").append(index++);
+			}
+			projection = expression.toString();
+		}
+		QueryRequest request = QueryRequest.builder().tableName(tableName).keyConditionExpression("#hk = :run")
+				.expressionAttributeNames(names)
+				.expressionAttributeValues(Collections.singletonMap(":run", number(workflowRunId)))
+				.projectionExpression(projection).consistentRead(true).build();
+		List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+		return query(request, items).thenApply(done -> items);
+	}
+
+	@Override
+	public CompletableFuture<List<Map<String, AttributeValue>>> sampleTasks(long workflowRunId, int limit) {
+		QueryRequest request = QueryRequest.builder().tableName(tableName).keyConditionExpression("#hk = :run")
+				.expressionAttributeNames(Collections.singletonMap("#hk", hashKey))
+				.expressionAttributeValues(Collections.singletonMap(":run", number(workflowRunId))).limit(limit)
+				.build();
+		return call("DDBQueryLatency", () -> dynamoDB.query(request)).thenApply(response -> response.items());
+	}
+
+	@Override
+	public CompletableFuture<Map<String, AttributeValue>> getTask(long workflowRunId, String ecsTaskId) {
+		GetItemRequest request = GetItemRequest.builder().tableName(tableName).key(key(workflowRunId, ecsTaskId))
+				.consistentRead(true).build();
+		return call("DDBGetItemLatency", () -> dynamoDB.getItem(request)).thenApply(response -> response.item());
+	}
+
+	@Override
+	public CompletableFuture<Void> putTask(long workflowRunId, String ecsTaskId,
+			Map<String, AttributeValue> attributes) {
+		PutItemRequest request = PutItemRequest.builder().tableName(tableName)
+				.item(item(workflowRunId, ecsTaskId, attributes)).build();
+		return call("DDBPutItemLatency", () -> dynamoDB.putItem(request)).thenApply(response -> null);
+	}
+
+	@Override
+	public CompletableFuture<Void> putTasks(long workflowRunId, Map<String, Map<String, AttributeValue>> tasks) {
+		List<WriteRequest> writeRequests = new ArrayList<WriteRequest>();
+		for (Map.Entry<String, Map<String, AttributeValue>> task : tasks.entrySet()) {
+			writeRequests.add(WriteRequest.builder()
+					.putRequest(PutRequest.builder().item(item(workflowRunId, task.getKey(), task.getValue())).build())
+					.build());
+		}
+		// one batch after the other, which keeps the write rate of a large run within the capacity
+		CompletableFuture<Void> written = CompletableFuture.completedFuture(null);
+		for (int start = 0; start < writeRequests.size(); start += MAX_BATCH_WRITE_SIZE) {
+			List<WriteRequest> batch = writeRequests.subList(start,
+					Math.min(writeRequests.size(), start + MAX_BATCH_WRITE_SIZE));
+			written = written.thenCompose(done -> batchWrite(batch, 1));
+		}
+		return written;
+	}
+
+	@Override
+	public CompletableFuture<Boolean> updateTask(long workflowRunId, String ecsTaskId,
+			Map<String, AttributeValue> attributes, Collection<String> removed, Collection<String> expectedStatuses) {
+		// DynamoDB rejects an empty update or condition expression
+		if (attributes.isEmpty() && removed.isEmpty())
+			throw new IllegalArgumentException("Nothing to update on the row of task " + ecsTaskId);
+		if (expectedStatuses != null && expectedStatuses.isEmpty())
+			return CompletableFuture.completedFuture(false);
+		Map<String, String> names = new HashMap<String, String>();
+		Map<String, AttributeValue> values = new HashMap<String, AttributeValue>();
+		List<String> sets = new ArrayList<String>();
+		for (Map.Entry<String, AttributeValue> attribute : attributes.entrySet()) {
+			int index = names.size();
+			names.put("#a" + index, attribute.getKey());
+			values.put(":v" + index, attribute.getValue());
+			sets.add("#a" + index + " = :v" + index);
+		}
+		List<String> removes = new ArrayList<String>();
+		for (String attribute : removed) {
+			int index = names.size();
+			names.put("#a" + index, attribute);
+			removes.add("#a" + index);
+		}
+		String updateExpression = (sets.isEmpty() ? "" : "SET " + String.join(", ", sets))
+				+ (removes.isEmpty() ? "" : " REMOVE " + String.join(", ", removes));
+		UpdateItemRequest.Builder builder = UpdateItemRequest.builder().tableName(tableName)
+				.key(key(workflowRunId, ecsTaskId)).updateExpression(updateExpression.trim());
+		if (expectedStatuses != null) {
+			names.put("#status", "status");
+			List<String> conditions = new ArrayList<String>();
+			List<String> statuses = new ArrayList<String>();
+			for (String status : expectedStatuses) {
+				if (NO_STATUS.equals(status)) {
+					conditions.add("attribute_not_exists(#status)");
+					continue;
+				}
+				values.put(":s" + statuses.size(), AttributeValue.builder().s(status).build());
+				statuses.add(":s" + statuses.size());
+			}
+			if (!statuses.isEmpty())
+				conditions.add("#status IN (" + String.join(", ", statuses) + ")");
+			builder.conditionExpression(String.join(" OR ", conditions));
+		}
+		UpdateItemRequest request = builder.expressionAttributeNames(names)
+				.expressionAttributeValues(values.isEmpty() ? null : values).build();
+		return DynamoDbCalls.conditional(call("DDBUpdateItemLatency", () -> dynamoDB.updateItem(request)));
+	}
+
+	private CompletableFuture<Void> query(QueryRequest request, List<Map<String, AttributeValue>> items) {
+		return call("DDBQueryLatency", () -> dynamoDB.query(request)).thenCompose(response -> {
+			items.addAll(response.items());
+			if (!response.hasLastEvaluatedKey() || response.lastEvaluatedKey().isEmpty())
+				return CompletableFuture.completedFuture(null);
+			return query(request.toBuilder().exclusiveStartKey(response.lastEvaluatedKey()).build(), items);
+		});
+	}
+
+	private CompletableFuture<Void> batchWrite(List<WriteRequest> writeRequests, int attempt) {
+		BatchWriteItemRequest request = BatchWriteItemRequest.builder()
+				.requestItems(Collections.singletonMap(tableName, writeRequests)).build();
+		return call("DDBBatchWriteItemLatency", () -> dynamoDB.batchWriteItem(request)).thenCompose(response -> {
+			List<WriteRequest> unprocessed = response.hasUnprocessedItems()
+					? response.unprocessedItems().get(tableName)
+					: null;
+			if (unprocessed == null || unprocessed.isEmpty())
+				return CompletableFuture.completedFuture(null);
+			metrics.count("DDBUnprocessedItems", unprocessed.size());
+			if (attempt >= maxAttempts)
+				throw new IllegalStateException(String.format("%d items not written to %s after %d attempts",
+						unprocessed.size(), tableName, attempt));
+			return delay(backoffMillis(attempt)).thenCompose(done -> batchWrite(unprocessed, attempt + 1));
+		});
+	}
+
+	/**
+	 * This method returns the delay after an attempt: between half and all of
+	 * the exponential backoff, so that writers throttled together spread their
+	 * retries
+	 *
+	 * @param attempt
+	 * @return
+	 */
+	long backoffMillis(int attempt) {
+		long backoff = Math.min(MAX_BACKOFF_MILLIS, backoffMillis << Math.min(attempt - 1, 30));
+		return backoff <= 1 ? backoff : backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+	}
+
+	private static CompletableFuture<Void> delay(long millis) {
+		if (millis <= 0)
+			return CompletableFuture.completedFuture(null);
+		CompletableFuture<Void> delayed = new CompletableFuture<Void>();
+		RETRIES.schedule(() -> delayed.complete(null), millis, TimeUnit.MILLISECONDS);
+		return delayed;
+	}
+
+	private <T> CompletableFuture<T> call(String latencyMetric, Supplier<CompletableFuture<T>> operation) {
+		return DynamoDbCalls.call(metrics, latencyMetric, operation);
+	}
+
+	private Map<String, AttributeValue> item(long workflowRunId, String ecsTaskId,
+			Map<String, AttributeValue> attributes) {
+		Map<String, AttributeValue> item = new HashMap<String, AttributeValue>(attributes);
+		item.putAll(key(workflowRunId, ecsTaskId));
+		return item;
+	}
+
+	private Map<String, AttributeValue> key(long workflowRunId, String ecsTaskId) {
+		Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+		key.put(hashKey, number(workflowRunId));
+		key.put(rangeKey, AttributeValue.builder().s(ecsTaskId).build());
+		return key;
+	}
+
+	private static AttributeValue number(long value) {
+		return AttributeValue.builder().n(Long.toString(value)).build();
+	}
+}
@@ -0,0 +1,255 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+
+/**
+ * WorkflowSummaryStore backed by the Workflow Summary table, with the
+ * asynchronous DynamoDB client. The hash key is the workflow name and the
+ * range key the numeric workflow run id; their names come from the table
+ * config.
+ *
+ * The summaries of many runs are written with TransactWriteItems, 25 at a
+ * time; a chunk whose transaction is cancelled falls back to one UpdateItem
+ * per run. Calls are recorded as those of {@link DynamoDbWorkflowStore}.
+ *
+ */
+public class DynamoDbWorkflowSummaryStore implements WorkflowSummaryStore {
+
+	// DynamoDB limit for TransactWriteItems
+	public static final int MAX_TRANSACT_ITEMS = 25;
+
+	// Pattern 2 has no launcher, its summary items are created by the first
+	// update and get their start time then
+	private static final String SUMMARY_UPDATE_EXPRESSION = "SET #status = :status, update_time = :update_time, "
+			+ "update_time_millis = :update_time_millis, "
+			+ "start_time_millis = if_not_exists(start_time_millis, :update_time_millis), "
+			+ "completed_tasks = :completed_tasks, failed_tasks = :failed_tasks, running_tasks = :running_tasks";
+
+	private final DynamoDbAsyncClient dynamoDB;
+	private final String tableName;
+	private final String hashKey;
+	private final String rangeKey;
+	private final Metrics metrics;
+
+	public DynamoDbWorkflowSummaryStore(DynamoDbAsyncClient dynamoDB, String tableName, String hashKey,
+			String rangeKey, Metrics metrics) {
+		this.dynamoDB = dynamoDB;
+		this.tableName = tableName;
+		this.hashKey = hashKey;
+		this.rangeKey = rangeKey;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public CompletableFuture<Boolean> insertSummary(String workflowName, long workflowRunId, String workflowSpecs,
+			int numberOfTasks, String status, String startTime) {
+		Map<String, AttributeValue> item = key(workflowName, workflowRunId);
+		item.put("workflow_specs", TaskRows.string(workflowSpecs));
+		item.put("number_of_tasks", TaskRows.number(numberOfTasks));
+		item.put("status", TaskRows.string(status));
+		item.put("start_time", TaskRows.string(startTime));
+		// numeric copy of the start time, for the sort key of the status index
+		item.put("start_time_millis", TaskRows.number(System.currentTimeMillis()));
+		item.put("launch_cursor", TaskRows.number(0));
+		item.put("pending_tasks", TaskRows.number(numberOfTasks));
+		PutItemRequest request = PutItemRequest.builder().tableName(tableName).item(item)
+				.conditionExpression("attribute_not_exists(#rk)")
+				.expressionAttributeNames(Collections.singletonMap("#rk", rangeKey)).build();
+		// a throttle or an access error is not an existing run, the invocation is retried
+		return DynamoDbCalls.conditional(call("DDBPutItemLatency", () -> dynamoDB.putItem(request)));
+	}
+
+	@Override
+	public CompletableFuture<Map<String, AttributeValue>> getSummary(String workflowName, long workflowRunId) {
+		GetItemRequest request = GetItemRequest.builder().tableName(tableName).key(key(workflowName, workflowRunId))
+				.consistentRead(true).build();
+		return call("DDBGetItemLatency", () -> dynamoDB.getItem(request)).thenApply(response -> response.item());
+	}
+
+	@Override
+	public CompletableFuture<String> getWorkflowSpecs(String workflowName, long workflowRunId) {
+		GetItemRequest request = GetItemRequest.builder().tableName(tableName).key(key(workflowName, workflowRunId))
+				.projectionExpression("workflow_specs").build();
+		return call("DDBGetItemLatency", () -> dynamoDB.getItem(request)).thenApply(response -> {
+			AttributeValue workflowSpecs = response.hasItem() ? response.item().get("workflow_specs") : null;
+			return workflowSpecs == null ? null : workflowSpecs.s();
+		});
+	}
+
+	@Override
+	public CompletableFuture<Boolean> updateLaunchCursor(String workflowName, long workflowRunId, int launchCursor,
+			List<String> taskArns, String inputCursorKey, int inputCursorOffset) {
+		Map<String, AttributeValue> values = new HashMap<String, AttributeValue>();
+		values.put(":cursor", TaskRows.number(launchCursor));
+		values.put(":arns", taskArns.isEmpty() ? AttributeValue.builder().nul(true).build()
+				: AttributeValue.builder().ss(taskArns).build());
+		String updateExpression = "SET launch_cursor = :cursor, launch_cursor_task_arns = :arns, "
+				+ "pending_tasks = number_of_tasks - :cursor";
+		if (inputCursorKey != null) {
+			values.put(":input_cursor_key", TaskRows.string(inputCursorKey));
+			values.put(":input_cursor_offset", TaskRows.number(inputCursorOffset));
+			values.put(":zero", TaskRows.number(0));
+			updateExpression = "SET launch_cursor = :cursor, launch_cursor_task_arns = :arns, "
+					+ "number_of_tasks = :cursor, pending_tasks = :zero, " + INPUT_CURSOR_KEY + " = :input_cursor_key, "
+					+ INPUT_CURSOR_OFFSET + " = :input_cursor_offset";
+		}
+		UpdateItemRequest request = UpdateItemRequest.builder().tableName(tableName)
+				.key(key(workflowName, workflowRunId)).updateExpression(updateExpression)
+				.conditionExpression("launch_cursor < :cursor").expressionAttributeValues(values).build();
+		return DynamoDbCalls.conditional(call("DDBUpdateItemLatency", () -> dynamoDB.updateItem(request)));
+	}
+
+	@Override
+	public CompletableFuture<List<Long>> getEarlierRuns(String workflowName, long workflowRunId, int runs) {
+		if (runs <= 0)
+			return CompletableFuture.completedFuture(new ArrayList<Long>());
+		Map<String, String> names = new HashMap<String, String>();
+		names.put("#hk", hashKey);
+		names.put("#rk", rangeKey);
+		QueryRequest request = QueryRequest.builder().tableName(tableName)
+				.keyConditionExpression("#hk = :workflowName AND #rk < :workflowRunId").expressionAttributeNames(names)
+				.expressionAttributeValues(key(":workflowName", ":workflowRunId", workflowName, workflowRunId))
+				.projectionExpression("#rk").scanIndexForward(false).limit(runs).build();
+		return call("DDBQueryLatency", () -> dynamoDB.query(request)).thenApply(response -> {
+			List<Long> workflowRunIds = new ArrayList<Long>();
+			for (Map<String, AttributeValue> item : response.items()) {
+				workflowRunIds.add(Long.parseLong(item.get(rangeKey).n()));
+			}
+			return workflowRunIds;
+		});
+	}
+
+	@Override
+	public CompletableFuture<Void> updateSummary(SummaryUpdate update) {
+		Update summaryUpdate = buildSummaryUpdate(update);
+		UpdateItemRequest request = UpdateItemRequest.builder().tableName(tableName).key(summaryUpdate.key())
+				.updateExpression(summaryUpdate.updateExpression())
+				.expressionAttributeNames(summaryUpdate.expressionAttributeNames())
+				.expressionAttributeValues(summaryUpdate.expressionAttributeValues()).build();
+		return call("DDBUpdateItemLatency", () -> dynamoDB.updateItem(request)).thenApply(response -> null);
+	}
+
+	@Override
+	public CompletableFuture<Void> updateSummaries(List<SummaryUpdate> updates) {
+		// one transaction after the other, as the batches of DynamoDbWorkflowStore
+		CompletableFuture<Void> written = CompletableFuture.completedFuture(null);
+		for (int from = 0; from < updates.size(); from += MAX_TRANSACT_ITEMS) {
+			List<SummaryUpdate> chunk = updates.subList(from, Math.min(updates.size(), from + MAX_TRANSACT_ITEMS));
+			written = written.thenCompose(done -> transactWrite(chunk));
+		}
+		return written;
+	}
+
+	private CompletableFuture<Void> transactWrite(List<SummaryUpdate> chunk) {
+		List<TransactWriteItem> transactItems = new ArrayList<TransactWriteItem>();
+		for (SummaryUpdate update : chunk) {
+			transactItems.add(TransactWriteItem.builder().update(buildSummaryUpdate(update)).build());
+		}
+		TransactWriteItemsRequest request = TransactWriteItemsRequest.builder().transactItems(transactItems).build();
+		return call("DDBTransactWriteLatency", () -> dynamoDB.transactWriteItems(request))
+				.handle((response, error) -> {
+					if (error == null)
+						return CompletableFuture.<Void>completedFuture(null);
+					if (!(DynamoDbCalls.causeOf(error) instanceof TransactionCanceledException))
+						throw error instanceof CompletionException ? (CompletionException) error
+								: new CompletionException(error);
+					metrics.count("SummaryTransactionsCancelled");
+					List<CompletableFuture<Void>> writes = new ArrayList<CompletableFuture<Void>>();
+					for (SummaryUpdate update : chunk) {
+						writes.add(updateSummary(update));
+					}
+					return CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0]));
+				}).thenCompose(write -> write);
+	}
+
+	@Override
+	public CompletableFuture<List<Map<String, AttributeValue>>> getSummaries(String status) {
+		ScanRequest request = ScanRequest.builder().tableName(tableName).filterExpression("#status = :required_status")
+				.expressionAttributeNames(Collections.singletonMap("#status", "status"))
+				.expressionAttributeValues(Collections.singletonMap(":required_status", TaskRows.string(status)))
+				.build();
+		List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+		return scan(request, items).thenApply(done -> items);
+	}
+
+	private CompletableFuture<Void> scan(ScanRequest request, List<Map<String, AttributeValue>> items) {
+		return call("DDBScanLatency", () -> dynamoDB.scan(request)).thenCompose(response -> {
+			items.addAll(response.items());
+			if (!response.hasLastEvaluatedKey() || response.lastEvaluatedKey().isEmpty())
+				return CompletableFuture.completedFuture(null);
+			return scan(request.toBuilder().exclusiveStartKey(response.lastEvaluatedKey()).build(), items);
+		});
+	}
+
+	@Override
+	public CompletableFuture<Void> markArchived(String workflowName, long workflowRunId, String archiveKey,
+			long expireAt) {
+		Map<String, AttributeValue> values = new HashMap<String, AttributeValue>();
+		values.put(":archive_key", TaskRows.string(archiveKey));
+		values.put(":expire_at", TaskRows.number(expireAt));
+		UpdateItemRequest request = UpdateItemRequest.builder().tableName(tableName)
+				.key(key(workflowName, workflowRunId))
+				.updateExpression("SET " + ARCHIVE_KEY + " = :archive_key, " + EXPIRE_AT + " = :expire_at")
+				.expressionAttributeValues(values).build();
+		return call("DDBUpdateItemLatency", () -> dynamoDB.updateItem(request)).thenApply(response -> null);
+	}
+
+	private Update buildSummaryUpdate(SummaryUpdate update) {
+		Map<String, AttributeValue> values = new HashMap<String, AttributeValue>();
+		values.put(":status", TaskRows.string(update.getStatus()));
+		values.put(":update_time", TaskRows.string(update.getTime()));
+		// numeric copy of update_time, an attribute of the status index
+		values.put(":update_time_millis", TaskRows.number(System.currentTimeMillis()));
+		values.put(":completed_tasks", TaskRows.number(update.getCompletedTasks()));
+		values.put(":failed_tasks", TaskRows.number(update.getFailedTasks()));
+		values.put(":running_tasks", TaskRows.number(update.getRunningTasks()));
+		StringBuilder updateExpression = new StringBuilder(SUMMARY_UPDATE_EXPRESSION);
+		for (Map.Entry<String, AttributeValue> attribute : update.getAttributes().entrySet()) {
+			updateExpression.append(", ").append(attribute.getKey()).append(" = :").append(attribute.getKey());
+			values.put(":" + attribute.getKey(), attribute.getValue());
+		}
+		return Update.builder().tableName(tableName).key(key(update.getWorkflowName(), update.getWorkflowRunId()))
+				.updateExpression(updateExpression.toString())
+				.expressionAttributeNames(Collections.singletonMap("#status", "status"))
+				.expressionAttributeValues(values).build();
+	}
+
+	private <T> CompletableFuture<T> call(String latencyMetric, Supplier<CompletableFuture<T>> operation) {
+		return DynamoDbCalls.call(metrics, latencyMetric, operation);
+	}
+
+	private Map<String, AttributeValue> key(String workflowName, long workflowRunId) {
+		return key(hashKey, rangeKey, workflowName, workflowRunId);
+	}
+
+	private static Map<String, AttributeValue> key(String hashKey, String rangeKey, String workflowName,
+			long workflowRunId) {
+		Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+		key.put(hashKey, TaskRows.string(workflowName));
+		key.put(rangeKey, TaskRows.number(workflowRunId));
+		return key;
+	}
+}
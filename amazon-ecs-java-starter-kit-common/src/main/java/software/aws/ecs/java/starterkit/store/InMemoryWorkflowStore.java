@@ -0,0 +1,110 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * WorkflowStore kept in memory, for tests and for running the launcher and
+ * the monitor locally. All operations are synchronized and complete before
+ * they return, which gives them the same atomicity as the conditional writes
+ * of {@link DynamoDbWorkflowStore}.
+ *
+ */
+public class InMemoryWorkflowStore implements WorkflowStore {
+
+	private final String hashKey;
+	private final String rangeKey;
+	private final Map<Long, Map<String, Map<String, AttributeValue>>> runs =
+			new HashMap<Long, Map<String, Map<String, AttributeValue>>>();
+
+	public InMemoryWorkflowStore(String hashKey, String rangeKey) {
+		this.hashKey = hashKey;
+		this.rangeKey = rangeKey;
+	}
+
+	@Override
+	public synchronized CompletableFuture<List<Map<String, AttributeValue>>> getTasks(long workflowRunId,
+			Collection<String> attributes) {
+		List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+		for (Map<String, AttributeValue> row : tasks(workflowRunId).values()) {
+			Map<String, AttributeValue> item = new HashMap<String, AttributeValue>(row);
+			if (attributes != null)
+				item.keySet().removeIf(attribute -> !attribute.equals(rangeKey) && !attributes.contains(attribute));
+			items.add(item);
+		}
+		return CompletableFuture.completedFuture(items);
+	}
+
+	@Override
+	public synchronized CompletableFuture<List<Map<String, AttributeValue>>> sampleTasks(long workflowRunId,
+			int limit) {
+		List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+		for (Map<String, AttributeValue> row : tasks(workflowRunId).values()) {
+			if (items.size() == limit)
+				break;
+			items.add(new HashMap<String, AttributeValue>(row));
+		}
+		return CompletableFuture.completedFuture(items);
+	}
+
+	@Override
+	public synchronized CompletableFuture<Map<String, AttributeValue>> getTask(long workflowRunId, String ecsTaskId) {
+		Map<String, AttributeValue> row = tasks(workflowRunId).get(ecsTaskId);
+		return CompletableFuture.completedFuture(
+				row == null ? new HashMap<String, AttributeValue>() : new HashMap<String, AttributeValue>(row));
+	}
+
+	@Override
+	public synchronized CompletableFuture<Void> putTask(long workflowRunId, String ecsTaskId,
+			Map<String, AttributeValue> attributes) {
+		Map<String, AttributeValue> row = new HashMap<String, AttributeValue>(attributes);
+		row.put(hashKey, AttributeValue.builder().n(Long.toString(workflowRunId)).build());
+		row.put(rangeKey, AttributeValue.builder().s(ecsTaskId).build());
+		tasks(workflowRunId).put(ecsTaskId, row);
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public synchronized CompletableFuture<Void> putTasks(long workflowRunId,
+			Map<String, Map<String, AttributeValue>> tasks) {
+		for (Map.Entry<String, Map<String, AttributeValue>> task : tasks.entrySet()) {
+			putTask(workflowRunId, task.getKey(), task.getValue());
+		}
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public synchronized CompletableFuture<Boolean> updateTask(long workflowRunId, String ecsTaskId,
+			Map<String, AttributeValue> attributes, Collection<String> removed, Collection<String> expectedStatuses) {
+		if (attributes.isEmpty() && removed.isEmpty())
+			throw new IllegalArgumentException("Nothing to update on the row of task " + ecsTaskId);
+		Map<String, AttributeValue> row = tasks(workflowRunId).get(ecsTaskId);
+		AttributeValue status = row == null ? null : row.get("status");
+		if (expectedStatuses != null
+				&& !expectedStatuses.contains(status == null || status.s() == null ? NO_STATUS : status.s()))
+			return CompletableFuture.completedFuture(false);
+		if (row == null) {
+			putTask(workflowRunId, ecsTaskId, attributes);
+			row = tasks(workflowRunId).get(ecsTaskId);
+		} else {
+			row.putAll(attributes);
+		}
+		row.keySet().removeAll(removed);
+		return CompletableFuture.completedFuture(true);
+	}
+
+	private Map<String, Map<String, AttributeValue>> tasks(long workflowRunId) {
+		// ordered by ECS task id, as DynamoDB returns them
+		return runs.computeIfAbsent(workflowRunId, run -> new TreeMap<String, Map<String, AttributeValue>>());
+	}
+}
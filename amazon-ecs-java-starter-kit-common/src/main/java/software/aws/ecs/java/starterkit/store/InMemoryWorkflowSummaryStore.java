@@ -0,0 +1,161 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * WorkflowSummaryStore kept in memory, for tests and for running the launcher
+ * and the monitors locally. All operations are synchronized and complete
+ * before they return, as those of {@link InMemoryWorkflowStore}.
+ *
+ */
+public class InMemoryWorkflowSummaryStore implements WorkflowSummaryStore {
+
+	private final String hashKey;
+	private final String rangeKey;
+	private final Map<String, TreeMap<Long, Map<String, AttributeValue>>> workflows =
+			new HashMap<String, TreeMap<Long, Map<String, AttributeValue>>>();
+
+	public InMemoryWorkflowSummaryStore(String hashKey, String rangeKey) {
+		this.hashKey = hashKey;
+		this.rangeKey = rangeKey;
+	}
+
+	@Override
+	public synchronized CompletableFuture<Boolean> insertSummary(String workflowName, long workflowRunId,
+			String workflowSpecs, int numberOfTasks, String status, String startTime) {
+		if (runs(workflowName).containsKey(workflowRunId))
+			return CompletableFuture.completedFuture(false);
+		Map<String, AttributeValue> item = item(workflowName, workflowRunId);
+		item.put("workflow_specs", TaskRows.string(workflowSpecs));
+		item.put("number_of_tasks", TaskRows.number(numberOfTasks));
+		item.put("status", TaskRows.string(status));
+		item.put("start_time", TaskRows.string(startTime));
+		item.put("start_time_millis", TaskRows.number(System.currentTimeMillis()));
+		item.put("launch_cursor", TaskRows.number(0));
+		item.put("pending_tasks", TaskRows.number(numberOfTasks));
+		return CompletableFuture.completedFuture(true);
+	}
+
+	@Override
+	public synchronized CompletableFuture<Map<String, AttributeValue>> getSummary(String workflowName,
+			long workflowRunId) {
+		Map<String, AttributeValue> item = runs(workflowName).get(workflowRunId);
+		return CompletableFuture.completedFuture(
+				item == null ? new HashMap<String, AttributeValue>() : new HashMap<String, AttributeValue>(item));
+	}
+
+	@Override
+	public synchronized CompletableFuture<String> getWorkflowSpecs(String workflowName, long workflowRunId) {
+		Map<String, AttributeValue> item = runs(workflowName).get(workflowRunId);
+		AttributeValue workflowSpecs = item == null ? null : item.get("workflow_specs");
+		return CompletableFuture.completedFuture(workflowSpecs == null ? null : workflowSpecs.s());
+	}
+
+	@Override
+	public synchronized CompletableFuture<Boolean> updateLaunchCursor(String workflowName, long workflowRunId,
+			int launchCursor, List<String> taskArns, String inputCursorKey, int inputCursorOffset) {
+		Map<String, AttributeValue> item = runs(workflowName).get(workflowRunId);
+		if (item == null || count(item, "launch_cursor") >= launchCursor)
+			return CompletableFuture.completedFuture(false);
+		item.put("launch_cursor", TaskRows.number(launchCursor));
+		item.put("launch_cursor_task_arns", taskArns.isEmpty() ? AttributeValue.builder().nul(true).build()
+				: AttributeValue.builder().ss(taskArns).build());
+		if (inputCursorKey == null) {
+			item.put("pending_tasks", TaskRows.number(count(item, "number_of_tasks") - launchCursor));
+		} else {
+			item.put("number_of_tasks", TaskRows.number(launchCursor));
+			item.put("pending_tasks", TaskRows.number(0));
+			item.put(INPUT_CURSOR_KEY, TaskRows.string(inputCursorKey));
+			item.put(INPUT_CURSOR_OFFSET, TaskRows.number(inputCursorOffset));
+		}
+		return CompletableFuture.completedFuture(true);
+	}
+
+	@Override
+	public synchronized CompletableFuture<List<Long>> getEarlierRuns(String workflowName, long workflowRunId,
+			int runs) {
+		List<Long> workflowRunIds = new ArrayList<Long>();
+		for (Long earlierRunId : runs(workflowName).headMap(workflowRunId, false).descendingKeySet()) {
+			if (workflowRunIds.size() >= runs)
+				break;
+			workflowRunIds.add(earlierRunId);
+		}
+		return CompletableFuture.completedFuture(workflowRunIds);
+	}
+
+	@Override
+	public synchronized CompletableFuture<Void> updateSummary(SummaryUpdate update) {
+		Map<String, AttributeValue> item = runs(update.getWorkflowName()).get(update.getWorkflowRunId());
+		if (item == null)
+			item = item(update.getWorkflowName(), update.getWorkflowRunId());
+		long timeMillis = System.currentTimeMillis();
+		item.put("status", TaskRows.string(update.getStatus()));
+		item.put("update_time", TaskRows.string(update.getTime()));
+		item.put("update_time_millis", TaskRows.number(timeMillis));
+		item.putIfAbsent("start_time_millis", TaskRows.number(timeMillis));
+		item.put("completed_tasks", TaskRows.number(update.getCompletedTasks()));
+		item.put("failed_tasks", TaskRows.number(update.getFailedTasks()));
+		item.put("running_tasks", TaskRows.number(update.getRunningTasks()));
+		item.putAll(update.getAttributes());
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public synchronized CompletableFuture<Void> updateSummaries(List<SummaryUpdate> updates) {
+		for (SummaryUpdate update : updates) {
+			updateSummary(update);
+		}
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public synchronized CompletableFuture<List<Map<String, AttributeValue>>> getSummaries(String status) {
+		List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+		for (TreeMap<Long, Map<String, AttributeValue>> runs : workflows.values()) {
+			for (Map<String, AttributeValue> item : runs.values()) {
+				AttributeValue itemStatus = item.get("status");
+				if (itemStatus != null && status.equals(itemStatus.s()))
+					items.add(new HashMap<String, AttributeValue>(item));
+			}
+		}
+		return CompletableFuture.completedFuture(items);
+	}
+
+	@Override
+	public synchronized CompletableFuture<Void> markArchived(String workflowName, long workflowRunId,
+			String archiveKey, long expireAt) {
+		Map<String, AttributeValue> item = runs(workflowName).get(workflowRunId);
+		if (item == null)
+			item = item(workflowName, workflowRunId);
+		item.put(ARCHIVE_KEY, TaskRows.string(archiveKey));
+		item.put(EXPIRE_AT, TaskRows.number(expireAt));
+		return CompletableFuture.completedFuture(null);
+	}
+
+	private Map<String, AttributeValue> item(String workflowName, long workflowRunId) {
+		Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+		item.put(hashKey, TaskRows.string(workflowName));
+		item.put(rangeKey, TaskRows.number(workflowRunId));
+		runs(workflowName).put(workflowRunId, item);
+		return item;
+	}
+
+	private TreeMap<Long, Map<String, AttributeValue>> runs(String workflowName) {
+		return workflows.computeIfAbsent(workflowName, name -> new TreeMap<Long, Map<String, AttributeValue>>());
+	}
+
+	private static int count(Map<String, AttributeValue> item, String attribute) {
+		AttributeValue value = item.get(attribute);
+		return value == null || value.n() == null ? 0 : Integer.parseInt(value.n());
+	}
+}
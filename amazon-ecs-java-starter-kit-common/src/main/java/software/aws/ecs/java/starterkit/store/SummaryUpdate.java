@@ -0,0 +1,80 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.store;
+
+import java.util.Collections;
+import java.util.Map;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * The status and the task counts a monitor tick writes on the summary item of
+ * a workflow run, with more attributes such as the progress of the run.
+ *
+ */
+public class SummaryUpdate {
+
+	private final String workflowName;
+	private final long workflowRunId;
+	private final String status;
+	private final String time;
+	private final int completedTasks;
+	private final int failedTasks;
+	private final int runningTasks;
+	private final Map<String, AttributeValue> attributes;
+
+	/**
+	 * @param workflowName
+	 * @param workflowRunId
+	 * @param status
+	 * @param time           the update time, as text
+	 * @param completedTasks
+	 * @param failedTasks
+	 * @param runningTasks
+	 * @param attributes     attributes set in the same update, by name
+	 */
+	public SummaryUpdate(String workflowName, long workflowRunId, String status, String time, int completedTasks,
+			int failedTasks, int runningTasks, Map<String, AttributeValue> attributes) {
+		this.workflowName = workflowName;
+		this.workflowRunId = workflowRunId;
+		this.status = status;
+		this.time = time;
+		this.completedTasks = completedTasks;
+		this.failedTasks = failedTasks;
+		this.runningTasks = runningTasks;
+		this.attributes = attributes != null ? attributes : Collections.<String, AttributeValue>emptyMap();
+	}
+
+	public String getWorkflowName() {
+		return workflowName;
+	}
+
+	public long getWorkflowRunId() {
+		return workflowRunId;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public String getTime() {
+		return time;
+	}
+
+	public int getCompletedTasks() {
+		return completedTasks;
+	}
+
+	public int getFailedTasks() {
+		return failedTasks;
+	}
+
+	public int getRunningTasks() {
+		return runningTasks;
+	}
+
+	public Map<String, AttributeValue> getAttributes() {
+		return attributes;
+	}
+}
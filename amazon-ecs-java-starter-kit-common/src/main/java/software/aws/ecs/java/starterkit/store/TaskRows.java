@@ -0,0 +1,77 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.store;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * The attributes of the row of a task, written the same way by ECS Task, the
+ * workers of the worker pool and the tasks the launcher runs itself. The times
+ * are written as text for people and as milliseconds for the sort key of the
+ * status index.
+ *
+ */
+public final class TaskRows {
+
+	public static final String RUNNING = "Running";
+
+	private TaskRows() {
+	}
+
+	/**
+	 * This method returns the attributes of the row of a task which starts
+	 *
+	 * @param taskName
+	 * @param status
+	 * @param startTimeMillis
+	 * @return
+	 */
+	public static Map<String, AttributeValue> started(String taskName, String status, long startTimeMillis) {
+		Map<String, AttributeValue> attributes = new HashMap<String, AttributeValue>();
+		attributes.put("task_name", string(taskName));
+		attributes.put("status", string(status));
+		attributes.put("start_time", string(new Date(startTimeMillis).toString()));
+		attributes.put("start_time_millis", number(startTimeMillis));
+		attributes.put("update_time_millis", number(startTimeMillis));
+		return attributes;
+	}
+
+	/**
+	 * This method returns the attributes a task sets on its row once it
+	 * finished, with the number and size of its input objects, which the shard
+	 * planner of the launcher fits its durations to
+	 *
+	 * @param status
+	 * @param execTimeInSeconds
+	 * @param inputBytes        null when the size of the inputs is unknown
+	 * @param inputObjects
+	 * @return
+	 */
+	public static Map<String, AttributeValue> finished(String status, long execTimeInSeconds, Long inputBytes,
+			int inputObjects) {
+		long timeMillis = System.currentTimeMillis();
+		Map<String, AttributeValue> attributes = new HashMap<String, AttributeValue>();
+		attributes.put("status", string(status));
+		attributes.put("update_time", string(new Date(timeMillis).toString()));
+		attributes.put("update_time_millis", number(timeMillis));
+		attributes.put("exec_time_in_seconds", number(execTimeInSeconds));
+		if (inputBytes != null) {
+			attributes.put("input_bytes", number(inputBytes));
+			attributes.put("input_objects", number(inputObjects));
+		}
+		return attributes;
+	}
+
+	public static AttributeValue string(String value) {
+		return AttributeValue.builder().s(value).build();
+	}
+
+	public static AttributeValue number(long value) {
+		return AttributeValue.builder().n(Long.toString(value)).build();
+	}
+}
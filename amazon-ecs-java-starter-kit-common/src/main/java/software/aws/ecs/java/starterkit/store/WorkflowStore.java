@@ -0,0 +1,112 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.store;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * The rows of the Workflow Details table, one per task of a workflow run,
+ * which the launcher, ECS Task and the monitors read and write. The rows are
+ * keyed by workflow run id and ECS task id; the items read have both keys.
+ * Operations return futures, so that a caller can overlap its writes; a
+ * caller which needs the outcome joins them with {@link #join}.
+ *
+ */
+public interface WorkflowStore {
+
+	/**
+	 * Expected status which matches a task without a row, or whose row has no
+	 * status
+	 */
+	String NO_STATUS = "";
+
+	/**
+	 * This method reads the rows of a workflow run, with strongly consistent
+	 * reads
+	 *
+	 * @param workflowRunId
+	 * @param attributes    the attributes to read besides the ECS task id, null
+	 *                      for all of them
+	 * @return the rows in the order of their ECS task ids
+	 */
+	CompletableFuture<List<Map<String, AttributeValue>>> getTasks(long workflowRunId, Collection<String> attributes);
+
+	/**
+	 * This method reads the first rows of a workflow run, with eventually
+	 * consistent reads, for the history of a workflow
+	 *
+	 * @param workflowRunId
+	 * @param limit         the maximum number of rows
+	 * @return
+	 */
+	CompletableFuture<List<Map<String, AttributeValue>>> sampleTasks(long workflowRunId, int limit);
+
+	/**
+	 * This method reads the row of a task, with a strongly consistent read
+	 *
+	 * @param workflowRunId
+	 * @param ecsTaskId
+	 * @return the row, empty when the task has none
+	 */
+	CompletableFuture<Map<String, AttributeValue>> getTask(long workflowRunId, String ecsTaskId);
+
+	/**
+	 * This method writes the row of a task, replacing the one it had
+	 *
+	 * @param workflowRunId
+	 * @param ecsTaskId
+	 * @param attributes    the attributes of the row besides its keys
+	 * @return
+	 */
+	CompletableFuture<Void> putTask(long workflowRunId, String ecsTaskId, Map<String, AttributeValue> attributes);
+
+	/**
+	 * This method writes the rows of many tasks of a workflow run
+	 *
+	 * @param workflowRunId
+	 * @param tasks         the attributes of the rows by ECS task id
+	 * @return
+	 */
+	CompletableFuture<Void> putTasks(long workflowRunId, Map<String, Map<String, AttributeValue>> tasks);
+
+	/**
+	 * This method sets and removes attributes of the row of a task, creating
+	 * the row when it has none and {@link #NO_STATUS} is expected
+	 *
+	 * @param workflowRunId
+	 * @param ecsTaskId
+	 * @param attributes       attributes to set
+	 * @param removed          attributes to remove
+	 * @param expectedStatuses the statuses the row may have, null to update it
+	 *                         whatever its status
+	 * @return false if the row has another status, or no status is expected
+	 * @throws IllegalArgumentException if there is no attribute to set or
+	 *                                  remove
+	 */
+	CompletableFuture<Boolean> updateTask(long workflowRunId, String ecsTaskId, Map<String, AttributeValue> attributes,
+			Collection<String> removed, Collection<String> expectedStatuses);
+
+	/**
+	 * This method waits for the outcome of an operation, throwing its exception
+	 * as is
+	 *
+	 * @param future
+	 * @return
+	 */
+	static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw e;
+		}
+	}
+}
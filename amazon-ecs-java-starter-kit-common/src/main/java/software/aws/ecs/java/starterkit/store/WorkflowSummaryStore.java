@@ -0,0 +1,141 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.store;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * The items of the Workflow Summary table, one per workflow run, keyed by
+ * workflow name and workflow run id. The launcher creates the item of a run
+ * and moves its launch cursor, the monitors write its status and task counts
+ * and the archiver marks it archived. Operations return futures, as those of
+ * {@link WorkflowStore}; errors other than failed conditions fail the future.
+ *
+ */
+public interface WorkflowSummaryStore {
+
+	/**
+	 * Key of the last launched input of a workflow run whose inputs are
+	 * discovered
+	 */
+	String INPUT_CURSOR_KEY = "input_cursor_key";
+	/**
+	 * Number of discovered inputs launched, more than the launch cursor when
+	 * they are sharded
+	 */
+	String INPUT_CURSOR_OFFSET = "input_cursor_offset";
+	/**
+	 * TTL attribute of the Workflow Summary and Workflow Details tables, in
+	 * epoch seconds
+	 */
+	String EXPIRE_AT = "expire_at";
+	String ARCHIVE_KEY = "archive_key";
+
+	/**
+	 * This method creates the item of a workflow run, with a launch cursor of
+	 * 0. The item is not overwritten when the workflow run exists.
+	 *
+	 * @param workflowName
+	 * @param workflowRunId
+	 * @param workflowSpecs the JSON workflow specs
+	 * @param numberOfTasks
+	 * @param status
+	 * @param startTime
+	 * @return false if the workflow run exists
+	 */
+	CompletableFuture<Boolean> insertSummary(String workflowName, long workflowRunId, String workflowSpecs,
+			int numberOfTasks, String status, String startTime);
+
+	/**
+	 * This method reads the item of a workflow run, with a strongly consistent
+	 * read
+	 *
+	 * @param workflowName
+	 * @param workflowRunId
+	 * @return the item, empty when the workflow run does not exist
+	 */
+	CompletableFuture<Map<String, AttributeValue>> getSummary(String workflowName, long workflowRunId);
+
+	/**
+	 * This method reads the workflow specs a workflow run was launched with
+	 *
+	 * @param workflowName
+	 * @param workflowRunId
+	 * @return the JSON workflow specs, or null when the run is unknown
+	 */
+	CompletableFuture<String> getWorkflowSpecs(String workflowName, long workflowRunId);
+
+	/**
+	 * This method moves the launch cursor of a workflow run forward, records
+	 * the ARNs of the tasks launched since the previous checkpoint and the
+	 * number of tasks still pending. A cursor never moves backwards, so a stale
+	 * invocation cannot undo a newer one. For a workflow run whose inputs are
+	 * discovered, the number of tasks grows with the cursor and the key and
+	 * the number of the launched inputs are recorded to resume the listing
+	 * after them.
+	 *
+	 * @param workflowName
+	 * @param workflowRunId
+	 * @param launchCursor      index of the next task to launch
+	 * @param taskArns
+	 * @param inputCursorKey    key of the last launched input, null when the
+	 *                          workflow specs have a task list
+	 * @param inputCursorOffset number of launched inputs
+	 * @return false if the cursor is already at or past launchCursor
+	 */
+	CompletableFuture<Boolean> updateLaunchCursor(String workflowName, long workflowRunId, int launchCursor,
+			List<String> taskArns, String inputCursorKey, int inputCursorOffset);
+
+	/**
+	 * This method returns the latest runs of a workflow which started before a
+	 * workflow run
+	 *
+	 * @param workflowName
+	 * @param workflowRunId
+	 * @param runs          the maximum number of runs
+	 * @return the workflow run ids, latest first
+	 */
+	CompletableFuture<List<Long>> getEarlierRuns(String workflowName, long workflowRunId, int runs);
+
+	/**
+	 * This method writes the status and task counts of a workflow run. Pattern
+	 * 2 has no launcher, its items are created by the first update.
+	 *
+	 * @param update
+	 * @return
+	 */
+	CompletableFuture<Void> updateSummary(SummaryUpdate update);
+
+	/**
+	 * This method writes the status and task counts of many workflow runs
+	 *
+	 * @param updates
+	 * @return
+	 */
+	CompletableFuture<Void> updateSummaries(List<SummaryUpdate> updates);
+
+	/**
+	 * This method reads the items of all workflow runs with a status
+	 *
+	 * @param status
+	 * @return
+	 */
+	CompletableFuture<List<Map<String, AttributeValue>>> getSummaries(String status);
+
+	/**
+	 * This method records where a workflow run was archived and when its item
+	 * expires
+	 *
+	 * @param workflowName
+	 * @param workflowRunId
+	 * @param archiveKey    S3 object key of the archive
+	 * @param expireAt      epoch seconds
+	 * @return
+	 */
+	CompletableFuture<Void> markArchived(String workflowName, long workflowRunId, String archiveKey, long expireAt);
+}
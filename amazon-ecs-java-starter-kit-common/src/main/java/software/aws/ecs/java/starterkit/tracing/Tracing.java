@@ -0,0 +1,218 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.tracing;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.TracerProvider;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import io.opentelemetry.context.propagation.TextMapSetter;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+/**
+ * Thin wrapper around OpenTelemetry used by the launcher, the monitor and the
+ * ECS task. Spans are exported over OTLP/gRPC to the endpoint set in the
+ * environment variable otel_exporter_otlp_endpoint (or
+ * OTEL_EXPORTER_OTLP_ENDPOINT). Tracing is a no-op when no endpoint is set.
+ *
+ * The trace context crosses process boundaries as a W3C traceparent string,
+ * passed to containers as the environment variable traceparent and to the
+ * monitor through the Step Functions iterator.
+ *
+ */
+public class Tracing {
+
+	public static final String TRACE_PARENT = "traceparent";
+	public static final AttributeKey<Long> WORKFLOW_RUN_ID = AttributeKey.longKey("workflow.run_id");
+	public static final AttributeKey<String> WORKFLOW_NAME = AttributeKey.stringKey("workflow.name");
+
+	private static final TextMapSetter<Map<String, String>> SETTER = (carrier, key, value) -> carrier.put(key, value);
+	private static final TextMapGetter<Map<String, String>> GETTER = new TextMapGetter<Map<String, String>>() {
+		@Override
+		public Iterable<String> keys(Map<String, String> carrier) {
+			return carrier.keySet();
+		}
+
+		@Override
+		public String get(Map<String, String> carrier, String key) {
+			return carrier == null ? null : carrier.get(key);
+		}
+	};
+
+	private static Tracing instance;
+
+	private final SdkTracerProvider sdkTracerProvider;
+	private final Tracer tracer;
+
+	/**
+	 * Creates a Tracing instance which exports spans with the given processor
+	 *
+	 * @param serviceName
+	 * @param spanProcessor
+	 */
+	public Tracing(String serviceName, SpanProcessor spanProcessor) {
+		Resource resource = Resource.getDefault()
+				.merge(Resource.create(Attributes.of(AttributeKey.stringKey("service.name"), serviceName)));
+		this.sdkTracerProvider = SdkTracerProvider.builder().setResource(resource).addSpanProcessor(spanProcessor)
+				.build();
+		this.tracer = sdkTracerProvider.get(Tracing.class.getPackage().getName());
+	}
+
+	/**
+	 * Creates a Tracing instance which exports every span synchronously. Meant
+	 * for tests with an in-memory exporter.
+	 *
+	 * @param serviceName
+	 * @param spanExporter
+	 */
+	public Tracing(String serviceName, SpanExporter spanExporter) {
+		this(serviceName, SimpleSpanProcessor.create(spanExporter));
+	}
+
+	private Tracing() {
+		this.sdkTracerProvider = null;
+		this.tracer = TracerProvider.noop().get(Tracing.class.getPackage().getName());
+	}
+
+	/**
+	 * This method returns the process wide instance, created on first use from
+	 * the environment
+	 *
+	 * @param serviceName
+	 * @return
+	 */
+	public static synchronized Tracing getInstance(String serviceName) {
+		if (instance == null) {
+			String endpoint = Optional.ofNullable(System.getenv("otel_exporter_otlp_endpoint"))
+					.orElse(System.getenv("OTEL_EXPORTER_OTLP_ENDPOINT"));
+			if (endpoint != null) {
+				SpanExporter exporter = OtlpGrpcSpanExporter.builder().setEndpoint(endpoint).build();
+				instance = new Tracing(serviceName, BatchSpanProcessor.builder(exporter).build());
+			} else {
+				instance = new Tracing();
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * This method starts a span as a child of the given parent context
+	 *
+	 * @param name
+	 * @param parent
+	 * @param workflowRunId
+	 * @return
+	 */
+	public Span startSpan(String name, Context parent, long workflowRunId) {
+		SpanBuilder builder = tracer.spanBuilder(name).setParent(parent);
+		if (workflowRunId > 0)
+			builder.setAttribute(WORKFLOW_RUN_ID, workflowRunId);
+		return builder.startSpan();
+	}
+
+	/**
+	 * This method starts a span as a child of the current context
+	 *
+	 * @param name
+	 * @return
+	 */
+	public Span startSpan(String name) {
+		return tracer.spanBuilder(name).startSpan();
+	}
+
+	/**
+	 * This method runs the supplier in a child span of the current context
+	 *
+	 * @param name
+	 * @param supplier
+	 * @return
+	 */
+	public <T> T inSpan(String name, Supplier<T> supplier) {
+		Span span = startSpan(name);
+		try (Scope scope = span.makeCurrent()) {
+			return supplier.get();
+		} catch (RuntimeException e) {
+			span.recordException(e);
+			span.setStatus(StatusCode.ERROR);
+			throw e;
+		} finally {
+			span.end();
+		}
+	}
+
+	/**
+	 * This method returns the W3C traceparent of the given context, or null if
+	 * the context has no valid span
+	 *
+	 * @param context
+	 * @return
+	 */
+	public static String toTraceParent(Context context) {
+		if (!Span.fromContext(context).getSpanContext().isValid())
+			return null;
+		Map<String, String> carrier = new HashMap<String, String>();
+		W3CTraceContextPropagator.getInstance().inject(context, carrier, SETTER);
+		return carrier.get(TRACE_PARENT);
+	}
+
+	/**
+	 * This method returns the W3C traceparent of the current span
+	 *
+	 * @return
+	 */
+	public static String currentTraceParent() {
+		return toTraceParent(Context.current());
+	}
+
+	/**
+	 * This method builds a context from a W3C traceparent. A null or malformed
+	 * traceparent gives the root context.
+	 *
+	 * @param traceParent
+	 * @return
+	 */
+	public static Context fromTraceParent(String traceParent) {
+		if (traceParent == null || traceParent.isEmpty())
+			return Context.root();
+		Map<String, String> carrier = new HashMap<String, String>();
+		carrier.put(TRACE_PARENT, traceParent);
+		return W3CTraceContextPropagator.getInstance().extract(Context.root(), carrier, GETTER);
+	}
+
+	/**
+	 * This method exports all ended spans. Lambda freezes the execution
+	 * environment after an invocation, so it is called at the end of each one.
+	 */
+	public void flush() {
+		if (sdkTracerProvider != null)
+			sdkTracerProvider.forceFlush().join(10, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * This method flushes and stops the exporter
+	 */
+	public void shutdown() {
+		if (sdkTracerProvider != null)
+			sdkTracerProvider.shutdown().join(10, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,100 @@
+package software.aws.ecs.java.starterkit.archive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+class ArchiveReaderTest {
+
+	@Test
+	void roundTripsItemsColumnByColumn() throws IOException {
+		List<Map<String, AttributeValue>> items = Arrays.asList(task("task/a", "sort", "Completed", "12"),
+				task("task/b", "sort", "Failed", null));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ColumnarFile.of(Collections.singletonMap("workflow_name", "wf"), items).writeTo(bytes);
+
+		ColumnarFile file = ColumnarFile.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+
+		assertEquals(2, file.getRowCount());
+		assertEquals("wf", file.getMetadata().get("workflow_name"));
+		assertEquals(Arrays.asList("Completed", "Failed"), file.getColumn("status"));
+		assertEquals(ColumnarFile.NUMBER, file.getColumnType("exec_time_in_seconds"));
+		assertEquals("12", file.getColumn("exec_time_in_seconds").get(0));
+		assertNull(file.getColumn("exec_time_in_seconds").get(1));
+		assertEquals(Arrays.asList(null, null), file.getColumn("output_key"));
+	}
+
+	@Test
+	void returnsAnExitStatusInsteadOfExiting(@TempDir Path directory) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+		assertEquals(2, ArchiveReader.run(new String[0], new PrintStream(out), new PrintStream(err)));
+		assertEquals(1, ArchiveReader.run(new String[] { directory.resolve("missing").toString() },
+				new PrintStream(out), new PrintStream(err)));
+		assertEquals(0, ArchiveReader.run(new String[] { directory.toString() }, new PrintStream(out),
+				new PrintStream(err)));
+		assertTrue(out.toString().startsWith("Workflow runs: 0"));
+	}
+
+	@Test
+	void aggregatesTheTasksOfArchivedRuns(@TempDir Path directory) throws IOException {
+		List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+		for (int i = 1; i <= 20; i++) {
+			items.add(task("task/" + i, "sort", i == 20 ? "Failed" : "Completed", Integer.toString(i)));
+		}
+		items.add(task("node/sort", "sort", "Launched", null));
+		items.add(task("speculative/task/3", null, "Resolved", null));
+		Map<String, AttributeValue> attempt = task("task/retry", "sort", "Completed", "100");
+		attempt.put("retry_of", AttributeValue.builder().s("task/20").build());
+		items.add(attempt);
+		Path partition = Files.createDirectories(directory.resolve("workflow_name=wf/date=2021-06-01"));
+		try (OutputStream outputStream = Files.newOutputStream(partition.resolve("run-1.json.gz"))) {
+			ColumnarFile.of(Collections.singletonMap("workflow_name", "wf"), items).writeTo(outputStream);
+		}
+
+		ArchiveReader reader = new ArchiveReader();
+		reader.addDirectory(directory);
+
+		assertEquals(1, reader.getRuns());
+		assertEquals(Integer.valueOf(19), reader.getStatusCounts().get("wf/sort").get("Completed"));
+		assertEquals(Integer.valueOf(1), reader.getStatusCounts().get("wf/sort").get("Failed"));
+		assertEquals(1, reader.getStatusCounts().size());
+		assertEquals(10, reader.durationPercentile("wf/sort", 0.5));
+		assertEquals(19, reader.durationPercentile("wf/sort", 0.95));
+		assertEquals(10.5, reader.durationMean("wf/sort"));
+		assertTrue(reader.report().contains("wf/sort"));
+	}
+
+	private static Map<String, AttributeValue> task(String ecsTaskId, String taskName, String status,
+			String execTime) {
+		Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+		item.put("workflow_run_id", AttributeValue.builder().n("1").build());
+		item.put("ecs_task_id", AttributeValue.builder().s(ecsTaskId).build());
+		if (taskName != null)
+			item.put("task_name", AttributeValue.builder().s(taskName).build());
+		item.put("status", AttributeValue.builder().s(status).build());
+		if (execTime != null)
+			item.put("exec_time_in_seconds", AttributeValue.builder().n(execTime).build());
+		return item;
+	}
+}
@@ -0,0 +1,33 @@
+package software.aws.ecs.java.starterkit.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ResultCacheTest {
+
+	@Test
+	void keyChangesWithEveryInput() {
+		String key = ResultCache.cacheKey("task-def:1", "{\"taskName\":\"a\"}", "\"etag-1\"");
+		assertEquals(64, key.length());
+		assertEquals(key, ResultCache.cacheKey("task-def:1", "{\"taskName\":\"a\"}", "\"etag-1\""));
+		assertNotEquals(key, ResultCache.cacheKey("task-def:2", "{\"taskName\":\"a\"}", "\"etag-1\""));
+		assertNotEquals(key, ResultCache.cacheKey("task-def:1", "{\"taskName\":\"b\"}", "\"etag-1\""));
+		assertNotEquals(key, ResultCache.cacheKey("task-def:1", "{\"taskName\":\"a\"}", "\"etag-2\""));
+	}
+
+	@Test
+	void returnsRecordedResults() {
+		InMemoryResultCache cache = new InMemoryResultCache();
+		assertNull(cache.lookup("key"));
+		cache.put("key", new CachedResult("input/a_copy", 7, "arn:task/1", "now"));
+		assertEquals("input/a_copy", cache.lookup("key").getOutputKey());
+		assertTrue(ResultCache.isCompleted(ResultCache.CACHED_STATUS));
+		assertTrue(ResultCache.isCompleted("Completed"));
+		assertFalse(ResultCache.isCompleted("Running"));
+	}
+}
@@ -0,0 +1,49 @@
+package software.aws.ecs.java.starterkit.dag;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TaskGraphTest {
+
+	@Test
+	void ordersTasksAfterTheirDependencies() {
+		LinkedHashMap<String, List<String>> dependencies = new LinkedHashMap<String, List<String>>();
+		dependencies.put("report", Arrays.asList("join"));
+		dependencies.put("extract-a", Collections.<String>emptyList());
+		dependencies.put("join", Arrays.asList("extract-a", "extract-b"));
+		dependencies.put("extract-b", Collections.<String>emptyList());
+
+		TaskGraph graph = new TaskGraph(dependencies);
+		assertEquals(Arrays.asList("extract-a", "extract-b", "join", "report"), graph.getTopologicalOrder());
+		assertEquals(4, graph.size());
+		assertTrue(TaskGraph.isNodeId(TaskGraph.nodeId("join")));
+	}
+
+	@Test
+	void rejectsCycles() {
+		LinkedHashMap<String, List<String>> dependencies = new LinkedHashMap<String, List<String>>();
+		dependencies.put("a", Collections.<String>emptyList());
+		dependencies.put("b", Arrays.asList("a", "d"));
+		dependencies.put("c", Arrays.asList("b"));
+		dependencies.put("d", Arrays.asList("c"));
+
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new TaskGraph(dependencies));
+		assertEquals("Task dependencies form a cycle: b -> d -> c -> b", e.getMessage());
+	}
+
+	@Test
+	void rejectsUnknownDependencies() {
+		LinkedHashMap<String, List<String>> dependencies = new LinkedHashMap<String, List<String>>();
+		dependencies.put("a", Arrays.asList("missing"));
+
+		assertThrows(IllegalArgumentException.class, () -> new TaskGraph(dependencies));
+	}
+}
@@ -0,0 +1,98 @@
+package software.aws.ecs.java.starterkit.history;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+
+class WorkflowHistoryTest {
+
+	@Test
+	void pagesThroughTheTasksWhichFailedInAnInterval() {
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		for (long time = 1000; time <= 5000; time += 1000) {
+			dynamoDB.failedTasks.add(time);
+		}
+		WorkflowHistory history = new WorkflowHistory(dynamoDB, "workflow_summary", "workflow_details",
+				new Metrics("Test", s -> {
+				}));
+
+		HistoryPage first = history.tasksByStatus("Failed", 2000, 5000, 2, null);
+		HistoryPage second = history.tasksByStatus("Failed", 2000, 5000, 2, first.getNextPageToken());
+
+		assertEquals("5000", first.getItems().get(0).get(WorkflowHistory.UPDATE_TIME_MILLIS).n());
+		assertTrue(first.hasNextPage());
+		assertEquals(2, second.getItems().size());
+		assertEquals("2000", second.getItems().get(1).get(WorkflowHistory.UPDATE_TIME_MILLIS).n());
+		assertFalse(second.hasNextPage());
+		QueryRequest request = dynamoDB.requests.get(0);
+		assertEquals(WorkflowHistory.DETAILS_STATUS_INDEX, request.indexName());
+		assertEquals("workflow_details", request.tableName());
+		assertFalse(request.scanIndexForward());
+		assertNull(history.runsByStatus("Running", 0, 1, 10, null).getNextPageToken());
+		assertEquals(WorkflowHistory.SUMMARY_STATUS_INDEX, dynamoDB.requests.get(2).indexName());
+	}
+
+	/**
+	 * In-memory stand-in for a descending query of the status index of the
+	 * Workflow Details table, which has Failed tasks only
+	 */
+	private static class FakeDynamoDb implements DynamoDbClient {
+		final List<Long> failedTasks = new ArrayList<Long>();
+		final List<QueryRequest> requests = new ArrayList<QueryRequest>();
+
+		@Override
+		public QueryResponse query(QueryRequest request) {
+			requests.add(request);
+			if (!"Failed".equals(request.expressionAttributeValues().get(":status").s()))
+				return QueryResponse.builder().items(new ArrayList<Map<String, AttributeValue>>()).build();
+			long from = Long.parseLong(request.expressionAttributeValues().get(":from").n());
+			long to = Long.parseLong(request.expressionAttributeValues().get(":to").n());
+			if (request.hasExclusiveStartKey())
+				to = Long.parseLong(request.exclusiveStartKey().get(WorkflowHistory.UPDATE_TIME_MILLIS).n()) - 1;
+			List<Long> times = new ArrayList<Long>(failedTasks);
+			Collections.sort(times, Collections.reverseOrder());
+			List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+			boolean more = false;
+			for (long time : times) {
+				if (time < from || time > to)
+					continue;
+				if (items.size() == request.limit()) {
+					more = true;
+					break;
+				}
+				Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+				item.put("status", AttributeValue.builder().s("Failed").build());
+				item.put(WorkflowHistory.UPDATE_TIME_MILLIS, AttributeValue.builder().n(Long.toString(time)).build());
+				items.add(item);
+			}
+			QueryResponse.Builder response = QueryResponse.builder().items(items);
+			if (more)
+				response.lastEvaluatedKey(items.get(items.size() - 1));
+			return response.build();
+		}
+
+		@Override
+		public String serviceName() {
+			return "dynamodb";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
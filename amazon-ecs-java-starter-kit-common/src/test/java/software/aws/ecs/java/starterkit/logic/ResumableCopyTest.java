@@ -0,0 +1,148 @@
+package software.aws.ecs.java.starterkit.logic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
+import software.amazon.awssdk.services.s3.model.CopyPartResult;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyResponse;
+
+class ResumableCopyTest {
+
+	private static final long MIB = 1024 * 1024;
+
+	@Test
+	void resumesAMultipartCopyFromItsCheckpoint() {
+		FakeS3 s3 = new FakeS3();
+		s3.objects.put("in/large", 12 * MIB);
+		CopyCheckpoint checkpoint = new CopyCheckpoint();
+		// interrupted after the second of three parts of 5 MiB
+		ResumableCopy[] interrupted = new ResumableCopy[1];
+		interrupted[0] = new ResumableCopy(s3, "bucket", 5 * MIB, checkpoint, () -> {
+			if (s3.partsCopied.size() == 2)
+				interrupted[0].stop();
+		});
+		assertFalse(interrupted[0].copy("in/large", "in/large_copy", "\"etag\""));
+		assertNull(checkpoint.destinationOf("in/large"));
+		assertEquals(10 * MIB, checkpoint.getCopiedBytes());
+
+		CopyCheckpoint saved = CopyCheckpoint.fromJson(checkpoint.toJson());
+		assertTrue(new ResumableCopy(s3, "bucket", 5 * MIB, saved, () -> {
+		}).copy("in/large", "in/large_other", "\"etag\""));
+
+		assertEquals(Arrays.asList("bytes=0-5242879", "bytes=5242880-10485759", "bytes=10485760-12582911"),
+				s3.partsCopied);
+		assertEquals(Arrays.asList("part-1", "part-2", "part-3"), s3.completed.get("in/large_copy"));
+		assertEquals("in/large_copy", saved.destinationOf("in/large"));
+		assertEquals(12 * MIB, saved.getCopiedBytes());
+	}
+
+	@Test
+	void skipsCopiedObjectsAndRestartsAnUploadS3LostTrackOf() {
+		FakeS3 s3 = new FakeS3();
+		s3.objects.put("in/small", MIB);
+		s3.objects.put("in/large", 6 * MIB);
+		CopyCheckpoint checkpoint = new CopyCheckpoint();
+		checkpoint.copied("in/small", "in/small_copy", MIB);
+		checkpoint.startPartialCopy("in/large", "in/large_copy", "expired", 5 * MIB);
+		checkpoint.partCopied("expired", "part-1", 5 * MIB);
+		ResumableCopy copy = new ResumableCopy(s3, "bucket", 5 * MIB, checkpoint, () -> {
+		});
+
+		assertTrue(copy.copy("in/small", "in/small_other", null));
+		assertTrue(copy.copy("in/large", "in/large_other", null));
+
+		assertTrue(s3.copied.isEmpty());
+		assertEquals(Arrays.asList("bytes=0-5242879", "bytes=5242880-6291455"), s3.partsCopied);
+		assertEquals(Arrays.asList("part-1", "part-2"), s3.completed.get("in/large_copy"));
+		assertEquals(2, checkpoint.getCopiedObjects());
+		// the part of the lost upload no longer counts
+		assertEquals(7 * MIB, checkpoint.getCopiedBytes());
+	}
+
+	/**
+	 * In-memory stand-in for S3, which knows the size of its objects and the
+	 * uploads it created
+	 */
+	private static class FakeS3 implements S3Client {
+		final Map<String, Long> objects = new HashMap<String, Long>();
+		final List<String> copied = new ArrayList<String>();
+		final List<String> partsCopied = new ArrayList<String>();
+		final Map<String, String> uploads = new HashMap<String, String>();
+		final Map<String, List<String>> completed = new HashMap<String, List<String>>();
+
+		@Override
+		public HeadObjectResponse headObject(HeadObjectRequest request) {
+			return HeadObjectResponse.builder().contentLength(objects.get(request.key())).eTag("\"etag\"").build();
+		}
+
+		@Override
+		public CopyObjectResponse copyObject(CopyObjectRequest request) {
+			copied.add(request.destinationKey());
+			return (CopyObjectResponse) CopyObjectResponse.builder()
+					.sdkHttpResponse(SdkHttpResponse.builder().statusCode(200).build()).build();
+		}
+
+		@Override
+		public CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest request) {
+			String uploadId = "upload-" + uploads.size();
+			uploads.put(uploadId, request.key());
+			return CreateMultipartUploadResponse.builder().uploadId(uploadId).build();
+		}
+
+		@Override
+		public UploadPartCopyResponse uploadPartCopy(UploadPartCopyRequest request) {
+			if (!uploads.containsKey(request.uploadId()))
+				throw NoSuchUploadException.builder().message("The specified upload does not exist").build();
+			partsCopied.add(request.copySourceRange());
+			return UploadPartCopyResponse.builder()
+					.copyPartResult(CopyPartResult.builder().eTag("part-" + request.partNumber()).build()).build();
+		}
+
+		@Override
+		public CompleteMultipartUploadResponse completeMultipartUpload(CompleteMultipartUploadRequest request) {
+			completed.put(uploads.remove(request.uploadId()), request.multipartUpload().parts().stream()
+					.map(part -> part.eTag()).collect(Collectors.toList()));
+			return CompleteMultipartUploadResponse.builder().build();
+		}
+
+		@Override
+		public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest request) {
+			uploads.remove(request.uploadId());
+			return AbortMultipartUploadResponse.builder().build();
+		}
+
+		@Override
+		public String serviceName() {
+			return "s3";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
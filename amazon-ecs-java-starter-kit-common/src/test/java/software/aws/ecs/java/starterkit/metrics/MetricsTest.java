@@ -0,0 +1,94 @@
+package software.aws.ecs.java.starterkit.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+class MetricsTest {
+
+	@Test
+	void flushWritesEmbeddedMetricFormat() {
+		List<String> emitted = new ArrayList<String>();
+		Metrics metrics = new Metrics("TestNamespace", emitted::add);
+		metrics.putDimension("Service", "ECSTaskLauncher").putProperty("WorkflowRunId", 42L);
+		metrics.count("TasksSubmitted");
+		metrics.count("TasksSubmitted", 2);
+		metrics.recordLatency("RunTaskLatency", 12);
+		metrics.recordLatency("RunTaskLatency", 12);
+		metrics.recordLatency("RunTaskLatency", 1234);
+
+		List<String> documents = metrics.flush();
+		assertEquals(1, documents.size());
+		assertEquals(documents, emitted);
+
+		JsonObject document = new JsonParser().parse(documents.get(0)).getAsJsonObject();
+		JsonObject directive = document.getAsJsonObject("_aws").getAsJsonArray("CloudWatchMetrics").get(0)
+				.getAsJsonObject();
+		assertEquals("TestNamespace", directive.get("Namespace").getAsString());
+		assertEquals("Service", directive.getAsJsonArray("Dimensions").get(0).getAsJsonArray().get(0).getAsString());
+		assertEquals(2, directive.getAsJsonArray("Metrics").size());
+		assertEquals("ECSTaskLauncher", document.get("Service").getAsString());
+		assertEquals(42L, document.get("WorkflowRunId").getAsLong());
+		assertEquals(3L, document.get("TasksSubmitted").getAsLong());
+
+		JsonObject histogram = document.getAsJsonObject("RunTaskLatency");
+		assertEquals(12L, histogram.getAsJsonArray("Values").get(0).getAsLong());
+		assertEquals(2L, histogram.getAsJsonArray("Counts").get(0).getAsLong());
+		assertEquals(1200L, histogram.getAsJsonArray("Values").get(1).getAsLong());
+
+		// state is reset after a flush
+		assertTrue(metrics.flush().isEmpty());
+	}
+
+	@Test
+	void gaugesKeepTheLastValueUntilTheFlush() {
+		Metrics metrics = new Metrics("TestNamespace", document -> {
+		});
+		metrics.gauge("RunningTasks", 10);
+		metrics.gauge("RunningTasks", 4);
+		metrics.count("MonitorTicks");
+
+		JsonObject document = new JsonParser().parse(metrics.flush().get(0)).getAsJsonObject();
+		assertEquals(4L, document.get("RunningTasks").getAsLong());
+		assertEquals(1L, document.get("MonitorTicks").getAsLong());
+		assertTrue(metrics.flush().isEmpty());
+	}
+
+	@Test
+	void largeHistogramsAreSplitAcrossDocuments() {
+		Metrics metrics = new Metrics("TestNamespace", document -> {
+		});
+		metrics.count("Ticks");
+		for (int i = 0; i < 150; i++) {
+			metrics.recordLatency("DDBQueryLatency", i);
+		}
+		List<String> documents = metrics.flush();
+		assertEquals(2, documents.size());
+
+		JsonObject first = new JsonParser().parse(documents.get(0)).getAsJsonObject();
+		JsonObject second = new JsonParser().parse(documents.get(1)).getAsJsonObject();
+		int firstValues = first.getAsJsonObject("DDBQueryLatency").getAsJsonArray("Values").size();
+		JsonArray secondValues = second.getAsJsonObject("DDBQueryLatency").getAsJsonArray("Values");
+		assertEquals(Metrics.MAX_VALUES_PER_METRIC, firstValues);
+		// 100..149 round to 100, 110, 120, 130, 140 and 150
+		assertEquals(6, secondValues.size());
+		assertTrue(first.has("Ticks"));
+		assertTrue(!second.has("Ticks"));
+	}
+
+	@Test
+	void latenciesAreRoundedToTwoSignificantDigits() {
+		assertEquals(99, Metrics.roundToTwoSignificantDigits(99));
+		assertEquals(110, Metrics.roundToTwoSignificantDigits(109));
+		assertEquals(1200, Metrics.roundToTwoSignificantDigits(1234));
+		assertEquals(0, Metrics.roundToTwoSignificantDigits(-5));
+	}
+}
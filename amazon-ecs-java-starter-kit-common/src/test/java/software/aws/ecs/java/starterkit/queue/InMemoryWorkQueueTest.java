@@ -0,0 +1,49 @@
+package software.aws.ecs.java.starterkit.queue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class InMemoryWorkQueueTest {
+
+	@Test
+	void workItemsRoundTripThroughTheQueue() {
+		InMemoryWorkQueue queue = new InMemoryWorkQueue();
+		queue.send(Arrays.asList(item(0), item(1), item(2)));
+		assertEquals(3, queue.approximateDepth());
+
+		List<WorkItem> received = queue.receive(2, 0);
+		assertEquals(2, received.size());
+		assertEquals("work-item/42/0", received.get(0).getItemId());
+		assertEquals("bucket", received.get(0).getS3BucketName());
+		assertNotNull(received.get(0).getReceiptHandle());
+		assertEquals(1, queue.approximateDepth());
+		assertEquals(2, queue.inFlightCount());
+
+		queue.delete(received.get(0));
+		assertEquals(1, queue.releaseInFlight());
+		assertEquals(2, queue.approximateDepth());
+	}
+
+	@Test
+	void receiptHandleIsNotSerialized() {
+		WorkItem item = item(0);
+		item.setReceiptHandle("handle");
+		assertNull(WorkItem.fromJson(item.toJson()).getReceiptHandle());
+		assertEquals(42L, WorkItem.fromJson(item.toJson()).getWorkflowRunId());
+	}
+
+	private static WorkItem item(int index) {
+		WorkItem item = new WorkItem();
+		item.setItemId(WorkItem.itemId(42, index));
+		item.setWorkflowRunId(42);
+		item.setS3BucketName("bucket");
+		item.setObjectKey("key-" + index);
+		return item;
+	}
+}
@@ -0,0 +1,37 @@
+package software.aws.ecs.java.starterkit.retry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class RetryPolicyTest {
+
+	@Test
+	void retriesOnlyListedFailuresUntilMaxAttempts() {
+		RetryPolicy policy = new RetryPolicy(3, 30, 2, 0);
+		policy.setRetryableExitCodes(Arrays.asList(137));
+		policy.setRetryableStopReasons(Arrays.asList("Spot"));
+
+		assertTrue(policy.shouldRetry(1, 137, "Essential container in task exited"));
+		assertTrue(policy.shouldRetry(2, null, "Your Spot Task was interrupted."));
+		assertFalse(policy.shouldRetry(3, 137, null));
+		assertFalse(policy.shouldRetry(1, 1, "Essential container in task exited"));
+		// failures written by the task itself
+		assertFalse(policy.shouldRetry(1, null, null));
+		assertTrue(new RetryPolicy(2, 0, 2, 0).shouldRetry(1, null, null));
+	}
+
+	@Test
+	void backsOffExponentiallyUpToTheCap() {
+		RetryPolicy policy = new RetryPolicy(5, 30, 2, 100);
+
+		assertEquals(30000, policy.backoffMillis(1));
+		assertEquals(60000, policy.backoffMillis(2));
+		assertEquals(100000, policy.backoffMillis(3));
+		assertEquals(policy, RetryPolicy.effective(new RetryPolicy(), policy));
+	}
+}
@@ -0,0 +1,81 @@
+package software.aws.ecs.java.starterkit.scheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+
+class FairShareSchedulerTest {
+
+	@Test
+	void servesHigherPrioritiesFirstAndSplitsTheRestByWeight() {
+		Map<String, Integer> allocation = FairShareScheduler.allocate(100,
+				Arrays.asList(new RunShare("urgent", 10, 1, 0, 30), new RunShare("heavy", 0, 3, 0, 500),
+						new RunShare("light", 0, 1, 0, 500), new RunShare("capped", 0, 1, 5, 500)));
+
+		assertEquals(30, allocation.get("urgent").intValue());
+		assertEquals(5, allocation.get("capped").intValue());
+		// the 65 slots left go 3:1 to heavy and light once capped is satisfied
+		assertEquals(49, allocation.get("heavy").intValue());
+		assertEquals(16, allocation.get("light").intValue());
+	}
+
+	@Test
+	void givesEveryRunItsDemandWithoutClusterLimit() {
+		RunShare running = new RunShare("running", 0, 1, 0, 7);
+		running.setInFlight(3);
+		Map<String, Integer> allocation = FairShareScheduler.allocate(0,
+				Arrays.asList(running, new RunShare("capped", 0, 1, 4, 20)));
+
+		assertEquals(10, allocation.get("running").intValue());
+		assertEquals(4, allocation.get("capped").intValue());
+	}
+
+	@Test
+	void neverGrantsMoreThanTheClusterLimit() {
+		FairShareScheduler scheduler = new FairShareScheduler(new InMemorySchedulerStore(), metrics());
+		scheduler.registerCluster("cluster", 10);
+
+		assertEquals(8, scheduler.acquire("cluster", new RunShare("a", 0, 1, 0, 8), 8));
+		// b shares equally with a but only 2 slots are free
+		assertEquals(2, scheduler.acquire("cluster", new RunShare("b", 0, 1, 0, 8), 8));
+		assertEquals(0, scheduler.acquire("cluster", new RunShare("b", 0, 1, 0, 6), 6));
+
+		scheduler.returnUnused("cluster", "a", 1);
+		// a holds 7 of its share of 5, the freed slot goes to b
+		assertEquals(0, scheduler.acquire("cluster", new RunShare("a", 0, 1, 0, 0), 1));
+		assertEquals(1, scheduler.acquire("cluster", new RunShare("b", 0, 1, 0, 6), 6));
+	}
+
+	@Test
+	void highPriorityRunTakesTheSlotsABackfillReleases() {
+		InMemorySchedulerStore store = new InMemorySchedulerStore();
+		FairShareScheduler scheduler = new FairShareScheduler(store, metrics());
+		scheduler.registerCluster("cluster", 4);
+		assertEquals(4, scheduler.acquire("cluster", new RunShare("backfill", 0, 1, 0, 100), 4));
+		assertEquals(0, scheduler.acquire("cluster", new RunShare("urgent", 5, 1, 0, 3), 3));
+
+		scheduler.recordFinished("cluster", "backfill", 2);
+		// the same total again releases nothing
+		scheduler.recordFinished("cluster", "backfill", 2);
+		assertEquals(2, store.getClusterState("cluster").getInFlight());
+
+		assertEquals(0, scheduler.acquire("cluster", new RunShare("backfill", 0, 1, 0, 96), 2));
+		assertEquals(2, scheduler.acquire("cluster", new RunShare("urgent", 5, 1, 0, 3), 3));
+
+		scheduler.recordFinished("cluster", "urgent", 2);
+		scheduler.removeRun("cluster", "urgent");
+		assertNull(store.getClusterState("cluster").getRun("urgent"));
+		assertEquals(2, scheduler.acquire("cluster", new RunShare("backfill", 0, 1, 0, 96), 2));
+	}
+
+	private static Metrics metrics() {
+		return new Metrics("Test", s -> {
+		});
+	}
+}
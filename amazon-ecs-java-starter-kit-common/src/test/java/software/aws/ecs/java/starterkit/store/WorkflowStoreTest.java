@@ -0,0 +1,174 @@
+package software.aws.ecs.java.starterkit.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+
+class WorkflowStoreTest {
+
+	@Test
+	void updatesRowsWithTheExpectedStatusOnly() {
+		InMemoryWorkflowStore store = new InMemoryWorkflowStore("workflow_run_id", "ecs_task_id");
+		List<String> notStarted = Arrays.asList(WorkflowStore.NO_STATUS, TaskRows.RUNNING);
+
+		assertTrue(WorkflowStore.join(store.updateTask(7, "task-1", TaskRows.started("copy", "Failed", 1000L),
+				Collections.<String>emptyList(), notStarted)));
+		assertFalse(WorkflowStore.join(store.updateTask(7, "task-1",
+				Collections.singletonMap("status", TaskRows.string("Completed")), Collections.<String>emptyList(),
+				notStarted)));
+		store.putTask(7, "task-2", TaskRows.started("copy", TaskRows.RUNNING, 1000L));
+		assertTrue(WorkflowStore.join(store.updateTask(7, "task-2", TaskRows.finished("Completed", 5, 10L, 1),
+				Arrays.asList("start_time"), Arrays.asList(TaskRows.RUNNING))));
+
+		Map<String, AttributeValue> row = WorkflowStore.join(store.getTask(7, "task-2"));
+		assertEquals("Completed", row.get("status").s());
+		assertEquals("7", row.get("workflow_run_id").n());
+		assertFalse(row.containsKey("start_time"));
+		assertTrue(WorkflowStore.join(store.getTask(7, "missing")).isEmpty());
+		List<Map<String, AttributeValue>> tasks = WorkflowStore.join(store.getTasks(7, Arrays.asList("status")));
+		assertEquals(2, tasks.size());
+		assertEquals(2, tasks.get(1).size());
+		assertEquals("task-2", tasks.get(1).get("ecs_task_id").s());
+	}
+
+	@Test
+	void writesBatchesOf25AndRetriesUnprocessedItems() {
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		dynamoDB.unprocessed = 3;
+		Metrics metrics = new Metrics("Test", document -> {
+		});
+		DynamoDbWorkflowStore store = new DynamoDbWorkflowStore(dynamoDB, "workflow_details", "workflow_run_id",
+				"ecs_task_id", metrics, 3, 0);
+		Map<String, Map<String, AttributeValue>> tasks = new LinkedHashMap<String, Map<String, AttributeValue>>();
+		for (int index = 0; index < 30; index++) {
+			tasks.put("node/task-" + index, Collections.singletonMap("status", TaskRows.string("Blocked")));
+		}
+
+		WorkflowStore.join(store.putTasks(7, tasks));
+
+		// 25 and 5 items, then the 3 items left unprocessed by the first batch
+		assertEquals(Arrays.asList(25, 3, 5), dynamoDB.batchSizes);
+		assertEquals(30, dynamoDB.written.size());
+		assertEquals("7", dynamoDB.written.get(0).get("workflow_run_id").n());
+
+		dynamoDB.unprocessed = 1000;
+		assertThrows(IllegalStateException.class, () -> WorkflowStore.join(store.putTasks(7, tasks)));
+	}
+
+	@Test
+	void readsAllPagesAndReportsFailedConditions() {
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		DynamoDbWorkflowStore store = new DynamoDbWorkflowStore(dynamoDB, "workflow_details", "workflow_run_id",
+				"ecs_task_id", new Metrics("Test", document -> {
+				}));
+
+		assertEquals(3, WorkflowStore.join(store.getTasks(7, Arrays.asList("status"))).size());
+		assertEquals("#rk, #a0", dynamoDB.queries.get(0).projectionExpression());
+		assertEquals(2, dynamoDB.queries.size());
+		assertFalse(WorkflowStore.join(store.updateTask(7, "task-1",
+				Collections.singletonMap("checkpoint", TaskRows.string("{}")), Collections.<String>emptyList(),
+				Arrays.asList(TaskRows.RUNNING, WorkflowStore.NO_STATUS))));
+		assertEquals("attribute_not_exists(#status) OR #status IN (:s0)",
+				dynamoDB.updates.get(0).conditionExpression());
+		assertEquals("SET #a0 = :v0", dynamoDB.updates.get(0).updateExpression());
+	}
+
+	@Test
+	void rejectsEmptyUpdatesAndSendsNoRequestWithoutExpectedStatuses() {
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		DynamoDbWorkflowStore store = new DynamoDbWorkflowStore(dynamoDB, "workflow_details", "workflow_run_id",
+				"ecs_task_id", new Metrics("Test", document -> {
+				}));
+
+		assertThrows(IllegalArgumentException.class,
+				() -> store.updateTask(7, "task-1", Collections.<String, AttributeValue>emptyMap(),
+						Collections.<String>emptyList(), null));
+		assertFalse(WorkflowStore.join(store.updateTask(7, "task-1",
+				Collections.singletonMap("checkpoint", TaskRows.string("{}")), Collections.<String>emptyList(),
+				Collections.<String>emptyList())));
+		assertTrue(dynamoDB.updates.isEmpty());
+	}
+
+	/**
+	 * Asynchronous client which leaves the first items of a batch unprocessed,
+	 * answers queries with two pages and fails conditional updates
+	 */
+	private static class FakeDynamoDb implements DynamoDbAsyncClient {
+		final List<Integer> batchSizes = new ArrayList<Integer>();
+		final List<Map<String, AttributeValue>> written = new ArrayList<Map<String, AttributeValue>>();
+		final List<QueryRequest> queries = new ArrayList<QueryRequest>();
+		final List<UpdateItemRequest> updates = new ArrayList<UpdateItemRequest>();
+		int unprocessed;
+
+		@Override
+		public CompletableFuture<BatchWriteItemResponse> batchWriteItem(BatchWriteItemRequest request) {
+			List<WriteRequest> writeRequests = request.requestItems().get("workflow_details");
+			batchSizes.add(writeRequests.size());
+			int left = Math.min(unprocessed, writeRequests.size());
+			unprocessed = unprocessed >= 1000 ? unprocessed : 0;
+			for (WriteRequest writeRequest : writeRequests.subList(left, writeRequests.size())) {
+				written.add(writeRequest.putRequest().item());
+			}
+			Map<String, List<WriteRequest>> unprocessedItems = left == 0
+					? new HashMap<String, List<WriteRequest>>()
+					: Collections.singletonMap("workflow_details", writeRequests.subList(0, left));
+			return CompletableFuture
+					.completedFuture(BatchWriteItemResponse.builder().unprocessedItems(unprocessedItems).build());
+		}
+
+		@Override
+		public CompletableFuture<QueryResponse> query(QueryRequest request) {
+			queries.add(request);
+			QueryResponse.Builder response = QueryResponse.builder();
+			if (request.exclusiveStartKey().isEmpty())
+				return CompletableFuture.completedFuture(response.items(row("task-1"), row("task-2"))
+						.lastEvaluatedKey(row("task-2")).build());
+			return CompletableFuture.completedFuture(response.items(row("task-3")).build());
+		}
+
+		@Override
+		public CompletableFuture<UpdateItemResponse> updateItem(UpdateItemRequest request) {
+			updates.add(request);
+			CompletableFuture<UpdateItemResponse> response = new CompletableFuture<UpdateItemResponse>();
+			response.completeExceptionally(ConditionalCheckFailedException.builder().message("failed").build());
+			return response;
+		}
+
+		@Override
+		public String serviceName() {
+			return "dynamodb";
+		}
+
+		@Override
+		public void close() {
+		}
+
+		private static Map<String, AttributeValue> row(String ecsTaskId) {
+			return Collections.singletonMap("ecs_task_id", TaskRows.string(ecsTaskId));
+		}
+	}
+}
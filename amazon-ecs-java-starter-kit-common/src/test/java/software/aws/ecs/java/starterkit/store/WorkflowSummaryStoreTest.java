@@ -0,0 +1,141 @@
+package software.aws.ecs.java.starterkit.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+
+class WorkflowSummaryStoreTest {
+
+	@Test
+	void movesTheLaunchCursorForwardOnly() {
+		InMemoryWorkflowSummaryStore store = new InMemoryWorkflowSummaryStore("workflow_name", "workflow_run_id");
+
+		assertTrue(WorkflowStore.join(store.insertSummary("wf", 7, "{}", 10, "Running", "now")));
+		assertFalse(WorkflowStore.join(store.insertSummary("wf", 7, "{}", 10, "Running", "now")));
+		assertTrue(WorkflowStore.join(store.updateLaunchCursor("wf", 7, 5, Arrays.asList("arn-1"), null, 0)));
+		assertFalse(WorkflowStore.join(store.updateLaunchCursor("wf", 7, 3, Arrays.asList("arn-2"), null, 0)));
+
+		Map<String, AttributeValue> summary = WorkflowStore.join(store.getSummary("wf", 7));
+		assertEquals("5", summary.get("launch_cursor").n());
+		assertEquals("5", summary.get("pending_tasks").n());
+		assertEquals("wf", summary.get("workflow_name").s());
+		assertEquals("{}", WorkflowStore.join(store.getWorkflowSpecs("wf", 7)));
+		assertTrue(WorkflowStore.join(store.getSummary("wf", 8)).isEmpty());
+
+		store.insertSummary("wf", 3, "{}", 1, "Completed", "then");
+		store.insertSummary("wf", 5, "{}", 1, "Completed", "then");
+		assertEquals(Arrays.asList(5L), WorkflowStore.join(store.getEarlierRuns("wf", 7, 1)));
+		assertEquals(Arrays.asList(5L, 3L), WorkflowStore.join(store.getEarlierRuns("wf", 7, 3)));
+		assertEquals(2, WorkflowStore.join(store.getSummaries("Completed")).size());
+	}
+
+	@Test
+	void writesSummariesInTransactionsOf25AndFallsBackToUpdates() {
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		dynamoDB.cancelTransactions = 1;
+		DynamoDbWorkflowSummaryStore store = new DynamoDbWorkflowSummaryStore(dynamoDB, "workflow_summary",
+				"workflow_name", "workflow_run_id", new Metrics("Test", document -> {
+				}));
+		List<SummaryUpdate> updates = new ArrayList<SummaryUpdate>();
+		for (int run = 0; run < DynamoDbWorkflowSummaryStore.MAX_TRANSACT_ITEMS + 5; run++) {
+			updates.add(new SummaryUpdate("wf", run, "Running", "now", 1, 0, 2,
+					Collections.singletonMap("progress_bytes", TaskRows.number(run))));
+		}
+
+		WorkflowStore.join(store.updateSummaries(updates));
+
+		// the first transaction is cancelled and its runs are written one by one
+		assertEquals(Arrays.asList(DynamoDbWorkflowSummaryStore.MAX_TRANSACT_ITEMS, 5), dynamoDB.transactionSizes);
+		assertEquals(DynamoDbWorkflowSummaryStore.MAX_TRANSACT_ITEMS, dynamoDB.updates.size());
+		UpdateItemRequest update = dynamoDB.updates.get(0);
+		assertEquals("Running", update.expressionAttributeValues().get(":status").s());
+		assertEquals("2", update.expressionAttributeValues().get(":running_tasks").n());
+		assertTrue(update.updateExpression().endsWith(", progress_bytes = :progress_bytes"));
+	}
+
+	@Test
+	void throwsErrorsOtherThanFailedConditions() {
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		DynamoDbWorkflowSummaryStore store = new DynamoDbWorkflowSummaryStore(dynamoDB, "workflow_summary",
+				"workflow_name", "workflow_run_id", new Metrics("Test", document -> {
+				}));
+
+		dynamoDB.putItemError = ConditionalCheckFailedException.builder().message("failed").build();
+		assertFalse(WorkflowStore.join(store.insertSummary("wf", 7, "{}", 10, "Running", "now")));
+		dynamoDB.putItemError = DynamoDbException.builder().message("Rate exceeded").build();
+		assertThrows(DynamoDbException.class,
+				() -> WorkflowStore.join(store.insertSummary("wf", 7, "{}", 10, "Running", "now")));
+		assertEquals("attribute_not_exists(#rk)", dynamoDB.puts.get(0).conditionExpression());
+	}
+
+	/**
+	 * Asynchronous client which cancels the first transactions and fails its
+	 * puts
+	 */
+	private static class FakeDynamoDb implements DynamoDbAsyncClient {
+		final List<Integer> transactionSizes = new ArrayList<Integer>();
+		final List<UpdateItemRequest> updates = new ArrayList<UpdateItemRequest>();
+		final List<PutItemRequest> puts = new ArrayList<PutItemRequest>();
+		int cancelTransactions;
+		Exception putItemError;
+
+		@Override
+		public CompletableFuture<TransactWriteItemsResponse> transactWriteItems(TransactWriteItemsRequest request) {
+			transactionSizes.add(request.transactItems().size());
+			if (cancelTransactions-- > 0)
+				return failed(TransactionCanceledException.builder().message("cancelled").build());
+			return CompletableFuture.completedFuture(TransactWriteItemsResponse.builder().build());
+		}
+
+		@Override
+		public CompletableFuture<UpdateItemResponse> updateItem(UpdateItemRequest request) {
+			updates.add(request);
+			return CompletableFuture.completedFuture(UpdateItemResponse.builder().build());
+		}
+
+		@Override
+		public CompletableFuture<PutItemResponse> putItem(PutItemRequest request) {
+			puts.add(request);
+			return putItemError == null ? CompletableFuture.completedFuture(PutItemResponse.builder().build())
+					: failed(putItemError);
+		}
+
+		@Override
+		public String serviceName() {
+			return "dynamodb";
+		}
+
+		@Override
+		public void close() {
+		}
+
+		private static <T> CompletableFuture<T> failed(Exception error) {
+			CompletableFuture<T> response = new CompletableFuture<T>();
+			response.completeExceptionally(error);
+			return response;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package software.aws.ecs.java.starterkit.tracing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.data.SpanData;
+
+class TracingTest {
+
+	@Test
+	void traceParentLinksLauncherTaskAndMonitorSpans() {
+		InMemorySpanExporter exporter = InMemorySpanExporter.create();
+		Tracing tracing = new Tracing("test", exporter);
+
+		// launcher
+		Span launchSpan = tracing.startSpan("LaunchWorkflow", Context.root(), 42L);
+		String traceParent;
+		try (Scope scope = launchSpan.makeCurrent()) {
+			traceParent = Tracing.currentTraceParent();
+		} finally {
+			launchSpan.end();
+		}
+		assertNotNull(traceParent);
+
+		// task and monitor, each in their own process
+		Span taskSpan = tracing.startSpan("ECSTask", Tracing.fromTraceParent(traceParent), 42L);
+		try (Scope scope = taskSpan.makeCurrent()) {
+			tracing.inSpan("CopyObject", () -> true);
+		} finally {
+			taskSpan.end();
+		}
+		tracing.startSpan("MonitorWorkflow", Tracing.fromTraceParent(traceParent), 42L).end();
+
+		List<SpanData> spans = exporter.getFinishedSpanItems();
+		assertEquals(4, spans.size());
+		String traceId = launchSpan.getSpanContext().getTraceId();
+		for (SpanData span : spans) {
+			assertEquals(traceId, span.getTraceId());
+		}
+		SpanData copy = find(spans, "CopyObject");
+		assertEquals(taskSpan.getSpanContext().getSpanId(), copy.getParentSpanId());
+		assertEquals(launchSpan.getSpanContext().getSpanId(), find(spans, "ECSTask").getParentSpanId());
+		assertEquals(launchSpan.getSpanContext().getSpanId(), find(spans, "MonitorWorkflow").getParentSpanId());
+		assertEquals(42L, find(spans, "MonitorWorkflow").getAttributes().get(Tracing.WORKFLOW_RUN_ID));
+	}
+
+	@Test
+	void failuresAreRecordedOnTheSpan() {
+		InMemorySpanExporter exporter = InMemorySpanExporter.create();
+		Tracing tracing = new Tracing("test", exporter);
+		assertThrows(IllegalStateException.class, () -> tracing.inSpan("RunTask", () -> {
+			throw new IllegalStateException("capacity");
+		}));
+		assertEquals(StatusCode.ERROR, exporter.getFinishedSpanItems().get(0).getStatus().getStatusCode());
+	}
+
+	@Test
+	void missingTraceParentStartsANewTrace() {
+		assertNull(Tracing.toTraceParent(Context.root()));
+		assertEquals(Context.root(), Tracing.fromTraceParent(null));
+	}
+
+	private static SpanData find(List<SpanData> spans, String name) {
+		return spans.stream().filter(span -> span.getName().equals(name)).findFirst().get();
+	}
+}
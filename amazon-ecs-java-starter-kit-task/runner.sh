@@ -3,7 +3,13 @@ set -x
 
 PATH="/bin:/usr/bin:/sbin:/usr/sbin:/usr/local/bin:/usr/local/sbin"
 BASENAME="${0##*/}"
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
 
 echo "Program Executable Jar: '$program_executable'"
 
-java -jar $program_executable
\ No newline at end of file
+# exec, so that the JVM receives the SIGTERM sent by ECS
+if [ -n "$program_main_class" ]; then
+    exec $JAVA $JAVA_OPTS -cp $program_executable $program_main_class
+else
+    exec $JAVA $JAVA_OPTS -jar $program_executable
+fi
@@ -7,34 +7,67 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.ProtocolException;
+import java.net.URI;
 import java.net.URL;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Scope;
+
 import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClientBuilder;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
-import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
-import software.amazon.awssdk.services.s3.model.S3Exception;
-import software.aws.ecs.java.starterkit.util.DDBUtil;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.aws.ecs.java.starterkit.cache.CachedResult;
+import software.aws.ecs.java.starterkit.cache.DynamoDbResultCache;
+import software.aws.ecs.java.starterkit.logic.CopyCheckpoint;
+import software.aws.ecs.java.starterkit.logic.ObjectCopy;
+import software.aws.ecs.java.starterkit.logic.ResumableCopy;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.store.DynamoDbWorkflowStore;
+import software.aws.ecs.java.starterkit.store.TaskRows;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+import software.aws.ecs.java.starterkit.tracing.Tracing;
 
 public class ECSTask {
 
+	// the progress is saved at most this often while the task runs, and always when it is stopped
+	static final long CHECKPOINT_INTERVAL_MILLIS = 30000;
+	// time given to the copy of the part in flight once ECS stops the task, within its stop timeout
+	static final long STOP_WAIT_MILLIS = 20000;
+
 	public static void main(String[] args) {
 
+		// the same image runs the long running workers of the worker pool
+		if (System.getenv("work_queue_url") != null) {
+			ECSTaskWorker.main(args);
+			return;
+		}
+
 		String regionPassed = System.getenv("region");
 		String tableName = System.getenv("workflow_details_ddb_table_name");
 		String hashKey = System.getenv("workflow_details_hash_key");
@@ -45,22 +78,242 @@ public class ECSTask {
 		String bucketName = System.getenv("s3_bucket_name");
 		String objectKey = System.getenv("object_key");
 		String taskMetadataEndpoint = System.getenv("ECS_CONTAINER_METADATA_URI");
+		// optional, to run the task against local stubs or LocalStack
+		String endpointUrl = System.getenv("aws_endpoint_url");
+		String workSeconds = System.getenv("work_seconds");
+		// set by the launcher when the workflow has a result cache
+		String resultCacheTableName = System.getenv("result_cache_table_name");
+		String resultCacheKey = System.getenv("result_cache_key");
+		String sourceETag = System.getenv("source_etag");
+		// set by the monitor when it launches a failed task again
+		String retryOf = System.getenv("retry_of");
+		int attempt = Integer.parseInt(Optional.ofNullable(System.getenv("attempt")).orElse("1"));
+		// set by the launcher for discovered inputs, a shard lists all of its objects
+		String objectKeysJson = System.getenv("object_keys");
+		Long inputBytes = Optional.ofNullable(System.getenv("input_bytes")).map(Long::valueOf).orElse(null);
+		int inputObjects = Integer.parseInt(Optional.ofNullable(System.getenv("input_objects")).orElse("1"));
+		// objects larger than a part are copied in parts, which an interrupted task resumes from
+		long partBytes = Optional.ofNullable(System.getenv("copy_part_bytes")).map(Long::valueOf)
+				.orElse(ResumableCopy.DEFAULT_PART_BYTES);
+		// how often the task writes its progress for the monitor, 0 to write none
+		long heartbeatSeconds = Optional.ofNullable(System.getenv("heartbeat_seconds")).map(Long::valueOf)
+				.orElse(TaskHeartbeat.DEFAULT_HEARTBEAT_SECONDS);
 		
 		long startTime = System.currentTimeMillis();
 
-		// print runtime properties of the task
-		printInputParameters(regionPassed, tableName, hashKey, rangeKey, workflowName, workflowRunId, taskName, 
-				bucketName, objectKey, taskMetadataEndpoint);
-		String destinationKey = objectKey.concat("_").concat(UUID.randomUUID().toString());
+		// metrics and spans are written once the JVM exits, including on System.exit
+		Metrics metrics = Metrics.getInstance();
+		metrics.putDimension("Service", "ECSTask").putProperty("WorkflowName", workflowName)
+				.putProperty("WorkflowRunId", workflowRunId).putProperty("TaskName", taskName);
+		Tracing tracing = Tracing.getInstance("ECSTask");
+		// set once the task runs, to save its progress when ECS stops it with SIGTERM
+		AtomicReference<Runnable> interruption = new AtomicReference<Runnable>();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			Optional.ofNullable(interruption.get()).ifPresent(Runnable::run);
+			metrics.flush();
+			tracing.shutdown();
+		}));
+
+		// continue the trace of the RunTask call which started this task
+		Span taskSpan = tracing.startSpan("ECSTask", Tracing.fromTraceParent(System.getenv(Tracing.TRACE_PARENT)),
+				workflowRunId);
+		taskSpan.setAttribute("task.name", taskName);
+		Scope taskScope = taskSpan.makeCurrent();
+		try {
+			// print runtime properties of the task
+			printInputParameters(regionPassed, tableName, hashKey, rangeKey, workflowName, workflowRunId, taskName, 
+					bucketName, objectKey, taskMetadataEndpoint);
+			String destinationKey = objectKey.concat("_").concat(UUID.randomUUID().toString());
+
+			// Create objects
+			Region region = Region.regions().stream().filter(r -> r.toString().equalsIgnoreCase(regionPassed))
+					.findFirst().orElse(Region.US_EAST_1);
+			S3Client s3 = buildS3Client(region, endpointUrl);
+			DynamoDbAsyncClient dynamoDB = buildDynamoDbAsyncClient(region, endpointUrl);
+			WorkflowStore store = new DynamoDbWorkflowStore(dynamoDB, tableName, hashKey, rangeKey, metrics);
+
+			// get Task ARN
+			String response = tracing.inSpan("FetchTaskMetadata",
+					() -> metrics.time("MetadataFetchLatency", () -> getTaskMetadata(taskMetadataEndpoint)));
+			String taskARN = getTaskARN(response);
+			System.out.println("Task ARN: " + taskARN);
+
+			// insert job running status in DynamoDB table
+			Map<String, AttributeValue> row = TaskRows.started(taskName, TaskRows.RUNNING, System.currentTimeMillis());
+			if (retryOf != null) {
+				row.put("retry_of", TaskRows.string(retryOf));
+				row.put("attempt", TaskRows.number(attempt));
+			}
+			CompletableFuture<Void> inserted = store.putTask(workflowRunId, taskARN, row);
+
+			// the attempts of a retried task resume from the progress saved on the row of the first one, read
+			// while the status is written
+			String checkpointTaskId = retryOf != null ? retryOf : taskARN;
+			String savedCheckpoint = retryOf == null ? null
+					: tracing.inSpan("GetCheckpoint", () -> Optional
+							.ofNullable(WorkflowStore.join(store.getTask(workflowRunId, retryOf)).get("checkpoint"))
+							.map(AttributeValue::s).orElse(null));
+			tracing.inSpan("InsertTaskStatus", () -> WorkflowStore.join(inserted));
+			System.out.printf("An item added to %s successfully. \n", tableName);
+			CopyCheckpoint checkpoint = savedCheckpoint == null ? new CopyCheckpoint()
+					: CopyCheckpoint.fromJson(savedCheckpoint);
+			if (savedCheckpoint != null) {
+				System.out.printf("Resuming from the checkpoint of %s with %d objects copied \n", retryOf,
+						checkpoint.getCopiedObjects());
+				metrics.count("TasksResumed");
+			}
+			Runnable saveCheckpoint = () -> {
+				Map<String, AttributeValue> saved = new HashMap<String, AttributeValue>();
+				saved.put("checkpoint", TaskRows.string(checkpoint.toJson()));
+				saved.put("checkpoint_time_millis", TaskRows.number(System.currentTimeMillis()));
+				WorkflowStore.join(store.updateTask(workflowRunId, checkpointTaskId, saved,
+						Collections.<String>emptyList(), null));
+				metrics.count("CheckpointsSaved");
+			};
+			AtomicLong lastSaveTime = new AtomicLong(startTime);
+			ResumableCopy copy = new ResumableCopy(s3, bucketName, partBytes, checkpoint, () -> {
+				long now = System.currentTimeMillis();
+				if (now - lastSaveTime.get() >= CHECKPOINT_INTERVAL_MILLIS) {
+					lastSaveTime.set(now);
+					saveCheckpoint.run();
+				}
+			});
+			TaskHeartbeat heartbeat = new TaskHeartbeat(store, metrics, workflowRunId, taskARN, checkpoint, inputBytes,
+					inputObjects, heartbeatSeconds);
+			AtomicBoolean statusWritten = new AtomicBoolean();
+			Thread mainThread = Thread.currentThread();
+			interruption.set(() -> {
+				// the hook also runs when the task returns or fails
+				if (!mainThread.isAlive() || statusWritten.get())
+					return;
+				copy.stop();
+				try {
+					mainThread.join(STOP_WAIT_MILLIS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				if (statusWritten.get())
+					return;
+				heartbeat.close();
+				saveCheckpoint.run();
+				// a task which already has its final status keeps it
+				Map<String, AttributeValue> interrupted = TaskRows.finished("Interrupted",
+						(System.currentTimeMillis() - startTime) / 1000, null, 0);
+				if (WorkflowStore.join(store.updateTask(workflowRunId, taskARN, interrupted,
+						Collections.<String>emptyList(), Collections.singletonList(TaskRows.RUNNING))))
+					System.out.printf("Task %s interrupted. \n", taskARN);
+				metrics.count("TasksInterrupted");
+			});
 
-		// Create objects
-		Region region = Region.regions().stream().filter(r -> r.toString().equalsIgnoreCase(regionPassed)).findFirst()
-				.orElse(Region.US_EAST_1);
-		S3Client s3 = S3Client.builder().region(region).build();
-		DynamoDbClient dynamoDB = DynamoDbClient.builder().region(region).build();
-		DDBUtil ddbUtil = new DDBUtil();
+			// perform the task - actual business logic, object after object for a shard
+			List<String> objectKeys = objectKeysJson == null ? Collections.singletonList(objectKey)
+					: objectKeysOf(objectKeysJson);
+			boolean objectCopied = true;
+			for (String key : objectKeys) {
+				String destination = key.equals(objectKey) ? destinationKey
+						: key.concat("_").concat(UUID.randomUUID().toString());
+				boolean copied = tracing.inSpan("CopyObject", () -> metrics.time("CopyLatency",
+						() -> copy.copy(key, destination, sourceETag)));
+				if (copy.isStopped())
+					break;
+				metrics.count(copied ? "CopySucceeded" : "CopyFailed");
+				objectCopied &= copied;
+			}
+			boolean allCopied = objectCopied;
+			// a resumed task keeps the copy made by an earlier attempt
+			String outputKey = Optional.ofNullable(checkpoint.destinationOf(objectKey)).orElse(destinationKey);
+		
+			// a random sleep interval from 1 to 3 minutes, unless work_seconds is set
+			int waitTime = workSeconds != null ? Integer.parseInt(workSeconds) * 1000
+					: (1 + new Random().nextInt(3)) * 60000;
+			System.out.printf("Task sleeping  for %s seconds \n", waitTime - checkpoint.getWorkedMillis());
+			// by the second, so that the work stops with the task and resumes from the time worked
+			try {
+				while (checkpoint.getWorkedMillis() < waitTime && !copy.isStopped()) {
+					long step = Math.min(1000, waitTime - checkpoint.getWorkedMillis());
+					Thread.sleep(step);
+					checkpoint.setWorkedMillis(checkpoint.getWorkedMillis() + step);
+				}
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+			// the shutdown hook saves the checkpoint and marks the task Interrupted
+			if (copy.isStopped()) {
+				return;
+			}
 
-		// get Task ARN
+			// update job completion status in DynamoDB table
+			heartbeat.close();
+			String updateTime = new Date().toString();
+			String finalStatus = allCopied ? "Completed" : "Failed";
+		
+			long endTime = System.currentTimeMillis();
+			long execTimeinSeconds = (endTime - startTime)/1000;
+			metrics.recordLatency("TaskDuration", endTime - startTime);
+			// the launcher sizes later tasks from the peak memory per input byte
+			Long maxMemoryMiB = taskMetadataEndpoint == null ? null : getMaxMemoryMiB(taskMetadataEndpoint);
+			Map<String, AttributeValue> finished = TaskRows.finished(finalStatus, execTimeinSeconds, inputBytes,
+					inputObjects);
+			if (maxMemoryMiB != null)
+				finished.put("max_memory_mib", TaskRows.number(maxMemoryMiB));
+			tracing.inSpan("UpdateTaskStatus", () -> WorkflowStore.join(store.updateTask(workflowRunId, taskARN,
+					finished, Collections.<String>emptyList(), null)));
+			statusWritten.set(true);
+			// the copy was conditioned on the ETag, so the output matches the cache key
+			if (allCopied && resultCacheKey != null)
+				tracing.inSpan("RecordResult", () -> {
+					new DynamoDbResultCache(dynamoDB, resultCacheTableName, metrics)
+							.put(resultCacheKey, new CachedResult(outputKey, workflowRunId, taskARN, updateTime));
+					return null;
+				});
+		} catch (RuntimeException e) {
+			taskSpan.recordException(e);
+			taskSpan.setStatus(StatusCode.ERROR);
+			throw e;
+		} finally {
+			taskScope.close();
+			taskSpan.end();
+		}
+	}
+
+	/**
+	 * This method builds the S3 client, with path style access when the
+	 * endpoint is overridden
+	 * 
+	 * @param region
+	 * @param endpointUrl
+	 * @return
+	 */
+	public static S3Client buildS3Client(Region region, String endpointUrl) {
+		S3ClientBuilder builder = S3Client.builder().region(region);
+		if (endpointUrl != null)
+			builder.endpointOverride(URI.create(endpointUrl))
+					.serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build());
+		return builder.build();
+	}
+
+	/**
+	 * This method builds the asynchronous DynamoDB client of the Workflow
+	 * Details table and the result cache
+	 * 
+	 * @param region
+	 * @param endpointUrl
+	 * @return
+	 */
+	public static DynamoDbAsyncClient buildDynamoDbAsyncClient(Region region, String endpointUrl) {
+		DynamoDbAsyncClientBuilder builder = DynamoDbAsyncClient.builder().region(region);
+		if (endpointUrl != null)
+			builder.endpointOverride(URI.create(endpointUrl));
+		return builder.build();
+	}
+
+	/**
+	 * This method gets the task metadata from ECS TaskMetadataEndpoint
+	 * 
+	 * @param taskMetadataEndpoint
+	 * @return
+	 */
+	public static String getTaskMetadata(String taskMetadataEndpoint) {
 		String response = "";
 		HttpURLConnection con = getHTTPConnectionForTaskMetadataEndpoint(taskMetadataEndpoint.concat("/task"));
 		System.out.println("HTTP Connection: " + con.getURL().toString());
@@ -70,38 +323,50 @@ public class ECSTask {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
-		String taskARN = getTaskARN(response);
-		System.out.println("Task ARN: " + taskARN);
-
-		// insert job running status in DynamoDB table
-		String status = "Running";
-		String insertTime = new Date().toString();
-		ddbUtil.insertTaskStatus(dynamoDB, tableName, hashKey, rangeKey, workflowRunId, taskARN, taskName, status, insertTime);
+		return response;
+	}
 
-		// perform the task - actual business logic
-		boolean objectCopied = copyFile(s3, bucketName, objectKey, destinationKey);
-		
-		// a random sleep interval from 1 to 3 minutes
-		int waitTime  = (1 + new Random().nextInt(3)) * 60000;
-		System.out.printf("Task sleeping  for %s seconds \n", waitTime);
+	/**
+	 * This method gets the peak memory of the task from the stats of ECS
+	 * TaskMetadataEndpoint
+	 * 
+	 * @param taskMetadataEndpoint
+	 * @return null when the stats are not available
+	 */
+	public static Long getMaxMemoryMiB(String taskMetadataEndpoint) {
+		HttpURLConnection con = getHTTPConnectionForTaskMetadataEndpoint(taskMetadataEndpoint.concat("/task/stats"));
 		try {
-			Thread.sleep(waitTime);
-		} catch (NumberFormatException e) {
-			e.printStackTrace();
-		} catch (InterruptedException e) {
+			return maxMemoryMiBOf(getFullResponse(con));
+		} catch (Exception e) {
 			e.printStackTrace();
+			return null;
 		}
+	}
 
-		// update job completion status in DynamoDB table
-		String updateTime = new Date().toString();
-		if (objectCopied)
-			status = "Completed";
-		else
-			status = "Failed";
-		
-		long endTime = System.currentTimeMillis();
-		long execTimeinSeconds = (endTime - startTime)/1000;
-		ddbUtil.updateTaskStatus(dynamoDB, tableName, hashKey, rangeKey, workflowRunId, taskARN, status, updateTime, execTimeinSeconds);
+	/**
+	 * This method adds up the peak memory of the containers of a task stats
+	 * response, keyed by container id
+	 * 
+	 * @param response
+	 * @return null without memory stats
+	 */
+	public static Long maxMemoryMiBOf(String response) {
+		long maxBytes = 0;
+		boolean found = false;
+		for (Map.Entry<String, JsonElement> container : new JsonParser().parse(response).getAsJsonObject()
+				.entrySet()) {
+			if (!container.getValue().isJsonObject())
+				continue;
+			JsonObject memoryStats = container.getValue().getAsJsonObject().getAsJsonObject("memory_stats");
+			if (memoryStats == null)
+				continue;
+			JsonElement usage = memoryStats.has("max_usage") ? memoryStats.get("max_usage") : memoryStats.get("usage");
+			if (usage == null || usage.isJsonNull())
+				continue;
+			maxBytes += usage.getAsLong();
+			found = true;
+		}
+		return found ? (maxBytes + (1 << 20) - 1) >> 20 : null;
 	}
 
 	/**
@@ -124,6 +389,21 @@ public class ECSTask {
 		return taskARN;
 	}
 
+	/**
+	 * This method reads the keys of the objects of a shard, passed as a JSON
+	 * array
+	 * 
+	 * @param json
+	 * @return
+	 */
+	public static List<String> objectKeysOf(String json) {
+		List<String> objectKeys = new ArrayList<String>();
+		for (JsonElement element : new JsonParser().parse(json).getAsJsonArray()) {
+			objectKeys.add(element.getAsString());
+		}
+		return objectKeys;
+	}
+
 	/**
 	 * This method prints runtime properties sent to the ECS Task
 	 * @param regionPassed
@@ -162,30 +442,21 @@ public class ECSTask {
 	 * @param destinationKey
 	 */
 	public static boolean copyFile(S3Client s3, String bucketName, String objectKey, String destinationKey) {
-		// Build S3 object key
-		String encodedUrl = null;
-		boolean objectCopied = false;
-		try {
-			encodedUrl = URLEncoder.encode(bucketName + "/" + objectKey, StandardCharsets.UTF_8.toString());
-		} catch (UnsupportedEncodingException e) {
-			System.out.println("URL could not be encoded: " + e.getMessage());
-		}
-		// Copy object request
-		CopyObjectRequest copyReq = CopyObjectRequest.builder().copySource(encodedUrl).destinationBucket(bucketName)
-				.destinationKey(destinationKey).build();
-		try {
-			CopyObjectResponse copyRes = s3.copyObject(copyReq);
-			if (copyRes.sdkHttpResponse().isSuccessful()) {
-				System.out.println("Copy operation successful");
-				objectCopied = true;
-			}
-			else
-				System.out.println("Copy operation not successful");
-		} catch (S3Exception e) {
-			System.out.println("Exception thrown while copying S3 object");
-			System.err.println(e.awsErrorDetails().errorMessage());
-		}
-		return objectCopied;
+		return copyFile(s3, bucketName, objectKey, destinationKey, null);
+	}
+
+	/**
+	 * This method creates a copy of the input object if its ETag still matches
+	 * 
+	 * @param s3
+	 * @param bucketName
+	 * @param objectKey
+	 * @param destinationKey
+	 * @param sourceETag     null to copy whatever the object holds
+	 */
+	public static boolean copyFile(S3Client s3, String bucketName, String objectKey, String destinationKey,
+			String sourceETag) {
+		return ObjectCopy.copy(s3, bucketName, objectKey, destinationKey, sourceETag);
 	}
 
 	/**
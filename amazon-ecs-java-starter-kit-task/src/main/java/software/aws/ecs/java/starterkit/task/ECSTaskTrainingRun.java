@@ -0,0 +1,77 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.task;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.Collections;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.store.DynamoDbWorkflowStore;
+import software.aws.ecs.java.starterkit.store.TaskRows;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+import software.aws.ecs.java.starterkit.tracing.Tracing;
+
+/**
+ * Runs the startup path of ECSTask against a {@link LocalStubServer}: task
+ * metadata, the Running status, the S3 copy and the final status. The task
+ * image runs it once at build time to record an AppCDS archive of the classes
+ * it loads, and the startup benchmark runs it to measure the time from JVM
+ * start to the first DynamoDB write.
+ *
+ */
+public class ECSTaskTrainingRun {
+
+	public static void main(String[] args) throws IOException {
+		long timeToFirstWrite = run();
+		System.out.printf("time-to-first-DDB-write-ms: %d \n", timeToFirstWrite);
+	}
+
+	/**
+	 * This method runs the startup path of ECSTask
+	 *
+	 * @return milliseconds from JVM start to the first DynamoDB write
+	 * @throws IOException
+	 */
+	public static long run() throws IOException {
+		try (LocalStubServer stub = new LocalStubServer()) {
+			URI endpoint = URI.create(stub.getEndpoint());
+			StaticCredentialsProvider credentials = StaticCredentialsProvider
+					.create(AwsBasicCredentials.create("training", "training"));
+			Metrics metrics = Metrics.getInstance();
+			metrics.putDimension("Service", "ECSTaskTrainingRun");
+			Tracing tracing = Tracing.getInstance("ECSTask");
+
+			S3Client s3 = S3Client.builder().region(Region.US_EAST_1).endpointOverride(endpoint)
+					.credentialsProvider(credentials)
+					.serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build()).build();
+			DynamoDbAsyncClient dynamoDB = DynamoDbAsyncClient.builder().region(Region.US_EAST_1)
+					.endpointOverride(endpoint).credentialsProvider(credentials).build();
+			WorkflowStore store = new DynamoDbWorkflowStore(dynamoDB, "workflow_details", "workflow_run_id",
+					"ecs_task_id", metrics);
+
+			String response = tracing.inSpan("FetchTaskMetadata",
+					() -> ECSTask.getTaskMetadata(stub.getEndpoint() + LocalStubServer.METADATA_PATH));
+			String taskARN = ECSTask.getTaskARN(response);
+			tracing.inSpan("InsertTaskStatus", () -> WorkflowStore.join(store.putTask(1L, taskARN,
+					TaskRows.started("training", TaskRows.RUNNING, System.currentTimeMillis()))));
+			boolean objectCopied = tracing.inSpan("CopyObject", () -> metrics.time("CopyLatency",
+					() -> ECSTask.copyFile(s3, "training-bucket", "training/input", "training/output")));
+			tracing.inSpan("UpdateTaskStatus", () -> WorkflowStore.join(store.updateTask(1L, taskARN,
+					TaskRows.finished(objectCopied ? "Completed" : "Failed", 0, null, 0),
+					Collections.<String>emptyList(), null)));
+			metrics.flush();
+			s3.close();
+			dynamoDB.close();
+			return stub.getFirstDynamoDbWriteMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+		}
+	}
+}
@@ -0,0 +1,184 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.task;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Scope;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.queue.SqsWorkQueue;
+import software.aws.ecs.java.starterkit.queue.WorkItem;
+import software.aws.ecs.java.starterkit.queue.WorkQueue;
+import software.aws.ecs.java.starterkit.store.DynamoDbWorkflowStore;
+import software.aws.ecs.java.starterkit.store.TaskRows;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+import software.aws.ecs.java.starterkit.tracing.Tracing;
+
+/**
+ * A long running worker of an ECS service. Instead of one ECS task per task
+ * config, it pulls work items from a queue and runs the business logic of
+ * ECSTask for each of them, so short tasks do not pay for task provisioning,
+ * image pull and JVM startup.
+ *
+ * Statuses are written to workflow_details with the work item id as the ECS
+ * task id, in the table named by the work item. A work item is deleted from
+ * the queue only after its final status is written, so the item of a worker
+ * which dies is processed again. A work item which fails is left on the queue
+ * as well, SQS delivers it again after its visibility timeout and moves it to
+ * the dead-letter queue after maxReceiveCount deliveries.
+ *
+ */
+public class ECSTaskWorker {
+
+	private final WorkQueue workQueue;
+	private final S3Client s3;
+	private final Function<WorkItem, WorkflowStore> stores;
+	private final Metrics metrics;
+	private final Tracing tracing;
+	private final int batchSize;
+	private volatile boolean running = true;
+
+	/**
+	 * @param workQueue
+	 * @param s3
+	 * @param stores    the Workflow Details table of each work item
+	 * @param metrics
+	 * @param tracing
+	 * @param batchSize
+	 */
+	public ECSTaskWorker(WorkQueue workQueue, S3Client s3, Function<WorkItem, WorkflowStore> stores,
+			Metrics metrics, Tracing tracing, int batchSize) {
+		this.workQueue = workQueue;
+		this.s3 = s3;
+		this.stores = stores;
+		this.metrics = metrics;
+		this.tracing = tracing;
+		this.batchSize = batchSize;
+	}
+
+	public static void main(String[] args) {
+		String regionPassed = System.getenv("region");
+		String queueUrl = System.getenv("work_queue_url");
+		int batchSize = Integer.parseInt(Optional.ofNullable(System.getenv("worker_batch_size")).orElse("1"));
+		System.out.println("regionPassed: " + regionPassed);
+		System.out.println("workQueueUrl: " + queueUrl);
+		System.out.println("workerBatchSize: " + batchSize);
+
+		Region region = Region.regions().stream().filter(r -> r.toString().equalsIgnoreCase(regionPassed))
+				.findFirst().orElse(Region.US_EAST_1);
+		Metrics metrics = Metrics.getInstance();
+		metrics.putDimension("Service", "ECSTaskWorker");
+		Tracing tracing = Tracing.getInstance("ECSTaskWorker");
+		DynamoDbAsyncClient dynamoDB = DynamoDbAsyncClient.builder().region(region).build();
+		ECSTaskWorker worker = new ECSTaskWorker(
+				new SqsWorkQueue(SqsClient.builder().region(region).build(), queueUrl, metrics),
+				S3Client.builder().region(region).build(),
+				item -> new DynamoDbWorkflowStore(dynamoDB, item.getDdbTableNameWFDetails(),
+						item.getHashKeyWFDetails(), item.getRangeKeyWFDetails(), metrics),
+				metrics, tracing, batchSize);
+
+		// ECS sends SIGTERM when the service scales in, finish the current batch
+		Thread mainThread = Thread.currentThread();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			worker.stop();
+			try {
+				mainThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			metrics.flush();
+			tracing.shutdown();
+		}));
+		worker.run();
+	}
+
+	/**
+	 * This method polls the queue until the worker is stopped
+	 */
+	public void run() {
+		while (running) {
+			pollOnce(20);
+			// write the metrics of each batch, an idle poll writes nothing
+			metrics.flush();
+		}
+	}
+
+	public void stop() {
+		running = false;
+	}
+
+	/**
+	 * This method receives one batch of work items and processes them. A work
+	 * item which fails is not deleted, so that it is delivered again
+	 *
+	 * @param waitSeconds
+	 * @return the number of work items received
+	 */
+	public int pollOnce(int waitSeconds) {
+		List<WorkItem> items = workQueue.receive(batchSize, waitSeconds);
+		for (WorkItem item : items) {
+			try {
+				process(item);
+				workQueue.delete(item);
+			} catch (RuntimeException e) {
+				System.out.printf("Work item %s failed, it will be delivered again: %s \n", item.getItemId(),
+						e);
+				metrics.count("WorkItemsFailed");
+			}
+		}
+		return items.size();
+	}
+
+	/**
+	 * This method runs the business logic of ECSTask for one work item
+	 *
+	 * @param item
+	 * @return true if the object was copied
+	 */
+	public boolean process(WorkItem item) {
+		long startTime = System.currentTimeMillis();
+		Span span = tracing.startSpan("ProcessWorkItem", Tracing.fromTraceParent(item.getTraceParent()),
+				item.getWorkflowRunId());
+		span.setAttribute("task.name", item.getTaskName());
+		try (Scope scope = span.makeCurrent()) {
+			System.out.printf("Processing work item %s of workflow run %d \n", item.getItemId(),
+					item.getWorkflowRunId());
+			WorkflowStore store = stores.apply(item);
+			tracing.inSpan("InsertTaskStatus",
+					() -> WorkflowStore.join(store.putTask(item.getWorkflowRunId(), item.getItemId(),
+							TaskRows.started(item.getTaskName(), TaskRows.RUNNING, startTime))));
+
+			String destinationKey = item.getObjectKey().concat("_").concat(UUID.randomUUID().toString());
+			boolean objectCopied = tracing.inSpan("CopyObject", () -> metrics.time("CopyLatency",
+					() -> ECSTask.copyFile(s3, item.getS3BucketName(), item.getObjectKey(), destinationKey)));
+			metrics.count(objectCopied ? "CopySucceeded" : "CopyFailed");
+
+			String finalStatus = objectCopied ? "Completed" : "Failed";
+			long endTime = System.currentTimeMillis();
+			metrics.recordLatency("WorkItemDuration", endTime - startTime);
+			tracing.inSpan("UpdateTaskStatus",
+					() -> WorkflowStore.join(store.updateTask(item.getWorkflowRunId(), item.getItemId(),
+							TaskRows.finished(finalStatus, (endTime - startTime) / 1000, null, 0),
+							Collections.<String>emptyList(), null)));
+			metrics.count("WorkItemsProcessed");
+			return objectCopied;
+		} catch (RuntimeException e) {
+			span.recordException(e);
+			span.setStatus(StatusCode.ERROR);
+			throw e;
+		} finally {
+			span.end();
+		}
+	}
+}
@@ -0,0 +1,115 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.task;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server which answers the calls made by ECSTask: the ECS task
+ * metadata endpoint, DynamoDB PutItem and UpdateItem, and S3 HeadObject and
+ * CopyObject. It is used for the AppCDS training run of the task image and for
+ * the startup benchmark, so neither needs AWS credentials or network access.
+ *
+ */
+public class LocalStubServer implements AutoCloseable {
+
+	public static final String METADATA_PATH = "/metadata";
+	public static final String TASK_ARN = "arn:aws:ecs:us-east-1:000000000000:task/training/00000000000000000000000000000000";
+
+	private final HttpServer server;
+	private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<String, AtomicInteger>();
+	private volatile long firstDynamoDbWriteMillis = -1;
+
+	public LocalStubServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", this::handle);
+		server.start();
+	}
+
+	public String getEndpoint() {
+		return "http://localhost:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * This method returns the wall clock time of the first DynamoDB write, or -1
+	 *
+	 * @return
+	 */
+	public long getFirstDynamoDbWriteMillis() {
+		return firstDynamoDbWriteMillis;
+	}
+
+	public int getCalls(String operation) {
+		AtomicInteger count = calls.get(operation);
+		return count == null ? 0 : count.get();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		drain(exchange.getRequestBody());
+		String path = exchange.getRequestURI().getPath();
+		String target = exchange.getRequestHeaders().getFirst("X-Amz-Target");
+		if (path.startsWith(METADATA_PATH)) {
+			record("TaskMetadata");
+			respond(exchange, 200, "application/json", "{\"TaskARN\":\"" + TASK_ARN + "\"}");
+		} else if (target != null && target.startsWith("DynamoDB_")) {
+			if (firstDynamoDbWriteMillis < 0)
+				firstDynamoDbWriteMillis = System.currentTimeMillis();
+			record(target.substring(target.indexOf('.') + 1));
+			respond(exchange, 200, "application/x-amz-json-1.0", "{}");
+		} else if ("HEAD".equals(exchange.getRequestMethod())) {
+			record("HeadObject");
+			// an empty object, which is copied with CopyObject
+			exchange.getResponseHeaders().set("ETag", "\"00000000000000000000000000000000\"");
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+		} else if ("PUT".equals(exchange.getRequestMethod())
+				&& exchange.getRequestHeaders().getFirst("x-amz-copy-source") != null) {
+			record("CopyObject");
+			respond(exchange, 200, "application/xml",
+					"<?xml version=\"1.0\" encoding=\"UTF-8\"?><CopyObjectResult>"
+							+ "<LastModified>2021-01-01T00:00:00.000Z</LastModified>"
+							+ "<ETag>\"00000000000000000000000000000000\"</ETag></CopyObjectResult>");
+		} else {
+			record("Unknown");
+			respond(exchange, 404, "text/plain", "Not stubbed: " + exchange.getRequestMethod() + " " + path);
+		}
+	}
+
+	private void record(String operation) {
+		calls.computeIfAbsent(operation, k -> new AtomicInteger()).incrementAndGet();
+	}
+
+	private static void respond(HttpExchange exchange, int status, String contentType, String body)
+			throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private static void drain(InputStream in) throws IOException {
+		byte[] buffer = new byte[4096];
+		while (in.read(buffer) != -1) {
+			// request bodies are not needed
+		}
+	}
+}
@@ -0,0 +1,108 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.task;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.aws.ecs.java.starterkit.logic.CopyCheckpoint;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.store.TaskRows;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+
+/**
+ * Writes the progress of ECS Task on its row every few seconds, the bytes and
+ * objects copied so far with the heartbeat time, from which ECS Task Monitor
+ * derives the throughput and the remaining time of the workflow and spots
+ * stalled tasks. A heartbeat is a single update conditioned on the task
+ * being Running, so that a late one never overwrites the final status; once
+ * the condition fails the heartbeat stops. It leaves update_time_millis, the
+ * sort key of the status index, as it is.
+ *
+ */
+public class TaskHeartbeat implements AutoCloseable {
+
+	public static final long DEFAULT_HEARTBEAT_SECONDS = 30;
+
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * @param store
+	 * @param metrics
+	 * @param workflowId
+	 * @param ecsTaskId
+	 * @param checkpoint       the progress of the task
+	 * @param inputBytes       null when the size of the inputs is unknown
+	 * @param inputObjects
+	 * @param heartbeatSeconds 0 or less to send no heartbeat
+	 */
+	public TaskHeartbeat(WorkflowStore store, Metrics metrics, long workflowId, String ecsTaskId,
+			CopyCheckpoint checkpoint, Long inputBytes, int inputObjects, long heartbeatSeconds) {
+		if (heartbeatSeconds <= 0) {
+			scheduler = null;
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "task-heartbeat");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				if (!WorkflowStore.join(store.updateTask(workflowId, ecsTaskId,
+						progress(checkpoint, inputBytes, inputObjects), Collections.<String>emptyList(),
+						Collections.singletonList(TaskRows.RUNNING))))
+					scheduler.shutdown();
+				else
+					metrics.count("HeartbeatsSent");
+			} catch (RuntimeException e) {
+				// a scheduled run which throws cancels the later ones, the next heartbeat tries again
+				System.err.println("Heartbeat not written: " + e);
+				metrics.count("HeartbeatsFailed");
+			}
+		}, 0, heartbeatSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * This method returns the attributes of a heartbeat: the progress of the
+	 * task, with the heartbeat time and the total the monitor derives the
+	 * remaining time from
+	 *
+	 * @param checkpoint
+	 * @param inputBytes   null when the size of the inputs is unknown
+	 * @param inputObjects
+	 * @return
+	 */
+	static Map<String, AttributeValue> progress(CopyCheckpoint checkpoint, Long inputBytes, int inputObjects) {
+		Map<String, AttributeValue> attributes = new HashMap<String, AttributeValue>();
+		attributes.put("progress_bytes", TaskRows.number(checkpoint.getCopiedBytes()));
+		attributes.put("progress_objects", TaskRows.number(checkpoint.getCopiedObjects()));
+		attributes.put("heartbeat_time_millis", TaskRows.number(System.currentTimeMillis()));
+		if (inputBytes != null) {
+			attributes.put("input_bytes", TaskRows.number(inputBytes));
+			attributes.put("input_objects", TaskRows.number(inputObjects));
+		}
+		return attributes;
+	}
+
+	/**
+	 * This method stops the heartbeat, letting the one in flight complete
+	 */
+	@Override
+	public void close() {
+		if (scheduler == null)
+			return;
+		scheduler.shutdown();
+		try {
+			scheduler.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,35 @@
+#!/bin/bash
+# Builds the ECS Task image and reports its size and the time from JVM start
+# to the first DynamoDB write, with and without the AppCDS archive. Each run
+# starts a container of ECSTaskTrainingRun, which talks to local stubs, so no
+# AWS account is needed.
+#
+# Usage: startup-benchmark.sh [image name] [number of runs]
+# Run from amazon-ecs-java-starter-kit-task after mvn package.
+set -e
+export IMAGE_NAME=${1:-amazon-ecs-java-starter-kit-task:benchmark}
+export RUNS=${2:-5}
+export TRAINING_RUN_CLASS=software.aws.ecs.java.starterkit.task.ECSTaskTrainingRun
+
+docker build -t $IMAGE_NAME .
+IMAGE_SIZE=$(docker image inspect --format '{{.Size}}' $IMAGE_NAME)
+echo "Image size: $((IMAGE_SIZE / 1024 / 1024)) MiB"
+
+run_benchmark() {
+    local label=$1
+    local java_opts=$2
+    local total_ms=0
+    local total_wall_ms=0
+    for i in $(seq $RUNS); do
+        local start=$(date +%s%N)
+        local ms=$(docker run --rm -e program_main_class=$TRAINING_RUN_CLASS -e JAVA_OPTS="$java_opts" $IMAGE_NAME 2>&1 \
+            | grep "time-to-first-DDB-write-ms" | awk '{print $2}')
+        local end=$(date +%s%N)
+        total_ms=$((total_ms + ms))
+        total_wall_ms=$((total_wall_ms + (end - start) / 1000000))
+    done
+    echo "$label: time-to-first-DDB-write $((total_ms / RUNS)) ms, container run $((total_wall_ms / RUNS)) ms (average of $RUNS runs)"
+}
+
+run_benchmark "AppCDS" "-XX:SharedArchiveFile=/java-app/app-cds.jsa"
+run_benchmark "No CDS" "-Xshare:off"
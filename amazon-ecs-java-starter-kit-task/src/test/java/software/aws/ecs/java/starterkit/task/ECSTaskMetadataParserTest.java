@@ -1,5 +1,8 @@
 package software.aws.ecs.java.starterkit.task;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -35,6 +38,15 @@ class ECSTaskMetadataParserTest {
 	    }
 	}
 
+	@Test
+	void addsUpThePeakMemoryOfTheContainers() {
+		String stats = "{\"a1\": {\"memory_stats\": {\"max_usage\": 3145728, \"usage\": 1048576}},"
+				+ " \"b2\": {\"memory_stats\": {\"usage\": 1048577}}, \"c3\": null}";
+
+		assertEquals(Long.valueOf(5), ECSTask.maxMemoryMiBOf(stats));
+		assertNull(ECSTask.maxMemoryMiBOf("{\"c3\": null}"));
+	}
+
 	
 	 
      
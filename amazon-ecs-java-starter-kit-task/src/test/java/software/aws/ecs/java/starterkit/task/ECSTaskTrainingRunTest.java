@@ -0,0 +1,26 @@
+package software.aws.ecs.java.starterkit.task;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+class ECSTaskTrainingRunTest {
+
+	@Test
+	void trainingRunReachesDynamoDb() throws IOException {
+		assertTrue(ECSTaskTrainingRun.run() > 0);
+	}
+
+	@Test
+	void stubAnswersTaskMetadata() throws IOException {
+		try (LocalStubServer stub = new LocalStubServer()) {
+			String response = ECSTask.getTaskMetadata(stub.getEndpoint() + LocalStubServer.METADATA_PATH);
+			assertEquals(LocalStubServer.TASK_ARN, ECSTask.getTaskARN(response));
+			assertEquals(1, stub.getCalls("TaskMetadata"));
+			assertEquals(-1, stub.getFirstDynamoDbWriteMillis());
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package software.aws.ecs.java.starterkit.task;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.queue.InMemoryWorkQueue;
+import software.aws.ecs.java.starterkit.queue.WorkItem;
+import software.aws.ecs.java.starterkit.store.InMemoryWorkflowStore;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+import software.aws.ecs.java.starterkit.tracing.Tracing;
+
+class ECSTaskWorkerTest {
+
+	@Test
+	void processesWorkItemsAndWritesStatuses() {
+		InMemoryWorkQueue queue = new InMemoryWorkQueue();
+		queue.send(Arrays.asList(item(0), item(1), item(2)));
+		InMemoryWorkflowStore store = new InMemoryWorkflowStore("workflow_run_id", "ecs_task_id");
+		ECSTaskWorker worker = newWorker(queue, store, 2);
+
+		assertEquals(2, worker.pollOnce(0));
+		assertEquals(1, worker.pollOnce(0));
+		assertEquals(0, worker.pollOnce(0));
+
+		assertEquals(0, queue.approximateDepth());
+		assertEquals(0, queue.inFlightCount());
+		assertEquals(3, WorkflowStore.join(store.getTasks(7, null)).size());
+		assertEquals("Completed", statusOf(store, WorkItem.itemId(7, 1)));
+	}
+
+	@Test
+	void unfinishedWorkItemIsDeliveredAgain() {
+		InMemoryWorkQueue queue = new InMemoryWorkQueue();
+		queue.send(Arrays.asList(item(0)));
+		List<WorkItem> received = queue.receive(1, 0);
+		assertEquals(1, received.size());
+		assertEquals(0, queue.approximateDepth());
+
+		// the worker holding the item died before deleting it
+		assertEquals(1, queue.releaseInFlight());
+		InMemoryWorkflowStore store = new InMemoryWorkflowStore("workflow_run_id", "ecs_task_id");
+		assertEquals(1, newWorker(queue, store, 1).pollOnce(0));
+		assertEquals("Completed", statusOf(store, WorkItem.itemId(7, 0)));
+	}
+
+	@Test
+	void failedWorkItemIsLeftForRedeliveryAndTheWorkerGoesOn() {
+		InMemoryWorkQueue queue = new InMemoryWorkQueue();
+		queue.send(Arrays.asList(item(0), item(1), item(2)));
+		InMemoryWorkflowStore store = new InMemoryWorkflowStore("workflow_run_id", "ecs_task_id");
+		List<String> documents = new ArrayList<String>();
+		Metrics metrics = new Metrics("Test", documents::add);
+		// the table of the second item cannot be reached
+		ECSTaskWorker worker = new ECSTaskWorker(queue, new FakeS3(), item -> {
+			if (item.getItemId().equals(WorkItem.itemId(7, 1)))
+				throw new IllegalStateException("table unavailable");
+			return store;
+		}, metrics, Tracing.getInstance("ECSTaskWorkerTest"), 3);
+
+		assertEquals(3, worker.pollOnce(0));
+
+		assertEquals(1, queue.inFlightCount());
+		assertEquals(2, WorkflowStore.join(store.getTasks(7, null)).size());
+		assertEquals("Completed", statusOf(store, WorkItem.itemId(7, 2)));
+		metrics.flush();
+		assertTrue(documents.get(0).contains("\"WorkItemsFailed\":1"));
+	}
+
+	private static ECSTaskWorker newWorker(InMemoryWorkQueue queue, InMemoryWorkflowStore store, int batchSize) {
+		Metrics metrics = new Metrics("Test", document -> {
+		});
+		return new ECSTaskWorker(queue, new FakeS3(), item -> store, metrics, Tracing.getInstance("ECSTaskWorkerTest"),
+				batchSize);
+	}
+
+	private static String statusOf(InMemoryWorkflowStore store, String ecsTaskId) {
+		return WorkflowStore.join(store.getTask(7, ecsTaskId)).get("status").s();
+	}
+
+	private static WorkItem item(int index) {
+		WorkItem item = new WorkItem();
+		item.setItemId(WorkItem.itemId(7, index));
+		item.setWorkflowName("wf");
+		item.setWorkflowRunId(7);
+		item.setTaskName("task-" + index);
+		item.setS3BucketName("bucket");
+		item.setObjectKey("key-" + index);
+		item.setDdbTableNameWFDetails("workflow_details");
+		item.setHashKeyWFDetails("workflow_run_id");
+		item.setRangeKeyWFDetails("ecs_task_id");
+		return item;
+	}
+
+	/**
+	 * In-memory stand-in for the S3 copy done by the task
+	 */
+	private static class FakeS3 implements S3Client {
+		@Override
+		public CopyObjectResponse copyObject(CopyObjectRequest copyObjectRequest) {
+			return (CopyObjectResponse) CopyObjectResponse.builder()
+					.sdkHttpResponse(SdkHttpResponse.builder().statusCode(200).build()).build();
+		}
+
+		@Override
+		public String serviceName() {
+			return "s3";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package software.aws.ecs.java.starterkit.task;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Runs the native binary of ECSTask against local stubs. The native profile
+ * sets native.image.path, see pom.xml.
+ */
+@EnabledIfSystemProperty(named = "native.image.path", matches = ".+")
+class NativeImageSmokeIT {
+
+	@Test
+	void nativeTaskCopiesObjectAndWritesStatuses() throws IOException, InterruptedException {
+		try (LocalStubServer stub = new LocalStubServer()) {
+			ProcessBuilder builder = new ProcessBuilder(System.getProperty("native.image.path"));
+			Map<String, String> environment = builder.environment();
+			environment.put("region", "us-east-1");
+			environment.put("workflow_details_ddb_table_name", "workflow_details");
+			environment.put("workflow_details_hash_key", "workflow_run_id");
+			environment.put("workflow_details_range_key", "ecs_task_id");
+			environment.put("workflow_name", "native_smoke_test");
+			environment.put("workflow_run_id", "1");
+			environment.put("task_name", "smoke");
+			environment.put("s3_bucket_name", "smoke-bucket");
+			environment.put("object_key", "smoke/input");
+			environment.put("ECS_CONTAINER_METADATA_URI", stub.getEndpoint() + LocalStubServer.METADATA_PATH);
+			environment.put("aws_endpoint_url", stub.getEndpoint());
+			environment.put("work_seconds", "0");
+			environment.put("heartbeat_seconds", "0");
+			environment.put("AWS_ACCESS_KEY_ID", "smoke");
+			environment.put("AWS_SECRET_ACCESS_KEY", "smoke");
+			environment.remove("work_queue_url");
+			Process process = builder.redirectErrorStream(true).redirectOutput(Redirect.INHERIT).start();
+
+			assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+			assertEquals(0, process.exitValue());
+			assertEquals(1, stub.getCalls("TaskMetadata"));
+			assertEquals(1, stub.getCalls("PutItem"));
+			assertEquals(1, stub.getCalls("HeadObject"));
+			assertEquals(1, stub.getCalls("CopyObject"));
+			assertEquals(1, stub.getCalls("UpdateItem"));
+		}
+	}
+}
@@ -0,0 +1,186 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.executor;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.ecs.model.TaskOverride;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.aws.ecs.java.starterkit.cache.CachedResult;
+import software.aws.ecs.java.starterkit.cache.DynamoDbResultCache;
+import software.aws.ecs.java.starterkit.logic.ObjectCopy;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.store.TaskRows;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+import software.aws.ecs.java.starterkit.util.TaskConfig;
+
+/**
+ * Runs the business logic of ECS Task in a thread pool of the launcher, for
+ * tasks which finish in less time than an ECS task takes to start. The task
+ * reads the environment it would get as an ECS task and writes the same rows
+ * in workflow_details, under the id inprocess/launch token. The invocation
+ * waits for its tasks before it returns, as Lambda freezes the threads of a
+ * finished invocation; a task still running when the invocation runs out of
+ * time is written Failed.
+ *
+ */
+public class InProcessExecutor implements TaskExecutor {
+
+	// range key prefix of the workflow_details rows of tasks run by the launcher
+	public static final String IN_PROCESS_TASK_PREFIX = "inprocess/";
+	// time kept back after the tasks to write the rows of unfinished ones and return
+	static final long DRAIN_RESERVE_MILLIS = 5000;
+
+	private final S3Client s3;
+	private final DynamoDbClient dynamoDB;
+	private final WorkflowStore store;
+	private final ExecutorService pool;
+	private final LongSupplier remainingTimeMillis;
+	private final Metrics metrics;
+	// environment and start time of the tasks in the pool, by ecs task id
+	private final Map<String, Map<String, String>> running = new ConcurrentHashMap<String, Map<String, String>>();
+	private final Map<String, Long> startTimes = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * @param s3
+	 * @param dynamoDB            the client of the result cache
+	 * @param store               the rows of the workflow run
+	 * @param threads             number of tasks run at the same time
+	 * @param remainingTimeMillis time left in the Lambda invocation
+	 * @param metrics
+	 */
+	public InProcessExecutor(S3Client s3, DynamoDbClient dynamoDB, WorkflowStore store, int threads,
+			LongSupplier remainingTimeMillis, Metrics metrics) {
+		this.s3 = s3;
+		this.dynamoDB = dynamoDB;
+		this.store = store;
+		this.pool = Executors.newFixedThreadPool(Math.max(1, threads));
+		this.remainingTimeMillis = remainingTimeMillis;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public boolean isFargate(TaskConfig taskConfig) {
+		return false;
+	}
+
+	@Override
+	public String execute(TaskConfig taskConfig, TaskOverride taskOverride, String launchToken) {
+		Map<String, String> environment = environmentOf(taskOverride);
+		String ecsTaskId = IN_PROCESS_TASK_PREFIX + launchToken;
+		long startTime = System.currentTimeMillis();
+		// the row exists before the launcher returns, as the row of an ECS task before it stops
+		putStatus(environment, ecsTaskId, "Running", startTime, null);
+		running.put(ecsTaskId, environment);
+		startTimes.put(ecsTaskId, startTime);
+		pool.execute(() -> {
+			try {
+				run(environment, ecsTaskId, startTime);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				putStatus(environment, ecsTaskId, "Failed", startTime,
+						(System.currentTimeMillis() - startTime) / 1000);
+			} finally {
+				running.remove(ecsTaskId);
+				startTimes.remove(ecsTaskId);
+			}
+		});
+		metrics.count("InProcessTasksStarted");
+		return ecsTaskId;
+	}
+
+	private void run(Map<String, String> environment, String ecsTaskId, long startTime) {
+		String bucketName = environment.get("s3_bucket_name");
+		String objectKey = environment.get("object_key");
+		String destinationKey = objectKey.concat("_").concat(UUID.randomUUID().toString());
+		String objectKeysJson = environment.get("object_keys");
+		List<String> objectKeys = objectKeysJson == null ? Collections.singletonList(objectKey)
+				: new Gson().fromJson(objectKeysJson, new TypeToken<List<String>>() {
+				}.getType());
+		boolean allCopied = true;
+		for (String key : objectKeys) {
+			if (Thread.currentThread().isInterrupted())
+				return;
+			String destination = key.equals(objectKey) ? destinationKey
+					: key.concat("_").concat(UUID.randomUUID().toString());
+			boolean copied = metrics.time("CopyLatency",
+					() -> ObjectCopy.copy(s3, bucketName, key, destination, environment.get("source_etag")));
+			metrics.count(copied ? "CopySucceeded" : "CopyFailed");
+			allCopied &= copied;
+		}
+		putStatus(environment, ecsTaskId, allCopied ? "Completed" : "Failed", startTime,
+				(System.currentTimeMillis() - startTime) / 1000);
+		metrics.recordLatency("InProcessTaskDuration", System.currentTimeMillis() - startTime);
+		// the copy was conditioned on the ETag, so the output matches the cache key
+		if (allCopied && environment.get("result_cache_key") != null)
+			new DynamoDbResultCache(dynamoDB, environment.get("result_cache_table_name"), metrics).put(
+					environment.get("result_cache_key"), new CachedResult(destinationKey,
+							Long.parseLong(environment.get("workflow_run_id")), ecsTaskId, new Date().toString()));
+	}
+
+	@Override
+	public void close() {
+		pool.shutdown();
+		try {
+			long waitMillis = Math.max(0, remainingTimeMillis.getAsLong() - DRAIN_RESERVE_MILLIS);
+			if (pool.awaitTermination(waitMillis, TimeUnit.MILLISECONDS))
+				return;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		pool.shutdownNow();
+		// the monitor would otherwise wait for them forever
+		for (Map.Entry<String, Map<String, String>> task : running.entrySet()) {
+			System.out.printf("In-process task %s did not finish in time \n", task.getKey());
+			long startTime = startTimes.getOrDefault(task.getKey(), System.currentTimeMillis());
+			putStatus(task.getValue(), task.getKey(), "Failed", startTime,
+					(System.currentTimeMillis() - startTime) / 1000);
+			metrics.count("InProcessTasksTimedOut");
+		}
+	}
+
+	private void putStatus(Map<String, String> environment, String ecsTaskId, String status, long startTime,
+			Long execTimeInSeconds) {
+		Long inputBytes = Optional.ofNullable(environment.get("input_bytes")).map(Long::valueOf).orElse(null);
+		int inputObjects = Integer.parseInt(Optional.ofNullable(environment.get("input_objects")).orElse("1"));
+		// the attributes ECS Task writes for an ECS task, first Running and then with its final status
+		Map<String, AttributeValue> row = TaskRows.started(environment.get("task_name"), status, startTime);
+		if (execTimeInSeconds != null) {
+			row.putAll(TaskRows.finished(status, execTimeInSeconds, inputBytes, inputObjects));
+		} else if (inputBytes != null) {
+			row.put("input_bytes", TaskRows.number(inputBytes));
+			row.put("input_objects", TaskRows.number(inputObjects));
+		}
+		WorkflowStore.join(store.putTask(Long.parseLong(environment.get("workflow_run_id")), ecsTaskId, row));
+	}
+
+	/**
+	 * This method reads the environment of the container of a task
+	 *
+	 * @param taskOverride
+	 * @return
+	 */
+	public static Map<String, String> environmentOf(TaskOverride taskOverride) {
+		Map<String, String> environment = new HashMap<String, String>();
+		taskOverride.containerOverrides().forEach(containerOverride -> containerOverride.environment()
+				.forEach(variable -> environment.put(variable.name(), variable.value())));
+		return environment;
+	}
+}
@@ -0,0 +1,44 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.executor;
+
+import software.amazon.awssdk.services.ecs.model.TaskOverride;
+import software.aws.ecs.java.starterkit.util.TaskConfig;
+
+/**
+ * Runs the task of a task config. Wherever it runs, the task writes its
+ * statuses in workflow_details under the returned id, so ECS Task Monitor
+ * follows every executor the same way.
+ *
+ */
+public interface TaskExecutor extends AutoCloseable {
+
+	/**
+	 * This method tells whether the task of a task config runs on Fargate,
+	 * which only runs the sizes of its task size table
+	 * 
+	 * @param taskConfig
+	 * @return
+	 */
+	boolean isFargate(TaskConfig taskConfig);
+
+	/**
+	 * This method starts the task of a task config
+	 * 
+	 * @param taskConfig
+	 * @param taskOverride overrides of the task, the environment of its container
+	 *                     is the one ECS Task reads
+	 * @param launchToken  the same for every attempt to launch the task
+	 * @return the ecs_task_id of the task in workflow_details
+	 */
+	String execute(TaskConfig taskConfig, TaskOverride taskOverride, String launchToken);
+
+	/**
+	 * This method waits for the tasks the executor runs itself, before the
+	 * invocation of the launcher returns
+	 */
+	@Override
+	default void close() {
+	}
+}
@@ -0,0 +1,70 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.executor;
+
+import software.aws.ecs.java.starterkit.sizing.TaskSize;
+import software.aws.ecs.java.starterkit.util.ExecutorConfig;
+import software.aws.ecs.java.starterkit.util.TaskConfig;
+
+/**
+ * Chooses the executor of each task by its size: the in-process executor for
+ * tasks with little input, which would spend more time being provisioned than
+ * running, the EC2 executor for tasks sized with a lot of memory, and the ECS
+ * executor of the workflow for the others.
+ *
+ */
+public class TaskExecutors implements AutoCloseable {
+
+	private final ExecutorConfig config;
+	private final TaskExecutor ecs;
+	private final TaskExecutor ec2;
+	private final TaskExecutor inProcess;
+
+	/**
+	 * @param config    null to run every task with the ECS executor
+	 * @param ecs       runs the tasks as configured by the workflow
+	 * @param ec2       null unless tasks move to EC2
+	 * @param inProcess null unless tasks run in the launcher
+	 */
+	public TaskExecutors(ExecutorConfig config, TaskExecutor ecs, TaskExecutor ec2, TaskExecutor inProcess) {
+		this.config = config;
+		this.ecs = ecs;
+		this.ec2 = ec2;
+		this.inProcess = inProcess;
+	}
+
+	/**
+	 * This method tells whether the executor depends on the size of the input
+	 * of a task
+	 */
+	public boolean routesByInputSize() {
+		return inProcess != null;
+	}
+
+	/**
+	 * This method chooses the executor of a task
+	 * 
+	 * @param taskConfig
+	 * @param inputBytes null when the size of the input is unknown
+	 * @param size       requested size of the task, null for the size of the task
+	 *                   definition
+	 * @return
+	 */
+	public TaskExecutor select(TaskConfig taskConfig, Long inputBytes, TaskSize size) {
+		if (inProcess != null && inputBytes != null && inputBytes <= config.getInProcessMaxInputBytes())
+			return inProcess;
+		// a task with its own capacity providers stays on them
+		boolean ownStrategy = taskConfig.getCapacityProviderStrategy() != null
+				&& !taskConfig.getCapacityProviderStrategy().isEmpty();
+		if (ec2 != null && !ownStrategy && size != null && size.getMemory() >= config.getEc2MinMemoryMiB())
+			return ec2;
+		return ecs;
+	}
+
+	@Override
+	public void close() {
+		if (inProcess != null)
+			inProcess.close();
+	}
+}
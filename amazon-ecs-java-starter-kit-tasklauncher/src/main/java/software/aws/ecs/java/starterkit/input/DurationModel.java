@@ -0,0 +1,100 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.input;
+
+import java.util.List;
+import java.util.Map;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Estimated execution time of a task: a fixed time per object plus the bytes
+ * of its objects at a throughput. Both are fitted to the exec_time_in_seconds
+ * of earlier tasks which recorded the number and the size of their objects.
+ *
+ */
+public class DurationModel {
+
+	// written by ECS Task next to exec_time_in_seconds
+	public static final String INPUT_OBJECTS = "input_objects";
+	public static final String INPUT_BYTES = "input_bytes";
+
+	private final double secondsPerObject;
+	private final double bytesPerSecond;
+
+	public DurationModel(double secondsPerObject, double bytesPerSecond) {
+		this.secondsPerObject = secondsPerObject;
+		this.bytesPerSecond = bytesPerSecond;
+	}
+
+	public double getSecondsPerObject() {
+		return secondsPerObject;
+	}
+
+	public double getBytesPerSecond() {
+		return bytesPerSecond;
+	}
+
+	/**
+	 * This method estimates the execution time of a task
+	 *
+	 * @param objects
+	 * @param bytes
+	 * @return seconds
+	 */
+	public double estimate(int objects, long bytes) {
+		return objects * secondsPerObject + bytes / bytesPerSecond;
+	}
+
+	/**
+	 * This method fits the model to completed tasks by least squares, without
+	 * intercept. When the sizes do not vary apart from the number of objects,
+	 * only the throughput is fitted, and without any sample the defaults are
+	 * returned.
+	 *
+	 * @param tasks    items of the Workflow Details table
+	 * @param defaults
+	 * @return
+	 */
+	public static DurationModel fit(List<Map<String, AttributeValue>> tasks, DurationModel defaults) {
+		double nn = 0, nb = 0, bb = 0, tn = 0, tb = 0;
+		double sumSeconds = 0, sumObjects = 0, sumBytes = 0;
+		for (Map<String, AttributeValue> task : tasks) {
+			AttributeValue status = task.get("status");
+			AttributeValue seconds = task.get("exec_time_in_seconds");
+			AttributeValue bytes = task.get(INPUT_BYTES);
+			if (status == null || !"Completed".equalsIgnoreCase(status.s()) || seconds == null || bytes == null)
+				continue;
+			double t = Double.parseDouble(seconds.n());
+			double b = Double.parseDouble(bytes.n());
+			double n = task.containsKey(INPUT_OBJECTS) ? Double.parseDouble(task.get(INPUT_OBJECTS).n()) : 1;
+			nn += n * n;
+			nb += n * b;
+			bb += b * b;
+			tn += t * n;
+			tb += t * b;
+			sumSeconds += t;
+			sumObjects += n;
+			sumBytes += b;
+		}
+		if (sumObjects == 0)
+			return defaults;
+		double determinant = nn * bb - nb * nb;
+		if (determinant > 1e-9 * nn * bb) {
+			double perObject = (tn * bb - tb * nb) / determinant;
+			double perByte = (tb * nn - tn * nb) / determinant;
+			if (perObject >= 0 && perByte > 0)
+				return new DurationModel(perObject, 1 / perByte);
+		}
+		double perByte = (sumSeconds - defaults.secondsPerObject * sumObjects) / sumBytes;
+		if (sumBytes > 0 && perByte > 0)
+			return new DurationModel(defaults.secondsPerObject, 1 / perByte);
+		return new DurationModel(sumSeconds / sumObjects, defaults.bytesPerSecond);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%.2f seconds per object, %.0f bytes per second", secondsPerObject, bytesPerSecond);
+	}
+}
@@ -0,0 +1,154 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.input;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.util.InputConfig;
+import software.aws.ecs.java.starterkit.util.TaskConfig;
+
+/**
+ * Tasks of the discovered inputs of a workflow run, one per object, or one
+ * per shard when the run has a shard planner. The objects are planned a window
+ * at a time, and a missing size is read with HeadObject. After a task is
+ * returned, the cursor points after its last object.
+ *
+ */
+public class InputTasks implements Iterator<TaskConfig>, AutoCloseable {
+
+	private final ObjectStream objects;
+	private final InputConfig input;
+	private final ShardPlanner planner;
+	private final S3Client s3;
+	private final Metrics metrics;
+	private final Deque<List<S3Object>> planned = new ArrayDeque<List<S3Object>>();
+	private int cursorOffset;
+	private String cursorKey;
+
+	/**
+	 * @param objects
+	 * @param input
+	 * @param planner      null to launch one task per object
+	 * @param s3
+	 * @param cursorOffset number of objects launched before the stream
+	 * @param metrics
+	 */
+	public InputTasks(ObjectStream objects, InputConfig input, ShardPlanner planner, S3Client s3, int cursorOffset,
+			Metrics metrics) {
+		this.objects = objects;
+		this.input = input;
+		this.planner = planner;
+		this.s3 = s3;
+		this.cursorOffset = cursorOffset;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (!planned.isEmpty())
+			return true;
+		if (!objects.hasNext())
+			return false;
+		if (planner == null) {
+			planned.add(Collections.singletonList(objects.next()));
+			return true;
+		}
+		List<S3Object> window = new ArrayList<S3Object>();
+		while (window.size() < Math.max(1, input.getSharding().getPlanningWindow()) && objects.hasNext()) {
+			window.add(withSize(objects.next()));
+		}
+		planned.addAll(planner.plan(window));
+		return true;
+	}
+
+	@Override
+	public TaskConfig next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		List<S3Object> shard = planned.removeFirst();
+		int firstOffset = cursorOffset;
+		cursorOffset += shard.size();
+		cursorKey = shard.get(shard.size() - 1).key();
+		if (planner == null)
+			return inputTask(input, shard.get(0));
+		metrics.count("ShardObjects", shard.size());
+		return shardTask(input, firstOffset, shard);
+	}
+
+	/**
+	 * Key of the last object of the last returned task
+	 */
+	public String cursorKey() {
+		return cursorKey;
+	}
+
+	/**
+	 * Number of objects up to the last returned task
+	 */
+	public int cursorOffset() {
+		return cursorOffset;
+	}
+
+	@Override
+	public void close() {
+		objects.close();
+	}
+
+	private S3Object withSize(S3Object object) {
+		if (object.size() != null)
+			return object;
+		HeadObjectRequest request = HeadObjectRequest.builder().bucket(input.getS3BucketName()).key(object.key())
+				.build();
+		return object.toBuilder()
+				.size(metrics.time("S3HeadObjectLatency", () -> s3.headObject(request)).contentLength()).build();
+	}
+
+	/**
+	 * This method builds the task config of a discovered input, named after its
+	 * key
+	 *
+	 * @param input
+	 * @param object
+	 * @return
+	 */
+	public static TaskConfig inputTask(InputConfig input, S3Object object) {
+		TaskConfig taskConfig = new TaskConfig();
+		taskConfig.setTaskName(object.key());
+		taskConfig.setS3BucketName(input.getS3BucketName());
+		taskConfig.setObjectKey(object.key());
+		taskConfig.setInputBytes(object.size());
+		return taskConfig;
+	}
+
+	/**
+	 * This method builds the task config of a shard, named after the position
+	 * of its first object in the input
+	 *
+	 * @param input
+	 * @param firstOffset
+	 * @param shard
+	 * @return
+	 */
+	public static TaskConfig shardTask(InputConfig input, int firstOffset, List<S3Object> shard) {
+		TaskConfig taskConfig = new TaskConfig();
+		taskConfig.setTaskName("shard-" + firstOffset);
+		taskConfig.setS3BucketName(input.getS3BucketName());
+		taskConfig.setObjectKey(shard.get(0).key());
+		if (shard.size() > 1)
+			taskConfig.setObjectKeys(shard.stream().map(S3Object::key).collect(Collectors.toList()));
+		taskConfig.setInputBytes(shard.stream().mapToLong(ShardPlanner::sizeOf).sum());
+		return taskConfig;
+	}
+}
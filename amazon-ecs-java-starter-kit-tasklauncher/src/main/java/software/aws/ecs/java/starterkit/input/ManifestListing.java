@@ -0,0 +1,101 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.input;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+
+/**
+ * Objects listed in a manifest object, read line by line as they are
+ * consumed. A line is a key, or bucket,key with a URL encoded key as in S3
+ * Batch Operations manifests. Blank lines are left out. The manifest has no
+ * sizes, so the objects have none either.
+ *
+ */
+public class ManifestListing implements ObjectStream {
+
+	private final String bucketName;
+	private final String manifestKey;
+	private final BufferedReader reader;
+	private String nextKey;
+
+	/**
+	 * @param s3
+	 * @param bucketName
+	 * @param manifestKey
+	 * @param skip        number of keys to skip, the objects already launched by
+	 *                    a resumed workflow run
+	 * @param metrics
+	 */
+	public ManifestListing(S3Client s3, String bucketName, String manifestKey, int skip, Metrics metrics) {
+		this.bucketName = bucketName;
+		this.manifestKey = manifestKey;
+		GetObjectRequest request = GetObjectRequest.builder().bucket(bucketName).key(manifestKey).build();
+		this.reader = new BufferedReader(new InputStreamReader(
+				metrics.time("S3GetObjectLatency", () -> s3.getObject(request)), StandardCharsets.UTF_8));
+		for (int i = 0; i < skip && hasNext(); i++) {
+			next();
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		try {
+			while (nextKey == null) {
+				String line = reader.readLine();
+				if (line == null)
+					return false;
+				if (!line.trim().isEmpty())
+					nextKey = keyOf(line.trim());
+			}
+			return true;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public S3Object next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		String key = nextKey;
+		nextKey = null;
+		return S3Object.builder().key(key).build();
+	}
+
+	@Override
+	public void close() {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private String keyOf(String line) throws UnsupportedEncodingException {
+		int comma = line.indexOf(',');
+		if (comma < 0)
+			return line;
+		String bucket = line.substring(0, comma);
+		if (!bucket.equals(bucketName))
+			throw new IllegalArgumentException(String.format("Manifest %s lists an object of bucket %s instead of %s",
+					manifestKey, bucket, bucketName));
+		// S3 Batch Operations manifests may carry a version id as third column
+		String key = line.substring(comma + 1);
+		int versionComma = key.indexOf(',');
+		return URLDecoder.decode(versionComma < 0 ? key : key.substring(0, versionComma),
+				StandardCharsets.UTF_8.name());
+	}
+}
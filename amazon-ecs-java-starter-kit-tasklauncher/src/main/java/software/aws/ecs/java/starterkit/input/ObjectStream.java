@@ -0,0 +1,21 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.input;
+
+import java.util.Iterator;
+
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Input objects, in the same order every time the stream is opened, so the
+ * launch cursor of a workflow run points to the same task after a retry. The
+ * objects are read as they are consumed, never all at once. An object has a
+ * key, and a size when the listing returns it.
+ *
+ */
+public interface ObjectStream extends Iterator<S3Object>, AutoCloseable {
+
+	@Override
+	void close();
+}
@@ -0,0 +1,235 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.input;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+
+/**
+ * Objects below a prefix, listed with ListObjectsV2 by several
+ * threads. The keys below the prefix are split by the delimiter into
+ * partitions, for e.g. date=2021-06-01/ and date=2021-06-02/. The partitions
+ * are listed concurrently, each one page after page, while the keys are
+ * returned in key order: partition after partition, with the keys directly
+ * below the prefix in between. Up to listingParallelism partitions ahead of
+ * the one being read are listed, and each of them holds at most one page of
+ * keys which were not read yet.
+ *
+ * Keys ending with the delimiter, the folder objects of the S3 console, are
+ * left out.
+ *
+ */
+public class PrefixListing implements ObjectStream {
+
+	// ListObjectsV2 returns up to 1000 keys per page
+	private static final int QUEUE_CAPACITY = 1000;
+	private static final Object END = new Object();
+
+	private final S3Client s3;
+	private final String bucketName;
+	private final String prefix;
+	private final String delimiter;
+	private final String startAfter;
+	private final int parallelism;
+	private final Metrics metrics;
+	private final ExecutorService executor;
+	// partitions and keys being listed, in key order
+	private final Deque<Segment> window = new ArrayDeque<Segment>();
+	// partitions and keys of the current page of the prefix
+	private final Deque<Segment> prefixPage = new ArrayDeque<Segment>();
+	private String continuationToken;
+	private boolean prefixListed;
+	private S3Object nextObject;
+
+	/**
+	 * @param s3
+	 * @param bucketName
+	 * @param prefix
+	 * @param delimiter   null to list all the keys in one partition
+	 * @param startAfter  key after which the listing starts, null to start with
+	 *                    the first key
+	 * @param parallelism
+	 * @param metrics
+	 */
+	public PrefixListing(S3Client s3, String bucketName, String prefix, String delimiter, String startAfter,
+			int parallelism, Metrics metrics) {
+		this.s3 = s3;
+		this.bucketName = bucketName;
+		this.prefix = prefix == null ? "" : prefix;
+		this.delimiter = delimiter == null || delimiter.isEmpty() ? null : delimiter;
+		this.startAfter = startAfter;
+		this.parallelism = Math.max(1, parallelism);
+		this.metrics = metrics;
+		this.executor = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+			Thread thread = new Thread(runnable, "prefix-listing");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (nextObject == null)
+			nextObject = advance();
+		return nextObject != null;
+	}
+
+	@Override
+	public S3Object next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		S3Object object = nextObject;
+		nextObject = null;
+		return object;
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	private S3Object advance() {
+		while (true) {
+			fill();
+			Segment segment = window.peekFirst();
+			if (segment == null)
+				return null;
+			if (segment.object != null) {
+				window.removeFirst();
+				return segment.object;
+			}
+			Object value;
+			try {
+				value = segment.keys.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while listing " + segment.prefix, e);
+			}
+			if (value == END) {
+				window.removeFirst();
+			} else if (value instanceof RuntimeException) {
+				throw (RuntimeException) value;
+			} else {
+				return (S3Object) value;
+			}
+		}
+	}
+
+	private void fill() {
+		while (window.size() < parallelism) {
+			Segment segment = nextSegment();
+			if (segment == null)
+				return;
+			if (segment.prefix != null)
+				executor.execute(() -> list(segment));
+			window.addLast(segment);
+		}
+	}
+
+	private Segment nextSegment() {
+		while (prefixPage.isEmpty() && !prefixListed) {
+			ListObjectsV2Request request = ListObjectsV2Request.builder().bucket(bucketName).prefix(prefix)
+					.delimiter(delimiter).startAfter(prefixStartAfter()).continuationToken(continuationToken)
+					.build();
+			ListObjectsV2Response response = metrics.time("S3ListObjectsLatency", () -> s3.listObjectsV2(request));
+			// both lists are sorted, and keys of a partition sort right after its prefix
+			List<Segment> segments = new ArrayList<Segment>();
+			for (S3Object object : response.contents()) {
+				if (isInput(object.key()) && (startAfter == null || object.key().compareTo(startAfter) > 0))
+					segments.add(new Segment(object, null, null));
+			}
+			for (CommonPrefix commonPrefix : response.commonPrefixes()) {
+				String partition = commonPrefix.prefix();
+				if (startAfter != null && startAfter.startsWith(partition))
+					segments.add(new Segment(null, partition, startAfter));
+				else if (startAfter == null || startAfter.compareTo(partition) < 0)
+					segments.add(new Segment(null, partition, null));
+			}
+			segments.sort((a, b) -> a.sortKey().compareTo(b.sortKey()));
+			prefixPage.addAll(segments);
+			continuationToken = response.nextContinuationToken();
+			prefixListed = continuationToken == null;
+		}
+		return prefixPage.pollFirst();
+	}
+
+	private void list(Segment segment) {
+		try {
+			String token = null;
+			do {
+				ListObjectsV2Request request = ListObjectsV2Request.builder().bucket(bucketName)
+						.prefix(segment.prefix).startAfter(segment.startAfter).continuationToken(token).build();
+				ListObjectsV2Response response = metrics.time("S3ListObjectsLatency",
+						() -> s3.listObjectsV2(request));
+				for (S3Object object : response.contents()) {
+					if (isInput(object.key()))
+						segment.keys.put(object);
+				}
+				token = response.nextContinuationToken();
+			} while (token != null);
+			segment.keys.put(END);
+		} catch (InterruptedException e) {
+			// closed before the partition was read
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			try {
+				segment.keys.put(e);
+			} catch (InterruptedException interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * The listing of the prefix starts before the partition of the start key,
+	 * the keys of the partition before the start key are left out by its own
+	 * listing
+	 */
+	private String prefixStartAfter() {
+		if (startAfter == null || delimiter == null)
+			return startAfter;
+		int index = startAfter.indexOf(delimiter, prefix.length());
+		return index < 0 ? startAfter : startAfter.substring(0, index);
+	}
+
+	private boolean isInput(String key) {
+		return delimiter == null || !key.endsWith(delimiter);
+	}
+
+	/**
+	 * An object directly below the prefix, or a partition with the queue of its
+	 * listed objects
+	 */
+	private static class Segment {
+		private final S3Object object;
+		private final String prefix;
+		private final String startAfter;
+		private final BlockingQueue<Object> keys;
+
+		Segment(S3Object object, String prefix, String startAfter) {
+			this.object = object;
+			this.prefix = prefix;
+			this.startAfter = startAfter;
+			this.keys = prefix == null ? null : new ArrayBlockingQueue<Object>(QUEUE_CAPACITY);
+		}
+
+		String sortKey() {
+			return object != null ? object.key() : prefix;
+		}
+	}
+}
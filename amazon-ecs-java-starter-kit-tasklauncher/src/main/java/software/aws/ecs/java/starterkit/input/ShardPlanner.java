@@ -0,0 +1,112 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.input;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Splits consecutive input objects into shards of about the same estimated
+ * duration. The number of shards is the estimated duration of all the objects
+ * divided by the target duration, and the shard boundaries are chosen to
+ * minimize the longest shard, so the shards of a window finish at about the
+ * same time when they run side by side. A shard is a run of consecutive
+ * objects, so a resumed run continues after the last object of the last
+ * launched shard.
+ *
+ */
+public class ShardPlanner {
+
+	// the keys of a shard are passed in the RunTask overrides, which are limited to 8 KB
+	static final int MAX_KEY_CHARS = 6000;
+	private static final int SEARCH_STEPS = 50;
+
+	private final DurationModel model;
+	private final double targetSeconds;
+	private final int maxObjects;
+
+	/**
+	 * @param model
+	 * @param targetSeconds estimated duration of a shard
+	 * @param maxObjects    maximum number of objects of a shard
+	 */
+	public ShardPlanner(DurationModel model, double targetSeconds, int maxObjects) {
+		this.model = model;
+		this.targetSeconds = targetSeconds;
+		this.maxObjects = Math.max(1, maxObjects);
+	}
+
+	public DurationModel getModel() {
+		return model;
+	}
+
+	/**
+	 * This method splits objects into shards
+	 *
+	 * @param objects objects with their sizes, in listing order
+	 * @return the shards, in listing order
+	 */
+	public List<List<S3Object>> plan(List<S3Object> objects) {
+		if (objects.isEmpty())
+			return Collections.emptyList();
+		double[] estimates = new double[objects.size()];
+		double total = 0;
+		double longest = 0;
+		for (int i = 0; i < estimates.length; i++) {
+			estimates[i] = model.estimate(1, sizeOf(objects.get(i)));
+			total += estimates[i];
+			longest = Math.max(longest, estimates[i]);
+		}
+		// the object and key limits may need more shards than the durations
+		int shards = Math.max((int) Math.ceil(total / targetSeconds),
+				split(objects, estimates, Double.MAX_VALUE).size());
+		// smallest longest shard which fits in that many shards
+		double low = Math.max(longest, total / Math.max(1, shards));
+		double high = total;
+		if (split(objects, estimates, low).size() <= shards)
+			high = low;
+		for (int step = 0; step < SEARCH_STEPS && high - low > 1e-6 * high; step++) {
+			double middle = (low + high) / 2;
+			if (split(objects, estimates, middle).size() <= shards)
+				high = middle;
+			else
+				low = middle;
+		}
+		return split(objects, estimates, high);
+	}
+
+	/**
+	 * Greedy split, a shard is closed before the object which would make it
+	 * longer than the capacity or break the object and key limits
+	 */
+	private List<List<S3Object>> split(List<S3Object> objects, double[] estimates, double capacity) {
+		List<List<S3Object>> shards = new ArrayList<List<S3Object>>();
+		List<S3Object> shard = new ArrayList<S3Object>();
+		double duration = 0;
+		int keyChars = 0;
+		for (int i = 0; i < estimates.length; i++) {
+			// a key is passed quoted in a JSON array
+			int chars = objects.get(i).key().length() + 3;
+			if (!shard.isEmpty() && (duration + estimates[i] > capacity || shard.size() == maxObjects
+					|| keyChars + chars > MAX_KEY_CHARS)) {
+				shards.add(shard);
+				shard = new ArrayList<S3Object>();
+				duration = 0;
+				keyChars = 0;
+			}
+			shard.add(objects.get(i));
+			duration += estimates[i];
+			keyChars += chars;
+		}
+		shards.add(shard);
+		return shards;
+	}
+
+	static long sizeOf(S3Object object) {
+		return object.size() == null ? 0 : object.size();
+	}
+}
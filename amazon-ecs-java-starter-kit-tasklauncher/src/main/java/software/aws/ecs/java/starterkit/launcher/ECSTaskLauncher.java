@@ -6,15 +6,64 @@ package software.aws.ecs.java.starterkit.launcher;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Scope;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.ecs.EcsClient;
 import software.amazon.awssdk.services.ecs.model.*;
-import software.aws.ecs.java.starterkit.util.DDBUtil;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.aws.ecs.java.starterkit.cache.CachedResult;
+import software.aws.ecs.java.starterkit.cache.DynamoDbResultCache;
+import software.aws.ecs.java.starterkit.cache.ResultCache;
+import software.aws.ecs.java.starterkit.dag.TaskGraph;
+import software.aws.ecs.java.starterkit.executor.InProcessExecutor;
+import software.aws.ecs.java.starterkit.executor.TaskExecutor;
+import software.aws.ecs.java.starterkit.executor.TaskExecutors;
+import software.aws.ecs.java.starterkit.input.DurationModel;
+import software.aws.ecs.java.starterkit.input.InputTasks;
+import software.aws.ecs.java.starterkit.input.ManifestListing;
+import software.aws.ecs.java.starterkit.input.ObjectStream;
+import software.aws.ecs.java.starterkit.input.PrefixListing;
+import software.aws.ecs.java.starterkit.input.ShardPlanner;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.placement.Ec2SubnetCapacity;
+import software.aws.ecs.java.starterkit.placement.SubnetCapacity;
+import software.aws.ecs.java.starterkit.placement.SubnetPlacement;
+import software.aws.ecs.java.starterkit.queue.SqsWorkQueue;
+import software.aws.ecs.java.starterkit.queue.WorkItem;
+import software.aws.ecs.java.starterkit.queue.WorkQueue;
+import software.aws.ecs.java.starterkit.scheduler.DynamoDbSchedulerStore;
+import software.aws.ecs.java.starterkit.scheduler.FairShareScheduler;
+import software.aws.ecs.java.starterkit.scheduler.RunShare;
+import software.aws.ecs.java.starterkit.sizing.TaskSize;
+import software.aws.ecs.java.starterkit.sizing.TaskSizer;
+import software.aws.ecs.java.starterkit.store.DynamoDbWorkflowStore;
+import software.aws.ecs.java.starterkit.store.DynamoDbWorkflowSummaryStore;
+import software.aws.ecs.java.starterkit.store.TaskRows;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+import software.aws.ecs.java.starterkit.store.WorkflowSummaryStore;
+import software.aws.ecs.java.starterkit.tracing.Tracing;
+import software.aws.ecs.java.starterkit.util.CapacityProviderConfig;
+import software.aws.ecs.java.starterkit.util.ExecutionContext;
+import software.aws.ecs.java.starterkit.util.ExecutorConfig;
+import software.aws.ecs.java.starterkit.util.InputConfig;
+import software.aws.ecs.java.starterkit.util.SchedulingConfig;
+import software.aws.ecs.java.starterkit.util.ShardingConfig;
 import software.aws.ecs.java.starterkit.util.TaskConfig;
 import software.aws.ecs.java.starterkit.util.WorkflowSpecs;
 
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 /**
@@ -26,10 +75,129 @@ import java.util.stream.Collectors;
  */
 public class ECSTaskLauncher implements RequestHandler<WorkflowSpecs, Map<String, Object>> {
 
+	// tasks launched between two writes of the launch cursor
+	static final int DEFAULT_CHECKPOINT_INTERVAL = 10;
+	// time kept back to write the last checkpoint and return
+	static final long LAUNCH_TIME_RESERVE_MILLIS = 30000;
+	static final int MAX_WORKFLOW_SPECS_LENGTH = 300 * 1024;
+	// range key prefix of the workflow_details rows of tasks taken from the result cache
+	static final String CACHED_TASK_PREFIX = "cached/";
+	// tasks sampled from each earlier run to fit the shard durations
+	static final int HISTORY_TASKS_PER_RUN = 500;
+
+	private final Metrics metrics = Metrics.getInstance();
+	private final Tracing tracing = Tracing.getInstance("ECSTaskLauncher");
+	// the clients of each region of the workflow specs, reused by warm invocations
+	private final Map<Region, RegionClients> clients = new ConcurrentHashMap<Region, RegionClients>();
+
 	@Override
 	public Map<String, Object> handleRequest(WorkflowSpecs workflowSpecs, Context context) {
+		long invocationStart = System.nanoTime();
+		metrics.putDimension("Service", "ECSTaskLauncher").putProperty("WorkflowName", workflowSpecs.getWorkflowName());
+		Span span = tracing.startSpan("LaunchWorkflow");
+		span.setAttribute(Tracing.WORKFLOW_NAME, workflowSpecs.getWorkflowName());
+		try (Scope scope = span.makeCurrent()) {
+			return launchWorkflow(workflowSpecs, context);
+		} finally {
+			span.end();
+			metrics.recordLatencySince("LaunchDuration", invocationStart);
+			metrics.flush();
+			tracing.flush();
+		}
+	}
 
+	private Map<String, Object> launchWorkflow(WorkflowSpecs workflowSpecs, Context context) {
 		context.getLogger().log("Input event: " + new Gson().toJson(workflowSpecs));
+		RegionClients regionClients = clientsOf(regionOf(workflowSpecs));
+
+		long workflowRunId = resolveWorkflowRunId(workflowSpecs, System.currentTimeMillis());
+		metrics.putProperty("WorkflowRunId", workflowRunId);
+		Span.current().setAttribute(Tracing.WORKFLOW_RUN_ID, workflowRunId);
+
+		// worker pool mode, statuses still flow into workflow_details under the work item ids
+		String workQueueUrl = workflowSpecs.getWorkQueueUrl();
+		WorkQueue workQueue = workQueueUrl == null || workQueueUrl.isEmpty() ? null
+				: new SqsWorkQueue(regionClients.sqs, workQueueUrl, metrics);
+		WorkflowStore store = new DynamoDbWorkflowStore(regionClients.dynamoDBAsync,
+				workflowSpecs.getDdbTableNameWFDetails(), workflowSpecs.getHashKeyWFDetails(),
+				workflowSpecs.getRangeKeyWFDetails(), metrics);
+		WorkflowSummaryStore summaryStore = new DynamoDbWorkflowSummaryStore(regionClients.dynamoDBAsync,
+				workflowSpecs.getDdbTableNameWFSummary(), workflowSpecs.getHashKeyWFSummary(),
+				workflowSpecs.getRangeKeyWFSummary(), metrics);
+		LaunchContext launchContext = new LaunchContext(regionClients.ecs, regionClients.dynamoDB, store, summaryStore,
+				context::getRemainingTimeInMillis).workQueue(workQueue).subnetCapacity(regionClients.subnetCapacity);
+		SchedulingConfig scheduling = workflowSpecs.getScheduling();
+		if (scheduling != null)
+			launchContext.scheduler(new FairShareScheduler(
+					new DynamoDbSchedulerStore(regionClients.dynamoDB, scheduling.getTableName(), metrics), metrics));
+		String resultCacheTableName = workflowSpecs.getResultCacheTableName();
+		if (resultCacheTableName != null)
+			launchContext.resultCache(new DynamoDbResultCache(regionClients.dynamoDB, resultCacheTableName, metrics));
+		if (resultCacheTableName != null || workflowSpecs.getInput() != null || workflowSpecs.getSizing() != null
+				|| workflowSpecs.getExecutors() != null)
+			launchContext.s3(regionClients.s3);
+		return launch(launchContext, workflowSpecs, workflowRunId);
+	}
+
+	private RegionClients clientsOf(Region region) {
+		return clients.computeIfAbsent(region, RegionClients::new);
+	}
+
+	/**
+	 * The clients of one region. A handler builds them once, so warm
+	 * invocations neither pay for new connections nor pile up the threads of
+	 * clients which are never closed.
+	 */
+	private static class RegionClients {
+		final EcsClient ecs;
+		final DynamoDbClient dynamoDB;
+		final DynamoDbAsyncClient dynamoDBAsync;
+		final SqsClient sqs;
+		final S3Client s3;
+		final SubnetCapacity subnetCapacity;
+
+		RegionClients(Region region) {
+			ecs = EcsClient.builder().region(region).build();
+			dynamoDB = DynamoDbClient.builder().region(region).build();
+			dynamoDBAsync = DynamoDbAsyncClient.builder().region(region).build();
+			sqs = SqsClient.builder().region(region).build();
+			s3 = S3Client.builder().region(region).build();
+			subnetCapacity = new Ec2SubnetCapacity(region);
+		}
+	}
+
+	private static Region regionOf(WorkflowSpecs workflowSpecs) {
+		return Region.regions().stream().filter(r -> r.toString().equalsIgnoreCase(workflowSpecs.getRegion()))
+				.findFirst().orElse(Region.US_EAST_1);
+	}
+
+	/**
+	 * This method launches the tasks of a workflow run, starting at the launch
+	 * cursor stored in its workflow summary item. The cursor is moved forward
+	 * every checkpoint interval, so a retried invocation continues where the
+	 * failed one stopped. The invocation stops early when it reaches
+	 * maxTasksPerInvocation or runs short of time, and reports launchComplete
+	 * false so the state machine invokes it again. With maxInFlight it also stops
+	 * when the in-flight window is full and reports waitForSlots, the state
+	 * machine then invokes it again after a monitor tick. With scheduling it
+	 * launches no more tasks than the fair-share scheduler grants. With a result
+	 * cache, a task whose result is cached gets a Completed (cached) row instead
+	 * of being run. With subnet capacity, every task is placed in one subnet,
+	 * spread across Availability Zones and away from exhausted subnets. With
+	 * executors, tasks with little input run in the launcher.
+	 * 
+	 * @param launchContext the clients and collaborators of the launch
+	 * @param workflowSpecs
+	 * @param workflowRunId
+	 * @return
+	 */
+	Map<String, Object> launch(LaunchContext launchContext, WorkflowSpecs workflowSpecs, long workflowRunId) {
+		EcsClient ecs = launchContext.getEcs();
+		WorkflowStore store = launchContext.getStore();
+		WorkflowSummaryStore summaryStore = launchContext.getSummaryStore();
+		WorkQueue workQueue = launchContext.getWorkQueue();
+		FairShareScheduler scheduler = launchContext.getScheduler();
+		LongSupplier remainingTimeMillis = launchContext.getRemainingTimeMillis();
 		String regionString = workflowSpecs.getRegion();
 		String clusterName = workflowSpecs.getClusterName();
 		String containerName = workflowSpecs.getContainerName();
@@ -48,89 +216,950 @@ public class ECSTaskLauncher implements RequestHandler<WorkflowSpecs, Map<String
 				separator, ddbTableNameWFSummary, hashKeyWFSummary, rangeKeyWFSummary, ddbTableNameWFDetails,
 				hashKeyWFDetails, rangeKeyWFDetails);
 
-		Collection<String> subnetIds = tokenizeStrings(subnetIdLiteral, separator);
-		Collection<String> securityGroupIds = tokenizeStrings(securityGroupId, separator);
+		// TODO: validate the parsing
+		List<TaskConfig> taskList = workflowSpecs.getTaskList();
+		InputConfig input = workflowSpecs.getInput();
+		if (input != null && taskList != null && !taskList.isEmpty())
+			throw new IllegalArgumentException("Workflow specs have both a task list and an input");
+		validateExecutors(workflowSpecs.getExecutors());
+		// an invalid task graph fails before anything is recorded
+		TaskGraph taskGraph = input == null ? buildTaskGraph(taskList) : null;
+		int launchCursor = 0;
+		int finishedTasks = 0;
+		String inputCursorKey = null;
+		int inputCursorOffset = 0;
+		// a throttle or an access error is thrown, it is not an existing run
+		boolean inserted = WorkflowStore.join(summaryStore.insertSummary(workflowSpecs.getWorkflowName(),
+				workflowRunId, workflowSpecsJson(workflowSpecs), input == null ? taskList.size() : 0, "Running",
+				new Date().toString()));
+		if (!inserted) {
+			Map<String, AttributeValue> summary = WorkflowStore
+					.join(summaryStore.getSummary(workflowSpecs.getWorkflowName(), workflowRunId));
+			AttributeValue cursor = summary.get("launch_cursor");
+			if (cursor == null)
+				throw new IllegalStateException(String.format("Workflow run %d could not be recorded in %s",
+						workflowRunId, ddbTableNameWFSummary));
+			launchCursor = Integer.parseInt(cursor.n());
+			finishedTasks = countOf(summary, "completed_tasks") + countOf(summary, "failed_tasks");
+			inputCursorKey = stringOf(summary, WorkflowSummaryStore.INPUT_CURSOR_KEY, null);
+			// without sharding every launched task is one input
+			inputCursorOffset = summary.containsKey(WorkflowSummaryStore.INPUT_CURSOR_OFFSET)
+					? countOf(summary, WorkflowSummaryStore.INPUT_CURSOR_OFFSET)
+					: launchCursor;
+			System.out.printf("Resuming workflow run %d at task %d of %d, %d tasks finished \n", workflowRunId,
+					launchCursor, countOf(summary, "number_of_tasks"), finishedTasks);
+		}
+
+		if (taskGraph != null)
+			return launchGraph(launchContext, workflowSpecs, workflowRunId, taskGraph, inserted, launchCursor);
+		int checkpointInterval = workflowSpecs.getCheckpointInterval() > 0 ? workflowSpecs.getCheckpointInterval()
+				: DEFAULT_CHECKPOINT_INTERVAL;
+		int maxTasks = maxTasksPerInvocation(workflowSpecs);
+		String traceParent = Tracing.currentTraceParent();
+		// the finished counts are written by the monitor, so the window lags by up to one monitor tick
+		int freeSlots = workflowSpecs.getMaxInFlight() > 0
+				? Math.max(0, workflowSpecs.getMaxInFlight() - (launchCursor - finishedTasks))
+				: Integer.MAX_VALUE;
+		maxTasks = Math.min(maxTasks, freeSlots);
+		// discovered inputs are listed while they are launched, their number is known at the end
+		int remainingTasks = input == null ? taskList.size() - launchCursor : Integer.MAX_VALUE;
+		int requested = Math.min(maxTasks, remainingTasks);
+		int granted = acquireSlots(scheduler, workflowSpecs, workflowRunId,
+				input == null ? remainingTasks : requested, requested);
+		maxTasks = Math.min(maxTasks, granted);
+		// tasks after the stored cursor may have been launched by a failed invocation
+		int inDoubtEnd = inserted ? launchCursor : launchCursor + Math.min(checkpointInterval, remainingTasks);
+		List<String> ecsTaskArns = new ArrayList<String>();
+		InputTasks inputTasks = input == null ? null
+				: openInput(launchContext, workflowSpecs, workflowRunId, inputCursorKey, inputCursorOffset);
+		TaskSizer sizer = buildSizer(launchContext, workflowSpecs, workflowRunId);
+		TaskExecutors executors = buildExecutors(launchContext, workflowSpecs);
+		Iterator<TaskConfig> tasks = input == null ? taskList.listIterator(launchCursor) : inputTasks;
+		boolean launchComplete;
+		try {
+			while (ecsTaskArns.size() < maxTasks && remainingTimeMillis.getAsLong() > LAUNCH_TIME_RESERVE_MILLIS
+					&& tasks.hasNext()) {
+				int chunkSize = Math.min(checkpointInterval, maxTasks - ecsTaskArns.size());
+				List<String> chunkArns = new ArrayList<String>();
+				if (workQueue != null) {
+					// a work item sent twice only writes the statuses of its item id twice
+					List<WorkItem> workItems = new ArrayList<WorkItem>();
+					while (workItems.size() < chunkSize && tasks.hasNext()) {
+						TaskConfig taskConfig = tasks.next();
+						workItems.add(buildWorkItem(workflowSpecs, workflowRunId, launchCursor + workItems.size(),
+								taskConfig, traceParent));
+					}
+					tracing.inSpan("EnqueueWorkItems", () -> {
+						workQueue.send(workItems);
+						return null;
+					});
+					workItems.forEach(item -> chunkArns.add(item.getItemId()));
+				} else {
+					while (chunkArns.size() < chunkSize && tasks.hasNext()) {
+						int index = launchCursor + chunkArns.size();
+						TaskConfig taskConfig = tasks.next();
+						String launchToken = launchToken(workflowRunId, index);
+						String taskArn = index < inDoubtEnd
+								? findStartedTask(ecs, store, clusterName, workflowRunId, launchToken)
+								: null;
+						if (taskArn != null) {
+							System.out.printf("Task %d of workflow run %d was already launched: %s \n", index,
+									workflowRunId, taskArn);
+							metrics.count("TasksRecovered");
+						} else {
+							taskArn = launchTask(launchContext, workflowSpecs, workflowRunId, index, taskConfig,
+									sizer, executors);
+						}
+						chunkArns.add(taskArn);
+					}
+				}
+				int chunkEnd = launchCursor + chunkArns.size();
+				// the cursor of the discovered inputs is after the last task of the chunk
+				updateLaunchCursor(summaryStore, workflowSpecs, workflowRunId, chunkEnd, chunkArns,
+						input == null ? null : inputTasks.cursorKey(), input == null ? 0 : inputTasks.cursorOffset());
+				ecsTaskArns.addAll(chunkArns);
+				launchCursor = chunkEnd;
+			}
+			launchComplete = !tasks.hasNext();
+		} finally {
+			// slots of tasks which were not launched go back to the other runs
+			releaseSlots(scheduler, workflowSpecs, workflowRunId, granted - ecsTaskArns.size());
+			if (inputTasks != null)
+				inputTasks.close();
+			// in-process tasks finish before the invocation returns
+			executors.close();
+		}
+		metrics.count("TasksLaunched", ecsTaskArns.size());
+		if (input == null)
+			metrics.gauge("PendingTasks", taskList.size() - launchCursor);
+		boolean waitForSlots = !launchComplete
+				&& (ecsTaskArns.size() >= freeSlots || (granted < requested && ecsTaskArns.size() >= granted));
+
+		return launchResult(workflowSpecs, workflowRunId, ecsTaskArns, launchCursor,
+				input == null ? taskList.size() : launchCursor, launchComplete, waitForSlots, traceParent);
+	}
+
+	/**
+	 * This method launches the tasks of a workflow with dependencies. Each
+	 * invocation reads the node rows and task statuses of the run from
+	 * workflow_details, skips the tasks whose dependencies failed and launches
+	 * the tasks whose dependencies completed, so later stages start task by task
+	 * instead of after a whole stage. The launch cursor counts the tasks launched
+	 * or skipped.
+	 * 
+	 * @param launchContext
+	 * @param workflowSpecs
+	 * @param workflowRunId
+	 * @param taskGraph
+	 * @param inserted      true when this invocation recorded the workflow run
+	 * @param launchCursor
+	 * @return
+	 */
+	private Map<String, Object> launchGraph(LaunchContext launchContext, WorkflowSpecs workflowSpecs,
+			long workflowRunId, TaskGraph taskGraph, boolean inserted, int launchCursor) {
+		WorkflowStore store = launchContext.getStore();
+		WorkQueue workQueue = launchContext.getWorkQueue();
+		FairShareScheduler scheduler = launchContext.getScheduler();
+		String traceParent = Tracing.currentTraceParent();
+		Map<String, Integer> taskIndexes = new HashMap<String, Integer>();
+		Map<String, String> nodeIds = new LinkedHashMap<String, String>();
+		Map<String, Map<String, AttributeValue>> blockedNodes =
+				new LinkedHashMap<String, Map<String, AttributeValue>>();
+		for (int index = 0; index < workflowSpecs.getTaskList().size(); index++) {
+			String taskName = workflowSpecs.getTaskList().get(index).getTaskName();
+			taskIndexes.put(taskName, index);
+			nodeIds.put(taskName, TaskGraph.nodeId(taskName));
+			blockedNodes.put(TaskGraph.nodeId(taskName), nodeRow(taskName, TaskGraph.BLOCKED, null));
+		}
+		if (inserted)
+			WorkflowStore.join(store.putTasks(workflowRunId, blockedNodes));
+		Map<String, Map<String, AttributeValue>> details = new HashMap<String, Map<String, AttributeValue>>();
+		for (Map<String, AttributeValue> item : WorkflowStore.join(store.getTasks(workflowRunId, null))) {
+			details.put(item.get(workflowSpecs.getRangeKeyWFDetails()).s(), item);
+		}
 
-		Region region = Region.regions().stream().filter(r -> r.toString().equalsIgnoreCase(regionString)).findFirst()
-				.orElse(Region.US_EAST_1);
+		// outcome of every task: Completed, Failed (or skipped), Running or Blocked
+		Map<String, String> outcomes = new HashMap<String, String>();
+		List<String> readyTasks = new ArrayList<String>();
+		int resolvedTasks = 0;
+		int runningTasks = 0;
+		for (String taskName : taskGraph.getTopologicalOrder()) {
+			String nodeId = nodeIds.get(taskName);
+			String nodeStatus = stringOf(details.get(nodeId), "status", TaskGraph.BLOCKED);
+			String taskArn = stringOf(details.get(nodeId), "task_arn", null);
+			if (TaskGraph.LAUNCHING.equals(nodeStatus)) {
+				// the invocation which launched it failed before recording the task
+				taskArn = workQueue == null
+						? findStartedTask(launchContext.getEcs(), store, workflowSpecs.getClusterName(),
+								workflowRunId, launchToken(workflowRunId, taskIndexes.get(taskName)))
+						: null;
+				if (taskArn != null) {
+					WorkflowStore.join(
+							store.putTask(workflowRunId, nodeId, nodeRow(taskName, TaskGraph.LAUNCHED, taskArn)));
+					metrics.count("TasksRecovered");
+					nodeStatus = TaskGraph.LAUNCHED;
+				}
+			}
+			String outcome;
+			if (TaskGraph.LAUNCHED.equals(nodeStatus)) {
+				resolvedTasks++;
+				outcome = stringOf(details.get(taskArn), "status", "Running");
+				if (ResultCache.isCompleted(outcome))
+					outcome = "Completed";
+				else if (!outcome.equalsIgnoreCase("Failed"))
+					runningTasks++;
+			} else if (TaskGraph.SKIPPED.equals(nodeStatus)) {
+				resolvedTasks++;
+				outcome = "Failed";
+			} else if (taskGraph.getDependencies(taskName).stream()
+					.anyMatch(dependency -> "Failed".equalsIgnoreCase(outcomes.get(dependency)))) {
+				WorkflowStore.join(store.putTask(workflowRunId, nodeId, nodeRow(taskName, TaskGraph.SKIPPED, null)));
+				metrics.count("TasksSkipped");
+				resolvedTasks++;
+				outcome = "Failed";
+			} else {
+				if (taskGraph.getDependencies(taskName).stream()
+						.allMatch(dependency -> "Completed".equalsIgnoreCase(outcomes.get(dependency))))
+					readyTasks.add(taskName);
+				outcome = TaskGraph.BLOCKED;
+			}
+			outcomes.put(taskName, outcome);
+		}
 
-		List<Task> tasks = new ArrayList<Task>();
+		int freeSlots = workflowSpecs.getMaxInFlight() > 0
+				? Math.max(0, workflowSpecs.getMaxInFlight() - runningTasks)
+				: Integer.MAX_VALUE;
+		int maxTasks = Math.min(maxTasksPerInvocation(workflowSpecs), freeSlots);
+		int requested = Math.min(maxTasks, readyTasks.size());
+		int granted = acquireSlots(scheduler, workflowSpecs, workflowRunId, readyTasks.size(), requested);
+		maxTasks = Math.min(maxTasks, granted);
 		List<String> ecsTaskArns = new ArrayList<String>();
-		DDBUtil ddbUtil = new DDBUtil();
-		EcsClient ecs = EcsClient.builder().region(region).build();
-		DynamoDbClient dynamoDB = DynamoDbClient.builder().region(region).build();
+		// the Launched rows are written while the next tasks launch, the Launching ones before RunTask
+		List<CompletableFuture<Void>> launchedRows = new ArrayList<CompletableFuture<Void>>();
+		TaskSizer sizer = buildSizer(launchContext, workflowSpecs, workflowRunId);
+		TaskExecutors executors = buildExecutors(launchContext, workflowSpecs);
+		try {
+			for (String taskName : readyTasks) {
+				if (ecsTaskArns.size() >= maxTasks
+						|| launchContext.getRemainingTimeMillis().getAsLong() <= LAUNCH_TIME_RESERVE_MILLIS)
+					break;
+				String nodeId = nodeIds.get(taskName);
+				int index = taskIndexes.get(taskName);
+				WorkflowStore.join(
+						store.putTask(workflowRunId, nodeId, nodeRow(taskName, TaskGraph.LAUNCHING, null)));
+				String taskArn;
+				if (workQueue != null) {
+					WorkItem item = buildWorkItem(workflowSpecs, workflowRunId, index, traceParent);
+					workQueue.send(Collections.singletonList(item));
+					taskArn = item.getItemId();
+				} else {
+					taskArn = launchTask(launchContext, workflowSpecs, workflowRunId, index,
+							workflowSpecs.getTaskList().get(index), sizer, executors);
+				}
+				launchedRows.add(store.putTask(workflowRunId, nodeId, nodeRow(taskName, TaskGraph.LAUNCHED, taskArn)));
+				ecsTaskArns.add(taskArn);
+				resolvedTasks++;
+			}
+		} finally {
+			releaseSlots(scheduler, workflowSpecs, workflowRunId, granted - ecsTaskArns.size());
+			executors.close();
+		}
+		WorkflowStore.join(CompletableFuture.allOf(launchedRows.toArray(new CompletableFuture<?>[0])));
+		if (resolvedTasks > launchCursor)
+			updateLaunchCursor(launchContext.getSummaryStore(), workflowSpecs, workflowRunId, resolvedTasks,
+					ecsTaskArns, null, 0);
+		metrics.count("TasksLaunched", ecsTaskArns.size());
+		metrics.gauge("PendingTasks", taskGraph.size() - resolvedTasks);
+		// blocked tasks wait for the monitor, ready tasks left over by the budget are launched right away
+		boolean readyTasksLeft = ecsTaskArns.size() < readyTasks.size() && ecsTaskArns.size() < freeSlots
+				&& !(granted < requested && ecsTaskArns.size() >= granted);
+		return launchResult(workflowSpecs, workflowRunId, ecsTaskArns, resolvedTasks, !readyTasksLeft,
+				traceParent);
+	}
 
-		long workflowRunId = System.currentTimeMillis();
+	/**
+	 * This method prepares the response to AWS Step Functions State Machine. This
+	 * will model Iterator design pattern.
+	 * 
+	 * @return
+	 */
+	private static Map<String, Object> launchResult(WorkflowSpecs workflowSpecs, long workflowRunId,
+			List<String> ecsTaskArns, int launchCursor, boolean waitForSlots, String traceParent) {
+		int numberOfTasks = workflowSpecs.getTaskList().size();
+		return launchResult(workflowSpecs, workflowRunId, ecsTaskArns, launchCursor, numberOfTasks,
+				launchCursor >= numberOfTasks, waitForSlots, traceParent);
+	}
 
-		// TODO: validate the parsing
-		List<TaskConfig> taskList = workflowSpecs.getTaskList();
-		for (TaskConfig taskConfig : taskList) {
-			// Prepare Container Overrides -for each ECS task
-			Collection<KeyValuePair> environment = Arrays.asList(
-					KeyValuePair.builder().name("region").value(regionString).build(),
-					KeyValuePair.builder().name("workflow_details_ddb_table_name").value(ddbTableNameWFDetails).build(),
-					KeyValuePair.builder().name("workflow_details_hash_key").value(hashKeyWFDetails).build(),
-					KeyValuePair.builder().name("workflow_details_range_key").value(rangeKeyWFDetails).build(),
-					KeyValuePair.builder().name("workflow_name").value(workflowSpecs.getWorkflowName()).build(),
-					KeyValuePair.builder().name("workflow_run_id").value(Long.toString(workflowRunId)).build(),
-					KeyValuePair.builder().name("task_name").value(taskConfig.getTaskName()).build(),
-					KeyValuePair.builder().name("s3_bucket_name").value(taskConfig.getS3BucketName()).build(),
-					KeyValuePair.builder().name("object_key").value(taskConfig.getObjectKey()).build());
-
-			ContainerOverride co = ContainerOverride.builder().environment(environment).name(containerName).build();
-			Collection<ContainerOverride> containerOverrides = Arrays.asList(co);
-			TaskOverride overrides = TaskOverride.builder().containerOverrides(containerOverrides).build();
-
-			// Submit ECS Task
-			Task task = submitECSTask(ecs, subnetIds, securityGroupIds, overrides, clusterName, taskDefinition);
-			tasks.add(task);
-			ecsTaskArns.add(task.taskArn());
-		}
-		// Insert status to DynamoDB Table
-		String startTime = new Date().toString();
-		ddbUtil.insertWorkflowSummary(dynamoDB, ddbTableNameWFSummary, hashKeyWFSummary, rangeKeyWFSummary,
-				workflowSpecs.getWorkflowName(), new Gson().toJson(workflowSpecs), workflowRunId, tasks.size(),
-				"Running", startTime);
-
-		/**
-		 * Prepare response to AWS Step Functions State Machine. This will model
-		 * Iterator design pattern.
-		 * 
-		 */
+	/**
+	 * @param numberOfTasks  tasks discovered so far when the inputs are listed
+	 * @param launchComplete
+	 */
+	private static Map<String, Object> launchResult(WorkflowSpecs workflowSpecs, long workflowRunId,
+			List<String> ecsTaskArns, int launchCursor, int numberOfTasks, boolean launchComplete,
+			boolean waitForSlots, String traceParent) {
 		Map<String, Object> map = new HashMap<String, Object>();
 		map.put("workflowName", workflowSpecs.getWorkflowName());
 		map.put("workflowRunId", workflowRunId);
 		map.put("ecsTaskArns", ecsTaskArns);
+		map.put("numberOfTasks", numberOfTasks);
+		map.put("launchCursor", launchCursor);
+		map.put("launchComplete", launchComplete);
+		map.put("waitForSlots", waitForSlots && !launchComplete);
+		map.put("traceParent", traceParent);
+		if (workflowSpecs.getScheduling() != null) {
+			// the monitor gives the slots of finished tasks back
+			map.put("schedulerTableName", workflowSpecs.getScheduling().getTableName());
+			map.put("clusterName", workflowSpecs.getClusterName());
+		}
 		return map;
 	}
 
 	/**
-	 * This method runs an ECS Task
+	 * This method asks the fair-share scheduler how many tasks the workflow run
+	 * may launch now
+	 * 
+	 * @param scheduler     null when the workflow run is not scheduled
+	 * @param workflowSpecs
+	 * @param workflowRunId
+	 * @param pending       tasks of the run waiting for a slot
+	 * @param requested     tasks the invocation would launch without scheduler
+	 * @return
+	 */
+	private int acquireSlots(FairShareScheduler scheduler, WorkflowSpecs workflowSpecs, long workflowRunId,
+			int pending, int requested) {
+		if (scheduler == null || requested <= 0)
+			return requested;
+		SchedulingConfig scheduling = workflowSpecs.getScheduling();
+		scheduler.registerCluster(workflowSpecs.getClusterName(), scheduling.getClusterTaskLimit());
+		RunShare run = new RunShare(RunShare.runKey(workflowSpecs.getWorkflowName(), workflowRunId),
+				scheduling.getPriority(), scheduling.getWeight(), workflowSpecs.getMaxInFlight(), pending);
+		int granted = scheduler.acquire(workflowSpecs.getClusterName(), run, requested);
+		System.out.printf("Scheduler granted %d of %d slots to workflow run %d \n", granted, requested,
+				workflowRunId);
+		return granted;
+	}
+
+	private static int maxTasksPerInvocation(WorkflowSpecs workflowSpecs) {
+		return workflowSpecs.getMaxTasksPerInvocation() > 0 ? workflowSpecs.getMaxTasksPerInvocation()
+				: Integer.MAX_VALUE;
+	}
+
+	private static void releaseSlots(FairShareScheduler scheduler, WorkflowSpecs workflowSpecs,
+			long workflowRunId, int unused) {
+		if (scheduler != null)
+			scheduler.returnUnused(workflowSpecs.getClusterName(),
+					RunShare.runKey(workflowSpecs.getWorkflowName(), workflowRunId), unused);
+	}
+
+	/**
+	 * This method validates the dependencies of the task list
+	 * 
+	 * @param taskList
+	 * @return the task graph, or null when no task has dependencies
+	 * @throws IllegalArgumentException if task names are not unique, a
+	 *                                  dependency is unknown or the
+	 *                                  dependencies form a cycle
+	 */
+	public static TaskGraph buildTaskGraph(List<TaskConfig> taskList) {
+		if (taskList.stream().allMatch(taskConfig -> taskConfig.getDependsOn() == null
+				|| taskConfig.getDependsOn().isEmpty()))
+			return null;
+		LinkedHashMap<String, List<String>> dependencies = new LinkedHashMap<String, List<String>>();
+		for (TaskConfig taskConfig : taskList) {
+			List<String> dependsOn = taskConfig.getDependsOn() == null ? Collections.<String>emptyList()
+					: taskConfig.getDependsOn();
+			if (dependencies.put(taskConfig.getTaskName(), dependsOn) != null)
+				throw new IllegalArgumentException("Duplicate task name " + taskConfig.getTaskName());
+		}
+		return new TaskGraph(dependencies);
+	}
+
+	/**
+	 * This method runs the task of a task config unless the result cache has
+	 * its result. On a cache hit it writes a Completed (cached) row and returns
+	 * its range key instead of a task ARN.
+	 * 
+	 * @return
+	 */
+	private String launchTask(LaunchContext launchContext, WorkflowSpecs workflowSpecs, long workflowRunId, int index,
+			TaskConfig taskConfig, TaskSizer sizer, TaskExecutors executors) {
+		ResultCache resultCache = launchContext.getResultCache();
+		S3Client s3 = launchContext.getS3();
+		// a shard has no single source object to key its result with
+		if (resultCache == null || taskConfig.getObjectKeys() != null)
+			return executeTask(workflowSpecs, workflowRunId, index, taskConfig, sizer, executors, null, null);
+		HeadObjectRequest headObjectRequest = HeadObjectRequest.builder().bucket(taskConfig.getS3BucketName())
+				.key(taskConfig.getObjectKey()).build();
+		String sourceETag;
+		try {
+			sourceETag = metrics.time("S3HeadObjectLatency", () -> s3.headObject(headObjectRequest)).eTag();
+		} catch (S3Exception e) {
+			// a missing or forbidden source fails its own task, not the launch of the run
+			System.out.printf("Task %s of workflow run %d is not cacheable: %s \n", taskConfig.getTaskName(),
+					workflowRunId, e.getMessage());
+			metrics.count("TasksNotCacheable");
+			return executeTask(workflowSpecs, workflowRunId, index, taskConfig, sizer, executors, null, null);
+		}
+		String cacheKey = resultCacheKey(workflowSpecs, taskConfig, sourceETag);
+		CachedResult cached = resultCache.lookup(cacheKey);
+		if (cached == null)
+			return executeTask(workflowSpecs, workflowRunId, index, taskConfig, sizer, executors, cacheKey,
+					sourceETag);
+		String ecsTaskId = CACHED_TASK_PREFIX + launchToken(workflowRunId, index);
+		// points to the output of the task which computed the result
+		Map<String, AttributeValue> row = TaskRows.started(taskConfig.getTaskName(), ResultCache.CACHED_STATUS,
+				System.currentTimeMillis());
+		row.putAll(TaskRows.finished(ResultCache.CACHED_STATUS, 0, null, 0));
+		row.put("output_key", TaskRows.string(cached.getOutputKey()));
+		row.put("cached_from_task_id", TaskRows.string(cached.getEcsTaskId()));
+		WorkflowStore.join(launchContext.getStore().putTask(workflowRunId, ecsTaskId, row));
+		System.out.printf("Task %s of workflow run %d is cached from %s \n", taskConfig.getTaskName(),
+				workflowRunId, cached.getEcsTaskId());
+		metrics.count("TasksCached");
+		return ecsTaskId;
+	}
+
+	/**
+	 * This method computes the result cache key of a task config. Only the
+	 * settings the output depends on are hashed, not where or when the task
+	 * runs.
+	 * 
+	 * @param workflowSpecs
+	 * @param taskConfig
+	 * @param sourceETag
+	 * @return
+	 */
+	public static String resultCacheKey(WorkflowSpecs workflowSpecs, TaskConfig taskConfig, String sourceETag) {
+		JsonObject config = new JsonObject();
+		config.addProperty("taskName", taskConfig.getTaskName());
+		config.addProperty("s3BucketName", taskConfig.getS3BucketName());
+		config.addProperty("objectKey", taskConfig.getObjectKey());
+		return ResultCache.cacheKey(workflowSpecs.getTaskDefinition(), config.toString(), sourceETag);
+	}
+
+	/**
+	 * This method runs the task of a task config with the executor chosen by
+	 * its size, sized for the executor
+	 * 
+	 * @return the ecs_task_id of the task
+	 */
+	private String executeTask(WorkflowSpecs workflowSpecs, long workflowRunId, int index, TaskConfig taskConfig,
+			TaskSizer sizer, TaskExecutors executors, String cacheKey, String sourceETag) {
+		Long inputBytes = sizer.needsInputBytes(taskConfig) || executors.routesByInputSize()
+				? sizer.inputBytesOf(taskConfig)
+				: taskConfig.getInputBytes();
+		TaskSize size = sizer.sizeOf(taskConfig, inputBytes);
+		TaskExecutor executor = executors.select(taskConfig, inputBytes, size);
+		if (size != null && executor.isFargate(taskConfig))
+			size = TaskSize.snapToFargate(size.getCpu(), size.getMemory());
+		TaskOverride taskOverride = withSize(
+				buildTaskOverride(workflowSpecs, taskConfig, workflowRunId, cacheKey, sourceETag), size);
+		return executor.execute(taskConfig, taskOverride, launchToken(workflowRunId, index));
+	}
+
+	/**
+	 * This method builds the task sizer of a workflow run. The peak memory of
+	 * earlier runs is read on the first size derived from an input size.
+	 * 
+	 * @return
+	 */
+	private TaskSizer buildSizer(LaunchContext launchContext, WorkflowSpecs workflowSpecs, long workflowRunId) {
+		return new TaskSizer(workflowSpecs.getSizing(), launchContext.getS3(),
+				() -> taskHistory(launchContext, workflowSpecs, workflowRunId,
+						workflowSpecs.getSizing().getHistoryRuns()),
+				metrics);
+	}
+
+	/**
+	 * This method samples the tasks of the latest runs of a workflow which
+	 * started before a workflow run, for their execution times and peak memory
+	 * 
+	 * @param launchContext
+	 * @param workflowSpecs
+	 * @param workflowRunId
+	 * @param runs          number of earlier runs
+	 * @return rows of the Workflow Details table
+	 */
+	private static List<Map<String, AttributeValue>> taskHistory(LaunchContext launchContext,
+			WorkflowSpecs workflowSpecs, long workflowRunId, int runs) {
+		List<Map<String, AttributeValue>> tasks = new ArrayList<Map<String, AttributeValue>>();
+		for (long earlierRunId : WorkflowStore.join(
+				launchContext.getSummaryStore().getEarlierRuns(workflowSpecs.getWorkflowName(), workflowRunId, runs))) {
+			tasks.addAll(WorkflowStore.join(launchContext.getStore().sampleTasks(earlierRunId, HISTORY_TASKS_PER_RUN)));
+		}
+		return tasks;
+	}
+
+	/**
+	 * This method moves the launch cursor of a workflow run forward, see
+	 * {@link WorkflowSummaryStore#updateLaunchCursor}
+	 * 
+	 * @param summaryStore
+	 * @param workflowSpecs
+	 * @param workflowRunId
+	 * @param launchCursor
+	 * @param taskArns
+	 * @param inputCursorKey
+	 * @param inputCursorOffset
+	 */
+	private static void updateLaunchCursor(WorkflowSummaryStore summaryStore, WorkflowSpecs workflowSpecs,
+			long workflowRunId, int launchCursor, List<String> taskArns, String inputCursorKey, int inputCursorOffset) {
+		if (!WorkflowStore.join(summaryStore.updateLaunchCursor(workflowSpecs.getWorkflowName(), workflowRunId,
+				launchCursor, taskArns, inputCursorKey, inputCursorOffset)))
+			System.out.printf("Launch cursor of workflow run %d is already at or past %d \n", workflowRunId,
+					launchCursor);
+	}
+
+	/**
+	 * This method checks that tasks moved to EC2 have an EC2 capacity provider
+	 * to run on. The EC2 launch type is not used, as the instances of a
+	 * capacity provider are only launched for the tasks of its strategy.
+	 * 
+	 * @param config null when the workflow has no executors
+	 * @throws IllegalArgumentException if ec2MinMemoryMiB is set without an
+	 *                                  EC2 capacity provider strategy
+	 */
+	static void validateExecutors(ExecutorConfig config) {
+		if (config == null || config.getEc2MinMemoryMiB() <= 0)
+			return;
+		List<CapacityProviderConfig> strategy = config.getEc2CapacityProviderStrategy();
+		if (strategy == null || strategy.isEmpty() || isFargate(null, strategy))
+			throw new IllegalArgumentException(
+					"executors.ec2MinMemoryMiB needs an ec2CapacityProviderStrategy of EC2 capacity providers");
+	}
+
+	/**
+	 * This method builds the executors of a workflow run: RunTask as
+	 * configured by the workflow, and with executors, RunTask on the EC2
+	 * capacity providers for large tasks and a thread pool of the launcher for
+	 * small ones
+	 * 
+	 * @return
+	 */
+	private TaskExecutors buildExecutors(LaunchContext launchContext, WorkflowSpecs workflowSpecs) {
+		// subnets are described lazily, an invocation which launches nothing does not call EC2
+		SubnetPlacement placement = new SubnetPlacement(launchContext.getSubnetCapacity(),
+				tokenizeStrings(workflowSpecs.getSubnetIdLiteral(), workflowSpecs.getSeparator()), metrics);
+		Collection<String> securityGroupIds = tokenizeStrings(workflowSpecs.getSecurityGroupId(),
+				workflowSpecs.getSeparator());
+		TaskExecutor ecsExecutor = new EcsTaskExecutor(this, launchContext.getEcs(), workflowSpecs.getClusterName(),
+				workflowSpecs.getTaskDefinition(), workflowSpecs.getLaunchType(),
+				workflowSpecs.getCapacityProviderStrategy(), placement, securityGroupIds, metrics);
+		ExecutorConfig config = workflowSpecs.getExecutors();
+		if (config == null)
+			return new TaskExecutors(null, ecsExecutor, null, null);
+		// the strategy replaces the launch type of the workflow
+		TaskExecutor ec2Executor = config.getEc2MinMemoryMiB() <= 0 ? null
+				: new EcsTaskExecutor(this, launchContext.getEcs(), workflowSpecs.getClusterName(),
+						workflowSpecs.getTaskDefinition(), null, config.getEc2CapacityProviderStrategy(), placement,
+						securityGroupIds, metrics);
+		TaskExecutor inProcessExecutor = config.getInProcessMaxInputBytes() <= 0 ? null
+				: new InProcessExecutor(launchContext.getS3(), launchContext.getDynamoDB(), launchContext.getStore(),
+						config.getInProcessThreads(), launchContext.getRemainingTimeMillis(), metrics);
+		return new TaskExecutors(config, ecsExecutor, ec2Executor, inProcessExecutor);
+	}
+
+	/**
+	 * This method opens the tasks of the discovered inputs, after the last
+	 * launched one. With sharding, the shards are planned with the durations of
+	 * the latest runs of the workflow. Work items are never sharded, idle
+	 * workers already pull the next item.
+	 * 
+	 * @param launchContext
+	 * @param workflowSpecs
+	 * @param workflowRunId
+	 * @param inputCursorKey    key of the last launched input, null for a new run
+	 * @param inputCursorOffset number of launched inputs
+	 * @return
+	 */
+	private InputTasks openInput(LaunchContext launchContext, WorkflowSpecs workflowSpecs, long workflowRunId,
+			String inputCursorKey, int inputCursorOffset) {
+		S3Client s3 = launchContext.getS3();
+		InputConfig input = workflowSpecs.getInput();
+		ShardingConfig sharding = input.getSharding();
+		ShardPlanner planner = null;
+		if (launchContext.getWorkQueue() == null && sharding != null && sharding.getTargetShardSeconds() > 0) {
+			DurationModel model = DurationModel.fit(
+					taskHistory(launchContext, workflowSpecs, workflowRunId, sharding.getHistoryRuns()),
+					new DurationModel(sharding.getSecondsPerObject(), sharding.getBytesPerSecond()));
+			System.out.printf("Planning shards of %d seconds with %s \n", sharding.getTargetShardSeconds(), model);
+			planner = new ShardPlanner(model, sharding.getTargetShardSeconds(), sharding.getMaxObjectsPerShard());
+		}
+		ObjectStream objects = input.getManifestKey() != null
+				? new ManifestListing(s3, input.getS3BucketName(), input.getManifestKey(), inputCursorOffset, metrics)
+				: new PrefixListing(s3, input.getS3BucketName(), input.getPrefix(), input.getDelimiter(),
+						inputCursorKey, input.getListingParallelism(), metrics);
+		return new InputTasks(objects, input, planner, s3, inputCursorOffset, metrics);
+	}
+
+	/**
+	 * This method returns the attributes of the node row of a task of a
+	 * workflow with dependencies
+	 * 
+	 * @param taskName
+	 * @param status
+	 * @param taskArn  ARN of the launched ECS task, or null
+	 * @return
+	 */
+	private static Map<String, AttributeValue> nodeRow(String taskName, String status, String taskArn) {
+		long timeMillis = System.currentTimeMillis();
+		Map<String, AttributeValue> row = new HashMap<String, AttributeValue>();
+		row.put("task_name", TaskRows.string(taskName));
+		row.put("status", TaskRows.string(status));
+		row.put("update_time", TaskRows.string(new Date(timeMillis).toString()));
+		row.put("update_time_millis", TaskRows.number(timeMillis));
+		if (taskArn != null)
+			row.put("task_arn", TaskRows.string(taskArn));
+		return row;
+	}
+
+	private static String stringOf(Map<String, AttributeValue> item, String attributeName, String defaultValue) {
+		AttributeValue value = item == null ? null : item.get(attributeName);
+		return value == null || value.s() == null ? defaultValue : value.s();
+	}
+
+	private static int countOf(Map<String, AttributeValue> item, String attributeName) {
+		AttributeValue value = item.get(attributeName);
+		return value == null || value.n() == null ? 0 : Integer.parseInt(value.n());
+	}
+
+	/**
+	 * This method returns the run id of a workflow run: the one passed to resume
+	 * a run, else the start time of the Step Functions execution, which is the
+	 * same for every retry of the launcher, else the current time
+	 * 
+	 * @param workflowSpecs
+	 * @param currentTimeMillis
+	 * @return
+	 */
+	public static long resolveWorkflowRunId(WorkflowSpecs workflowSpecs, long currentTimeMillis) {
+		if (workflowSpecs.getWorkflowRunId() != null)
+			return workflowSpecs.getWorkflowRunId();
+		ExecutionContext execution = workflowSpecs.getExecution();
+		if (execution != null && execution.getStartTime() != null)
+			return Instant.parse(execution.getStartTime()).toEpochMilli();
+		return currentTimeMillis;
+	}
+
+	/**
+	 * This method returns the token a task is started with. ECS RunTask has no
+	 * client token, so the token is passed as startedBy and a retry looks the
+	 * task up with ListTasks before running it again.
+	 * 
+	 * @param workflowRunId
+	 * @param index         position of the task in the task list
+	 * @return
+	 */
+	public static String launchToken(long workflowRunId, int index) {
+		return String.format("sk-%d-%d", workflowRunId, index);
+	}
+
+	/**
+	 * This method looks up a task started with a launch token
+	 * 
+	 * @param ecs
+	 * @param clusterName
+	 * @param launchToken
+	 * @return the task ARN, or null when no task was started with the token
+	 */
+	public String findLaunchedTask(EcsClient ecs, String clusterName, String launchToken) {
+		for (DesiredStatus desiredStatus : Arrays.asList(DesiredStatus.RUNNING, DesiredStatus.STOPPED)) {
+			ListTasksRequest request = ListTasksRequest.builder().cluster(clusterName).startedBy(launchToken)
+					.desiredStatus(desiredStatus).build();
+			List<String> taskArns = metrics.time("ListTasksLatency", () -> ecs.listTasks(request)).taskArns();
+			if (!taskArns.isEmpty())
+				return taskArns.get(0);
+		}
+		return null;
+	}
+
+	/**
+	 * This method looks up a task started with a launch token, wherever it ran.
+	 * A task run in the launcher or completed from the result cache has a row
+	 * under the launch token instead of an ECS task.
+	 * 
+	 * @param ecs
+	 * @param store
+	 * @param clusterName
+	 * @param workflowRunId
+	 * @param launchToken
+	 * @return the ecs_task_id of the task, or null when no task was started with
+	 *         the token
+	 */
+	private String findStartedTask(EcsClient ecs, WorkflowStore store, String clusterName, long workflowRunId,
+			String launchToken) {
+		String inProcessTaskId = InProcessExecutor.IN_PROCESS_TASK_PREFIX + launchToken;
+		String cachedTaskId = CACHED_TASK_PREFIX + launchToken;
+		CompletableFuture<Map<String, AttributeValue>> inProcess = store.getTask(workflowRunId, inProcessTaskId);
+		CompletableFuture<Map<String, AttributeValue>> cached = store.getTask(workflowRunId, cachedTaskId);
+		if (!WorkflowStore.join(inProcess).isEmpty())
+			return inProcessTaskId;
+		if (!WorkflowStore.join(cached).isEmpty())
+			return cachedTaskId;
+		return findLaunchedTask(ecs, clusterName, launchToken);
+	}
+
+	/**
+	 * This method prepares the container overrides of the ECS task of a task
+	 * config
+	 * 
+	 * @param workflowSpecs
+	 * @param taskConfig
+	 * @param workflowRunId
+	 * @return
+	 */
+	public static TaskOverride buildTaskOverride(WorkflowSpecs workflowSpecs, TaskConfig taskConfig,
+			long workflowRunId) {
+		return buildTaskOverride(workflowSpecs, taskConfig, workflowRunId, null, null);
+	}
+
+	/**
+	 * This method prepares the container overrides of the ECS task of a task
+	 * config whose result is recorded in the result cache
+	 * 
+	 * @param workflowSpecs
+	 * @param taskConfig
+	 * @param workflowRunId
+	 * @param cacheKey      null when the workflow has no result cache
+	 * @param sourceETag    ETag of the source object the cache key was computed
+	 *                      with
+	 * @return
+	 */
+	public static TaskOverride buildTaskOverride(WorkflowSpecs workflowSpecs, TaskConfig taskConfig,
+			long workflowRunId, String cacheKey, String sourceETag) {
+		List<KeyValuePair> environment = new ArrayList<KeyValuePair>(Arrays.asList(
+				KeyValuePair.builder().name("region").value(workflowSpecs.getRegion()).build(),
+				KeyValuePair.builder().name("workflow_details_ddb_table_name")
+						.value(workflowSpecs.getDdbTableNameWFDetails()).build(),
+				KeyValuePair.builder().name("workflow_details_hash_key").value(workflowSpecs.getHashKeyWFDetails())
+						.build(),
+				KeyValuePair.builder().name("workflow_details_range_key").value(workflowSpecs.getRangeKeyWFDetails())
+						.build(),
+				KeyValuePair.builder().name("workflow_name").value(workflowSpecs.getWorkflowName()).build(),
+				KeyValuePair.builder().name("workflow_run_id").value(Long.toString(workflowRunId)).build(),
+				KeyValuePair.builder().name("task_name").value(taskConfig.getTaskName()).build(),
+				KeyValuePair.builder().name("s3_bucket_name").value(taskConfig.getS3BucketName()).build(),
+				KeyValuePair.builder().name("object_key").value(taskConfig.getObjectKey()).build()));
+		if (taskConfig.getObjectKeys() != null)
+			environment.add(KeyValuePair.builder().name("object_keys")
+					.value(new Gson().toJson(taskConfig.getObjectKeys())).build());
+		if (taskConfig.getInputBytes() != null) {
+			environment.add(KeyValuePair.builder().name(DurationModel.INPUT_BYTES)
+					.value(Long.toString(taskConfig.getInputBytes())).build());
+			environment.add(KeyValuePair.builder().name(DurationModel.INPUT_OBJECTS).value(Integer.toString(
+					taskConfig.getObjectKeys() == null ? 1 : taskConfig.getObjectKeys().size())).build());
+		}
+		if (cacheKey != null) {
+			environment.add(KeyValuePair.builder().name("result_cache_table_name")
+					.value(workflowSpecs.getResultCacheTableName()).build());
+			environment.add(KeyValuePair.builder().name("result_cache_key").value(cacheKey).build());
+			environment.add(KeyValuePair.builder().name("source_etag").value(sourceETag).build());
+		}
+
+		ContainerOverride co = ContainerOverride.builder().environment(environment)
+				.name(workflowSpecs.getContainerName()).build();
+		return TaskOverride.builder().containerOverrides(Arrays.asList(co)).build();
+	}
+
+	/**
+	 * This method returns the workflow specs stored in the workflow summary. A
+	 * DynamoDB item is limited to 400 KB, so the task list of a large workflow is
+	 * left out.
+	 * 
+	 * @param workflowSpecs
+	 * @return
+	 */
+	public static String workflowSpecsJson(WorkflowSpecs workflowSpecs) {
+		JsonObject json = new Gson().toJsonTree(workflowSpecs).getAsJsonObject();
+		if (json.toString().length() > MAX_WORKFLOW_SPECS_LENGTH)
+			json.remove("taskList");
+		return json.toString();
+	}
+
+	/**
+	 * This method runs an ECS Task, passing it the current trace context
 	 * 
 	 * @param ecs
+	 * @param runTaskRequest see {@link #buildRunTaskRequest}, started by a
+	 *                       launch token when the launch may be retried
+	 * @return
+	 */
+	public Task submitECSTask(EcsClient ecs, RunTaskRequest runTaskRequest) {
+		Span span = tracing.startSpan("RunTask");
+		try (Scope scope = span.makeCurrent()) {
+			Task task = runTask(ecs, runTaskRequest.toBuilder()
+					.overrides(withTraceParent(runTaskRequest.overrides(), Tracing.currentTraceParent())).build());
+			span.setAttribute("ecs.task_arn", task.taskArn());
+			return task;
+		} finally {
+			span.end();
+		}
+	}
+
+	/**
+	 * This method builds one work item per task config of the workflow
+	 * 
+	 * @param workflowSpecs
+	 * @param workflowRunId
+	 * @param traceParent
+	 * @return
+	 */
+	public static List<WorkItem> buildWorkItems(WorkflowSpecs workflowSpecs, long workflowRunId, String traceParent) {
+		List<WorkItem> workItems = new ArrayList<WorkItem>();
+		for (int i = 0; i < workflowSpecs.getTaskList().size(); i++) {
+			workItems.add(buildWorkItem(workflowSpecs, workflowRunId, i, traceParent));
+		}
+		return workItems;
+	}
+
+	/**
+	 * This method builds the work item of one task config of the workflow
+	 * 
+	 * @param workflowSpecs
+	 * @param workflowRunId
+	 * @param index         position of the task config in the task list
+	 * @param traceParent
+	 * @return
+	 */
+	public static WorkItem buildWorkItem(WorkflowSpecs workflowSpecs, long workflowRunId, int index,
+			String traceParent) {
+		return buildWorkItem(workflowSpecs, workflowRunId, index, workflowSpecs.getTaskList().get(index),
+				traceParent);
+	}
+
+	/**
+	 * This method builds the work item of a task config, which may not be in
+	 * the task list when the inputs are discovered
+	 * 
+	 * @param workflowSpecs
+	 * @param workflowRunId
+	 * @param index         position of the task in the workflow run
+	 * @param taskConfig
+	 * @param traceParent
+	 * @return
+	 */
+	public static WorkItem buildWorkItem(WorkflowSpecs workflowSpecs, long workflowRunId, int index,
+			TaskConfig taskConfig, String traceParent) {
+		WorkItem item = new WorkItem();
+		item.setItemId(WorkItem.itemId(workflowRunId, index));
+		item.setRegion(workflowSpecs.getRegion());
+		item.setDdbTableNameWFDetails(workflowSpecs.getDdbTableNameWFDetails());
+		item.setHashKeyWFDetails(workflowSpecs.getHashKeyWFDetails());
+		item.setRangeKeyWFDetails(workflowSpecs.getRangeKeyWFDetails());
+		item.setWorkflowName(workflowSpecs.getWorkflowName());
+		item.setWorkflowRunId(workflowRunId);
+		item.setTaskName(taskConfig.getTaskName());
+		item.setS3BucketName(taskConfig.getS3BucketName());
+		item.setObjectKey(taskConfig.getObjectKey());
+		item.setTraceParent(traceParent);
+		return item;
+	}
+
+	/**
+	 * This method sets the CPU and memory of a task
+	 * 
+	 * @param taskOverrides
+	 * @param size          null to keep the size of the task definition
+	 * @return
+	 */
+	public static TaskOverride withSize(TaskOverride taskOverrides, TaskSize size) {
+		if (size == null)
+			return taskOverrides;
+		TaskOverride.Builder builder = taskOverrides.toBuilder();
+		if (size.getCpu() > 0)
+			builder.cpu(Integer.toString(size.getCpu()));
+		if (size.getMemory() > 0)
+			builder.memory(Integer.toString(size.getMemory()));
+		return builder.build();
+	}
+
+	/**
+	 * This method tells whether a task runs on Fargate: with a capacity
+	 * provider strategy of FARGATE and FARGATE_SPOT only, else with the launch
+	 * type FARGATE, the default
+	 * 
+	 * @param launchType
+	 * @param capacityProviderStrategy
+	 * @return
+	 */
+	public static boolean isFargate(String launchType, List<CapacityProviderConfig> capacityProviderStrategy) {
+		if (capacityProviderStrategy != null && !capacityProviderStrategy.isEmpty())
+			return capacityProviderStrategy.stream()
+					.allMatch(provider -> provider.getCapacityProvider().toUpperCase().startsWith("FARGATE"));
+		return launchType == null || LaunchType.FARGATE.toString().equalsIgnoreCase(launchType);
+	}
+
+	/**
+	 * This method adds the trace context to the environment of every container
+	 * override, so the ECS task continues the trace of its RunTask call
+	 * 
+	 * @param taskOverrides
+	 * @param traceParent
+	 * @return
+	 */
+	public static TaskOverride withTraceParent(TaskOverride taskOverrides, String traceParent) {
+		if (traceParent == null)
+			return taskOverrides;
+		List<ContainerOverride> containerOverrides = new ArrayList<ContainerOverride>();
+		for (ContainerOverride co : taskOverrides.containerOverrides()) {
+			List<KeyValuePair> environment = new ArrayList<KeyValuePair>(co.environment());
+			environment.add(KeyValuePair.builder().name(Tracing.TRACE_PARENT).value(traceParent).build());
+			containerOverrides.add(co.toBuilder().environment(environment).build());
+		}
+		return taskOverrides.toBuilder().containerOverrides(containerOverrides).build();
+	}
+
+	/**
+	 * This method builds a RunTask request. ECS rejects a request with both a
+	 * launch type and a capacity provider strategy, so only one is set.
+	 * 
 	 * @param subnetIds
 	 * @param securityGroupIds
 	 * @param taskOverrides
 	 * @param clusterName
 	 * @param taskDefinition
+	 * @param launchType
+	 * @param capacityProviderStrategy
 	 * @return
 	 */
-	public Task submitECSTask(EcsClient ecs, Collection<String> subnetIds, Collection<String> securityGroupIds,
-			TaskOverride taskOverrides, String clusterName, String taskDefinition) {
-
-		System.out.println("Submitting ECS Tasks");
-		List<Task> tasks = null;
+	public static RunTaskRequest buildRunTaskRequest(Collection<String> subnetIds,
+			Collection<String> securityGroupIds, TaskOverride taskOverrides, String clusterName,
+			String taskDefinition, String launchType, List<CapacityProviderConfig> capacityProviderStrategy) {
 		AwsVpcConfiguration awsvpcConfiguration = AwsVpcConfiguration.builder().subnets(subnetIds)
 				.securityGroups(securityGroupIds).build();
 		NetworkConfiguration networkConfiguration = NetworkConfiguration.builder()
 				.awsvpcConfiguration(awsvpcConfiguration).build();
-		RunTaskRequest runTaskRequest = RunTaskRequest.builder().cluster(clusterName).taskDefinition(taskDefinition)
-				.launchType(LaunchType.FARGATE).networkConfiguration(networkConfiguration).overrides(taskOverrides)
-				.build();
+		RunTaskRequest.Builder builder = RunTaskRequest.builder().cluster(clusterName).taskDefinition(taskDefinition)
+				.networkConfiguration(networkConfiguration).overrides(taskOverrides);
+		if (capacityProviderStrategy != null && !capacityProviderStrategy.isEmpty()) {
+			List<CapacityProviderStrategyItem> items = new ArrayList<CapacityProviderStrategyItem>();
+			for (CapacityProviderConfig config : capacityProviderStrategy) {
+				items.add(CapacityProviderStrategyItem.builder().capacityProvider(config.getCapacityProvider())
+						.weight(config.getWeight()).base(config.getBase()).build());
+			}
+			builder.capacityProviderStrategy(items);
+		} else {
+			builder.launchType(launchType == null ? LaunchType.FARGATE : LaunchType.fromValue(launchType.toUpperCase()));
+		}
+		return builder.build();
+	}
+
+	private Task runTask(EcsClient ecs, RunTaskRequest runTaskRequest) {
+		System.out.println("Submitting ECS Tasks");
+		List<Task> tasks = null;
+		List<String> reasons = new ArrayList<String>();
 		try {
-			RunTaskResponse response = ecs.runTask(runTaskRequest);
+			RunTaskResponse response = metrics.time("RunTaskLatency", () -> ecs.runTask(runTaskRequest));
 			// Process the response
 			tasks = response.tasks();
+			metrics.count("TasksSubmitted", tasks.size());
+			if (!response.failures().isEmpty()) {
+				metrics.count("RunTaskFailures", response.failures().size());
+				for (Failure failure : response.failures()) {
+					System.out.println("RunTask failure: " + failure.reason() + " " + failure.detail());
+					reasons.add(failure.reason() + (failure.detail() == null ? "" : " " + failure.detail()));
+				}
+			}
 			for (Task task : tasks) {
 				System.out.println("Task ARN: " + task.taskArn());
 				System.out.println("Task Def ARN: " + task.taskDefinitionArn());
@@ -140,10 +1169,21 @@ public class ECSTaskLauncher implements RequestHandler<WorkflowSpecs, Map<String
 				System.out.println("Task Last Status: " + task.lastStatus());
 				System.out.println("Task Start Time: " + task.startedAt());
 			}
+		} catch (EcsException e) {
+			metrics.count(e.isThrottlingException() ? "RunTaskThrottles" : "RunTaskErrors");
+			reasons.add(e.getMessage());
+			e.printStackTrace();
+			System.out.println("Cannot run ECS Task.");
 		} catch (Exception e) {
+			metrics.count("RunTaskErrors");
+			reasons.add(e.getMessage());
 			e.printStackTrace();
 			System.out.println("Cannot run ECS Task.");
 		}
+		// fail the invocation, a retry resumes from the launch cursor
+		if (tasks == null || tasks.isEmpty())
+			throw new IllegalStateException("Cannot run ECS Task " + runTaskRequest.startedBy()
+					+ (reasons.isEmpty() ? "" : ": " + String.join("; ", reasons)));
 		return tasks.get(0);
 	}
 
@@ -0,0 +1,92 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.launcher;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import software.amazon.awssdk.services.ecs.EcsClient;
+import software.amazon.awssdk.services.ecs.model.Task;
+import software.amazon.awssdk.services.ecs.model.TaskOverride;
+import software.aws.ecs.java.starterkit.executor.TaskExecutor;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.placement.SubnetPlacement;
+import software.aws.ecs.java.starterkit.util.CapacityProviderConfig;
+import software.aws.ecs.java.starterkit.util.TaskConfig;
+
+/**
+ * Runs a task as an ECS task with RunTask, on Fargate or on EC2 depending on
+ * its launch type and capacity provider strategy. A task level capacity
+ * provider strategy wins over the executor's. The task is placed in the subnet
+ * chosen by the placement, and a task which gets no ENI in its subnet is run
+ * again in the next one, as long as a subnet may have free addresses.
+ *
+ */
+class EcsTaskExecutor implements TaskExecutor {
+
+	private final ECSTaskLauncher launcher;
+	private final EcsClient ecs;
+	private final String clusterName;
+	private final String taskDefinition;
+	private final String launchType;
+	private final List<CapacityProviderConfig> capacityProviderStrategy;
+	private final SubnetPlacement placement;
+	private final Collection<String> securityGroupIds;
+	private final Metrics metrics;
+
+	/**
+	 * @param launcher
+	 * @param ecs
+	 * @param clusterName
+	 * @param taskDefinition
+	 * @param launchType               FARGATE when null
+	 * @param capacityProviderStrategy null or empty to use the launch type
+	 * @param placement
+	 * @param securityGroupIds
+	 * @param metrics
+	 */
+	EcsTaskExecutor(ECSTaskLauncher launcher, EcsClient ecs, String clusterName, String taskDefinition,
+			String launchType, List<CapacityProviderConfig> capacityProviderStrategy, SubnetPlacement placement,
+			Collection<String> securityGroupIds, Metrics metrics) {
+		this.launcher = launcher;
+		this.ecs = ecs;
+		this.clusterName = clusterName;
+		this.taskDefinition = taskDefinition;
+		this.launchType = launchType;
+		this.capacityProviderStrategy = capacityProviderStrategy;
+		this.placement = placement;
+		this.securityGroupIds = securityGroupIds;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public boolean isFargate(TaskConfig taskConfig) {
+		return ECSTaskLauncher.isFargate(launchType, capacityProviderStrategyOf(taskConfig));
+	}
+
+	@Override
+	public String execute(TaskConfig taskConfig, TaskOverride taskOverride, String launchToken) {
+		List<CapacityProviderConfig> strategy = capacityProviderStrategyOf(taskConfig);
+		while (true) {
+			List<String> subnetIds = placement.next();
+			try {
+				Task task = launcher.submitECSTask(ecs, ECSTaskLauncher.buildRunTaskRequest(subnetIds,
+						securityGroupIds, taskOverride, clusterName, taskDefinition, launchType, strategy).toBuilder()
+						.startedBy(launchToken).build());
+				placement.placed(subnetIds);
+				return task.taskArn();
+			} catch (IllegalStateException e) {
+				if (!SubnetPlacement.isCapacityFailure(e.getMessage()) || !placement.exhausted(subnetIds))
+					throw e;
+				metrics.count("RunTaskPlacementRetries");
+			}
+		}
+	}
+
+	private List<CapacityProviderConfig> capacityProviderStrategyOf(TaskConfig taskConfig) {
+		return Optional.ofNullable(taskConfig.getCapacityProviderStrategy()).filter(strategy -> !strategy.isEmpty())
+				.orElse(capacityProviderStrategy);
+	}
+}
@@ -0,0 +1,134 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.launcher;
+
+import java.util.function.LongSupplier;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.ecs.EcsClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.aws.ecs.java.starterkit.cache.ResultCache;
+import software.aws.ecs.java.starterkit.placement.SubnetCapacity;
+import software.aws.ecs.java.starterkit.queue.WorkQueue;
+import software.aws.ecs.java.starterkit.scheduler.FairShareScheduler;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+import software.aws.ecs.java.starterkit.store.WorkflowSummaryStore;
+
+/**
+ * What ECSTaskLauncher launches a workflow run with, besides its workflow
+ * specs: the clients, the summary of the run, the rows of its tasks and the
+ * time left in the invocation. The other collaborators are left null when the
+ * workflow specs do not use them.
+ *
+ */
+class LaunchContext {
+
+	private final EcsClient ecs;
+	private final DynamoDbClient dynamoDB;
+	private final WorkflowStore store;
+	private final WorkflowSummaryStore summaryStore;
+	private final LongSupplier remainingTimeMillis;
+	private WorkQueue workQueue;
+	private FairShareScheduler scheduler;
+	private ResultCache resultCache;
+	private S3Client s3;
+	private SubnetCapacity subnetCapacity;
+
+	/**
+	 * @param ecs
+	 * @param dynamoDB
+	 * @param store               the rows of the Workflow Details table
+	 * @param summaryStore        the items of the Workflow Summary table
+	 * @param remainingTimeMillis time left in the Lambda invocation
+	 */
+	LaunchContext(EcsClient ecs, DynamoDbClient dynamoDB, WorkflowStore store, WorkflowSummaryStore summaryStore,
+			LongSupplier remainingTimeMillis) {
+		this.ecs = ecs;
+		this.dynamoDB = dynamoDB;
+		this.store = store;
+		this.summaryStore = summaryStore;
+		this.remainingTimeMillis = remainingTimeMillis;
+	}
+
+	/**
+	 * @param workQueue null unless the worker pool is used
+	 */
+	LaunchContext workQueue(WorkQueue workQueue) {
+		this.workQueue = workQueue;
+		return this;
+	}
+
+	/**
+	 * @param scheduler null unless the workflow specs have scheduling
+	 */
+	LaunchContext scheduler(FairShareScheduler scheduler) {
+		this.scheduler = scheduler;
+		return this;
+	}
+
+	/**
+	 * @param resultCache null unless the workflow specs have a result cache
+	 */
+	LaunchContext resultCache(ResultCache resultCache) {
+		this.resultCache = resultCache;
+		return this;
+	}
+
+	/**
+	 * @param s3 needed by the result cache, input discovery, sizing and
+	 *           executors
+	 */
+	LaunchContext s3(S3Client s3) {
+		this.s3 = s3;
+		return this;
+	}
+
+	/**
+	 * @param subnetCapacity null to pass all the subnets to every RunTask
+	 */
+	LaunchContext subnetCapacity(SubnetCapacity subnetCapacity) {
+		this.subnetCapacity = subnetCapacity;
+		return this;
+	}
+
+	EcsClient getEcs() {
+		return ecs;
+	}
+
+	DynamoDbClient getDynamoDB() {
+		return dynamoDB;
+	}
+
+	WorkflowStore getStore() {
+		return store;
+	}
+
+	WorkflowSummaryStore getSummaryStore() {
+		return summaryStore;
+	}
+
+	LongSupplier getRemainingTimeMillis() {
+		return remainingTimeMillis;
+	}
+
+	WorkQueue getWorkQueue() {
+		return workQueue;
+	}
+
+	FairShareScheduler getScheduler() {
+		return scheduler;
+	}
+
+	ResultCache getResultCache() {
+		return resultCache;
+	}
+
+	S3Client getS3() {
+		return s3;
+	}
+
+	SubnetCapacity getSubnetCapacity() {
+		return subnetCapacity;
+	}
+}
@@ -0,0 +1,150 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.placement;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import com.google.common.io.ByteStreams;
+
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.signer.Aws4Signer;
+import software.amazon.awssdk.auth.signer.params.Aws4SignerParams;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.HttpExecuteRequest;
+import software.amazon.awssdk.http.HttpExecuteResponse;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.SdkHttpFullRequest;
+import software.amazon.awssdk.http.SdkHttpMethod;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+
+/**
+ * SubnetCapacity backed by the EC2 DescribeSubnets API. The starter kit does
+ * not depend on the EC2 client of the AWS SDK for this one call, so the Query
+ * API request is signed with Signature Version 4 and sent with the HTTP client
+ * the other clients use.
+ *
+ */
+public class Ec2SubnetCapacity implements SubnetCapacity {
+
+	private static final String API_VERSION = "2016-11-15";
+
+	private final Region region;
+	private final AwsCredentialsProvider credentialsProvider;
+	private final SdkHttpClient httpClient;
+
+	public Ec2SubnetCapacity(Region region) {
+		this(region, DefaultCredentialsProvider.create(), ApacheHttpClient.builder().build());
+	}
+
+	public Ec2SubnetCapacity(Region region, AwsCredentialsProvider credentialsProvider, SdkHttpClient httpClient) {
+		this.region = region;
+		this.credentialsProvider = credentialsProvider;
+		this.httpClient = httpClient;
+	}
+
+	@Override
+	public List<Subnet> describeSubnets(Collection<String> subnetIds) {
+		byte[] body = requestBody(subnetIds).getBytes(StandardCharsets.UTF_8);
+		SdkHttpFullRequest request = SdkHttpFullRequest.builder().method(SdkHttpMethod.POST).protocol("https")
+				.host("ec2." + region.id() + ".amazonaws.com").encodedPath("/")
+				.putHeader("Content-Type", "application/x-www-form-urlencoded; charset=utf-8")
+				.contentStreamProvider(() -> new ByteArrayInputStream(body)).build();
+		Aws4SignerParams signerParams = Aws4SignerParams.builder()
+				.awsCredentials(credentialsProvider.resolveCredentials()).signingName("ec2").signingRegion(region)
+				.build();
+		SdkHttpFullRequest signedRequest = Aws4Signer.create().sign(request, signerParams);
+		try {
+			HttpExecuteResponse response = httpClient.prepareRequest(HttpExecuteRequest.builder()
+					.request(signedRequest).contentStreamProvider(signedRequest.contentStreamProvider().orElse(null))
+					.build()).call();
+			byte[] responseBody;
+			try (AbortableInputStream inputStream = response.responseBody().orElse(null)) {
+				responseBody = inputStream == null ? new byte[0] : ByteStreams.toByteArray(inputStream);
+			}
+			if (!response.httpResponse().isSuccessful())
+				throw new IllegalStateException(String.format("DescribeSubnets failed with status %d: %s",
+						response.httpResponse().statusCode(), new String(responseBody, StandardCharsets.UTF_8)));
+			return parseResponse(new ByteArrayInputStream(responseBody));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	static String requestBody(Collection<String> subnetIds) {
+		StringBuilder body = new StringBuilder("Action=DescribeSubnets&Version=" + API_VERSION);
+		int index = 1;
+		for (String subnetId : subnetIds) {
+			try {
+				body.append("&SubnetId.").append(index++).append('=')
+						.append(URLEncoder.encode(subnetId, StandardCharsets.UTF_8.name()));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return body.toString();
+	}
+
+	/**
+	 * This method reads the subnets of a DescribeSubnets response
+	 *
+	 * @param inputStream
+	 * @return
+	 * @throws IOException
+	 */
+	static List<Subnet> parseResponse(InputStream inputStream) throws IOException {
+		Document document;
+		try {
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+			document = factory.newDocumentBuilder().parse(inputStream);
+		} catch (ParserConfigurationException | SAXException e) {
+			throw new IOException("Cannot parse DescribeSubnets response", e);
+		}
+		List<Subnet> subnets = new ArrayList<Subnet>();
+		Element subnetSet = childOf(document.getDocumentElement(), "subnetSet");
+		if (subnetSet == null)
+			return subnets;
+		for (Node node = subnetSet.getFirstChild(); node != null; node = node.getNextSibling()) {
+			if (node instanceof Element && "item".equals(node.getNodeName())) {
+				Element item = (Element) node;
+				subnets.add(new Subnet(textOf(item, "subnetId"), textOf(item, "availabilityZone"),
+						Integer.parseInt(textOf(item, "availableIpAddressCount"))));
+			}
+		}
+		return subnets;
+	}
+
+	private static Element childOf(Element parent, String name) {
+		for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+			if (node instanceof Element && name.equals(node.getNodeName()))
+				return (Element) node;
+		}
+		return null;
+	}
+
+	private static String textOf(Element parent, String name) {
+		Element child = childOf(parent, name);
+		if (child == null)
+			throw new IllegalStateException("DescribeSubnets response item without " + name);
+		return child.getTextContent().trim();
+	}
+}
@@ -0,0 +1,33 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.placement;
+
+/**
+ * A subnet with its Availability Zone and number of free IP addresses
+ *
+ */
+public class Subnet {
+
+	private final String subnetId;
+	private final String availabilityZone;
+	private final int availableIpAddressCount;
+
+	public Subnet(String subnetId, String availabilityZone, int availableIpAddressCount) {
+		this.subnetId = subnetId;
+		this.availabilityZone = availabilityZone;
+		this.availableIpAddressCount = availableIpAddressCount;
+	}
+
+	public String getSubnetId() {
+		return subnetId;
+	}
+
+	public String getAvailabilityZone() {
+		return availabilityZone;
+	}
+
+	public int getAvailableIpAddressCount() {
+		return availableIpAddressCount;
+	}
+}
@@ -0,0 +1,23 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.placement;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Source of the free IP addresses of the subnets tasks are placed in. Every
+ * awsvpc task takes one address of its subnet for its ENI.
+ *
+ */
+public interface SubnetCapacity {
+
+	/**
+	 * This method describes subnets
+	 *
+	 * @param subnetIds
+	 * @return the subnets found, in no particular order
+	 */
+	List<Subnet> describeSubnets(Collection<String> subnetIds);
+}
@@ -0,0 +1,157 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.placement;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+
+/**
+ * Chooses the subnet of every task launched by an invocation of the launcher.
+ * The free IP addresses of the subnets are described once, before the first
+ * task, and counted down as tasks are placed. A task goes to the Availability
+ * Zone with the fewest tasks placed so far, and there to the subnet with the
+ * most free addresses, so tasks spread across zones and subnets which run out
+ * of addresses are left out. A subnet in which a task could not get an ENI is
+ * left out for the rest of the invocation.
+ *
+ * Without subnet capacity, or when the subnets cannot be described, every task
+ * gets all the subnets and ECS chooses.
+ *
+ */
+public class SubnetPlacement {
+
+	private static final Pattern CAPACITY_FAILURE = Pattern.compile(
+			"RESOURCE:ENI|\\bENI\\b|elastic network interface|free (IP )?address|IP address",
+			Pattern.CASE_INSENSITIVE);
+
+	private final SubnetCapacity subnetCapacity;
+	private final List<String> subnetIds;
+	private final Metrics metrics;
+	// free addresses by subnet id, null until described
+	private Map<String, Integer> freeAddresses;
+	private final Map<String, String> zones = new HashMap<String, String>();
+	private final Map<String, Integer> placedByZone = new HashMap<String, Integer>();
+
+	/**
+	 * @param subnetCapacity null to let ECS choose among all the subnets
+	 * @param subnetIds
+	 * @param metrics
+	 */
+	public SubnetPlacement(SubnetCapacity subnetCapacity, Collection<String> subnetIds, Metrics metrics) {
+		this.subnetCapacity = subnetIds.size() > 1 ? subnetCapacity : null;
+		this.subnetIds = new ArrayList<String>(subnetIds);
+		this.metrics = metrics;
+	}
+
+	/**
+	 * This method chooses the subnets of the next task
+	 *
+	 * @return one subnet, or all the subnets when none is known to have free
+	 *         addresses
+	 */
+	public List<String> next() {
+		Map<String, Integer> free = describe();
+		Map<String, Integer> freeByZone = new HashMap<String, Integer>();
+		free.forEach((subnetId, count) -> {
+			if (count > 0)
+				freeByZone.merge(zones.get(subnetId), count, Integer::sum);
+		});
+		if (freeByZone.isEmpty()) {
+			if (!free.isEmpty())
+				metrics.count("SubnetsExhausted");
+			return Collections.unmodifiableList(subnetIds);
+		}
+		String zone = null;
+		for (String candidate : freeByZone.keySet()) {
+			if (zone == null || compareZones(candidate, zone, freeByZone) < 0)
+				zone = candidate;
+		}
+		String subnetId = null;
+		for (Map.Entry<String, Integer> entry : free.entrySet()) {
+			if (zone.equals(zones.get(entry.getKey())) && (subnetId == null || entry.getValue() > free.get(subnetId)))
+				subnetId = entry.getKey();
+		}
+		return Collections.singletonList(subnetId);
+	}
+
+	private int compareZones(String zone, String other, Map<String, Integer> freeByZone) {
+		int placed = Integer.compare(placedByZone.getOrDefault(zone, 0), placedByZone.getOrDefault(other, 0));
+		if (placed != 0)
+			return placed;
+		int free = Integer.compare(freeByZone.get(other), freeByZone.get(zone));
+		return free != 0 ? free : zone.compareTo(other);
+	}
+
+	/**
+	 * This method counts a task placed in the subnets returned by
+	 * {@link #next()}
+	 *
+	 * @param subnets
+	 */
+	public void placed(List<String> subnets) {
+		if (freeAddresses == null || subnets.size() != 1 || !freeAddresses.containsKey(subnets.get(0)))
+			return;
+		String subnetId = subnets.get(0);
+		freeAddresses.merge(subnetId, -1, Integer::sum);
+		placedByZone.merge(zones.get(subnetId), 1, Integer::sum);
+	}
+
+	/**
+	 * This method leaves out subnets in which a task could not get an ENI
+	 *
+	 * @param subnets
+	 * @return true when another subnet may still have free addresses
+	 */
+	public boolean exhausted(List<String> subnets) {
+		if (freeAddresses == null || subnets.size() != 1 || !freeAddresses.containsKey(subnets.get(0)))
+			return false;
+		System.out.printf("Subnet %s has no free addresses left \n", subnets.get(0));
+		metrics.count("SubnetCapacityFailures");
+		freeAddresses.put(subnets.get(0), 0);
+		return freeAddresses.values().stream().anyMatch(count -> count > 0);
+	}
+
+	/**
+	 * This method tells whether a task failed to launch because its subnet had
+	 * no free address for its ENI
+	 *
+	 * @param message reasons of the RunTask failure
+	 * @return
+	 */
+	public static boolean isCapacityFailure(String message) {
+		return message != null && CAPACITY_FAILURE.matcher(message).find();
+	}
+
+	private Map<String, Integer> describe() {
+		if (freeAddresses != null)
+			return freeAddresses;
+		freeAddresses = new LinkedHashMap<String, Integer>();
+		if (subnetCapacity == null)
+			return freeAddresses;
+		try {
+			List<Subnet> subnets = metrics.time("DescribeSubnetsLatency",
+					() -> subnetCapacity.describeSubnets(subnetIds));
+			for (Subnet subnet : subnets) {
+				System.out.printf("Subnet %s in %s has %d free addresses \n", subnet.getSubnetId(),
+						subnet.getAvailabilityZone(), subnet.getAvailableIpAddressCount());
+				freeAddresses.put(subnet.getSubnetId(), subnet.getAvailableIpAddressCount());
+				zones.put(subnet.getSubnetId(), subnet.getAvailabilityZone());
+			}
+		} catch (RuntimeException e) {
+			// for e.g. without ec2:DescribeSubnets permission, launch as before
+			metrics.count("DescribeSubnetsErrors");
+			System.out.println("Cannot describe subnets, ECS chooses among all of them: " + e.getMessage());
+			freeAddresses.clear();
+		}
+		return freeAddresses;
+	}
+}
@@ -0,0 +1,110 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.sizing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * CPU and memory of a task, 0 when the task definition decides. Fargate only
+ * runs the combinations of its task size table, so a requested size is
+ * rounded up to the cheapest combination with at least the requested CPU and
+ * memory.
+ *
+ */
+public class TaskSize {
+
+	// Fargate on-demand prices of Linux/x86 tasks per vCPU hour and per GB hour, to rank the sizes
+	private static final double VCPU_HOUR = 0.04048;
+	private static final double GB_HOUR = 0.004445;
+	private static final List<TaskSize> SIZES = new ArrayList<TaskSize>();
+
+	static {
+		add(256, 512, 512, 1);
+		add(256, 1024, 2048, 1024);
+		add(512, 1024, 4096, 1024);
+		add(1024, 2048, 8192, 1024);
+		add(2048, 4096, 16384, 1024);
+		add(4096, 8192, 30720, 1024);
+		add(8192, 16384, 61440, 4096);
+		add(16384, 32768, 122880, 8192);
+		SIZES.sort((a, b) -> a.cost() != b.cost() ? Double.compare(a.cost(), b.cost())
+				: Integer.compare(a.cpu, b.cpu));
+	}
+
+	private final int cpu;
+	private final int memory;
+
+	public TaskSize(int cpu, int memory) {
+		this.cpu = cpu;
+		this.memory = memory;
+	}
+
+	/**
+	 * CPU units, 1024 per vCPU
+	 */
+	public int getCpu() {
+		return cpu;
+	}
+
+	/**
+	 * Memory in MiB
+	 */
+	public int getMemory() {
+		return memory;
+	}
+
+	/**
+	 * This method rounds a size up to the cheapest Fargate task size
+	 *
+	 * @param cpu    requested CPU units, 0 for any
+	 * @param memory requested memory in MiB, 0 for any
+	 * @return the size, or the largest size when none is large enough
+	 */
+	public static TaskSize snapToFargate(int cpu, int memory) {
+		for (TaskSize size : SIZES) {
+			if (size.cpu >= cpu && size.memory >= memory)
+				return size;
+		}
+		return Collections.max(SIZES, (a, b) -> Double.compare(a.cost(), b.cost()));
+	}
+
+	/**
+	 * This method tells whether Fargate runs a size
+	 *
+	 * @param cpu
+	 * @param memory
+	 * @return
+	 */
+	public static boolean isFargateSize(int cpu, int memory) {
+		return SIZES.stream().anyMatch(size -> size.cpu == cpu && size.memory == memory);
+	}
+
+	private double cost() {
+		return cpu / 1024.0 * VCPU_HOUR + memory / 1024.0 * GB_HOUR;
+	}
+
+	private static void add(int cpu, int fromMemory, int toMemory, int step) {
+		for (int memory = fromMemory; memory <= toMemory; memory += step) {
+			SIZES.add(new TaskSize(cpu, memory));
+		}
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof TaskSize && ((TaskSize) other).cpu == cpu
+				&& ((TaskSize) other).memory == memory;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * cpu + memory;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d CPU units, %d MiB", cpu, memory);
+	}
+}
@@ -0,0 +1,144 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.sizing;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.aws.ecs.java.starterkit.input.DurationModel;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.util.SizingConfig;
+import software.aws.ecs.java.starterkit.util.TaskConfig;
+
+/**
+ * Sizes the ECS task of a task config. The cpu and memory of the task config
+ * win, a missing memory is derived from the size of the input objects when
+ * the workflow has sizing. On Fargate the size is rounded up to a valid
+ * combination, on EC2 it is passed as is. The peak memory of earlier tasks is
+ * read once, on the first derived size.
+ *
+ */
+public class TaskSizer {
+
+	// written by ECS Task next to exec_time_in_seconds
+	public static final String MAX_MEMORY_MIB = "max_memory_mib";
+	private static final double MIB = 1024 * 1024;
+
+	private final SizingConfig sizing;
+	private final S3Client s3;
+	private final Supplier<List<Map<String, AttributeValue>>> history;
+	private final Metrics metrics;
+	private Double memoryPerInputMiB;
+
+	/**
+	 * @param sizing  null to size only the tasks with cpu or memory
+	 * @param s3      null when the input sizes are not read from S3
+	 * @param history items of the Workflow Details table of earlier runs
+	 * @param metrics
+	 */
+	public TaskSizer(SizingConfig sizing, S3Client s3, Supplier<List<Map<String, AttributeValue>>> history,
+			Metrics metrics) {
+		this.sizing = sizing;
+		this.s3 = s3;
+		this.history = history;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * This method sizes the ECS task of a task config
+	 *
+	 * @param taskConfig
+	 * @param fargate    whether the task runs on Fargate
+	 * @return the size, with 0 for what the task definition decides, or null to
+	 *         run the task with the size of the task definition
+	 */
+	public TaskSize sizeOf(TaskConfig taskConfig, boolean fargate) {
+		TaskSize size = sizeOf(taskConfig, needsInputBytes(taskConfig) ? inputBytesOf(taskConfig) : null);
+		return fargate && size != null ? TaskSize.snapToFargate(size.getCpu(), size.getMemory()) : size;
+	}
+
+	/**
+	 * This method sizes the ECS task of a task config as requested, before it
+	 * is rounded up to a Fargate size
+	 *
+	 * @param taskConfig
+	 * @param inputBytes size of the input of the task, null when unknown
+	 * @return the size, with 0 for what the task definition decides, or null to
+	 *         run the task with the size of the task definition
+	 */
+	public TaskSize sizeOf(TaskConfig taskConfig, Long inputBytes) {
+		int cpu = taskConfig.getCpu() == null ? 0 : taskConfig.getCpu();
+		int memory = taskConfig.getMemory() == null ? 0 : taskConfig.getMemory();
+		if (inputBytes != null && needsInputBytes(taskConfig))
+			memory = (int) Math.ceil((sizing.getBaseMemoryMiB() + memoryPerInputMiB() * inputBytes / MIB)
+					* sizing.getMemoryHeadroom());
+		// without a size or an input size, the task definition decides
+		if (cpu == 0 && memory == 0)
+			return null;
+		if (sizing != null)
+			cpu = Math.max(cpu, sizing.getMinCpu());
+		return new TaskSize(cpu, memory);
+	}
+
+	/**
+	 * This method tells whether the memory of a task config is derived from the
+	 * size of its input
+	 *
+	 * @param taskConfig
+	 * @return
+	 */
+	public boolean needsInputBytes(TaskConfig taskConfig) {
+		return sizing != null && (taskConfig.getMemory() == null || taskConfig.getMemory() <= 0);
+	}
+
+	/**
+	 * This method reads the size of the input of a task config, with HeadObject
+	 * when it was not discovered with the input
+	 *
+	 * @param taskConfig
+	 * @return null when the size is unknown
+	 */
+	public Long inputBytesOf(TaskConfig taskConfig) {
+		if (taskConfig.getInputBytes() != null || s3 == null || taskConfig.getObjectKey() == null)
+			return taskConfig.getInputBytes();
+		HeadObjectRequest request = HeadObjectRequest.builder().bucket(taskConfig.getS3BucketName())
+				.key(taskConfig.getObjectKey()).build();
+		return metrics.time("S3HeadObjectLatency", () -> s3.headObject(request)).contentLength();
+	}
+
+	/**
+	 * This method derives the memory per MiB of input from the peak memory of
+	 * completed tasks, the largest one seen above the base memory. Tasks with
+	 * less than 1 MiB of input are left out, their peak is the base memory.
+	 *
+	 * @param tasks          items of the Workflow Details table
+	 * @param baseMemoryMiB
+	 * @return 0 without samples
+	 */
+	public static double fitMemoryPerInputMiB(List<Map<String, AttributeValue>> tasks, int baseMemoryMiB) {
+		double memoryPerInputMiB = 0;
+		for (Map<String, AttributeValue> task : tasks) {
+			AttributeValue peak = task.get(MAX_MEMORY_MIB);
+			AttributeValue bytes = task.get(DurationModel.INPUT_BYTES);
+			if (peak == null || bytes == null || Double.parseDouble(bytes.n()) < MIB)
+				continue;
+			memoryPerInputMiB = Math.max(memoryPerInputMiB,
+					(Double.parseDouble(peak.n()) - baseMemoryMiB) / (Double.parseDouble(bytes.n()) / MIB));
+		}
+		return memoryPerInputMiB;
+	}
+
+	private double memoryPerInputMiB() {
+		if (memoryPerInputMiB == null) {
+			double fitted = fitMemoryPerInputMiB(history.get(), sizing.getBaseMemoryMiB());
+			memoryPerInputMiB = Math.max(sizing.getMemoryPerInputMiB(), fitted);
+			System.out.printf("Sizing tasks with %.2f MiB of memory per MiB of input \n", memoryPerInputMiB);
+		}
+		return memoryPerInputMiB;
+	}
+}
@@ -0,0 +1,35 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.util;
+
+/**
+ * One item of an ECS capacity provider strategy, for e.g. FARGATE,
+ * FARGATE_SPOT or the name of an EC2 Auto Scaling group capacity provider
+ */
+public class CapacityProviderConfig {
+
+	private String capacityProvider;
+	private int weight;
+	private int base;
+
+	public String getCapacityProvider() {
+		return capacityProvider;
+	}
+	public void setCapacityProvider(String capacityProvider) {
+		this.capacityProvider = capacityProvider;
+	}
+	public int getWeight() {
+		return weight;
+	}
+	public void setWeight(int weight) {
+		this.weight = weight;
+	}
+	public int getBase() {
+		return base;
+	}
+	public void setBase(int base) {
+		this.base = base;
+	}
+
+}
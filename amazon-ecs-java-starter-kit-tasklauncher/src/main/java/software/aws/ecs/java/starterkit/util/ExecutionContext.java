@@ -0,0 +1,28 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.util;
+
+/**
+ * Name and start time of the Step Functions execution, taken from the context
+ * object ($$.Execution) by the state machine. They stay the same when a state
+ * is retried, so the launcher derives the workflow run id from them.
+ */
+public class ExecutionContext {
+
+	private String name;
+	private String startTime;
+
+	public String getName() {
+		return name;
+	}
+	public void setName(String name) {
+		this.name = name;
+	}
+	public String getStartTime() {
+		return startTime;
+	}
+	public void setStartTime(String startTime) {
+		this.startTime = startTime;
+	}
+}
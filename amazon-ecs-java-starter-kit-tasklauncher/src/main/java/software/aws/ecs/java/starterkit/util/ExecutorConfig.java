@@ -0,0 +1,57 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.util;
+
+import java.util.List;
+
+/**
+ * Which executor runs a task, by size. Tasks with little input run in the
+ * launcher itself, large tasks run on the EC2 capacity providers of the
+ * cluster, and the others run as configured by launchType and
+ * capacityProviderStrategy.
+ */
+public class ExecutorConfig {
+
+	private long inProcessMaxInputBytes;
+	private int inProcessThreads = 4;
+	private int ec2MinMemoryMiB;
+	private List<CapacityProviderConfig> ec2CapacityProviderStrategy;
+
+	/**
+	 * Tasks with at most this many bytes of input run in a thread pool of the
+	 * launcher, 0 to run every task as an ECS task
+	 */
+	public long getInProcessMaxInputBytes() {
+		return inProcessMaxInputBytes;
+	}
+	public void setInProcessMaxInputBytes(long inProcessMaxInputBytes) {
+		this.inProcessMaxInputBytes = inProcessMaxInputBytes;
+	}
+	public int getInProcessThreads() {
+		return inProcessThreads;
+	}
+	public void setInProcessThreads(int inProcessThreads) {
+		this.inProcessThreads = inProcessThreads;
+	}
+	/**
+	 * Tasks sized with at least this much memory run on EC2, 0 to never move a
+	 * task to EC2
+	 */
+	public int getEc2MinMemoryMiB() {
+		return ec2MinMemoryMiB;
+	}
+	public void setEc2MinMemoryMiB(int ec2MinMemoryMiB) {
+		this.ec2MinMemoryMiB = ec2MinMemoryMiB;
+	}
+	/**
+	 * EC2 capacity providers of the tasks moved to EC2, required with
+	 * ec2MinMemoryMiB
+	 */
+	public List<CapacityProviderConfig> getEc2CapacityProviderStrategy() {
+		return ec2CapacityProviderStrategy;
+	}
+	public void setEc2CapacityProviderStrategy(List<CapacityProviderConfig> ec2CapacityProviderStrategy) {
+		this.ec2CapacityProviderStrategy = ec2CapacityProviderStrategy;
+	}
+}
@@ -0,0 +1,73 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.util;
+
+/**
+ * Where the inputs of a workflow run are discovered when the workflow specs
+ * have no task list. Every object below the prefix, or every object listed in
+ * the manifest, becomes one task.
+ */
+public class InputConfig {
+
+	private String s3BucketName;
+	private String prefix;
+	private String manifestKey;
+	private String delimiter = "/";
+	private int listingParallelism = 8;
+	private ShardingConfig sharding;
+
+	public String getS3BucketName() {
+		return s3BucketName;
+	}
+	public void setS3BucketName(String s3BucketName) {
+		this.s3BucketName = s3BucketName;
+	}
+	/**
+	 * Key prefix of the input objects, ignored when a manifest is set
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+	public void setPrefix(String prefix) {
+		this.prefix = prefix;
+	}
+	/**
+	 * Key of a manifest in the input bucket, one object per line, either a key
+	 * or bucket,key with a URL encoded key as in S3 Batch Operations manifests
+	 */
+	public String getManifestKey() {
+		return manifestKey;
+	}
+	public void setManifestKey(String manifestKey) {
+		this.manifestKey = manifestKey;
+	}
+	/**
+	 * Delimiter which splits the keys below the prefix into the partitions that
+	 * are listed concurrently
+	 */
+	public String getDelimiter() {
+		return delimiter;
+	}
+	public void setDelimiter(String delimiter) {
+		this.delimiter = delimiter;
+	}
+	/**
+	 * Number of partitions listed at the same time
+	 */
+	public int getListingParallelism() {
+		return listingParallelism;
+	}
+	public void setListingParallelism(int listingParallelism) {
+		this.listingParallelism = listingParallelism;
+	}
+	/**
+	 * Grouping of the objects into shards, null for one task per object
+	 */
+	public ShardingConfig getSharding() {
+		return sharding;
+	}
+	public void setSharding(ShardingConfig sharding) {
+		this.sharding = sharding;
+	}
+}
@@ -0,0 +1,47 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.util;
+
+/**
+ * How a workflow run shares its cluster with other workflow runs. The slots
+ * of the cluster are tracked in the scheduler table, runs with a higher
+ * priority get them first and runs with the same priority share them by
+ * weight.
+ */
+public class SchedulingConfig {
+
+	private String tableName;
+	private int priority;
+	private int weight = 1;
+	private int clusterTaskLimit;
+
+	public String getTableName() {
+		return tableName;
+	}
+	public void setTableName(String tableName) {
+		this.tableName = tableName;
+	}
+	public int getPriority() {
+		return priority;
+	}
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+	public int getWeight() {
+		return weight;
+	}
+	public void setWeight(int weight) {
+		this.weight = weight;
+	}
+	/**
+	 * Maximum number of tasks in flight on the cluster across workflow runs, 0
+	 * for no limit. It is recorded by the first run scheduled on the cluster.
+	 */
+	public int getClusterTaskLimit() {
+		return clusterTaskLimit;
+	}
+	public void setClusterTaskLimit(int clusterTaskLimit) {
+		this.clusterTaskLimit = clusterTaskLimit;
+	}
+}
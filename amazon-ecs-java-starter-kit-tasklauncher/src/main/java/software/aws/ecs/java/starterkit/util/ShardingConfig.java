@@ -0,0 +1,75 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.util;
+
+/**
+ * How the discovered inputs of a workflow run are grouped into shards, each
+ * shard being processed by one task. The duration of a shard is estimated from
+ * the sizes of its objects and the execution times of earlier runs.
+ */
+public class ShardingConfig {
+
+	private int targetShardSeconds;
+	private int maxObjectsPerShard = 100;
+	private int planningWindow = 1000;
+	private int historyRuns = 3;
+	private double secondsPerObject = 1;
+	private double bytesPerSecond = 25 * 1024 * 1024;
+
+	/**
+	 * Estimated duration a shard is planned for, 0 to launch one task per object
+	 */
+	public int getTargetShardSeconds() {
+		return targetShardSeconds;
+	}
+	public void setTargetShardSeconds(int targetShardSeconds) {
+		this.targetShardSeconds = targetShardSeconds;
+	}
+	/**
+	 * Maximum number of objects of a shard. The keys of a shard are passed to
+	 * its task in the RunTask overrides, which are limited to 8 KB.
+	 */
+	public int getMaxObjectsPerShard() {
+		return maxObjectsPerShard;
+	}
+	public void setMaxObjectsPerShard(int maxObjectsPerShard) {
+		this.maxObjectsPerShard = maxObjectsPerShard;
+	}
+	/**
+	 * Number of consecutive objects which are split into shards together
+	 */
+	public int getPlanningWindow() {
+		return planningWindow;
+	}
+	public void setPlanningWindow(int planningWindow) {
+		this.planningWindow = planningWindow;
+	}
+	/**
+	 * Number of earlier runs of the workflow whose task durations are sampled
+	 */
+	public int getHistoryRuns() {
+		return historyRuns;
+	}
+	public void setHistoryRuns(int historyRuns) {
+		this.historyRuns = historyRuns;
+	}
+	/**
+	 * Estimated seconds per object, used until the workflow has history
+	 */
+	public double getSecondsPerObject() {
+		return secondsPerObject;
+	}
+	public void setSecondsPerObject(double secondsPerObject) {
+		this.secondsPerObject = secondsPerObject;
+	}
+	/**
+	 * Estimated throughput of a task, used until the workflow has history
+	 */
+	public double getBytesPerSecond() {
+		return bytesPerSecond;
+	}
+	public void setBytesPerSecond(double bytesPerSecond) {
+		this.bytesPerSecond = bytesPerSecond;
+	}
+}
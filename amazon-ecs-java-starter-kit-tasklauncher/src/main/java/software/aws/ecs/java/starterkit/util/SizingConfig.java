@@ -0,0 +1,58 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.util;
+
+/**
+ * How the memory of a task is derived from the size of its input objects. The
+ * memory per MiB of input is the larger of the configured one and the one
+ * seen in the peak memory of the tasks of earlier runs.
+ */
+public class SizingConfig {
+
+	private int baseMemoryMiB = 1024;
+	private double memoryPerInputMiB = 1;
+	private double memoryHeadroom = 1.25;
+	private int minCpu = 256;
+	private int historyRuns = 3;
+
+	/**
+	 * Memory of a task without input, for e.g. the JVM
+	 */
+	public int getBaseMemoryMiB() {
+		return baseMemoryMiB;
+	}
+	public void setBaseMemoryMiB(int baseMemoryMiB) {
+		this.baseMemoryMiB = baseMemoryMiB;
+	}
+	public double getMemoryPerInputMiB() {
+		return memoryPerInputMiB;
+	}
+	public void setMemoryPerInputMiB(double memoryPerInputMiB) {
+		this.memoryPerInputMiB = memoryPerInputMiB;
+	}
+	/**
+	 * Factor applied to the derived memory
+	 */
+	public double getMemoryHeadroom() {
+		return memoryHeadroom;
+	}
+	public void setMemoryHeadroom(double memoryHeadroom) {
+		this.memoryHeadroom = memoryHeadroom;
+	}
+	public int getMinCpu() {
+		return minCpu;
+	}
+	public void setMinCpu(int minCpu) {
+		this.minCpu = minCpu;
+	}
+	/**
+	 * Number of earlier runs of the workflow whose peak memory is sampled
+	 */
+	public int getHistoryRuns() {
+		return historyRuns;
+	}
+	public void setHistoryRuns(int historyRuns) {
+		this.historyRuns = historyRuns;
+	}
+}
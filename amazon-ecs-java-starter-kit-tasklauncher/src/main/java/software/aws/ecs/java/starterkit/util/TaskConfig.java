@@ -3,11 +3,22 @@
 
 package software.aws.ecs.java.starterkit.util;
 
+import java.util.List;
+
+import software.aws.ecs.java.starterkit.retry.RetryPolicy;
+
 public class TaskConfig {
 	
 	private String taskName;
 	private String s3BucketName;
 	private String objectKey;
+	private List<CapacityProviderConfig> capacityProviderStrategy;
+	private List<String> dependsOn;
+	private RetryPolicy retryPolicy;
+	private List<String> objectKeys;
+	private Long inputBytes;
+	private Integer cpu;
+	private Integer memory;
 	
 	public String getTaskName() {
 		return taskName;
@@ -27,5 +38,74 @@ public class TaskConfig {
 	public void setObjectKey(String objectKey) {
 		this.objectKey = objectKey;
 	}
+	/**
+	 * Capacity provider strategy for this task only. It overrides the strategy
+	 * and the launch type of the workflow.
+	 */
+	public List<CapacityProviderConfig> getCapacityProviderStrategy() {
+		return capacityProviderStrategy;
+	}
+	public void setCapacityProviderStrategy(List<CapacityProviderConfig> capacityProviderStrategy) {
+		this.capacityProviderStrategy = capacityProviderStrategy;
+	}
+	/**
+	 * Names of the tasks which must complete before this task is launched
+	 */
+	public List<String> getDependsOn() {
+		return dependsOn;
+	}
+	public void setDependsOn(List<String> dependsOn) {
+		this.dependsOn = dependsOn;
+	}
+	/**
+	 * Retry policy for this task only. It overrides the retry policy of the
+	 * workflow.
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+	/**
+	 * Keys of the objects of a shard, processed one after the other by the
+	 * task. objectKey is the first of them.
+	 */
+	public List<String> getObjectKeys() {
+		return objectKeys;
+	}
+	public void setObjectKeys(List<String> objectKeys) {
+		this.objectKeys = objectKeys;
+	}
+	/**
+	 * Total size of the input objects when it is known, recorded with the
+	 * execution time of the task for the shard planner
+	 */
+	public Long getInputBytes() {
+		return inputBytes;
+	}
+	public void setInputBytes(Long inputBytes) {
+		this.inputBytes = inputBytes;
+	}
+	/**
+	 * CPU units of this task, for e.g. 512. On Fargate it is rounded up to a
+	 * valid combination with the memory.
+	 */
+	public Integer getCpu() {
+		return cpu;
+	}
+	public void setCpu(Integer cpu) {
+		this.cpu = cpu;
+	}
+	/**
+	 * Memory of this task in MiB. It overrides the memory derived from the
+	 * input size.
+	 */
+	public Integer getMemory() {
+		return memory;
+	}
+	public void setMemory(Integer memory) {
+		this.memory = memory;
+	}
 	
 }
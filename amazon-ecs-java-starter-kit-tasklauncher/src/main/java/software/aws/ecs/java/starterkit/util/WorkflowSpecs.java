@@ -5,6 +5,8 @@ package software.aws.ecs.java.starterkit.util;
 
 import java.util.List;
 
+import software.aws.ecs.java.starterkit.retry.RetryPolicy;
+
 public class WorkflowSpecs {
 
 	private String workflowName;
@@ -21,6 +23,20 @@ public class WorkflowSpecs {
 	private String ddbTableNameWFDetails;
 	private String hashKeyWFDetails;
 	private String rangeKeyWFDetails;
+	private String launchType;
+	private List<CapacityProviderConfig> capacityProviderStrategy;
+	private String workQueueUrl;
+	private Long workflowRunId;
+	private ExecutionContext execution;
+	private int maxTasksPerInvocation;
+	private int checkpointInterval;
+	private int maxInFlight;
+	private SchedulingConfig scheduling;
+	private String resultCacheTableName;
+	private RetryPolicy retryPolicy;
+	private InputConfig input;
+	private SizingConfig sizing;
+	private ExecutorConfig executors;
 	private List<TaskConfig> taskList;
 	
 	public String getWorkflowName() {
@@ -145,4 +161,164 @@ public class WorkflowSpecs {
 		this.rangeKeyWFDetails = rangeKeyWFDetails;
 	}
 
+	public String getLaunchType() {
+		return launchType;
+	}
+
+	public void setLaunchType(String launchType) {
+		this.launchType = launchType;
+	}
+
+	public List<CapacityProviderConfig> getCapacityProviderStrategy() {
+		return capacityProviderStrategy;
+	}
+
+	public void setCapacityProviderStrategy(List<CapacityProviderConfig> capacityProviderStrategy) {
+		this.capacityProviderStrategy = capacityProviderStrategy;
+	}
+
+	/**
+	 * URL of the SQS queue of the worker pool. When set, tasks are sent to the
+	 * queue as work items instead of being run as ECS tasks.
+	 */
+	public String getWorkQueueUrl() {
+		return workQueueUrl;
+	}
+
+	public void setWorkQueueUrl(String workQueueUrl) {
+		this.workQueueUrl = workQueueUrl;
+	}
+
+	/**
+	 * Run id of the workflow run to resume. When not set, the run id is derived
+	 * from the start time of the Step Functions execution.
+	 */
+	public Long getWorkflowRunId() {
+		return workflowRunId;
+	}
+
+	public void setWorkflowRunId(Long workflowRunId) {
+		this.workflowRunId = workflowRunId;
+	}
+
+	public ExecutionContext getExecution() {
+		return execution;
+	}
+
+	public void setExecution(ExecutionContext execution) {
+		this.execution = execution;
+	}
+
+	/**
+	 * Maximum number of tasks launched by one invocation of ECSTaskLauncher, 0
+	 * for no limit. The state machine invokes the launcher again until all tasks
+	 * are launched.
+	 */
+	public int getMaxTasksPerInvocation() {
+		return maxTasksPerInvocation;
+	}
+
+	public void setMaxTasksPerInvocation(int maxTasksPerInvocation) {
+		this.maxTasksPerInvocation = maxTasksPerInvocation;
+	}
+
+	/**
+	 * Number of tasks launched between two writes of the launch cursor, 0 for
+	 * the default
+	 */
+	public int getCheckpointInterval() {
+		return checkpointInterval;
+	}
+
+	public void setCheckpointInterval(int checkpointInterval) {
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	/**
+	 * Maximum number of tasks of the workflow run which are launched and not yet
+	 * finished, 0 for no limit. The remaining tasks stay pending and are launched
+	 * as the monitor sees tasks finish.
+	 */
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	public void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Fair-share scheduling of the workflow run on its cluster, null to launch
+	 * without consulting the scheduler
+	 */
+	public SchedulingConfig getScheduling() {
+		return scheduling;
+	}
+
+	public void setScheduling(SchedulingConfig scheduling) {
+		this.scheduling = scheduling;
+	}
+
+	/**
+	 * Table of the result cache, null to run every task. A task whose task
+	 * definition, config and source object ETag match a cached result is not
+	 * run again.
+	 */
+	public String getResultCacheTableName() {
+		return resultCacheTableName;
+	}
+
+	public void setResultCacheTableName(String resultCacheTableName) {
+		this.resultCacheTableName = resultCacheTableName;
+	}
+
+	/**
+	 * Retry policy of the tasks which have none of their own, null to fail a
+	 * task on its first failure. Failed tasks are launched again by the monitor.
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * Inputs discovered in S3 instead of a task list, null when the task list is
+	 * given. The tasks are launched in key order as the objects are listed.
+	 */
+	public InputConfig getInput() {
+		return input;
+	}
+
+	public void setInput(InputConfig input) {
+		this.input = input;
+	}
+
+	/**
+	 * How the CPU and memory of a task are derived from the size of its input,
+	 * null to run the tasks without cpu or memory in taskList with the size of
+	 * the task definition
+	 */
+	public SizingConfig getSizing() {
+		return sizing;
+	}
+
+	public void setSizing(SizingConfig sizing) {
+		this.sizing = sizing;
+	}
+
+	/**
+	 * Which executor runs a task by its size, null to run every task as an ECS
+	 * task
+	 */
+	public ExecutorConfig getExecutors() {
+		return executors;
+	}
+
+	public void setExecutors(ExecutorConfig executors) {
+		this.executors = executors;
+	}
+
 }
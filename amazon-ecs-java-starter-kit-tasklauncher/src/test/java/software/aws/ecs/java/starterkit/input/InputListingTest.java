@@ -0,0 +1,165 @@
+package software.aws.ecs.java.starterkit.input;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+
+class InputListingTest {
+
+	private final Metrics metrics = new Metrics("Test", s -> {
+	});
+
+	@Test
+	void listsPartitionsConcurrentlyInKeyOrder() {
+		FakeS3 s3 = new FakeS3();
+		for (String day : Arrays.asList("date=01", "date=02", "date=03", "date=04")) {
+			s3.keys.add("in/" + day + "/");
+			for (int i = 0; i < 7; i++) {
+				s3.keys.add("in/" + day + "/part-" + i);
+			}
+		}
+		s3.keys.addAll(Arrays.asList("in/a.csv", "in/z.csv", "other/x"));
+
+		List<String> keys = new ArrayList<String>();
+		try (PrefixListing listing = new PrefixListing(s3, "bucket", "in/", "/", null, 3, metrics)) {
+			listing.forEachRemaining(object -> keys.add(object.key()));
+		}
+
+		List<String> expected = new ArrayList<String>(s3.keys.headSet("other/"));
+		expected.removeIf(key -> key.endsWith("/"));
+		assertEquals(expected, keys);
+		assertEquals(30, keys.size());
+		// 3 pages of the prefix, then 4 pages of each partition
+		assertEquals(3 + 4 * 4, s3.requests.get());
+	}
+
+	@Test
+	void resumesAfterTheLastLaunchedKey() {
+		FakeS3 s3 = new FakeS3();
+		s3.keys.addAll(Arrays.asList("in/a", "in/b/1", "in/b/2", "in/b/3", "in/c", "in/d/1", "in/d/2"));
+
+		List<String> keys = new ArrayList<String>();
+		try (PrefixListing listing = new PrefixListing(s3, "bucket", "in/", "/", "in/b/2", 2, metrics)) {
+			listing.forEachRemaining(object -> keys.add(object.key()));
+		}
+		assertEquals(Arrays.asList("in/b/3", "in/c", "in/d/1", "in/d/2"), keys);
+
+		keys.clear();
+		try (PrefixListing listing = new PrefixListing(s3, "bucket", "in/", null, "in/c", 2, metrics)) {
+			listing.forEachRemaining(object -> keys.add(object.key()));
+		}
+		assertEquals(Arrays.asList("in/d/1", "in/d/2"), keys);
+	}
+
+	@Test
+	void failsWithTheListingError() {
+		FakeS3 s3 = new FakeS3();
+		s3.keys.addAll(Arrays.asList("in/a/1", "in/b/1"));
+		s3.failingPrefix = "in/b/";
+
+		try (PrefixListing listing = new PrefixListing(s3, "bucket", "in/", "/", null, 2, metrics)) {
+			assertEquals("in/a/1", listing.next().key());
+			assertThrows(IllegalStateException.class, listing::next);
+		}
+	}
+
+	@Test
+	void readsManifestsLineByLine() {
+		FakeS3 s3 = new FakeS3();
+		s3.manifest = "in/a\n\nbucket,in/with+space%2B1\nbucket,in/c,version-1\n";
+
+		List<String> keys = new ArrayList<String>();
+		try (ManifestListing listing = new ManifestListing(s3, "bucket", "manifest.csv", 1, metrics)) {
+			listing.forEachRemaining(object -> keys.add(object.key()));
+		}
+		assertEquals(Arrays.asList("in/with space+1", "in/c"), keys);
+
+		s3.manifest = "other-bucket,in/a\n";
+		try (ManifestListing listing = new ManifestListing(s3, "bucket", "manifest.csv", 0, metrics)) {
+			assertThrows(IllegalArgumentException.class, listing::next);
+		}
+	}
+
+	/**
+	 * S3Client listing a sorted set of keys two entries per page, and serving
+	 * one manifest
+	 */
+	private static class FakeS3 implements S3Client {
+
+		private static final int PAGE_SIZE = 2;
+
+		final TreeSet<String> keys = new TreeSet<String>();
+		final AtomicInteger requests = new AtomicInteger();
+		String failingPrefix;
+		String manifest;
+
+		@Override
+		public ListObjectsV2Response listObjectsV2(ListObjectsV2Request request) {
+			requests.incrementAndGet();
+			if (request.prefix().equals(failingPrefix))
+				throw new IllegalStateException("Access Denied");
+			String after = request.continuationToken() != null ? request.continuationToken() : request.startAfter();
+			List<S3Object> contents = new ArrayList<S3Object>();
+			List<CommonPrefix> commonPrefixes = new ArrayList<CommonPrefix>();
+			String last = null;
+			for (String key : keys) {
+				if (!key.startsWith(request.prefix()) || (after != null && key.compareTo(after) <= 0))
+					continue;
+				int index = request.delimiter() == null ? -1
+						: key.indexOf(request.delimiter(), request.prefix().length());
+				String entry = index < 0 ? key : key.substring(0, index + request.delimiter().length());
+				if (entry.equals(last) || (after != null && entry.compareTo(after) <= 0 && index >= 0))
+					continue;
+				if (contents.size() + commonPrefixes.size() == PAGE_SIZE)
+					return ListObjectsV2Response.builder().contents(contents).commonPrefixes(commonPrefixes)
+							.nextContinuationToken(lastKeyOf(last)).build();
+				if (index < 0)
+					contents.add(S3Object.builder().key(key).build());
+				else
+					commonPrefixes.add(CommonPrefix.builder().prefix(entry).build());
+				last = entry;
+			}
+			return ListObjectsV2Response.builder().contents(contents).commonPrefixes(commonPrefixes).build();
+		}
+
+		// a common prefix continues after its last key
+		private String lastKeyOf(String entry) {
+			return entry.endsWith("/") ? keys.subSet(entry, entry + Character.MAX_VALUE).last() : entry;
+		}
+
+		@Override
+		public ResponseInputStream<GetObjectResponse> getObject(GetObjectRequest request) {
+			return new ResponseInputStream<GetObjectResponse>(GetObjectResponse.builder().build(),
+					AbortableInputStream.create(new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8))));
+		}
+
+		@Override
+		public String serviceName() {
+			return "s3";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
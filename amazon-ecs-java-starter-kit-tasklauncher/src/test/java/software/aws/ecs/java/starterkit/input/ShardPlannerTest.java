@@ -0,0 +1,81 @@
+package software.aws.ecs.java.starterkit.input;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+class ShardPlannerTest {
+
+	// one second per byte
+	private final DurationModel model = new DurationModel(0, 1);
+
+	@Test
+	void minimizesTheLongestShard() {
+		List<S3Object> objects = objects(8, 1, 1, 1, 1, 1, 1, 1, 1, 4);
+
+		// 20 seconds in shards of 7 seconds: 3 shards, none shorter than the 8 seconds object
+		List<List<S3Object>> shards = new ShardPlanner(model, 7, 100).plan(objects);
+
+		assertEquals(Arrays.asList(1, 8, 1), shards.stream().map(List::size).collect(Collectors.toList()));
+		assertEquals(objects, shards.stream().flatMap(List::stream).collect(Collectors.toList()));
+	}
+
+	@Test
+	void splitsEvenlyBelowTheTarget() {
+		// 30 seconds in shards of 11 seconds: 3 shards of 10 seconds rather than 10, 10, 5 and 5
+		List<List<S3Object>> shards = new ShardPlanner(model, 11, 100).plan(objects(5, 5, 5, 5, 5, 5));
+
+		assertEquals(Arrays.asList(2, 2, 2), shards.stream().map(List::size).collect(Collectors.toList()));
+	}
+
+	@Test
+	void keepsShardsWithinTheObjectLimit() {
+		List<List<S3Object>> shards = new ShardPlanner(model, 1000, 2).plan(objects(1, 1, 1, 1, 1));
+
+		assertEquals(Arrays.asList(2, 2, 1), shards.stream().map(List::size).collect(Collectors.toList()));
+	}
+
+	@Test
+	void fitsDurationsToCompletedTasks() {
+		DurationModel defaults = new DurationModel(1, 1000);
+		// 2 seconds per object and 100 bytes per second
+		List<Map<String, AttributeValue>> tasks = new ArrayList<Map<String, AttributeValue>>();
+		tasks.add(task("Completed", 1, 100, 3));
+		tasks.add(task("Completed", 2, 1000, 14));
+		tasks.add(task("Completed", 5, 200, 12));
+		tasks.add(task("Failed", 1, 100, 500));
+
+		DurationModel fitted = DurationModel.fit(tasks, defaults);
+
+		assertEquals(2, fitted.getSecondsPerObject(), 1e-6);
+		assertEquals(100, fitted.getBytesPerSecond(), 1e-6);
+		assertEquals(defaults, DurationModel.fit(tasks.subList(3, 4), defaults));
+	}
+
+	private static List<S3Object> objects(long... sizes) {
+		List<S3Object> objects = new ArrayList<S3Object>();
+		for (int i = 0; i < sizes.length; i++) {
+			objects.add(S3Object.builder().key(String.format("in/%02d", i)).size(sizes[i]).build());
+		}
+		return objects;
+	}
+
+	private static Map<String, AttributeValue> task(String status, int objects, long bytes, long seconds) {
+		Map<String, AttributeValue> task = new HashMap<String, AttributeValue>();
+		task.put("status", AttributeValue.builder().s(status).build());
+		task.put(DurationModel.INPUT_OBJECTS, AttributeValue.builder().n(Integer.toString(objects)).build());
+		task.put(DurationModel.INPUT_BYTES, AttributeValue.builder().n(Long.toString(bytes)).build());
+		task.put("exec_time_in_seconds", AttributeValue.builder().n(Long.toString(seconds)).build());
+		return task;
+	}
+}
@@ -0,0 +1,869 @@
+package software.aws.ecs.java.starterkit.launcher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.ecs.EcsClient;
+import software.amazon.awssdk.services.ecs.model.Failure;
+import software.amazon.awssdk.services.ecs.model.LaunchType;
+import software.amazon.awssdk.services.ecs.model.ListTasksRequest;
+import software.amazon.awssdk.services.ecs.model.ListTasksResponse;
+import software.amazon.awssdk.services.ecs.model.RunTaskRequest;
+import software.amazon.awssdk.services.ecs.model.RunTaskResponse;
+import software.amazon.awssdk.services.ecs.model.Task;
+import software.amazon.awssdk.services.ecs.model.TaskOverride;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.aws.ecs.java.starterkit.cache.CachedResult;
+import software.aws.ecs.java.starterkit.cache.InMemoryResultCache;
+import software.aws.ecs.java.starterkit.executor.TaskExecutor;
+import software.aws.ecs.java.starterkit.executor.TaskExecutors;
+import software.aws.ecs.java.starterkit.placement.Subnet;
+import software.aws.ecs.java.starterkit.placement.SubnetCapacity;
+import software.aws.ecs.java.starterkit.queue.InMemoryWorkQueue;
+import software.aws.ecs.java.starterkit.queue.WorkItem;
+import software.aws.ecs.java.starterkit.scheduler.FairShareScheduler;
+import software.aws.ecs.java.starterkit.scheduler.InMemorySchedulerStore;
+import software.aws.ecs.java.starterkit.scheduler.RunShare;
+import software.aws.ecs.java.starterkit.sizing.TaskSize;
+import software.aws.ecs.java.starterkit.store.InMemoryWorkflowStore;
+import software.aws.ecs.java.starterkit.store.InMemoryWorkflowSummaryStore;
+import software.aws.ecs.java.starterkit.store.SummaryUpdate;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+import software.aws.ecs.java.starterkit.store.WorkflowSummaryStore;
+import software.aws.ecs.java.starterkit.util.CapacityProviderConfig;
+import software.aws.ecs.java.starterkit.util.ExecutionContext;
+import software.aws.ecs.java.starterkit.util.ExecutorConfig;
+import software.aws.ecs.java.starterkit.util.InputConfig;
+import software.aws.ecs.java.starterkit.util.SchedulingConfig;
+import software.aws.ecs.java.starterkit.util.ShardingConfig;
+import software.aws.ecs.java.starterkit.util.SizingConfig;
+import software.aws.ecs.java.starterkit.util.TaskConfig;
+import software.aws.ecs.java.starterkit.util.WorkflowSpecs;
+
+class ECSTaskLauncherTest {
+
+	private static final List<String> SUBNETS = Arrays.asList("subnet-1", "subnet-2");
+	private static final List<String> SECURITY_GROUPS = Collections.singletonList("sg-1");
+
+	@Test
+	void defaultsToFargateLaunchType() {
+		RunTaskRequest request = ECSTaskLauncher.buildRunTaskRequest(SUBNETS, SECURITY_GROUPS,
+				TaskOverride.builder().build(), "cluster", "task-def:1", null, null);
+		assertEquals(LaunchType.FARGATE, request.launchType());
+		assertTrue(request.capacityProviderStrategy().isEmpty());
+		assertEquals(SUBNETS, request.networkConfiguration().awsvpcConfiguration().subnets());
+	}
+
+	@Test
+	void honorsLaunchType() {
+		RunTaskRequest request = ECSTaskLauncher.buildRunTaskRequest(SUBNETS, SECURITY_GROUPS,
+				TaskOverride.builder().build(), "cluster", "task-def:1", "ec2", Collections.emptyList());
+		assertEquals(LaunchType.EC2, request.launchType());
+	}
+
+	@Test
+	void capacityProviderStrategyReplacesLaunchType() {
+		RunTaskRequest request = ECSTaskLauncher.buildRunTaskRequest(SUBNETS, SECURITY_GROUPS,
+				TaskOverride.builder().build(), "cluster", "task-def:1", "FARGATE",
+				Arrays.asList(provider("FARGATE", 1, 2), provider("FARGATE_SPOT", 3, 0)));
+		assertNull(request.launchType());
+		assertEquals(2, request.capacityProviderStrategy().size());
+		assertEquals("FARGATE", request.capacityProviderStrategy().get(0).capacityProvider());
+		assertEquals(2, request.capacityProviderStrategy().get(0).base());
+		assertEquals("FARGATE_SPOT", request.capacityProviderStrategy().get(1).capacityProvider());
+		assertEquals(3, request.capacityProviderStrategy().get(1).weight());
+	}
+
+	@Test
+	void buildsOneWorkItemPerTask() {
+		WorkflowSpecs workflowSpecs = new WorkflowSpecs();
+		workflowSpecs.setWorkflowName("wf");
+		workflowSpecs.setDdbTableNameWFDetails("workflow_details");
+		TaskConfig first = new TaskConfig();
+		first.setTaskName("first");
+		first.setObjectKey("a");
+		TaskConfig second = new TaskConfig();
+		second.setTaskName("second");
+		second.setObjectKey("b");
+		workflowSpecs.setTaskList(Arrays.asList(first, second));
+
+		List<WorkItem> items = ECSTaskLauncher.buildWorkItems(workflowSpecs, 42, null);
+		assertEquals(2, items.size());
+		assertEquals(WorkItem.itemId(42, 1), items.get(1).getItemId());
+		assertEquals("second", items.get(1).getTaskName());
+		assertEquals("workflow_details", items.get(1).getDdbTableNameWFDetails());
+		assertEquals(42, items.get(1).getWorkflowRunId());
+	}
+
+	@Test
+	void splitsLaunchAcrossInvocations() {
+		FakeEcs ecs = new FakeEcs();
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		WorkflowSpecs workflowSpecs = workflowSpecs(25);
+		workflowSpecs.setMaxTasksPerInvocation(10);
+		ECSTaskLauncher launcher = new ECSTaskLauncher();
+
+		Map<String, Object> first = launcher.launch(context(ecs, dynamoDB), workflowSpecs, 7);
+		assertEquals(10, first.get("launchCursor"));
+		assertEquals(false, first.get("launchComplete"));
+		assertEquals(25, first.get("numberOfTasks"));
+		assertEquals(10, ((List<?>) first.get("ecsTaskArns")).size());
+		assertEquals(10, dynamoDB.launchCursor());
+
+		launcher.launch(context(ecs, dynamoDB), workflowSpecs, 7);
+		Map<String, Object> last = launcher.launch(context(ecs, dynamoDB), workflowSpecs, 7);
+		assertEquals(25, last.get("launchCursor"));
+		assertEquals(true, last.get("launchComplete"));
+		assertEquals(5, ((List<?>) last.get("ecsTaskArns")).size());
+		assertEquals(25, ecs.startedBy.size());
+		assertEquals(ECSTaskLauncher.launchToken(7, 24), ecs.startedBy.get(24));
+	}
+
+	@Test
+	void stopsWhenInvocationRunsShortOfTime() {
+		FakeEcs ecs = new FakeEcs();
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		WorkflowSpecs workflowSpecs = workflowSpecs(25);
+		long[] remaining = { ECSTaskLauncher.LAUNCH_TIME_RESERVE_MILLIS + 2 };
+
+		LaunchContext context = new LaunchContext(ecs, dynamoDB, dynamoDB.store, dynamoDB.summaries,
+				() -> remaining[0]--);
+		Map<String, Object> map = new ECSTaskLauncher().launch(context, workflowSpecs, 7);
+		assertEquals(2 * ECSTaskLauncher.DEFAULT_CHECKPOINT_INTERVAL, map.get("launchCursor"));
+		assertEquals(false, map.get("launchComplete"));
+	}
+
+	@Test
+	void resumesWithoutLaunchingTasksTwice() {
+		FakeEcs ecs = new FakeEcs();
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		WorkflowSpecs workflowSpecs = workflowSpecs(12);
+		workflowSpecs.setCheckpointInterval(5);
+		ecs.failAfter = 7;
+
+		assertThrows(IllegalStateException.class,
+				() -> new ECSTaskLauncher().launch(context(ecs, dynamoDB), workflowSpecs, 7));
+		assertEquals(5, dynamoDB.launchCursor());
+		assertEquals(7, ecs.startedBy.size());
+
+		ecs.failAfter = Integer.MAX_VALUE;
+		Map<String, Object> map = new ECSTaskLauncher().launch(context(ecs, dynamoDB), workflowSpecs, 7);
+		assertEquals(true, map.get("launchComplete"));
+		assertEquals(7, ((List<?>) map.get("ecsTaskArns")).size());
+		// tasks 5 and 6 were found by their launch token instead of being run again
+		assertEquals(12, ecs.startedBy.size());
+		assertEquals(12, ecs.startedBy.stream().distinct().count());
+		assertEquals(12, dynamoDB.launchCursor());
+	}
+
+	@Test
+	void doesNotResumeWhenTheSummaryCannotBeWritten() {
+		FakeEcs ecs = new FakeEcs();
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		dynamoDB.insertError = (DynamoDbException) DynamoDbException.builder().message("Rate exceeded").build();
+
+		assertThrows(DynamoDbException.class,
+				() -> new ECSTaskLauncher().launch(context(ecs, dynamoDB), workflowSpecs(3), 7));
+		assertEquals(0, ecs.startedBy.size());
+	}
+
+	@Test
+	void keepsAtMostMaxInFlightTasksRunning() {
+		FakeEcs ecs = new FakeEcs();
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		WorkflowSpecs workflowSpecs = workflowSpecs(12);
+		workflowSpecs.setMaxInFlight(5);
+		ECSTaskLauncher launcher = new ECSTaskLauncher();
+
+		Map<String, Object> first = launcher.launch(context(ecs, dynamoDB), workflowSpecs, 7);
+		assertEquals(5, first.get("launchCursor"));
+		assertEquals(true, first.get("waitForSlots"));
+
+		// nothing finished yet, the window stays full
+		Map<String, Object> idle = launcher.launch(context(ecs, dynamoDB), workflowSpecs, 7);
+		assertEquals(0, ((List<?>) idle.get("ecsTaskArns")).size());
+		assertEquals(true, idle.get("waitForSlots"));
+
+		dynamoDB.finish(2, 1);
+		Map<String, Object> topUp = launcher.launch(context(ecs, dynamoDB), workflowSpecs, 7);
+		assertEquals(3, ((List<?>) topUp.get("ecsTaskArns")).size());
+		assertEquals(8, topUp.get("launchCursor"));
+		assertEquals(false, topUp.get("launchComplete"));
+
+		dynamoDB.finish(7, 1);
+		Map<String, Object> last = launcher.launch(context(ecs, dynamoDB), workflowSpecs, 7);
+		assertEquals(4, ((List<?>) last.get("ecsTaskArns")).size());
+		assertEquals(true, last.get("launchComplete"));
+		assertEquals(false, last.get("waitForSlots"));
+		assertEquals(12, ecs.startedBy.stream().distinct().count());
+	}
+
+	@Test
+	void launchesNoMoreTasksThanTheSchedulerGrants() {
+		FakeEcs ecs = new FakeEcs();
+		FairShareScheduler scheduler = new FairShareScheduler(new InMemorySchedulerStore());
+		FakeDynamoDb backfillTables = new FakeDynamoDb();
+		WorkflowSpecs backfill = scheduledWorkflowSpecs("backfill", 10, 0);
+		FakeDynamoDb urgentTables = new FakeDynamoDb();
+		WorkflowSpecs urgent = scheduledWorkflowSpecs("urgent", 4, 5);
+		ECSTaskLauncher launcher = new ECSTaskLauncher();
+
+		Map<String, Object> first = launcher.launch(context(ecs, backfillTables).scheduler(scheduler), backfill, 7);
+		assertEquals(6, first.get("launchCursor"));
+		assertEquals(true, first.get("waitForSlots"));
+		assertEquals("scheduler", first.get("schedulerTableName"));
+
+		Map<String, Object> blocked = launcher.launch(context(ecs, urgentTables).scheduler(scheduler), urgent, 8);
+		assertEquals(0, ((List<?>) blocked.get("ecsTaskArns")).size());
+		assertEquals(true, blocked.get("waitForSlots"));
+
+		// the monitor of the backfill sees 3 tasks finish, the urgent run gets their slots
+		backfillTables.finish(3, 0);
+		scheduler.recordFinished("cluster", RunShare.runKey("backfill", 7), 3);
+		Map<String, Object> backfillTopUp = launcher.launch(context(ecs, backfillTables).scheduler(scheduler),
+				backfill, 7);
+		assertEquals(0, ((List<?>) backfillTopUp.get("ecsTaskArns")).size());
+		Map<String, Object> urgentTopUp = launcher.launch(context(ecs, urgentTables).scheduler(scheduler), urgent, 8);
+		assertEquals(3, ((List<?>) urgentTopUp.get("ecsTaskArns")).size());
+		assertEquals(false, urgentTopUp.get("launchComplete"));
+	}
+
+	@Test
+	void completesCachedTasksWithoutRunningThem() {
+		FakeEcs ecs = new FakeEcs();
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		WorkflowSpecs workflowSpecs = workflowSpecs(3);
+		workflowSpecs.setResultCacheTableName("result_cache");
+		InMemoryResultCache resultCache = new InMemoryResultCache();
+		resultCache.put(ECSTaskLauncher.resultCacheKey(workflowSpecs, workflowSpecs.getTaskList().get(1), "\"etag\""),
+				new CachedResult("input/object-1_copy", 3, "arn:aws:ecs:us-east-1:000000000000:task/cluster/old", "then"));
+		ECSTaskLauncher launcher = new ECSTaskLauncher();
+
+		Map<String, Object> result = launcher.launch(context(ecs, dynamoDB).resultCache(resultCache).s3(new FakeS3()),
+				workflowSpecs, 7);
+		assertEquals(true, result.get("launchComplete"));
+		assertEquals(Arrays.asList("sk-7-0", "sk-7-2"), ecs.startedBy);
+		Map<String, AttributeValue> cached = dynamoDB.detail("cached/sk-7-1");
+		assertEquals("Completed (cached)", cached.get("status").s());
+		assertEquals("input/object-1_copy", cached.get("output_key").s());
+
+		// a changed config misses the cache
+		TaskConfig changed = workflowSpecs.getTaskList().get(1);
+		changed.setObjectKey("input/other");
+		assertNull(resultCache.lookup(ECSTaskLauncher.resultCacheKey(workflowSpecs, changed, "\"etag\"")));
+		TaskOverride override = ECSTaskLauncher.buildTaskOverride(workflowSpecs, changed, 7, "key", "\"etag\"");
+		assertTrue(override.containerOverrides().get(0).environment().stream()
+				.anyMatch(pair -> pair.name().equals("result_cache_key") && pair.value().equals("key")));
+	}
+
+	@Test
+	void launchesTasksWhoseSourceCannotBeReadWithoutTheCache() {
+		FakeEcs ecs = new FakeEcs();
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		WorkflowSpecs workflowSpecs = workflowSpecs(3);
+		workflowSpecs.setResultCacheTableName("result_cache");
+		FakeS3 s3 = new FakeS3();
+		s3.missing.add(workflowSpecs.getTaskList().get(1).getObjectKey());
+
+		Map<String, Object> result = new ECSTaskLauncher()
+				.launch(context(ecs, dynamoDB).resultCache(new InMemoryResultCache()).s3(s3), workflowSpecs, 7);
+		assertEquals(true, result.get("launchComplete"));
+		assertEquals(Arrays.asList("sk-7-0", "sk-7-1", "sk-7-2"), ecs.startedBy);
+	}
+
+	@Test
+	void resumesWithoutRunningCachedTasksAgain() {
+		FakeEcs ecs = new FakeEcs();
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		WorkflowSpecs workflowSpecs = workflowSpecs(3);
+		workflowSpecs.setResultCacheTableName("result_cache");
+		InMemoryResultCache resultCache = new InMemoryResultCache();
+		resultCache.put(ECSTaskLauncher.resultCacheKey(workflowSpecs, workflowSpecs.getTaskList().get(1), "\"etag\""),
+				new CachedResult("input/object-1_copy", 3, "arn:aws:ecs:us-east-1:000000000000:task/cluster/old", "then"));
+		ecs.failAfter = 1;
+
+		assertThrows(IllegalStateException.class, () -> new ECSTaskLauncher()
+				.launch(context(ecs, dynamoDB).resultCache(resultCache).s3(new FakeS3()), workflowSpecs, 7));
+		assertEquals(0, dynamoDB.launchCursor());
+
+		// the entry expired meanwhile, the row written under the launch token still tells the task completed
+		ecs.failAfter = Integer.MAX_VALUE;
+		Map<String, Object> result = new ECSTaskLauncher().launch(
+				context(ecs, dynamoDB).resultCache(new InMemoryResultCache()).s3(new FakeS3()), workflowSpecs, 7);
+		assertEquals(true, result.get("launchComplete"));
+		assertEquals(Arrays.asList("sk-7-0", "sk-7-2"), ecs.startedBy);
+		assertEquals("cached/sk-7-1", ((List<?>) result.get("ecsTaskArns")).get(1));
+	}
+
+	@Test
+	void movesTasksOutOfSubnetsWithoutFreeAddresses() {
+		FakeEcs ecs = new FakeEcs();
+		ecs.exhaustedSubnets.add("subnet-1");
+		WorkflowSpecs workflowSpecs = workflowSpecs(4);
+		SubnetCapacity subnetCapacity = subnetIds -> Arrays.asList(new Subnet("subnet-1", "us-east-1a", 50),
+				new Subnet("subnet-2", "us-east-1b", 10));
+
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		Map<String, Object> result = new ECSTaskLauncher()
+				.launch(context(ecs, dynamoDB).subnetCapacity(subnetCapacity), workflowSpecs, 7);
+		assertEquals(true, result.get("launchComplete"));
+		assertEquals(4, ecs.startedBy.size());
+		// the first task failed in subnet-1, every task after it went to subnet-2
+		assertEquals(Arrays.asList("subnet-1", "subnet-2", "subnet-2", "subnet-2", "subnet-2"), ecs.subnets);
+	}
+
+	@Test
+	void launchesDiscoveredInputsInKeyOrder() {
+		FakeEcs ecs = new FakeEcs();
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		FakeS3 s3 = new FakeS3();
+		for (int i = 0; i < 12; i++) {
+			s3.keys.add(String.format("input/object-%02d", i));
+		}
+		s3.keys.add("logs/other");
+		WorkflowSpecs workflowSpecs = workflowSpecs(0);
+		workflowSpecs.setTaskList(null);
+		InputConfig input = new InputConfig();
+		input.setS3BucketName("bucket");
+		input.setPrefix("input/");
+		workflowSpecs.setInput(input);
+		workflowSpecs.setMaxTasksPerInvocation(5);
+		ECSTaskLauncher launcher = new ECSTaskLauncher();
+
+		Map<String, Object> first = launcher.launch(context(ecs, dynamoDB).s3(s3), workflowSpecs, 7);
+		assertEquals(false, first.get("launchComplete"));
+		assertEquals(5, first.get("numberOfTasks"));
+		assertEquals("input/object-04", dynamoDB.summary().get(WorkflowSummaryStore.INPUT_CURSOR_KEY).s());
+
+		launcher.launch(context(ecs, dynamoDB).s3(s3), workflowSpecs, 7);
+		Map<String, Object> last = launcher.launch(context(ecs, dynamoDB).s3(s3), workflowSpecs, 7);
+		assertEquals(true, last.get("launchComplete"));
+		assertEquals(12, last.get("numberOfTasks"));
+		assertEquals(12, ecs.startedBy.size());
+		assertEquals(ECSTaskLauncher.launchToken(7, 11), ecs.startedBy.get(11));
+		// each invocation lists after the last launched key
+		assertEquals(Arrays.asList(null, "input/object-04", "input/object-09"), s3.startAfter);
+	}
+
+	@Test
+	void launchesShardsOfDiscoveredInputs() {
+		FakeEcs ecs = new FakeEcs();
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		FakeS3 s3 = new FakeS3();
+		for (int i = 0; i < 12; i++) {
+			String key = String.format("input/object-%02d", i);
+			s3.keys.add(key);
+			s3.sizes.put(key, i == 0 ? 9L : 1L);
+		}
+		WorkflowSpecs workflowSpecs = workflowSpecs(0);
+		workflowSpecs.setTaskList(null);
+		InputConfig input = new InputConfig();
+		input.setS3BucketName("bucket");
+		input.setPrefix("input/");
+		ShardingConfig sharding = new ShardingConfig();
+		sharding.setTargetShardSeconds(10);
+		// no history: an object takes 1 second plus 1 second per byte
+		sharding.setSecondsPerObject(1);
+		sharding.setBytesPerSecond(1);
+		input.setSharding(sharding);
+		workflowSpecs.setInput(input);
+		workflowSpecs.setMaxTasksPerInvocation(2);
+		ECSTaskLauncher launcher = new ECSTaskLauncher();
+
+		Map<String, Object> first = launcher.launch(context(ecs, dynamoDB).s3(s3), workflowSpecs, 7);
+		assertEquals(false, first.get("launchComplete"));
+		assertEquals("input/object-05", dynamoDB.summary().get(WorkflowSummaryStore.INPUT_CURSOR_KEY).s());
+		assertEquals("6", dynamoDB.summary().get(WorkflowSummaryStore.INPUT_CURSOR_OFFSET).n());
+		Map<String, Object> last = launcher.launch(context(ecs, dynamoDB).s3(s3), workflowSpecs, 7);
+		assertEquals(true, last.get("launchComplete"));
+		assertEquals(4, last.get("numberOfTasks"));
+		assertEquals(Arrays.asList(null, "input/object-05"), s3.startAfter);
+
+		// the large object runs alone, the small ones fill shards of 10 seconds
+		Map<String, String> largeShard = environmentOf(ecs.overrides.get(0));
+		assertEquals("shard-0", largeShard.get("task_name"));
+		assertNull(largeShard.get("object_keys"));
+		assertEquals("9", largeShard.get("input_bytes"));
+		Map<String, String> smallShard = environmentOf(ecs.overrides.get(1));
+		assertEquals("shard-1", smallShard.get("task_name"));
+		assertEquals("input/object-01", smallShard.get("object_key"));
+		assertEquals("[\"input/object-01\",\"input/object-02\",\"input/object-03\",\"input/object-04\","
+				+ "\"input/object-05\"]", smallShard.get("object_keys"));
+		assertEquals("5", smallShard.get("input_objects"));
+		// the next invocation plans the objects left after the cursor again: two shards of 6 seconds
+		assertEquals("shard-6", environmentOf(ecs.overrides.get(2)).get("task_name"));
+		assertEquals("shard-9", environmentOf(ecs.overrides.get(3)).get("task_name"));
+		assertEquals("3", environmentOf(ecs.overrides.get(3)).get("input_objects"));
+	}
+
+	@Test
+	void sizesTasksFromTheirInputSizes() {
+		FakeEcs ecs = new FakeEcs();
+		FakeS3 s3 = new FakeS3();
+		s3.keys.add("input/large");
+		s3.sizes.put("input/large", 2048L * 1024 * 1024);
+		s3.keys.add("input/small");
+		s3.sizes.put("input/small", 1L);
+		WorkflowSpecs workflowSpecs = workflowSpecs(0);
+		workflowSpecs.setTaskList(null);
+		InputConfig input = new InputConfig();
+		input.setS3BucketName("bucket");
+		input.setPrefix("input/");
+		workflowSpecs.setInput(input);
+		workflowSpecs.setSizing(new SizingConfig());
+
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		new ECSTaskLauncher().launch(context(ecs, dynamoDB).s3(s3), workflowSpecs, 7);
+		// (1024 MiB + 2048 MiB) with 25% headroom, rounded up to a Fargate size
+		assertEquals("512", ecs.overrides.get(0).cpu());
+		assertEquals("4096", ecs.overrides.get(0).memory());
+		assertEquals("256", ecs.overrides.get(1).cpu());
+		assertEquals("2048", ecs.overrides.get(1).memory());
+	}
+
+	@Test
+	void sizesOnlyFargateTasksToFargateSizes() {
+		assertTrue(ECSTaskLauncher.isFargate(null, null));
+		assertTrue(ECSTaskLauncher.isFargate("EC2",
+				Arrays.asList(provider("FARGATE", 1, 0), provider("FARGATE_SPOT", 1, 0))));
+		assertFalse(ECSTaskLauncher.isFargate("EC2", Collections.emptyList()));
+		assertFalse(ECSTaskLauncher.isFargate(null, Collections.singletonList(provider("ec2-asg", 1, 0))));
+	}
+
+	@Test
+	void runsTasksWithLittleInputInTheLauncher() {
+		FakeEcs ecs = new FakeEcs();
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		FakeS3 s3 = new FakeS3();
+		s3.keys.add("input/large");
+		s3.sizes.put("input/large", 5000000L);
+		s3.keys.add("input/small-1");
+		s3.sizes.put("input/small-1", 10L);
+		s3.keys.add("input/small-2");
+		s3.sizes.put("input/small-2", 20L);
+		WorkflowSpecs workflowSpecs = workflowSpecs(0);
+		workflowSpecs.setTaskList(null);
+		InputConfig input = new InputConfig();
+		input.setS3BucketName("bucket");
+		input.setPrefix("input/");
+		workflowSpecs.setInput(input);
+		ExecutorConfig executors = new ExecutorConfig();
+		executors.setInProcessMaxInputBytes(1024);
+		workflowSpecs.setExecutors(executors);
+
+		Map<String, Object> result = new ECSTaskLauncher().launch(context(ecs, dynamoDB).s3(s3), workflowSpecs, 7);
+		assertEquals(true, result.get("launchComplete"));
+		assertEquals(Arrays.asList(FakeEcs.taskArn(ECSTaskLauncher.launchToken(7, 0)), "inprocess/sk-7-1",
+				"inprocess/sk-7-2"), result.get("ecsTaskArns"));
+		// only the large object ran as an ECS task, the launcher copied the small ones before it returned
+		assertEquals(1, ecs.startedBy.size());
+		assertEquals(new TreeSet<String>(Arrays.asList("input/small-1", "input/small-2")),
+				new TreeSet<String>(s3.copied));
+		Map<String, AttributeValue> row = dynamoDB.detail("inprocess/sk-7-2");
+		assertEquals("Completed", row.get("status").s());
+		assertEquals("input/small-2", row.get("task_name").s());
+		assertEquals("20", row.get("input_bytes").n());
+	}
+
+	@Test
+	void routesTasksToExecutorsBySize() {
+		ExecutorConfig config = new ExecutorConfig();
+		config.setInProcessMaxInputBytes(1024);
+		config.setEc2MinMemoryMiB(200000);
+		TaskExecutor ecs = new FixedExecutor();
+		TaskExecutor ec2 = new FixedExecutor();
+		TaskExecutor inProcess = new FixedExecutor();
+		TaskExecutors executors = new TaskExecutors(config, ecs, ec2, inProcess);
+		TaskConfig taskConfig = new TaskConfig();
+
+		assertEquals(inProcess, executors.select(taskConfig, 1024L, new TaskSize(256, 2048)));
+		assertEquals(ecs, executors.select(taskConfig, 1025L, new TaskSize(256, 2048)));
+		assertEquals(ecs, executors.select(taskConfig, null, null));
+		assertEquals(ec2, executors.select(taskConfig, null, new TaskSize(16384, 240000)));
+		// a task on its own capacity providers is not moved
+		taskConfig.setCapacityProviderStrategy(Collections.singletonList(provider("FARGATE", 1, 0)));
+		assertEquals(ecs, executors.select(taskConfig, null, new TaskSize(16384, 240000)));
+	}
+
+	@Test
+	void runsLargeTasksOnTheEc2CapacityProviders() {
+		FakeEcs ecs = new FakeEcs();
+		FakeS3 s3 = new FakeS3();
+		s3.keys.add("input/large");
+		s3.sizes.put("input/large", 2048L * 1024 * 1024);
+		s3.keys.add("input/small");
+		s3.sizes.put("input/small", 1L);
+		WorkflowSpecs workflowSpecs = workflowSpecs(0);
+		workflowSpecs.setTaskList(null);
+		InputConfig input = new InputConfig();
+		input.setS3BucketName("bucket");
+		input.setPrefix("input/");
+		workflowSpecs.setInput(input);
+		workflowSpecs.setSizing(new SizingConfig());
+		ExecutorConfig config = new ExecutorConfig();
+		config.setEc2MinMemoryMiB(3000);
+		config.setEc2CapacityProviderStrategy(Collections.singletonList(provider("ec2-asg", 1, 0)));
+		workflowSpecs.setExecutors(config);
+
+		new ECSTaskLauncher().launch(context(ecs, new FakeDynamoDb()).s3(s3), workflowSpecs, 7);
+		// sized for the instance instead of the next Fargate size
+		assertEquals("3840", ecs.overrides.get(0).memory());
+		assertEquals("ec2-asg", ecs.capacityProviders.get(0));
+		assertEquals("2048", ecs.overrides.get(1).memory());
+		assertNull(ecs.capacityProviders.get(1));
+	}
+
+	@Test
+	void rejectsEc2ExecutorsWithoutEc2CapacityProviders() {
+		ExecutorConfig config = new ExecutorConfig();
+		config.setEc2MinMemoryMiB(32768);
+		assertThrows(IllegalArgumentException.class, () -> ECSTaskLauncher.validateExecutors(config));
+		config.setEc2CapacityProviderStrategy(Collections.singletonList(provider("FARGATE", 1, 0)));
+		assertThrows(IllegalArgumentException.class, () -> ECSTaskLauncher.validateExecutors(config));
+		config.setEc2CapacityProviderStrategy(Collections.singletonList(provider("ec2-asg", 1, 0)));
+		ECSTaskLauncher.validateExecutors(config);
+		config.setEc2MinMemoryMiB(0);
+		config.setEc2CapacityProviderStrategy(null);
+		ECSTaskLauncher.validateExecutors(config);
+	}
+
+	private static class FixedExecutor implements TaskExecutor {
+
+		@Override
+		public boolean isFargate(TaskConfig taskConfig) {
+			return true;
+		}
+
+		@Override
+		public String execute(TaskConfig taskConfig, TaskOverride taskOverride, String launchToken) {
+			return launchToken;
+		}
+	}
+
+	private static LaunchContext context(EcsClient ecs, FakeDynamoDb dynamoDB) {
+		return new LaunchContext(ecs, dynamoDB, dynamoDB.store, dynamoDB.summaries, () -> Long.MAX_VALUE);
+	}
+
+	private static Map<String, String> environmentOf(TaskOverride taskOverride) {
+		Map<String, String> environment = new HashMap<String, String>();
+		taskOverride.containerOverrides().get(0).environment()
+				.forEach(variable -> environment.put(variable.name(), variable.value()));
+		return environment;
+	}
+
+	@Test
+	void launchesTasksAsTheirDependenciesComplete() {
+		FakeEcs ecs = new FakeEcs();
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		WorkflowSpecs workflowSpecs = workflowSpecs(5);
+		List<TaskConfig> taskList = workflowSpecs.getTaskList();
+		taskList.get(2).setDependsOn(Arrays.asList("task-0", "task-1"));
+		taskList.get(3).setDependsOn(Arrays.asList("task-2"));
+		taskList.get(4).setDependsOn(Arrays.asList("task-1"));
+		ECSTaskLauncher launcher = new ECSTaskLauncher();
+
+		Map<String, Object> first = launcher.launch(context(ecs, dynamoDB), workflowSpecs, 7);
+		assertEquals(2, first.get("launchCursor"));
+		assertEquals(true, first.get("waitForSlots"));
+		assertEquals("Blocked", dynamoDB.detail("node/task-2").get("status").s());
+		assertEquals("Launched", dynamoDB.detail("node/task-0").get("status").s());
+
+		dynamoDB.taskStatus(ecs, 0, "Completed");
+		Map<String, Object> second = launcher.launch(context(ecs, dynamoDB), workflowSpecs, 7);
+		// task-4 only waits for task-1
+		assertEquals(0, ((List<?>) second.get("ecsTaskArns")).size());
+		dynamoDB.taskStatus(ecs, 1, "Completed");
+		Map<String, Object> third = launcher.launch(context(ecs, dynamoDB), workflowSpecs, 7);
+		assertEquals(4, third.get("launchCursor"));
+		assertEquals(Arrays.asList(ECSTaskLauncher.launchToken(7, 2), ECSTaskLauncher.launchToken(7, 4)),
+				ecs.startedBy.subList(2, 4));
+
+		dynamoDB.taskStatus(ecs, 2, "Failed");
+		Map<String, Object> last = launcher.launch(context(ecs, dynamoDB), workflowSpecs, 7);
+		assertEquals(true, last.get("launchComplete"));
+		assertEquals("Skipped", dynamoDB.detail("node/task-3").get("status").s());
+		assertEquals(4, ecs.startedBy.size());
+	}
+
+	@Test
+	void rejectsDependencyCycles() {
+		WorkflowSpecs workflowSpecs = workflowSpecs(3);
+		workflowSpecs.getTaskList().get(0).setDependsOn(Arrays.asList("task-2"));
+		workflowSpecs.getTaskList().get(2).setDependsOn(Arrays.asList("task-0"));
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+
+		assertThrows(IllegalArgumentException.class,
+				() -> new ECSTaskLauncher().launch(context(new FakeEcs(), dynamoDB), workflowSpecs, 7));
+		assertNull(dynamoDB.summary());
+	}
+
+	@Test
+	void sendsWorkItemsFromTheCursor() {
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		InMemoryWorkQueue workQueue = new InMemoryWorkQueue();
+		WorkflowSpecs workflowSpecs = workflowSpecs(15);
+		workflowSpecs.setMaxTasksPerInvocation(10);
+		ECSTaskLauncher launcher = new ECSTaskLauncher();
+
+		launcher.launch(context(null, dynamoDB).workQueue(workQueue), workflowSpecs, 7);
+		Map<String, Object> map = launcher.launch(context(null, dynamoDB).workQueue(workQueue), workflowSpecs, 7);
+		assertEquals(true, map.get("launchComplete"));
+		assertEquals(WorkItem.itemId(7, 10), ((List<?>) map.get("ecsTaskArns")).get(0));
+		assertEquals(15, workQueue.approximateDepth());
+	}
+
+	@Test
+	void derivesRunIdFromExecutionStartTime() {
+		WorkflowSpecs workflowSpecs = new WorkflowSpecs();
+		assertEquals(5, ECSTaskLauncher.resolveWorkflowRunId(workflowSpecs, 5));
+		ExecutionContext execution = new ExecutionContext();
+		execution.setName("run-1");
+		execution.setStartTime("2021-01-01T00:00:00.123Z");
+		workflowSpecs.setExecution(execution);
+		assertEquals(1609459200123L, ECSTaskLauncher.resolveWorkflowRunId(workflowSpecs, 5));
+		workflowSpecs.setWorkflowRunId(42L);
+		assertEquals(42, ECSTaskLauncher.resolveWorkflowRunId(workflowSpecs, 5));
+		assertTrue(ECSTaskLauncher.launchToken(1609459200123L, 49999).length() <= 36);
+	}
+
+	@Test
+	void leavesLargeTaskListsOutOfTheSummary() {
+		assertTrue(ECSTaskLauncher.workflowSpecsJson(workflowSpecs(3)).contains("taskList"));
+		assertFalse(ECSTaskLauncher.workflowSpecsJson(workflowSpecs(20000)).contains("taskList"));
+	}
+
+	private static WorkflowSpecs workflowSpecs(int numberOfTasks) {
+		WorkflowSpecs workflowSpecs = new WorkflowSpecs();
+		workflowSpecs.setWorkflowName("wf");
+		workflowSpecs.setClusterName("cluster");
+		workflowSpecs.setContainerName("container");
+		workflowSpecs.setTaskDefinition("task-def:1");
+		workflowSpecs.setSecurityGroupId("sg-1");
+		workflowSpecs.setSubnetIdLiteral("subnet-1,subnet-2");
+		workflowSpecs.setSeparator(",");
+		workflowSpecs.setDdbTableNameWFSummary("workflow_summary");
+		workflowSpecs.setHashKeyWFSummary("workflow_name");
+		workflowSpecs.setRangeKeyWFSummary("workflow_run_id");
+		workflowSpecs.setDdbTableNameWFDetails("workflow_details");
+		workflowSpecs.setHashKeyWFDetails("workflow_run_id");
+		workflowSpecs.setRangeKeyWFDetails("ecs_task_id");
+		List<TaskConfig> taskList = new ArrayList<TaskConfig>();
+		for (int i = 0; i < numberOfTasks; i++) {
+			TaskConfig taskConfig = new TaskConfig();
+			taskConfig.setTaskName("task-" + i);
+			taskConfig.setS3BucketName("bucket");
+			taskConfig.setObjectKey("input/object-" + i);
+			taskList.add(taskConfig);
+		}
+		workflowSpecs.setTaskList(taskList);
+		return workflowSpecs;
+	}
+
+	private static WorkflowSpecs scheduledWorkflowSpecs(String workflowName, int numberOfTasks, int priority) {
+		WorkflowSpecs workflowSpecs = workflowSpecs(numberOfTasks);
+		workflowSpecs.setWorkflowName(workflowName);
+		SchedulingConfig scheduling = new SchedulingConfig();
+		scheduling.setTableName("scheduler");
+		scheduling.setPriority(priority);
+		scheduling.setClusterTaskLimit(6);
+		workflowSpecs.setScheduling(scheduling);
+		return workflowSpecs;
+	}
+
+	private static CapacityProviderConfig provider(String name, int weight, int base) {
+		CapacityProviderConfig config = new CapacityProviderConfig();
+		config.setCapacityProvider(name);
+		config.setWeight(weight);
+		config.setBase(base);
+		return config;
+	}
+
+	/**
+	 * EcsClient which runs every task and lists them by startedBy
+	 */
+	private static class FakeEcs implements EcsClient {
+
+		private final List<String> startedBy = new ArrayList<String>();
+		private final List<TaskOverride> overrides = new ArrayList<TaskOverride>();
+		// first capacity provider of each task, null for a launch type
+		private final List<String> capacityProviders = new ArrayList<String>();
+		private final List<String> subnets = new ArrayList<String>();
+		private final Set<String> exhaustedSubnets = new HashSet<String>();
+		private int failAfter = Integer.MAX_VALUE;
+
+		@Override
+		public RunTaskResponse runTask(RunTaskRequest request) {
+			if (startedBy.size() == failAfter)
+				throw new IllegalStateException("invocation timed out");
+			List<String> requestSubnets = request.networkConfiguration().awsvpcConfiguration().subnets();
+			subnets.add(String.join(",", requestSubnets));
+			if (exhaustedSubnets.containsAll(requestSubnets))
+				return RunTaskResponse.builder()
+						.failures(Failure.builder().reason("RESOURCE:ENI").arn(requestSubnets.get(0)).build()).build();
+			startedBy.add(request.startedBy());
+			overrides.add(request.overrides());
+			capacityProviders.add(request.capacityProviderStrategy().isEmpty() ? null
+					: request.capacityProviderStrategy().get(0).capacityProvider());
+			return RunTaskResponse.builder().tasks(Task.builder().taskArn(taskArn(request.startedBy())).build())
+					.build();
+		}
+
+		@Override
+		public ListTasksResponse listTasks(ListTasksRequest request) {
+			List<String> taskArns = new ArrayList<String>();
+			if (startedBy.contains(request.startedBy()) && "RUNNING".equals(request.desiredStatusAsString()))
+				taskArns.add(taskArn(request.startedBy()));
+			return ListTasksResponse.builder().taskArns(taskArns).build();
+		}
+
+		private static String taskArn(String startedBy) {
+			return "arn:aws:ecs:us-east-1:000000000000:task/cluster/" + startedBy;
+		}
+
+		@Override
+		public String serviceName() {
+			return "ecs";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * S3Client where every object has the same ETag, listing its keys in one
+	 * page
+	 */
+	private static class FakeS3 implements S3Client {
+
+		private final TreeSet<String> keys = new TreeSet<String>();
+		private final Map<String, Long> sizes = new HashMap<String, Long>();
+		private final List<String> startAfter = new ArrayList<String>();
+		private final List<String> copied = Collections.synchronizedList(new ArrayList<String>());
+		private final Set<String> missing = new HashSet<String>();
+
+		@Override
+		public CopyObjectResponse copyObject(CopyObjectRequest request) {
+			copied.add(request.copySource().substring("bucket%2F".length()).replace("%2F", "/"));
+			return (CopyObjectResponse) CopyObjectResponse.builder()
+					.sdkHttpResponse(SdkHttpResponse.builder().statusCode(200).build()).build();
+		}
+
+		@Override
+		public HeadObjectResponse headObject(HeadObjectRequest request) {
+			if (missing.contains(request.key()))
+				throw NoSuchKeyException.builder().message("Not Found").build();
+			return HeadObjectResponse.builder().eTag("\"etag\"").build();
+		}
+
+		@Override
+		public ListObjectsV2Response listObjectsV2(ListObjectsV2Request request) {
+			startAfter.add(request.startAfter());
+			List<S3Object> contents = new ArrayList<S3Object>();
+			for (String key : keys) {
+				if (key.startsWith(request.prefix())
+						&& (request.startAfter() == null || key.compareTo(request.startAfter()) > 0))
+					contents.add(S3Object.builder().key(key).size(sizes.get(key)).build());
+			}
+			return ListObjectsV2Response.builder().contents(contents).build();
+		}
+
+		@Override
+		public String serviceName() {
+			return "s3";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * DynamoDbClient with the workflow summary of one workflow run and the
+	 * store of its workflow details
+	 */
+	private static class FakeDynamoDb implements DynamoDbClient {
+
+		private String workflowName;
+		private DynamoDbException insertError;
+		private final InMemoryWorkflowSummaryStore summaries = new InMemoryWorkflowSummaryStore("workflow_name",
+				"workflow_run_id") {
+			@Override
+			public synchronized CompletableFuture<Boolean> insertSummary(String workflowName, long workflowRunId,
+					String workflowSpecs, int numberOfTasks, String status, String startTime) {
+				if (insertError != null) {
+					CompletableFuture<Boolean> failed = new CompletableFuture<Boolean>();
+					failed.completeExceptionally(insertError);
+					return failed;
+				}
+				FakeDynamoDb.this.workflowName = workflowName;
+				return super.insertSummary(workflowName, workflowRunId, workflowSpecs, numberOfTasks, status,
+						startTime);
+			}
+		};
+		// written by the threads of in-process tasks too
+		private final InMemoryWorkflowStore store = new InMemoryWorkflowStore("workflow_run_id", "ecs_task_id");
+
+		Map<String, AttributeValue> detail(String ecsTaskId) {
+			return WorkflowStore.join(store.getTask(7, ecsTaskId));
+		}
+
+		// null until the launcher recorded the workflow run
+		Map<String, AttributeValue> summary() {
+			return workflowName == null ? null : WorkflowStore.join(summaries.getSummary(workflowName, 7));
+		}
+
+		int launchCursor() {
+			return Integer.parseInt(summary().get("launch_cursor").n());
+		}
+
+		// stands in for the ECS task of the task at index
+		void taskStatus(FakeEcs ecs, int index, String status) {
+			String taskArn = FakeEcs.taskArn(ECSTaskLauncher.launchToken(7, index));
+			store.putTask(7, taskArn, Collections.singletonMap("status", AttributeValue.builder().s(status).build()));
+		}
+
+		// stands in for the monitor
+		void finish(int completedTasks, int failedTasks) {
+			summaries.updateSummary(
+					new SummaryUpdate(workflowName, 7, "Running", "now", completedTasks, failedTasks, 0, null));
+		}
+
+		@Override
+		public String serviceName() {
+			return "dynamodb";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package software.aws.ecs.java.starterkit.placement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+
+class SubnetPlacementTest {
+
+	private static final List<String> SUBNETS = Arrays.asList("subnet-a1", "subnet-a2", "subnet-b1");
+	private final Metrics metrics = new Metrics("Test", s -> {
+	});
+
+	@Test
+	void spreadsTasksAcrossZonesAndAvoidsExhaustedSubnets() {
+		FakeSubnetCapacity capacity = new FakeSubnetCapacity(new Subnet("subnet-a1", "us-east-1a", 1),
+				new Subnet("subnet-a2", "us-east-1a", 3), new Subnet("subnet-b1", "us-east-1b", 2));
+		SubnetPlacement placement = new SubnetPlacement(capacity, SUBNETS, metrics);
+
+		Map<String, Integer> placed = new HashMap<String, Integer>();
+		for (int i = 0; i < 6; i++) {
+			List<String> subnets = placement.next();
+			assertEquals(1, subnets.size());
+			placement.placed(subnets);
+			placed.merge(subnets.get(0), 1, Integer::sum);
+		}
+
+		assertEquals(Integer.valueOf(1), placed.get("subnet-a1"));
+		assertEquals(Integer.valueOf(3), placed.get("subnet-a2"));
+		assertEquals(Integer.valueOf(2), placed.get("subnet-b1"));
+		// described once, then counted down
+		assertEquals(1, capacity.calls);
+		assertEquals(SUBNETS, placement.next());
+	}
+
+	@Test
+	void leavesOutSubnetsWhichFailToAllocateAnEni() {
+		SubnetPlacement placement = new SubnetPlacement(
+				new FakeSubnetCapacity(new Subnet("subnet-a1", "us-east-1a", 100),
+						new Subnet("subnet-b1", "us-east-1b", 10)),
+				Arrays.asList("subnet-a1", "subnet-b1"), metrics);
+
+		assertEquals(Collections.singletonList("subnet-a1"), placement.next());
+		assertTrue(SubnetPlacement.isCapacityFailure("Cannot run ECS Task sk-1-0: RESOURCE:ENI"));
+		assertFalse(SubnetPlacement.isCapacityFailure("Cannot run ECS Task sk-1-0: RESOURCE:MEMORY"));
+		assertTrue(placement.exhausted(Collections.singletonList("subnet-a1")));
+		assertEquals(Collections.singletonList("subnet-b1"), placement.next());
+		assertFalse(placement.exhausted(Collections.singletonList("subnet-b1")));
+	}
+
+	@Test
+	void fallsBackToAllSubnets() {
+		SubnetPlacement unavailable = new SubnetPlacement(subnetIds -> {
+			throw new IllegalStateException("DescribeSubnets failed with status 403");
+		}, SUBNETS, metrics);
+		assertEquals(SUBNETS, unavailable.next());
+		assertFalse(unavailable.exhausted(SUBNETS));
+
+		FakeSubnetCapacity capacity = new FakeSubnetCapacity();
+		assertEquals(Collections.singletonList("subnet-1"),
+				new SubnetPlacement(capacity, Collections.singletonList("subnet-1"), metrics).next());
+		assertEquals(0, capacity.calls);
+	}
+
+	@Test
+	void parsesDescribeSubnetsResponse() throws IOException {
+		String response = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+				+ "<DescribeSubnetsResponse xmlns=\"http://ec2.amazonaws.com/doc/2016-11-15/\">"
+				+ "<requestId>7a62c49f-347e-4fc4-9331-6e8eEXAMPLE</requestId><subnetSet>"
+				+ "<item><subnetId>subnet-a1</subnetId><availabilityZone>us-east-1a</availabilityZone>"
+				+ "<availableIpAddressCount>251</availableIpAddressCount>"
+				+ "<tagSet><item><key>Name</key><value>private</value></item></tagSet></item>"
+				+ "<item><subnetId>subnet-b1</subnetId><availabilityZone>us-east-1b</availabilityZone>"
+				+ "<availableIpAddressCount>0</availableIpAddressCount></item>"
+				+ "</subnetSet></DescribeSubnetsResponse>";
+
+		List<Subnet> subnets = Ec2SubnetCapacity
+				.parseResponse(new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)));
+
+		assertEquals(2, subnets.size());
+		assertEquals("subnet-a1", subnets.get(0).getSubnetId());
+		assertEquals("us-east-1a", subnets.get(0).getAvailabilityZone());
+		assertEquals(251, subnets.get(0).getAvailableIpAddressCount());
+		assertEquals(0, subnets.get(1).getAvailableIpAddressCount());
+		assertEquals("Action=DescribeSubnets&Version=2016-11-15&SubnetId.1=subnet-a1&SubnetId.2=subnet-b1",
+				Ec2SubnetCapacity.requestBody(Arrays.asList("subnet-a1", "subnet-b1")));
+	}
+
+	/**
+	 * SubnetCapacity with fixed free addresses, counting the calls
+	 */
+	private static class FakeSubnetCapacity implements SubnetCapacity {
+
+		private final List<Subnet> subnets;
+		private int calls;
+
+		FakeSubnetCapacity(Subnet... subnets) {
+			this.subnets = new ArrayList<Subnet>(Arrays.asList(subnets));
+		}
+
+		@Override
+		public List<Subnet> describeSubnets(Collection<String> subnetIds) {
+			calls++;
+			return subnets;
+		}
+	}
+}
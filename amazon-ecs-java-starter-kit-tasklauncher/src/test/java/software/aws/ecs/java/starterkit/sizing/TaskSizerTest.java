@@ -0,0 +1,83 @@
+package software.aws.ecs.java.starterkit.sizing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.aws.ecs.java.starterkit.input.DurationModel;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.util.SizingConfig;
+import software.aws.ecs.java.starterkit.util.TaskConfig;
+
+class TaskSizerTest {
+
+	private static final long MIB = 1024 * 1024;
+
+	private final Metrics metrics = new Metrics("Test", s -> {
+	});
+
+	@Test
+	void snapsToTheCheapestFargateSize() {
+		assertEquals(new TaskSize(512, 3072), TaskSize.snapToFargate(0, 3000));
+		assertEquals(new TaskSize(256, 512), TaskSize.snapToFargate(256, 0));
+		assertEquals(new TaskSize(2048, 4096), TaskSize.snapToFargate(1500, 4096));
+		assertEquals(new TaskSize(16384, 122880), TaskSize.snapToFargate(32768, 200000));
+	}
+
+	@Test
+	void derivesTheMemoryFromTheInputSize() {
+		TaskSizer sizer = new TaskSizer(new SizingConfig(), null, Collections::emptyList, metrics);
+
+		// (1024 MiB base + 1 MiB per MiB of input) with 25% headroom
+		assertEquals(new TaskSize(512, 3072), sizer.sizeOf(task(null, null, 1024 * MIB), true));
+		assertEquals(new TaskSize(256, 2560), sizer.sizeOf(task(null, null, 1024 * MIB), false));
+		// without an input size the task definition decides
+		assertNull(sizer.sizeOf(task(null, null, null), true));
+	}
+
+	@Test
+	void sizesFromTheHintsOfTheTask() {
+		TaskSizer sizer = new TaskSizer(null, null, Collections::emptyList, metrics);
+
+		assertEquals(new TaskSize(2048, 4096), sizer.sizeOf(task(2048, null, 1024 * MIB), true));
+		assertEquals(new TaskSize(0, 7000), sizer.sizeOf(task(null, 7000, null), false));
+		assertNull(sizer.sizeOf(task(null, null, 1024 * MIB), true));
+	}
+
+	@Test
+	void fitsTheMemoryToEarlierTasks() {
+		List<Map<String, AttributeValue>> history = new ArrayList<Map<String, AttributeValue>>();
+		// 4 MiB of memory per MiB of input, the task below 1 MiB of input is left out
+		history.add(history(3072, 512 * MIB));
+		history.add(history(2048, 1024 * MIB));
+		history.add(history(4096, 1024));
+		TaskSizer sizer = new TaskSizer(new SizingConfig(), null, () -> history, metrics);
+
+		assertEquals(4, TaskSizer.fitMemoryPerInputMiB(history, 1024), 1e-9);
+		assertEquals(new TaskSize(256, 2560), sizer.sizeOf(task(null, null, 256 * MIB), false));
+	}
+
+	private static TaskConfig task(Integer cpu, Integer memory, Long inputBytes) {
+		TaskConfig taskConfig = new TaskConfig();
+		taskConfig.setTaskName("task");
+		taskConfig.setCpu(cpu);
+		taskConfig.setMemory(memory);
+		taskConfig.setInputBytes(inputBytes);
+		return taskConfig;
+	}
+
+	private static Map<String, AttributeValue> history(long maxMemoryMiB, long inputBytes) {
+		Map<String, AttributeValue> task = new HashMap<String, AttributeValue>();
+		task.put(TaskSizer.MAX_MEMORY_MIB, AttributeValue.builder().n(Long.toString(maxMemoryMiB)).build());
+		task.put(DurationModel.INPUT_BYTES, AttributeValue.builder().n(Long.toString(inputBytes)).build());
+		return task;
+	}
+}
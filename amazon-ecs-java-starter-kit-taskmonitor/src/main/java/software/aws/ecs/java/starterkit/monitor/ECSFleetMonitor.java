@@ -0,0 +1,209 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.monitor;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Scope;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.ecs.EcsClient;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.monitor.model.FleetInput;
+import software.aws.ecs.java.starterkit.monitor.model.Iterator;
+import software.aws.ecs.java.starterkit.monitor.model.WorkflowStatus;
+import software.aws.ecs.java.starterkit.store.SummaryUpdate;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+import software.aws.ecs.java.starterkit.store.WorkflowSummaryStore;
+import software.aws.ecs.java.starterkit.tracing.Tracing;
+
+/**
+ * ECSFleetMonitor implemented as an AWS Lambda function. It monitors many
+ * workflow runs in one invocation, instead of one ECSTaskMonitor invocation per
+ * workflow run and poll.
+ * 
+ * The input is a list of iterators, as returned by ECSTaskLauncher. When the
+ * list is empty, all workflow runs with status Running in workflow_summary are
+ * monitored. Workflow runs are evaluated concurrently with shared clients, by
+ * the same tick as ECSTaskMonitor: dead tasks are failed, speculative copies
+ * settled and failed tasks retried before the tasks are counted. Their
+ * summaries are written with TransactWriteItems.
+ *
+ */
+public class ECSFleetMonitor implements RequestHandler<FleetInput, Map<String, Object>> {
+
+	private static final int DEFAULT_CONCURRENCY = 16;
+
+	private final Metrics metrics;
+	private final Tracing tracing = Tracing.getInstance("ECSFleetMonitor");
+	private final MonitorConfig config;
+	private final WorkflowSummaryStore summaryStore;
+	private final ExecutorService executor;
+	private final WorkflowEvaluator evaluator;
+
+	public ECSFleetMonitor() {
+		this(MonitorConfig.fromEnvironment(), Integer.parseInt(Optional
+				.ofNullable(System.getenv("fleet_monitor_concurrency")).orElse(Integer.toString(DEFAULT_CONCURRENCY))),
+				Metrics.getInstance());
+	}
+
+	private ECSFleetMonitor(MonitorConfig config, int concurrency, Metrics metrics) {
+		this(config, DynamoDbClient.builder().region(config.getRegion()).build(), config.buildDynamoDbAsyncClient(),
+				concurrency, metrics);
+	}
+
+	private ECSFleetMonitor(MonitorConfig config, DynamoDbClient dynamoDB, DynamoDbAsyncClient dynamoDBAsync,
+			int concurrency, Metrics metrics) {
+		// both stores share the asynchronous client
+		this(config, dynamoDB, config.buildWorkflowSummaryStore(dynamoDBAsync, metrics),
+				config.buildWorkflowStore(dynamoDBAsync, metrics), concurrency, metrics);
+	}
+
+	private ECSFleetMonitor(MonitorConfig config, DynamoDbClient dynamoDB, WorkflowSummaryStore summaryStore,
+			WorkflowStore store, int concurrency, Metrics metrics) {
+		// the clients and the thread pools are reused by warm invocations
+		this(config, summaryStore, concurrency,
+				WorkflowEvaluator.fromEnvironment(EcsClient.builder().region(config.getRegion()).build(), dynamoDB,
+						summaryStore, store, config, Executors.newFixedThreadPool(concurrency), metrics),
+				metrics);
+	}
+
+	ECSFleetMonitor(MonitorConfig config, WorkflowSummaryStore summaryStore, int concurrency,
+			WorkflowEvaluator evaluator, Metrics metrics) {
+		this.config = config;
+		this.summaryStore = summaryStore;
+		this.executor = Executors.newFixedThreadPool(concurrency);
+		this.evaluator = evaluator;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public Map<String, Object> handleRequest(FleetInput input, Context context) {
+		long invocationStart = System.nanoTime();
+		metrics.putDimension("Service", "ECSFleetMonitor");
+		try {
+			return monitor(input);
+		} finally {
+			metrics.recordLatencySince("FleetTickDuration", invocationStart);
+			metrics.flush();
+			tracing.flush();
+		}
+	}
+
+	/**
+	 * This method evaluates all workflow runs and returns one iterator per run,
+	 * with its own continue flag
+	 * 
+	 * @param input
+	 * @return
+	 */
+	Map<String, Object> monitor(FleetInput input) {
+		List<Iterator> iterators = input != null && input.getIterators() != null && !input.getIterators().isEmpty()
+				? input.getIterators()
+				: discoverRunningWorkflows();
+		System.out.printf("Number of workflow runs to monitor: %d\n", iterators.size());
+		metrics.gauge("WorkflowRunsMonitored", iterators.size());
+
+		List<Future<WorkflowStatus>> futures = new ArrayList<Future<WorkflowStatus>>();
+		for (Iterator iterator : iterators) {
+			futures.add(executor.submit(() -> evaluate(iterator)));
+		}
+		List<WorkflowStatus> workflowStatuses = new ArrayList<WorkflowStatus>();
+		int completedTasks = 0;
+		int failedTasks = 0;
+		int runningTasks = 0;
+		int stalledTasks = 0;
+		for (Future<WorkflowStatus> future : futures) {
+			try {
+				WorkflowStatus workflowStatus = future.get();
+				workflowStatuses.add(workflowStatus);
+				completedTasks += workflowStatus.getCompletedTasks().size();
+				failedTasks += workflowStatus.getFailedTasks().size();
+				runningTasks += workflowStatus.getRunningTasks().size();
+				stalledTasks += workflowStatus.getStalledTasks();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while monitoring workflow runs", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Cannot monitor workflow run", e.getCause());
+			}
+		}
+		// the tasks of all monitored runs
+		metrics.gauge("CompletedTasks", completedTasks);
+		metrics.gauge("FailedTasks", failedTasks);
+		metrics.gauge("RunningTasks", runningTasks);
+		metrics.gauge("StalledTasks", stalledTasks);
+
+		String time = new Date().toString();
+		List<SummaryUpdate> updates = new ArrayList<SummaryUpdate>();
+		for (WorkflowStatus workflowStatus : workflowStatuses) {
+			updates.add(workflowStatus.toSummaryUpdate(time));
+		}
+		WorkflowStore.join(summaryStore.updateSummaries(updates));
+		for (int i = 0; i < iterators.size(); i++) {
+			evaluator.releaseSlots(iterators.get(i), workflowStatuses.get(i));
+		}
+
+		List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
+		boolean anyRunning = false;
+		for (int i = 0; i < iterators.size(); i++) {
+			anyRunning |= workflowStatuses.get(i).getStatus().equals("Running");
+			results.add(WorkflowEvaluator.nextIterator(iterators.get(i), workflowStatuses.get(i)));
+		}
+		Map<String, Object> response = new HashMap<String, Object>();
+		response.put("iterators", results);
+		response.put("continue", anyRunning);
+		return response;
+	}
+
+	/**
+	 * This method runs one monitor tick for a workflow run, as ECSTaskMonitor
+	 * does
+	 * 
+	 * @param iterator
+	 * @return
+	 */
+	WorkflowStatus evaluate(Iterator iterator) {
+		Span span = tracing.startSpan("MonitorWorkflow", Tracing.fromTraceParent(iterator.getTraceParent()),
+				iterator.getWorkflowRunId());
+		try (Scope scope = span.makeCurrent()) {
+			return evaluator.evaluate(iterator, System.currentTimeMillis());
+		} finally {
+			span.end();
+		}
+	}
+
+	/**
+	 * This method builds iterators for all running workflow runs in
+	 * workflow_summary
+	 * 
+	 * @return
+	 */
+	List<Iterator> discoverRunningWorkflows() {
+		List<Iterator> iterators = new ArrayList<Iterator>();
+		for (Map<String, AttributeValue> item : WorkflowStore.join(summaryStore.getSummaries("Running"))) {
+			Iterator iterator = new Iterator();
+			iterator.setWorkflowName(item.get(config.getHashKeyWFSummary()).s());
+			iterator.setWorkflowRunId(Long.parseLong(item.get(config.getRangeKeyWFSummary()).n()));
+			AttributeValue numberOfTasks = item.get("number_of_tasks");
+			iterator.setNumberOfTasks(numberOfTasks == null ? 0 : Integer.parseInt(numberOfTasks.n()));
+			iterators.add(iterator);
+		}
+		return iterators;
+	}
+}
@@ -3,113 +3,137 @@
 
 package software.aws.ecs.java.starterkit.monitor;
 
-import com.amazonaws.regions.Regions;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import software.amazon.awssdk.regions.Region;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Scope;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.ecs.EcsClient;
 import software.aws.ecs.java.starterkit.monitor.model.Input;
+import software.aws.ecs.java.starterkit.monitor.model.Iterator;
 import software.aws.ecs.java.starterkit.monitor.model.WorkflowStatus;
-import software.aws.ecs.java.starterkit.util.DDBUtil;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+import software.aws.ecs.java.starterkit.store.WorkflowSummaryStore;
+import software.aws.ecs.java.starterkit.tracing.Tracing;
 
 import java.util.*;
+import java.util.concurrent.Executors;
 
 public class ECSTaskMonitor implements RequestHandler<Input, Map<String, Object>> {
+
+	private static final int DEFAULT_DESCRIBE_CONCURRENCY = 8;
+
+	private final Metrics metrics;
+	private final Tracing tracing = Tracing.getInstance("ECSTaskMonitor");
+	private final MonitorConfig config;
+	private final WorkflowSummaryStore summaryStore;
+	private final WorkflowEvaluator evaluator;
+
+	public ECSTaskMonitor() {
+		this(MonitorConfig.fromEnvironment(), Metrics.getInstance());
+	}
+
+	private ECSTaskMonitor(MonitorConfig config, Metrics metrics) {
+		this(config, DynamoDbClient.builder().region(config.getRegion()).build(), config.buildDynamoDbAsyncClient(),
+				metrics);
+	}
+
+	private ECSTaskMonitor(MonitorConfig config, DynamoDbClient dynamoDB, DynamoDbAsyncClient dynamoDBAsync,
+			Metrics metrics) {
+		// both stores share the asynchronous client
+		this(config, dynamoDB, config.buildWorkflowSummaryStore(dynamoDBAsync, metrics),
+				config.buildWorkflowStore(dynamoDBAsync, metrics), metrics);
+	}
+
+	private ECSTaskMonitor(MonitorConfig config, DynamoDbClient dynamoDB, WorkflowSummaryStore summaryStore,
+			WorkflowStore store, Metrics metrics) {
+		// the clients and the thread pool are reused by warm invocations. Retries follow the policies of the
+		// workflow specs, so the ECS client is always needed. The DescribeTasks batches of dead-task detection
+		// run on the thread pool.
+		this(config, summaryStore,
+				WorkflowEvaluator.fromEnvironment(EcsClient.builder().region(config.getRegion()).build(), dynamoDB,
+						summaryStore, store, config,
+						Executors.newFixedThreadPool(Integer.parseInt(Optional
+								.ofNullable(System.getenv("describe_tasks_concurrency"))
+								.orElse(Integer.toString(DEFAULT_DESCRIBE_CONCURRENCY)))),
+						metrics),
+				metrics);
+	}
+
+	ECSTaskMonitor(MonitorConfig config, WorkflowSummaryStore summaryStore, WorkflowEvaluator evaluator,
+			Metrics metrics) {
+		this.config = config;
+		this.summaryStore = summaryStore;
+		this.evaluator = evaluator;
+		this.metrics = metrics;
+	}
+
 	@Override
 	public Map<String, Object> handleRequest(Input input, Context context) {
+		long invocationStart = System.nanoTime();
+		metrics.putDimension("Service", "ECSTaskMonitor")
+				.putProperty("WorkflowName", input.getIterator().getWorkflowName())
+				.putProperty("WorkflowRunId", input.getIterator().getWorkflowRunId());
+		// every tick joins the trace started by the launcher
+		Span span = tracing.startSpan("MonitorWorkflow",
+				Tracing.fromTraceParent(input.getIterator().getTraceParent()),
+				input.getIterator().getWorkflowRunId());
+		try (Scope scope = span.makeCurrent()) {
+			return monitorWorkflow(input, context);
+		} finally {
+			span.end();
+			metrics.recordLatencySince("MonitorTickDuration", invocationStart);
+			metrics.flush();
+			tracing.flush();
+		}
+	}
+
+	private Map<String, Object> monitorWorkflow(Input input, Context context) {
 		Gson gson = new GsonBuilder().setPrettyPrinting().create();
 		LambdaLogger logger = context.getLogger();
 		logger.log("Input event type: " + input.getClass().toString());
 		logger.log("Input event: " + gson.toJson(input));
 		logger.log("Workflow Run Id: " + input.getIterator().getWorkflowRunId());
 		logger.log("Workflow Name: " + input.getIterator().getWorkflowName());
-		logger.log("Numm of Task ARNs: " + input.getIterator().getEcsTaskArns().size());
-		for (String taskARN : input.getIterator().getEcsTaskArns()) {
-			logger.log("Task ARN: " + taskARN);
-		}
+		logger.log("Number of Tasks: " + input.getIterator().getExpectedTasks());
 
-		String regionString = Optional.ofNullable(System.getenv("region")).orElse(Regions.US_EAST_1.getName());
-		String ddbTableNameWFSummary = Optional.ofNullable(System.getenv("workflow_summary_ddb_table_name"))
-				.orElse("workflow_summary");
-		String hashKeyWFSummary = Optional.ofNullable(System.getenv("workflow_summary_hash_key"))
-				.orElse("workflow_name");
-		String rangeKeyWFSummary = Optional.ofNullable(System.getenv("workflow_summary_range_key"))
-				.orElse("workflow_run_id");
-		String ddbTableNameWFDetails = Optional.ofNullable(System.getenv("workflow_details_ddb_table_name"))
-				.orElse("workflow_details");
-		String hashKeyWFDetails = Optional.ofNullable(System.getenv("workflow_details_hash_key"))
-				.orElse("workflow_run_id");
-		String rangeKeyWFDetails = Optional.ofNullable(System.getenv("workflow_details_range_key"))
-				.orElse("ecs_task_id");
+		String regionString = config.getRegionString();
+		String ddbTableNameWFSummary = config.getDdbTableNameWFSummary();
+		String hashKeyWFSummary = config.getHashKeyWFSummary();
+		String rangeKeyWFSummary = config.getRangeKeyWFSummary();
+		String ddbTableNameWFDetails = config.getDdbTableNameWFDetails();
+		String hashKeyWFDetails = config.getHashKeyWFDetails();
+		String rangeKeyWFDetails = config.getRangeKeyWFDetails();
 
 		printEnvVariables(logger, regionString, ddbTableNameWFSummary, hashKeyWFSummary, rangeKeyWFSummary,
 				ddbTableNameWFDetails, hashKeyWFDetails, rangeKeyWFDetails);
 
-		List<String> completedTasks = new ArrayList<String>();
-		List<String> failedTasks = new ArrayList<String>();
-		List<String> runningTasks = new ArrayList<String>();
-		WorkflowStatus workflowStatus = new WorkflowStatus();
-
-		Region region = Region.regions().stream().filter(r -> r.toString().equalsIgnoreCase(regionString)).findFirst()
-				.orElse(Region.US_EAST_1);
-		DDBUtil ddbUtil = new DDBUtil();
-		DynamoDbClient dynamoDB = DynamoDbClient.builder().region(region).build();
-
-		// Populate the iterator object
-		Map<String, Object> map = new HashMap<String, Object>();
-		map.put("workflowName", input.getIterator().getWorkflowName());
-		map.put("workflowRunId", input.getIterator().getWorkflowRunId());
-		map.put("ecsTaskArns", input.getIterator().getEcsTaskArns());
-
-		// get all completed tasks from Workflow Details table
-		List<Map<String, AttributeValue>> tasks = ddbUtil.getWorkflowDetails(dynamoDB, ddbTableNameWFDetails,
-				hashKeyWFDetails, input.getIterator().getWorkflowRunId());
-		System.out.printf("Number of Tasks retrieved from DDB: %d\n", tasks.size());
-
-		// iterate the items and derive statistics
-		for (Map<String, AttributeValue> item : tasks) {
-			String status = "";
-			String ecsTaskId = "";
-			for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
-				logger.log(entry.getKey() + ":" + entry.getValue());
-				if (entry.getKey().equalsIgnoreCase("status")) {
-					status = entry.getValue().s();
-				} else {
-					ecsTaskId = entry.getValue().s();
-				}
-			}
-			if (status.equalsIgnoreCase("Completed"))
-				completedTasks.add(ecsTaskId);
-			else if (status.equalsIgnoreCase("Failed"))
-				failedTasks.add(ecsTaskId);
-			else
-				runningTasks.add(ecsTaskId);
-		}
-		workflowStatus.setCompletedTasks(completedTasks);
-		workflowStatus.setFailedTasks(failedTasks);
-		workflowStatus.setRunningTasks(runningTasks);
-
-		if (input.getIterator().getEcsTaskArns().size() == completedTasks.size() + failedTasks.size()) {
-			System.out.printf("ECS Workflow Status: Completed tasks = %d, Failed tasks = %d, Running tasks = %d \n",
-					completedTasks.size(), failedTasks.size(), runningTasks.size());
-			workflowStatus.setStatus("Completed");
-			map.put("continue", false);
-		} else {
-			System.out.printf("ECS Workflow Status: Completed tasks = %d, Failed tasks = %d, Running tasks = %d \n",
-					completedTasks.size(), failedTasks.size(), runningTasks.size());
-			workflowStatus.setStatus("Running");
-			map.put("continue", true);
-		}
+		return monitor(input.getIterator());
+	}
+
+	/**
+	 * This method runs one tick for the workflow run, writes its summary and
+	 * returns the iterator of the next tick
+	 * 
+	 * @param iterator
+	 * @return
+	 */
+	Map<String, Object> monitor(Iterator iterator) {
+		WorkflowStatus workflowStatus = evaluator.evaluate(iterator, System.currentTimeMillis());
+		metrics.gauge("CompletedTasks", workflowStatus.getCompletedTasks().size());
+		metrics.gauge("FailedTasks", workflowStatus.getFailedTasks().size());
+		metrics.gauge("RunningTasks", workflowStatus.getRunningTasks().size());
+		metrics.gauge("StalledTasks", workflowStatus.getStalledTasks());
 		// updated workflow summary in DynamoDB
-		ddbUtil.updateWorkflowSummary(dynamoDB, ddbTableNameWFSummary, hashKeyWFSummary, rangeKeyWFSummary,
-				input.getIterator().getWorkflowName(), input.getIterator().getWorkflowRunId(), workflowStatus.getStatus(), new Date().toString(),
-				completedTasks.size(), failedTasks.size(), runningTasks.size());
+		WorkflowStore.join(summaryStore.updateSummary(workflowStatus.toSummaryUpdate(new Date().toString())));
+		evaluator.releaseSlots(iterator, workflowStatus);
 
-		return map;
+		return WorkflowEvaluator.nextIterator(iterator, workflowStatus);
 	}
 
 	/**
@@ -0,0 +1,120 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.monitor;
+
+import java.util.Optional;
+
+import com.amazonaws.regions.Regions;
+
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.store.DynamoDbWorkflowStore;
+import software.aws.ecs.java.starterkit.store.DynamoDbWorkflowSummaryStore;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+import software.aws.ecs.java.starterkit.store.WorkflowSummaryStore;
+
+/**
+ * Settings shared by the monitor Lambda functions. They are read from
+ * environment variables set by the CDK stacks.
+ *
+ */
+public class MonitorConfig {
+
+	private final String regionString;
+	private final String ddbTableNameWFSummary;
+	private final String hashKeyWFSummary;
+	private final String rangeKeyWFSummary;
+	private final String ddbTableNameWFDetails;
+	private final String hashKeyWFDetails;
+	private final String rangeKeyWFDetails;
+
+	public MonitorConfig(String regionString, String ddbTableNameWFSummary, String hashKeyWFSummary,
+			String rangeKeyWFSummary, String ddbTableNameWFDetails, String hashKeyWFDetails, String rangeKeyWFDetails) {
+		this.regionString = regionString;
+		this.ddbTableNameWFSummary = ddbTableNameWFSummary;
+		this.hashKeyWFSummary = hashKeyWFSummary;
+		this.rangeKeyWFSummary = rangeKeyWFSummary;
+		this.ddbTableNameWFDetails = ddbTableNameWFDetails;
+		this.hashKeyWFDetails = hashKeyWFDetails;
+		this.rangeKeyWFDetails = rangeKeyWFDetails;
+	}
+
+	public static MonitorConfig fromEnvironment() {
+		return new MonitorConfig(Optional.ofNullable(System.getenv("region")).orElse(Regions.US_EAST_1.getName()),
+				Optional.ofNullable(System.getenv("workflow_summary_ddb_table_name")).orElse("workflow_summary"),
+				Optional.ofNullable(System.getenv("workflow_summary_hash_key")).orElse("workflow_name"),
+				Optional.ofNullable(System.getenv("workflow_summary_range_key")).orElse("workflow_run_id"),
+				Optional.ofNullable(System.getenv("workflow_details_ddb_table_name")).orElse("workflow_details"),
+				Optional.ofNullable(System.getenv("workflow_details_hash_key")).orElse("workflow_run_id"),
+				Optional.ofNullable(System.getenv("workflow_details_range_key")).orElse("ecs_task_id"));
+	}
+
+	public Region getRegion() {
+		return Region.regions().stream().filter(r -> r.toString().equalsIgnoreCase(regionString)).findFirst()
+				.orElse(Region.US_EAST_1);
+	}
+
+	/**
+	 * This method builds the asynchronous client of the stores. It holds
+	 * threads, so callers build one and keep it for their warm invocations.
+	 *
+	 * @return
+	 */
+	public DynamoDbAsyncClient buildDynamoDbAsyncClient() {
+		return DynamoDbAsyncClient.builder().region(getRegion()).build();
+	}
+
+	/**
+	 * This method builds the store of the Workflow Details table
+	 *
+	 * @param dynamoDB
+	 * @param metrics
+	 * @return
+	 */
+	public WorkflowStore buildWorkflowStore(DynamoDbAsyncClient dynamoDB, Metrics metrics) {
+		return new DynamoDbWorkflowStore(dynamoDB, ddbTableNameWFDetails, hashKeyWFDetails, rangeKeyWFDetails,
+				metrics);
+	}
+
+	/**
+	 * This method builds the store of the Workflow Summary table
+	 *
+	 * @param dynamoDB
+	 * @param metrics
+	 * @return
+	 */
+	public WorkflowSummaryStore buildWorkflowSummaryStore(DynamoDbAsyncClient dynamoDB, Metrics metrics) {
+		return new DynamoDbWorkflowSummaryStore(dynamoDB, ddbTableNameWFSummary, hashKeyWFSummary,
+				rangeKeyWFSummary, metrics);
+	}
+
+	public String getRegionString() {
+		return regionString;
+	}
+
+	public String getDdbTableNameWFSummary() {
+		return ddbTableNameWFSummary;
+	}
+
+	public String getHashKeyWFSummary() {
+		return hashKeyWFSummary;
+	}
+
+	public String getRangeKeyWFSummary() {
+		return rangeKeyWFSummary;
+	}
+
+	public String getDdbTableNameWFDetails() {
+		return ddbTableNameWFDetails;
+	}
+
+	public String getHashKeyWFDetails() {
+		return hashKeyWFDetails;
+	}
+
+	public String getRangeKeyWFDetails() {
+		return rangeKeyWFDetails;
+	}
+}
@@ -0,0 +1,54 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.monitor;
+
+import java.util.Optional;
+
+/**
+ * Settings of speculative re-execution, read from environment variables set
+ * by the CDK stacks. Speculation is off unless speculation_percentile is set.
+ *
+ */
+public class SpeculationConfig {
+
+	private final double percentile;
+	private final double multiplier;
+	private final int minCompleted;
+
+	/**
+	 * @param percentile   percentile of the completed execution times, between 0
+	 *                     and 1, 0 to disable speculation
+	 * @param multiplier   factor applied to the percentile before a running task
+	 *                     counts as a straggler
+	 * @param minCompleted completed tasks needed before the percentile is trusted
+	 */
+	public SpeculationConfig(double percentile, double multiplier, int minCompleted) {
+		this.percentile = percentile;
+		this.multiplier = multiplier;
+		this.minCompleted = minCompleted;
+	}
+
+	public static SpeculationConfig fromEnvironment() {
+		return new SpeculationConfig(
+				Double.parseDouble(Optional.ofNullable(System.getenv("speculation_percentile")).orElse("0")),
+				Double.parseDouble(Optional.ofNullable(System.getenv("speculation_multiplier")).orElse("1.5")),
+				Integer.parseInt(Optional.ofNullable(System.getenv("speculation_min_completed")).orElse("5")));
+	}
+
+	public boolean isEnabled() {
+		return percentile > 0;
+	}
+
+	public double getPercentile() {
+		return percentile;
+	}
+
+	public double getMultiplier() {
+		return multiplier;
+	}
+
+	public int getMinCompleted() {
+		return minCompleted;
+	}
+}
@@ -0,0 +1,443 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.monitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.ecs.EcsClient;
+import software.amazon.awssdk.services.ecs.model.AwsVpcConfiguration;
+import software.amazon.awssdk.services.ecs.model.CapacityProviderStrategyItem;
+import software.amazon.awssdk.services.ecs.model.DescribeTasksRequest;
+import software.amazon.awssdk.services.ecs.model.DesiredStatus;
+import software.amazon.awssdk.services.ecs.model.EcsException;
+import software.amazon.awssdk.services.ecs.model.ListTasksRequest;
+import software.amazon.awssdk.services.ecs.model.NetworkConfiguration;
+import software.amazon.awssdk.services.ecs.model.RunTaskRequest;
+import software.amazon.awssdk.services.ecs.model.RunTaskResponse;
+import software.amazon.awssdk.services.ecs.model.StopTaskRequest;
+import software.amazon.awssdk.services.ecs.model.Task;
+import software.aws.ecs.java.starterkit.cache.ResultCache;
+import software.aws.ecs.java.starterkit.dag.TaskGraph;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.store.TaskRows;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+import software.aws.ecs.java.starterkit.store.WorkflowSummaryStore;
+
+/**
+ * Launches a speculative copy of ECS tasks running much longer than the
+ * completed tasks of their workflow run, and keeps whichever copy finishes
+ * first.
+ *
+ * A running task is a straggler once its running time exceeds the configured
+ * percentile of the exec_time_in_seconds of the completed tasks, times a
+ * multiplier. Its copy runs the same task definition with the same overrides
+ * and writes its own row under its own task ARN. The pair is tracked by a
+ * marker row with the range key {@link #markerId(String)}:
+ * <ul>
+ * <li>Launching: RunTask may have been called, the copy is not recorded yet.
+ * The copy is started by {@link #launchToken(String)}, so a monitor tick
+ * interrupted here finds it with ListTasks instead of launching another.</li>
+ * <li>Speculating: both copies run.</li>
+ * <li>Resolved: one copy finished first, its outcome was written on the row of
+ * the original task and the other copy was stopped.</li>
+ * </ul>
+ * Readers count the original row only, see {@link #resolve}.
+ *
+ */
+public class Speculator {
+
+	public static final String MARKER_PREFIX = "speculative/";
+
+	public static final String LAUNCHING = "Launching";
+	public static final String SPECULATING = "Speculating";
+	public static final String RESOLVED = "Resolved";
+
+	private final EcsClient ecs;
+	private final WorkflowSummaryStore summaryStore;
+	private final WorkflowStore store;
+	private final MonitorConfig config;
+	private final SpeculationConfig speculation;
+	private final Metrics metrics;
+
+	public Speculator(EcsClient ecs, WorkflowSummaryStore summaryStore, WorkflowStore store,
+			MonitorConfig config, SpeculationConfig speculation) {
+		this(ecs, summaryStore, store, config, speculation, Metrics.getInstance());
+	}
+
+	public Speculator(EcsClient ecs, WorkflowSummaryStore summaryStore, WorkflowStore store,
+			MonitorConfig config, SpeculationConfig speculation, Metrics metrics) {
+		this.ecs = ecs;
+		this.summaryStore = summaryStore;
+		this.store = store;
+		this.config = config;
+		this.speculation = speculation;
+		this.metrics = metrics;
+	}
+
+	public static String markerId(String taskArn) {
+		return MARKER_PREFIX + taskArn;
+	}
+
+	public static boolean isMarkerId(String ecsTaskId) {
+		return ecsTaskId != null && ecsTaskId.startsWith(MARKER_PREFIX);
+	}
+
+	/**
+	 * This method returns the startedBy of the copy of a task, which is at most
+	 * 36 characters long
+	 *
+	 * @param taskArn
+	 * @return
+	 */
+	public static String launchToken(String taskArn) {
+		return "s-" + taskArn.substring(taskArn.lastIndexOf('/') + 1);
+	}
+
+	/**
+	 * This method settles the speculative copies of a workflow run. When one
+	 * copy of a pair has completed, its outcome is written on the row of the
+	 * original task and the other copy is stopped. A pair fails only when both
+	 * copies failed.
+	 *
+	 * @param workflowRunId
+	 * @param items         the Workflow Details items of the run
+	 * @return the items to count: marker rows and rows of copies are left out,
+	 *         and an original task still racing its copy is Running
+	 */
+	public List<Map<String, AttributeValue>> resolve(long workflowRunId, List<Map<String, AttributeValue>> items) {
+		String rangeKey = config.getRangeKeyWFDetails();
+		Map<String, Map<String, AttributeValue>> rows = new LinkedHashMap<String, Map<String, AttributeValue>>();
+		List<Map<String, AttributeValue>> markers = new ArrayList<Map<String, AttributeValue>>();
+		for (Map<String, AttributeValue> item : items) {
+			String ecsTaskId = stringOf(item, rangeKey, "");
+			if (isMarkerId(ecsTaskId))
+				markers.add(item);
+			else
+				rows.put(ecsTaskId, item);
+		}
+		for (Map<String, AttributeValue> marker : markers) {
+			String original = stringOf(marker, "original_task_arn", null);
+			String copy = stringOf(marker, "duplicate_task_arn", null);
+			if (copy != null)
+				rows.remove(copy);
+			if (RESOLVED.equals(stringOf(marker, "status", "")) || copy == null || !rows.containsKey(original))
+				continue;
+			Map<String, AttributeValue> originalRow = rows.get(original);
+			Map<String, AttributeValue> copyRow = items.stream()
+					.filter(item -> copy.equals(stringOf(item, rangeKey, ""))).findFirst().orElse(null);
+			String originalStatus = stringOf(originalRow, "status", "Running");
+			String copyStatus = copyRow == null ? "Running" : stringOf(copyRow, "status", "Running");
+			String status;
+			if (ResultCache.isCompleted(originalStatus)) {
+				status = settle(workflowRunId, marker, original, copy, copyStatus, originalRow);
+			} else if (ResultCache.isCompleted(copyStatus)) {
+				status = settle(workflowRunId, marker, copy, original, originalStatus, copyRow);
+			} else if (originalStatus.equalsIgnoreCase("Failed") && copyStatus.equalsIgnoreCase("Failed")) {
+				status = settle(workflowRunId, marker, original, copy, copyStatus, originalRow);
+			} else {
+				status = "Running";
+			}
+			Map<String, AttributeValue> counted = new HashMap<String, AttributeValue>(originalRow);
+			counted.put("status", AttributeValue.builder().s(status).build());
+			rows.put(original, counted);
+		}
+		return new ArrayList<Map<String, AttributeValue>>(rows.values());
+	}
+
+	/**
+	 * This method launches a copy of every straggler of a workflow run, and
+	 * finishes the launch of copies a previous tick was interrupted in
+	 *
+	 * @param workflowName
+	 * @param workflowRunId
+	 * @param items         the Workflow Details items of the run
+	 * @param nowMillis
+	 * @return the number of copies launched
+	 */
+	public int speculate(String workflowName, long workflowRunId, List<Map<String, AttributeValue>> items,
+			long nowMillis) {
+		String rangeKey = config.getRangeKeyWFDetails();
+		Map<String, Map<String, AttributeValue>> markers = new HashMap<String, Map<String, AttributeValue>>();
+		List<String> copies = new ArrayList<String>();
+		for (Map<String, AttributeValue> item : items) {
+			if (isMarkerId(stringOf(item, rangeKey, ""))) {
+				markers.put(stringOf(item, "original_task_arn", ""), item);
+				copies.add(stringOf(item, "duplicate_task_arn", ""));
+			}
+		}
+		List<Long> execTimes = new ArrayList<Long>();
+		List<Map<String, AttributeValue>> candidates = new ArrayList<Map<String, AttributeValue>>();
+		for (Map<String, AttributeValue> item : items) {
+			String ecsTaskId = stringOf(item, rangeKey, "");
+			if (isMarkerId(ecsTaskId) || TaskGraph.isNodeId(ecsTaskId) || copies.contains(ecsTaskId)
+					|| item.containsKey(TaskRetrier.RETRY_OF))
+				continue;
+			String status = stringOf(item, "status", "");
+			// cached results took no time and would lower the percentile
+			if (status.equals("Completed") && item.get("exec_time_in_seconds") != null)
+				execTimes.add(Long.parseLong(item.get("exec_time_in_seconds").n()));
+			else if (status.equals("Running"))
+				candidates.add(item);
+		}
+
+		JsonObject workflowSpecs = null;
+		int launched = 0;
+		for (Map<String, AttributeValue> marker : markers.values()) {
+			if (LAUNCHING.equals(stringOf(marker, "status", ""))) {
+				if (workflowSpecs == null)
+					workflowSpecs = readWorkflowSpecs(workflowName, workflowRunId);
+				launched += launchCopy(workflowSpecs, workflowRunId, stringOf(marker, "original_task_arn", ""));
+			}
+		}
+		if (execTimes.size() < Math.max(1, speculation.getMinCompleted()))
+			return launched;
+		double threshold = percentile(execTimes, speculation.getPercentile()) * speculation.getMultiplier();
+		for (Map<String, AttributeValue> item : candidates) {
+			String ecsTaskId = stringOf(item, rangeKey, "");
+			AttributeValue startTime = item.get("start_time_millis");
+			if (markers.containsKey(ecsTaskId) || startTime == null)
+				continue;
+			long runningMillis = nowMillis - Long.parseLong(startTime.n());
+			if (runningMillis / 1000.0 <= threshold)
+				continue;
+			System.out.printf("Task %s is running for %d seconds, %.0f seconds is the threshold \n", ecsTaskId,
+					runningMillis / 1000, threshold);
+			if (workflowSpecs == null)
+				workflowSpecs = readWorkflowSpecs(workflowName, workflowRunId);
+			launched += launchCopy(workflowSpecs, workflowRunId, ecsTaskId);
+		}
+		return launched;
+	}
+
+	/**
+	 * This method returns the nearest-rank percentile of a list of values
+	 *
+	 * @param values
+	 * @param percentile between 0 and 1
+	 * @return
+	 */
+	public static double percentile(List<Long> values, double percentile) {
+		List<Long> sorted = new ArrayList<Long>(values);
+		Collections.sort(sorted);
+		int rank = (int) Math.ceil(Math.min(1, percentile) * sorted.size());
+		return sorted.get(Math.max(1, rank) - 1);
+	}
+
+	/**
+	 * This method writes the outcome of the winning copy on the row of the
+	 * original task, stops the other copy if it still runs and resolves the
+	 * marker. It is safe to call again if a tick is interrupted half way.
+	 *
+	 * @return the status of the winning copy
+	 */
+	private String settle(long workflowRunId, Map<String, AttributeValue> marker, String winner, String loser,
+			String loserStatus, Map<String, AttributeValue> winnerRow) {
+		String original = stringOf(marker, "original_task_arn", "");
+		String clusterName = stringOf(marker, "cluster_name", "");
+		String status = stringOf(winnerRow, "status", "");
+		boolean loserFinished = ResultCache.isCompleted(loserStatus) || loserStatus.equalsIgnoreCase("Failed");
+		if (!loserFinished) {
+			StopTaskRequest request = StopTaskRequest.builder().cluster(clusterName).task(loser)
+					.reason("Speculative copy " + winner + " finished first").build();
+			try {
+				metrics.time("StopTaskLatency", () -> ecs.stopTask(request));
+				metrics.count("SpeculativeTasksStopped");
+			} catch (EcsException e) {
+				// the task may have stopped on its own meanwhile
+				System.out.println("Could not stop task " + loser + ": " + e.getMessage());
+			}
+		}
+		String time = new Date().toString();
+		CompletableFuture<Boolean> outcomeWritten = CompletableFuture.completedFuture(true);
+		if (!winner.equals(original)) {
+			AttributeValue execTime = winnerRow.get("exec_time_in_seconds");
+			outcomeWritten = store.updateTask(workflowRunId, original,
+					outcome(status, execTime == null ? null : execTime.n(), winner), Collections.<String>emptyList(),
+					null);
+			metrics.count("SpeculativeCopiesWon");
+		}
+		Map<String, String> resolved = markerAttributes(marker);
+		resolved.put("status", RESOLVED);
+		resolved.put("winner_task_arn", winner);
+		resolved.put("update_time", time);
+		// the outcome and the marker are written concurrently, a tick interrupted in between settles again
+		CompletableFuture<Void> markerWritten = putMarker(workflowRunId, original, resolved);
+		WorkflowStore.join(outcomeWritten);
+		WorkflowStore.join(markerWritten);
+		System.out.printf("Task %s resolved with status %s of %s \n", original, status, winner);
+		return status;
+	}
+
+	/**
+	 * This method launches the copy of a task: it records a Launching marker,
+	 * runs the task definition of the original task with its overrides and
+	 * records the copy on the marker
+	 *
+	 * @return 1 if a copy was launched
+	 */
+	private int launchCopy(JsonObject workflowSpecs, long workflowRunId, String original) {
+		String clusterName = workflowSpecs.get("clusterName").getAsString();
+		String launchToken = launchToken(original);
+		Map<String, String> marker = new HashMap<String, String>();
+		marker.put("original_task_arn", original);
+		marker.put("cluster_name", clusterName);
+		marker.put("started_by", launchToken);
+		marker.put("status", LAUNCHING);
+		marker.put("start_time", new Date().toString());
+		WorkflowStore.join(putMarker(workflowRunId, original, marker));
+
+		String copy = findLaunchedTask(ecs, metrics, clusterName, launchToken);
+		if (copy == null) {
+			List<Task> tasks = metrics.time("DescribeTasksLatency", () -> ecs.describeTasks(
+					DescribeTasksRequest.builder().cluster(clusterName).tasks(original).build())).tasks();
+			if (tasks.isEmpty()) {
+				System.out.println("Task " + original + " not found, no copy launched");
+				return 0;
+			}
+			RunTaskResponse response = metrics.time("RunTaskLatency",
+					() -> ecs.runTask(buildCopyRequest(workflowSpecs, tasks.get(0), launchToken)));
+			if (response.tasks().isEmpty()) {
+				metrics.count("RunTaskFailures", response.failures().size());
+				System.out.println("Copy of task " + original + " not launched: " + response.failures());
+				return 0;
+			}
+			copy = response.tasks().get(0).taskArn();
+			metrics.count("SpeculativeTasksLaunched");
+		}
+		marker.put("duplicate_task_arn", copy);
+		marker.put("status", SPECULATING);
+		WorkflowStore.join(putMarker(workflowRunId, original, marker));
+		System.out.printf("Launched copy %s of task %s \n", copy, original);
+		return 1;
+	}
+
+	/**
+	 * This method builds the RunTask request of a copy from the original task
+	 * and the network settings of the workflow
+	 *
+	 * @param workflowSpecs
+	 * @param original
+	 * @param launchToken
+	 * @return
+	 */
+	static RunTaskRequest buildCopyRequest(JsonObject workflowSpecs, Task original, String launchToken) {
+		RunTaskRequest.Builder builder = RunTaskRequest.builder().cluster(original.clusterArn())
+				.taskDefinition(original.taskDefinitionArn()).overrides(original.overrides())
+				.networkConfiguration(networkConfiguration(workflowSpecs)).startedBy(launchToken);
+		if (original.capacityProviderName() != null)
+			builder.capacityProviderStrategy(
+					CapacityProviderStrategyItem.builder().capacityProvider(original.capacityProviderName()).build());
+		else
+			builder.launchType(original.launchType());
+		return builder.build();
+	}
+
+	/**
+	 * This method builds the network configuration of the tasks of a workflow
+	 * from its specs
+	 *
+	 * @param workflowSpecs
+	 * @return
+	 */
+	static NetworkConfiguration networkConfiguration(JsonObject workflowSpecs) {
+		String separator = workflowSpecs.get("separator").getAsString();
+		AwsVpcConfiguration awsvpcConfiguration = AwsVpcConfiguration.builder()
+				.subnets(tokenize(workflowSpecs.get("subnetIdLiteral").getAsString(), separator))
+				.securityGroups(tokenize(workflowSpecs.get("securityGroupId").getAsString(), separator)).build();
+		return NetworkConfiguration.builder().awsvpcConfiguration(awsvpcConfiguration).build();
+	}
+
+	/**
+	 * This method finds a task by the startedBy it was launched with
+	 *
+	 * @param ecs
+	 * @param metrics
+	 * @param clusterName
+	 * @param launchToken
+	 * @return the task ARN, or null when no task was launched
+	 */
+	static String findLaunchedTask(EcsClient ecs, Metrics metrics, String clusterName, String launchToken) {
+		for (DesiredStatus desiredStatus : Arrays.asList(DesiredStatus.RUNNING, DesiredStatus.STOPPED)) {
+			ListTasksRequest request = ListTasksRequest.builder().cluster(clusterName).startedBy(launchToken)
+					.desiredStatus(desiredStatus).build();
+			List<String> taskArns = metrics.time("ListTasksLatency", () -> ecs.listTasks(request)).taskArns();
+			if (!taskArns.isEmpty())
+				return taskArns.get(0);
+		}
+		return null;
+	}
+
+	private JsonObject readWorkflowSpecs(String workflowName, long workflowRunId) {
+		String workflowSpecs = WorkflowStore.join(summaryStore.getWorkflowSpecs(workflowName, workflowRunId));
+		if (workflowSpecs == null)
+			throw new IllegalStateException("No workflow specs recorded for workflow run " + workflowRunId);
+		return JsonParser.parseString(workflowSpecs).getAsJsonObject();
+	}
+
+	/**
+	 * This method returns the attributes which record the outcome of a task on
+	 * its row, on behalf of the copy or attempt which finished
+	 *
+	 * @param status
+	 * @param execTimeInSeconds the execution time of the winning copy, or null
+	 * @param winnerTaskArn
+	 * @return
+	 */
+	static Map<String, AttributeValue> outcome(String status, String execTimeInSeconds, String winnerTaskArn) {
+		long timeMillis = System.currentTimeMillis();
+		Map<String, AttributeValue> attributes = new HashMap<String, AttributeValue>();
+		attributes.put("status", TaskRows.string(status));
+		attributes.put("update_time", TaskRows.string(new Date(timeMillis).toString()));
+		attributes.put("update_time_millis", TaskRows.number(timeMillis));
+		attributes.put("winner_task_arn", TaskRows.string(winnerTaskArn));
+		if (execTimeInSeconds != null)
+			attributes.put("exec_time_in_seconds", AttributeValue.builder().n(execTimeInSeconds).build());
+		return attributes;
+	}
+
+	private CompletableFuture<Void> putMarker(long workflowRunId, String original, Map<String, String> marker) {
+		Map<String, AttributeValue> attributes = new HashMap<String, AttributeValue>();
+		for (Map.Entry<String, String> attribute : marker.entrySet()) {
+			attributes.put(attribute.getKey(), TaskRows.string(attribute.getValue()));
+		}
+		return store.putTask(workflowRunId, markerId(original), attributes);
+	}
+
+	private static Map<String, String> markerAttributes(Map<String, AttributeValue> marker) {
+		Map<String, String> attributes = new HashMap<String, String>();
+		for (String name : Arrays.asList("original_task_arn", "duplicate_task_arn", "cluster_name", "started_by",
+				"start_time")) {
+			if (marker.get(name) != null)
+				attributes.put(name, marker.get(name).s());
+		}
+		return attributes;
+	}
+
+	private static List<String> tokenize(String str, String separator) {
+		List<String> tokens = new ArrayList<String>();
+		StringTokenizer tokenizer = new StringTokenizer(str, separator);
+		while (tokenizer.hasMoreTokens()) {
+			tokens.add(tokenizer.nextToken().trim());
+		}
+		return tokens;
+	}
+
+	private static String stringOf(Map<String, AttributeValue> item, String attribute, String defaultValue) {
+		AttributeValue value = item.get(attribute);
+		return value == null || value.s() == null ? defaultValue : value.s();
+	}
+}
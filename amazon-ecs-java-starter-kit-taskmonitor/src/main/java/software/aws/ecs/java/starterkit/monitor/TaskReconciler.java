@@ -0,0 +1,308 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.monitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.ecs.EcsClient;
+import software.amazon.awssdk.services.ecs.model.Container;
+import software.amazon.awssdk.services.ecs.model.DescribeTasksRequest;
+import software.amazon.awssdk.services.ecs.model.DescribeTasksResponse;
+import software.amazon.awssdk.services.ecs.model.Failure;
+import software.amazon.awssdk.services.ecs.model.Task;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.store.TaskRows;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+
+/**
+ * Finds ECS tasks which stopped without recording a final status, for example
+ * when their container was OOM-killed or never started, and marks them Failed
+ * so that their workflow run can finish.
+ *
+ * Only tasks whose row has not changed for the stale threshold are checked,
+ * plus the launched task ARNs which have no row yet. A task which sends
+ * heartbeats is checked once its last heartbeat is older than the stalled
+ * threshold instead, well before a silent task goes stale. They are described with
+ * DescribeTasks, up to {@link #MAX_DESCRIBE_TASKS} per call with the calls
+ * running concurrently. A task ECS reports as STOPPED, or no longer knows after
+ * its row went stale, is marked Failed with its stop reason and the exit code of its container. The
+ * write is conditioned on the row still not having a final status, so a task
+ * finishing meanwhile keeps its own outcome.
+ *
+ * A task run in a thread of the launcher Lambda, under inprocess/launch
+ * token, has no ECS task to describe. It is marked Failed once its row has
+ * not changed for longer than any Lambda invocation runs, as the invocation
+ * which ran it has ended without writing its final status.
+ *
+ */
+public class TaskReconciler {
+
+	/**
+	 * Maximum number of tasks in one DescribeTasks request
+	 */
+	public static final int MAX_DESCRIBE_TASKS = 100;
+
+	static final String MISSING_REASON = "Task not found in ECS";
+	static final String IN_PROCESS_LOST_REASON = "Launcher invocation ended before the task finished";
+	// range key prefix of the rows of tasks run by the launcher
+	static final String IN_PROCESS_TASK_PREFIX = "inprocess/";
+	// the maximum Lambda timeout, no invocation of the launcher runs longer
+	static final long IN_PROCESS_TIMEOUT_SECONDS = 900;
+
+	private final EcsClient ecs;
+	private final WorkflowStore store;
+	private final MonitorConfig config;
+	private final long staleSeconds;
+	private final long stalledSeconds;
+	private final ExecutorService executor;
+	private final Metrics metrics;
+
+	public TaskReconciler(EcsClient ecs, WorkflowStore store, MonitorConfig config, long staleSeconds,
+			ExecutorService executor) {
+		this(ecs, store, config, staleSeconds, executor, Metrics.getInstance());
+	}
+
+	public TaskReconciler(EcsClient ecs, WorkflowStore store, MonitorConfig config, long staleSeconds,
+			ExecutorService executor, Metrics metrics) {
+		this(ecs, store, config, staleSeconds, staleSeconds, executor, metrics);
+	}
+
+	/**
+	 * @param ecs
+	 * @param store
+	 * @param config
+	 * @param staleSeconds   time without a change of its row after which a task
+	 *                       is checked
+	 * @param stalledSeconds time without a heartbeat after which a task sending
+	 *                       heartbeats is checked
+	 * @param executor
+	 * @param metrics
+	 */
+	public TaskReconciler(EcsClient ecs, WorkflowStore store, MonitorConfig config, long staleSeconds,
+			long stalledSeconds, ExecutorService executor, Metrics metrics) {
+		this.ecs = ecs;
+		this.store = store;
+		this.config = config;
+		this.staleSeconds = staleSeconds;
+		this.stalledSeconds = stalledSeconds;
+		this.executor = executor;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * This method marks the dead tasks of a workflow run Failed
+	 *
+	 * @param workflowRunId
+	 * @param items         the Workflow Details items of the run
+	 * @param launchedArns  task ARNs returned by the launcher, may be null
+	 * @param nowMillis
+	 * @return the items with the status of dead tasks set to Failed, and an item
+	 *         for each dead launched task which had none
+	 */
+	public List<Map<String, AttributeValue>> reconcile(long workflowRunId, List<Map<String, AttributeValue>> items,
+			Collection<String> launchedArns, long nowMillis) {
+		String rangeKey = config.getRangeKeyWFDetails();
+		Map<String, Map<String, AttributeValue>> rows = new LinkedHashMap<String, Map<String, AttributeValue>>();
+		List<String> candidates = new ArrayList<String>();
+		List<String> lostInProcess = new ArrayList<String>();
+		for (Map<String, AttributeValue> item : items) {
+			String ecsTaskId = stringOf(item, rangeKey);
+			rows.put(ecsTaskId, item);
+			if (!"Running".equals(stringOf(item, "status")))
+				continue;
+			if (isTaskArn(ecsTaskId) && isStale(item, nowMillis))
+				candidates.add(ecsTaskId);
+			else if (ecsTaskId.startsWith(IN_PROCESS_TASK_PREFIX)
+					&& idleMillis(item, nowMillis) > IN_PROCESS_TIMEOUT_SECONDS * 1000)
+				lostInProcess.add(ecsTaskId);
+		}
+		if (launchedArns != null) {
+			for (String taskArn : launchedArns) {
+				// nothing tells how long a task without a row has been pending, so it is always checked
+				if (isTaskArn(taskArn) && !rows.containsKey(taskArn))
+					candidates.add(taskArn);
+			}
+		}
+		if (candidates.isEmpty() && lostInProcess.isEmpty())
+			return items;
+
+		Map<String, String[]> deadTasks = candidates.isEmpty() ? new LinkedHashMap<String, String[]>()
+				: findDeadTasks(candidates);
+		for (String ecsTaskId : lostInProcess) {
+			deadTasks.put(ecsTaskId, new String[] { IN_PROCESS_LOST_REASON, null });
+		}
+		// the dead tasks are marked concurrently
+		Map<String, CompletableFuture<Boolean>> updates = new LinkedHashMap<String, CompletableFuture<Boolean>>();
+		for (Map.Entry<String, String[]> dead : deadTasks.entrySet()) {
+			// a task just launched may not be visible to DescribeTasks yet
+			if (dead.getValue()[0].equals(MISSING_REASON) && !rows.containsKey(dead.getKey()))
+				continue;
+			updates.put(dead.getKey(), markFailed(workflowRunId, dead.getKey(), dead.getValue()[0],
+					dead.getValue()[1]));
+		}
+		List<Map<String, AttributeValue>> reconciled = new ArrayList<Map<String, AttributeValue>>(items);
+		for (Map.Entry<String, CompletableFuture<Boolean>> update : updates.entrySet()) {
+			String taskArn = update.getKey();
+			String stopReason = deadTasks.get(taskArn)[0];
+			String exitCode = deadTasks.get(taskArn)[1];
+			if (!WorkflowStore.join(update.getValue()))
+				continue;
+			metrics.count("DeadTasksDetected");
+			System.out.printf("Task %s stopped without a final status: %s, exit code %s \n", taskArn, stopReason,
+					exitCode);
+			Map<String, AttributeValue> failed = new HashMap<String, AttributeValue>();
+			if (rows.containsKey(taskArn)) {
+				failed.putAll(rows.get(taskArn));
+				reconciled.remove(rows.get(taskArn));
+			}
+			failed.put(rangeKey, AttributeValue.builder().s(taskArn).build());
+			failed.put("status", AttributeValue.builder().s("Failed").build());
+			failed.put("stop_reason", AttributeValue.builder().s(stopReason).build());
+			reconciled.add(failed);
+		}
+		return reconciled;
+	}
+
+	/**
+	 * This method marks a task which stopped without recording a final
+	 * status as Failed, unless its row got a final status meanwhile
+	 *
+	 * @param workflowRunId
+	 * @param taskArn
+	 * @param stopReason
+	 * @param exitCode      the exit code of the container, or null
+	 * @return false if the row already has a final status
+	 */
+	private CompletableFuture<Boolean> markFailed(long workflowRunId, String taskArn, String stopReason,
+			String exitCode) {
+		long timeMillis = System.currentTimeMillis();
+		Map<String, AttributeValue> attributes = new HashMap<String, AttributeValue>();
+		attributes.put("status", TaskRows.string("Failed"));
+		attributes.put("update_time", TaskRows.string(new Date(timeMillis).toString()));
+		attributes.put("update_time_millis", TaskRows.number(timeMillis));
+		attributes.put("stop_reason", TaskRows.string(stopReason));
+		if (exitCode != null)
+			attributes.put("exit_code", AttributeValue.builder().n(exitCode).build());
+		return store.updateTask(workflowRunId, taskArn, attributes, Collections.<String>emptyList(),
+				Arrays.asList(WorkflowStore.NO_STATUS, TaskRows.RUNNING));
+	}
+
+	/**
+	 * This method describes tasks in concurrent batches of at most
+	 * MAX_DESCRIBE_TASKS, grouped by cluster
+	 *
+	 * @param taskArns
+	 * @return the stop reason and exit code, which may be null, of the tasks
+	 *         which are stopped or unknown to ECS
+	 */
+	Map<String, String[]> findDeadTasks(List<String> taskArns) {
+		Map<String, List<String>> byCluster = new LinkedHashMap<String, List<String>>();
+		for (String taskArn : taskArns) {
+			byCluster.computeIfAbsent(clusterOf(taskArn), k -> new ArrayList<String>()).add(taskArn);
+		}
+		List<Future<DescribeTasksResponse>> futures = new ArrayList<Future<DescribeTasksResponse>>();
+		for (Map.Entry<String, List<String>> cluster : byCluster.entrySet()) {
+			List<String> clusterArns = cluster.getValue();
+			for (int from = 0; from < clusterArns.size(); from += MAX_DESCRIBE_TASKS) {
+				DescribeTasksRequest request = DescribeTasksRequest.builder().cluster(cluster.getKey())
+						.tasks(clusterArns.subList(from, Math.min(clusterArns.size(), from + MAX_DESCRIBE_TASKS)))
+						.build();
+				futures.add(executor
+						.submit(() -> metrics.time("DescribeTasksLatency", () -> ecs.describeTasks(request))));
+			}
+		}
+		Map<String, String[]> dead = new LinkedHashMap<String, String[]>();
+		for (Future<DescribeTasksResponse> future : futures) {
+			DescribeTasksResponse response;
+			try {
+				response = future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while describing tasks", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Cannot describe tasks", e.getCause());
+			}
+			for (Task task : response.tasks()) {
+				if ("STOPPED".equals(task.lastStatus()))
+					dead.put(task.taskArn(), new String[] { stopReasonOf(task), exitCodeOf(task) });
+			}
+			// ECS forgets stopped tasks after about an hour
+			for (Failure failure : response.failures()) {
+				if ("MISSING".equals(failure.reason()))
+					dead.put(failure.arn(), new String[] { MISSING_REASON, null });
+			}
+		}
+		return dead;
+	}
+
+	/**
+	 * This method returns the cluster name of a task ARN in the format
+	 * arn:aws:ecs:region:account:task/cluster/id, or null for the default
+	 * cluster
+	 *
+	 * @param taskArn
+	 * @return
+	 */
+	static String clusterOf(String taskArn) {
+		String resource = taskArn.substring(taskArn.indexOf(":task/") + ":task/".length());
+		int slash = resource.indexOf('/');
+		return slash < 0 ? null : resource.substring(0, slash);
+	}
+
+	private static String stopReasonOf(Task task) {
+		StringBuilder reason = new StringBuilder(task.stoppedReason() == null ? "Stopped" : task.stoppedReason());
+		for (Container container : task.containers()) {
+			if (container.reason() != null)
+				reason.append(": ").append(container.reason());
+		}
+		return reason.toString();
+	}
+
+	private static String exitCodeOf(Task task) {
+		for (Container container : task.containers()) {
+			if (container.exitCode() != null)
+				return container.exitCode().toString();
+		}
+		return null;
+	}
+
+	private boolean isStale(Map<String, AttributeValue> item, long nowMillis) {
+		AttributeValue heartbeat = item.get(WorkflowProgress.HEARTBEAT_TIME_MILLIS);
+		if (heartbeat != null)
+			return nowMillis - Long.parseLong(heartbeat.n()) > stalledSeconds * 1000;
+		return idleMillis(item, nowMillis) > staleSeconds * 1000;
+	}
+
+	/**
+	 * This method returns the time since the row of a task last changed, the
+	 * longest time when the row records none
+	 */
+	private static long idleMillis(Map<String, AttributeValue> item, long nowMillis) {
+		AttributeValue lastChange = item.get("update_time_millis") != null ? item.get("update_time_millis")
+				: item.get("start_time_millis");
+		return lastChange == null ? Long.MAX_VALUE : nowMillis - Long.parseLong(lastChange.n());
+	}
+
+	static boolean isTaskArn(String ecsTaskId) {
+		return ecsTaskId != null && ecsTaskId.startsWith("arn:") && ecsTaskId.contains(":task/");
+	}
+
+	private static String stringOf(Map<String, AttributeValue> item, String attribute) {
+		AttributeValue value = item.get(attribute);
+		return value == null ? null : value.s();
+	}
+}
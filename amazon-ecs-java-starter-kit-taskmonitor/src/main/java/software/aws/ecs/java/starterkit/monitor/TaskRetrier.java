@@ -0,0 +1,451 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.monitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.ecs.EcsClient;
+import software.amazon.awssdk.services.ecs.model.CapacityProviderStrategyItem;
+import software.amazon.awssdk.services.ecs.model.ContainerOverride;
+import software.amazon.awssdk.services.ecs.model.DescribeTasksRequest;
+import software.amazon.awssdk.services.ecs.model.KeyValuePair;
+import software.amazon.awssdk.services.ecs.model.RunTaskRequest;
+import software.amazon.awssdk.services.ecs.model.RunTaskResponse;
+import software.amazon.awssdk.services.ecs.model.Task;
+import software.amazon.awssdk.services.ecs.model.TaskOverride;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.retry.RetryPolicy;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+import software.aws.ecs.java.starterkit.store.WorkflowSummaryStore;
+
+/**
+ * Launches failed ECS tasks again, following the retry policies of the
+ * workflow specs.
+ *
+ * The row of the first attempt stands for the task across its attempts. When
+ * the task fails and its policy allows another attempt, the row gets the
+ * status {@link #RETRYING}, the attempts made so far and what is needed to
+ * launch the task again: its cluster, task definition, launch type and
+ * overrides. After the backoff, the next attempt runs with the same overrides
+ * plus the environment variables retry_of and attempt, and is started by
+ * {@link #launchToken(String, int)} so that an interrupted tick finds it
+ * instead of launching another. The ECS task of an attempt writes its own row
+ * with retry_of and attempt; these rows are not counted. Once an attempt
+ * completes, or fails for good, its outcome is written on the row of the first
+ * attempt.
+ *
+ * An ECS task stopped before it finished, by a Spot interruption or a scale
+ * in, marks itself {@link #INTERRUPTED} after it saved its progress. It is
+ * launched again while its policy has attempts left, whatever the exit codes
+ * and stop reasons of the policy, and the next attempt resumes from the
+ * checkpoint. An interrupted task which is not retried counts as failed.
+ *
+ */
+public class TaskRetrier {
+
+	public static final String RETRYING = "Retrying";
+	public static final String RETRY_OF = "retry_of";
+	public static final String INTERRUPTED = "Interrupted";
+
+	private final EcsClient ecs;
+	private final WorkflowSummaryStore summaryStore;
+	private final WorkflowStore store;
+	private final MonitorConfig config;
+	private final Metrics metrics;
+	private String workflowName;
+	private long workflowRunId;
+	private JsonObject workflowSpecs;
+
+	public TaskRetrier(EcsClient ecs, WorkflowSummaryStore summaryStore, WorkflowStore store,
+			MonitorConfig config) {
+		this(ecs, summaryStore, store, config, Metrics.getInstance());
+	}
+
+	/**
+	 * @param ecs
+	 * @param summaryStore the workflow summaries, which have the workflow specs
+	 * @param store        the rows of the tasks
+	 * @param config
+	 * @param metrics
+	 */
+	public TaskRetrier(EcsClient ecs, WorkflowSummaryStore summaryStore, WorkflowStore store,
+			MonitorConfig config, Metrics metrics) {
+		this.ecs = ecs;
+		this.summaryStore = summaryStore;
+		this.store = store;
+		this.config = config;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * This method returns the startedBy of an attempt of a task, which is at
+	 * most 36 characters long
+	 *
+	 * @param taskArn the ARN of the first attempt
+	 * @param attempt
+	 * @return
+	 */
+	public static String launchToken(String taskArn, int attempt) {
+		return "r" + attempt + "-" + taskArn.substring(taskArn.lastIndexOf('/') + 1);
+	}
+
+	/**
+	 * This method tells whether a task ended without completing, as Failed or
+	 * Interrupted
+	 *
+	 * @param status
+	 * @return
+	 */
+	public static boolean isFailed(String status) {
+		return "Failed".equalsIgnoreCase(status) || INTERRUPTED.equalsIgnoreCase(status);
+	}
+
+	/**
+	 * This method returns the ARNs of the attempts in flight, which have no row
+	 * until their ECS task starts
+	 *
+	 * @param items the Workflow Details items of the run
+	 * @return
+	 */
+	public static List<String> currentAttempts(List<Map<String, AttributeValue>> items) {
+		List<String> taskArns = new ArrayList<String>();
+		for (Map<String, AttributeValue> item : items) {
+			if (RETRYING.equals(stringOf(item, "status")) && item.get("current_task_arn") != null)
+				taskArns.add(stringOf(item, "current_task_arn"));
+		}
+		return taskArns;
+	}
+
+	/**
+	 * This method schedules the retries of newly failed tasks, launches the
+	 * attempts whose backoff passed and records the outcome of finished
+	 * attempts
+	 *
+	 * @param workflowName
+	 * @param workflowRunId
+	 * @param items         the Workflow Details items of the run
+	 * @param nowMillis
+	 * @return the items to count: rows of attempts are left out, and a task
+	 *         being retried is Running
+	 */
+	public List<Map<String, AttributeValue>> retry(String workflowName, long workflowRunId,
+			List<Map<String, AttributeValue>> items, long nowMillis) {
+		this.workflowName = workflowName;
+		this.workflowRunId = workflowRunId;
+		Map<String, Map<String, AttributeValue>> attempts = new HashMap<String, Map<String, AttributeValue>>();
+		for (Map<String, AttributeValue> item : items) {
+			if (item.containsKey(RETRY_OF))
+				attempts.put(stringOf(item, config.getRangeKeyWFDetails()), item);
+		}
+		List<Map<String, AttributeValue>> counted = new ArrayList<Map<String, AttributeValue>>();
+		for (Map<String, AttributeValue> item : items) {
+			if (item.containsKey(RETRY_OF))
+				continue;
+			String status = stringOf(item, "status");
+			String effectiveStatus = status;
+			if (isFailed(status) && item.get("attempts") == null
+					&& TaskReconciler.isTaskArn(stringOf(item, config.getRangeKeyWFDetails()))) {
+				Map<String, AttributeValue> retrying = scheduleRetry(item, nowMillis);
+				if (retrying != null)
+					effectiveStatus = advance(retrying, attempts, nowMillis);
+			} else if (RETRYING.equals(status)) {
+				effectiveStatus = advance(item, attempts, nowMillis);
+			}
+			if (effectiveStatus.equals(status)) {
+				counted.add(item);
+			} else {
+				Map<String, AttributeValue> updated = new HashMap<String, AttributeValue>(item);
+				updated.put("status", AttributeValue.builder().s(effectiveStatus).build());
+				counted.add(updated);
+			}
+		}
+		return counted;
+	}
+
+	/**
+	 * This method turns the first failure of a task into a retry when its
+	 * policy allows one
+	 *
+	 * @return the row with the retry state, or null when the task is not retried
+	 */
+	private Map<String, AttributeValue> scheduleRetry(Map<String, AttributeValue> item, long nowMillis) {
+		RetryPolicy policy = policyOf(stringOf(item, "task_name"));
+		if (!shouldRetry(policy, 1, item))
+			return null;
+		String taskArn = stringOf(item, config.getRangeKeyWFDetails());
+		List<Task> tasks = metrics.time("DescribeTasksLatency", () -> ecs.describeTasks(DescribeTasksRequest
+				.builder().cluster(TaskReconciler.clusterOf(taskArn)).tasks(taskArn).build())).tasks();
+		if (tasks.isEmpty()) {
+			System.out.println("Task " + taskArn + " not found in ECS, it is not retried");
+			return null;
+		}
+		Task task = tasks.get(0);
+		Map<String, AttributeValue> retry = new HashMap<String, AttributeValue>();
+		retry.put("status", AttributeValue.builder().s(RETRYING).build());
+		retry.put("attempts", number(1));
+		retry.put("next_attempt_time", number(nowMillis + policy.backoffMillis(1)));
+		retry.put("retry_cluster", AttributeValue.builder().s(task.clusterArn()).build());
+		retry.put("retry_task_definition", AttributeValue.builder().s(task.taskDefinitionArn()).build());
+		retry.put("retry_overrides", AttributeValue.builder().s(overridesJson(task.overrides())).build());
+		if (task.capacityProviderName() != null)
+			retry.put("retry_capacity_provider", AttributeValue.builder().s(task.capacityProviderName()).build());
+		else
+			retry.put("retry_launch_type", AttributeValue.builder().s(task.launchTypeAsString()).build());
+		if (!update(taskArn, retry, Collections.<String>emptyList(), stringOf(item, "status")))
+			return null;
+		metrics.count("TaskRetriesScheduled");
+		System.out.printf("Task %s %s, attempt 2 of %d in %d seconds \n", taskArn,
+				stringOf(item, "status").toLowerCase(), policy.getMaxAttempts(), policy.backoffMillis(1) / 1000);
+		Map<String, AttributeValue> retrying = new HashMap<String, AttributeValue>(item);
+		retrying.putAll(retry);
+		return retrying;
+	}
+
+	/**
+	 * This method moves a task being retried forward: it records the outcome
+	 * of its current attempt or launches the next one once its backoff passed
+	 *
+	 * @return the status to count the task with
+	 */
+	private String advance(Map<String, AttributeValue> item, Map<String, Map<String, AttributeValue>> attempts,
+			long nowMillis) {
+		String taskArn = stringOf(item, config.getRangeKeyWFDetails());
+		int attemptsMade = Integer.parseInt(item.get("attempts").n());
+		String current = stringOf(item, "current_task_arn");
+		if (current != null) {
+			Map<String, AttributeValue> attempt = attempts.get(current);
+			String status = attempt == null ? "Running" : stringOf(attempt, "status");
+			if ("Completed".equals(status))
+				return finish(taskArn, current, attempt);
+			if (!isFailed(status))
+				return "Running";
+			RetryPolicy policy = policyOf(stringOf(item, "task_name"));
+			if (!shouldRetry(policy, attemptsMade, attempt))
+				return finish(taskArn, current, attempt);
+			long nextAttemptTime = nowMillis + policy.backoffMillis(attemptsMade);
+			if (!update(taskArn, Collections.singletonMap("next_attempt_time", number(nextAttemptTime)),
+					Collections.singletonList("current_task_arn"), RETRYING))
+				return "Running";
+			metrics.count("TaskRetriesScheduled");
+			item = new HashMap<String, AttributeValue>(item);
+			item.remove("current_task_arn");
+			item.put("next_attempt_time", number(nextAttemptTime));
+		}
+		if (nowMillis >= Long.parseLong(item.get("next_attempt_time").n()))
+			launchAttempt(item, attemptsMade + 1);
+		return "Running";
+	}
+
+	/**
+	 * This method writes the outcome of the last attempt on the row of the
+	 * first one
+	 *
+	 * @return the final status
+	 */
+	private String finish(String taskArn, String lastAttempt, Map<String, AttributeValue> attempt) {
+		String status = stringOf(attempt, "status");
+		AttributeValue execTime = attempt.get("exec_time_in_seconds");
+		WorkflowStore.join(store.updateTask(workflowRunId, taskArn,
+				Speculator.outcome(status, execTime == null ? null : execTime.n(), lastAttempt),
+				Collections.<String>emptyList(), null));
+		metrics.count("Completed".equals(status) ? "TaskRetriesSucceeded" : "TaskRetriesExhausted");
+		System.out.printf("Task %s finished with status %s after attempt %s \n", taskArn, status, lastAttempt);
+		return status;
+	}
+
+	private void launchAttempt(Map<String, AttributeValue> item, int attempt) {
+		String taskArn = stringOf(item, config.getRangeKeyWFDetails());
+		String clusterName = stringOf(item, "retry_cluster");
+		String launchToken = launchToken(taskArn, attempt);
+		String attemptArn = Speculator.findLaunchedTask(ecs, metrics, clusterName, launchToken);
+		if (attemptArn == null) {
+			Map<String, String> environment = new HashMap<String, String>();
+			environment.put(RETRY_OF, taskArn);
+			environment.put("attempt", Integer.toString(attempt));
+			RunTaskRequest.Builder builder = RunTaskRequest.builder().cluster(clusterName)
+					.taskDefinition(stringOf(item, "retry_task_definition"))
+					.overrides(overridesOf(stringOf(item, "retry_overrides"), environment))
+					.networkConfiguration(Speculator.networkConfiguration(workflowSpecs())).startedBy(launchToken);
+			if (item.get("retry_capacity_provider") != null)
+				builder.capacityProviderStrategy(CapacityProviderStrategyItem.builder()
+						.capacityProvider(stringOf(item, "retry_capacity_provider")).build());
+			else
+				builder.launchType(stringOf(item, "retry_launch_type"));
+			RunTaskResponse response = metrics.time("RunTaskLatency", () -> ecs.runTask(builder.build()));
+			if (response.tasks().isEmpty()) {
+				// tried again on the next tick
+				metrics.count("RunTaskFailures", response.failures().size());
+				System.out.println("Attempt " + attempt + " of task " + taskArn + " not launched: "
+						+ response.failures());
+				return;
+			}
+			attemptArn = response.tasks().get(0).taskArn();
+			metrics.count("TaskRetriesLaunched");
+		}
+		Map<String, AttributeValue> launched = new HashMap<String, AttributeValue>();
+		launched.put("current_task_arn", AttributeValue.builder().s(attemptArn).build());
+		launched.put("attempts", number(attempt));
+		update(taskArn, launched, Collections.singletonList("next_attempt_time"), RETRYING);
+		System.out.printf("Launched attempt %d %s of task %s \n", attempt, attemptArn, taskArn);
+	}
+
+	/**
+	 * This method serializes the parts of the overrides of a task which are
+	 * needed to launch it again
+	 *
+	 * @param overrides
+	 * @return
+	 */
+	static String overridesJson(TaskOverride overrides) {
+		JsonObject json = new JsonObject();
+		if (overrides == null)
+			return json.toString();
+		if (overrides.cpu() != null)
+			json.addProperty("cpu", overrides.cpu());
+		if (overrides.memory() != null)
+			json.addProperty("memory", overrides.memory());
+		JsonArray containers = new JsonArray();
+		for (ContainerOverride containerOverride : overrides.containerOverrides()) {
+			JsonObject container = new JsonObject();
+			container.addProperty("name", containerOverride.name());
+			if (containerOverride.cpu() != null)
+				container.addProperty("cpu", containerOverride.cpu());
+			if (containerOverride.memory() != null)
+				container.addProperty("memory", containerOverride.memory());
+			JsonObject environment = new JsonObject();
+			for (KeyValuePair variable : containerOverride.environment()) {
+				environment.addProperty(variable.name(), variable.value());
+			}
+			container.add("environment", environment);
+			containers.add(container);
+		}
+		json.add("containerOverrides", containers);
+		return json.toString();
+	}
+
+	/**
+	 * This method rebuilds the overrides of a task, with additional environment
+	 * variables in each container
+	 *
+	 * @param json        as returned by overridesJson
+	 * @param environment variables to add or replace
+	 * @return
+	 */
+	static TaskOverride overridesOf(String json, Map<String, String> environment) {
+		JsonObject overrides = JsonParser.parseString(json).getAsJsonObject();
+		TaskOverride.Builder builder = TaskOverride.builder();
+		if (overrides.has("cpu"))
+			builder.cpu(overrides.get("cpu").getAsString());
+		if (overrides.has("memory"))
+			builder.memory(overrides.get("memory").getAsString());
+		List<ContainerOverride> containerOverrides = new ArrayList<ContainerOverride>();
+		JsonArray containers = overrides.has("containerOverrides") ? overrides.getAsJsonArray("containerOverrides")
+				: new JsonArray();
+		for (JsonElement element : containers) {
+			JsonObject container = element.getAsJsonObject();
+			Map<String, String> variables = new HashMap<String, String>();
+			for (Map.Entry<String, JsonElement> variable : container.getAsJsonObject("environment").entrySet()) {
+				variables.put(variable.getKey(), variable.getValue().getAsString());
+			}
+			variables.putAll(environment);
+			List<KeyValuePair> pairs = new ArrayList<KeyValuePair>();
+			for (Map.Entry<String, String> variable : variables.entrySet()) {
+				pairs.add(KeyValuePair.builder().name(variable.getKey()).value(variable.getValue()).build());
+			}
+			ContainerOverride.Builder containerOverride = ContainerOverride.builder()
+					.name(container.get("name").getAsString()).environment(pairs);
+			if (container.has("cpu"))
+				containerOverride.cpu(container.get("cpu").getAsInt());
+			if (container.has("memory"))
+				containerOverride.memory(container.get("memory").getAsInt());
+			containerOverrides.add(containerOverride.build());
+		}
+		return builder.containerOverrides(containerOverrides).build();
+	}
+
+	/**
+	 * This method returns the retry policy of a task: the one of its task config
+	 * when the workflow specs still have the task list, else the one of the
+	 * workflow
+	 *
+	 * @param taskName
+	 * @return null when the task is not retried
+	 */
+	private RetryPolicy policyOf(String taskName) {
+		JsonObject specs = workflowSpecs();
+		Gson gson = new Gson();
+		RetryPolicy workflowPolicy = specs.has("retryPolicy") ? gson.fromJson(specs.get("retryPolicy"), RetryPolicy.class)
+				: null;
+		RetryPolicy taskPolicy = null;
+		if (specs.has("taskList") && taskName != null) {
+			for (JsonElement taskConfig : specs.getAsJsonArray("taskList")) {
+				JsonObject task = taskConfig.getAsJsonObject();
+				if (task.has("retryPolicy") && task.has("taskName")
+						&& taskName.equals(task.get("taskName").getAsString()))
+					taskPolicy = gson.fromJson(task.get("retryPolicy"), RetryPolicy.class);
+			}
+		}
+		return RetryPolicy.effective(workflowPolicy, taskPolicy);
+	}
+
+	private JsonObject workflowSpecs() {
+		if (workflowSpecs == null) {
+			String json = WorkflowStore.join(summaryStore.getWorkflowSpecs(workflowName, workflowRunId));
+			// workflows launched without specs in the summary, like pattern 2, have no retry policy
+			workflowSpecs = json == null ? new JsonObject() : JsonParser.parseString(json).getAsJsonObject();
+		}
+		return workflowSpecs;
+	}
+
+	private boolean update(String taskArn, Map<String, AttributeValue> attributes, List<String> removed,
+			String expectedStatus) {
+		Map<String, AttributeValue> updated = new HashMap<String, AttributeValue>(attributes);
+		updated.put("update_time_millis", number(System.currentTimeMillis()));
+		return WorkflowStore.join(store.updateTask(workflowRunId, taskArn, updated, removed,
+				Collections.singletonList(expectedStatus)));
+	}
+
+	/**
+	 * This method decides if a task is launched again after its last attempt
+	 * failed or was interrupted
+	 *
+	 * @param policy   null when the task is not retried
+	 * @param attempts attempts made so far
+	 * @param attempt  the row of the last attempt
+	 * @return
+	 */
+	private static boolean shouldRetry(RetryPolicy policy, int attempts, Map<String, AttributeValue> attempt) {
+		if (policy == null)
+			return false;
+		// the task saved its progress, whatever stopped it
+		if (INTERRUPTED.equals(stringOf(attempt, "status")))
+			return attempts < policy.getMaxAttempts();
+		return policy.shouldRetry(attempts, exitCodeOf(attempt), stringOf(attempt, "stop_reason"));
+	}
+
+	private static Integer exitCodeOf(Map<String, AttributeValue> item) {
+		AttributeValue exitCode = item.get("exit_code");
+		return exitCode == null || exitCode.n() == null ? null : Integer.valueOf(exitCode.n());
+	}
+
+	private static AttributeValue number(long value) {
+		return AttributeValue.builder().n(Long.toString(value)).build();
+	}
+
+	private static String stringOf(Map<String, AttributeValue> item, String attribute) {
+		AttributeValue value = item.get(attribute);
+		return value == null ? null : value.s();
+	}
+}
@@ -0,0 +1,203 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.monitor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.aws.ecs.java.starterkit.archive.ArchiveReader;
+import software.aws.ecs.java.starterkit.archive.ColumnarFile;
+import software.aws.ecs.java.starterkit.history.HistoryPage;
+import software.aws.ecs.java.starterkit.history.WorkflowHistory;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+import software.aws.ecs.java.starterkit.store.WorkflowSummaryStore;
+
+/**
+ * WorkflowArchiver implemented as an AWS Lambda function, invoked on a
+ * schedule. It moves finished workflow runs out of DynamoDB: the Workflow
+ * Details items of a run are written to S3 as one compressed columnar file,
+ * then the run expires through DynamoDB TTL.
+ *
+ * Runs with the status Completed which started more than archive_after_days
+ * ago are found through the status index of the Workflow Summary table. The
+ * file of a run is written to
+ * archive_prefix/workflow_name=name/date=yyyy-MM-dd/run-id.json.gz, the date
+ * being the start date of the run in UTC, so that query engines can prune by
+ * workflow and date. Only once the file is written, the items get the TTL
+ * attribute expire_at, expire_after_days later. A run archived twice, for e.g.
+ * after a timeout, overwrites its file.
+ *
+ */
+public class WorkflowArchiver implements RequestHandler<Map<String, Object>, Map<String, Object>> {
+
+	private static final int PAGE_SIZE = 100;
+
+	private final Metrics metrics;
+	private final MonitorConfig config;
+	private final DynamoDbClient dynamoDB;
+	private final WorkflowStore store;
+	private final WorkflowSummaryStore summaryStore;
+	private final S3Client s3;
+	private final String bucketName;
+	private final String prefix;
+	private final long archiveAfterMillis;
+	private final long expireAfterSeconds;
+	private final int maxRuns;
+
+	public WorkflowArchiver() {
+		this(MonitorConfig.fromEnvironment(), Metrics.getInstance());
+	}
+
+	private WorkflowArchiver(MonitorConfig config, Metrics metrics) {
+		this(config, config.buildDynamoDbAsyncClient(), metrics);
+	}
+
+	private WorkflowArchiver(MonitorConfig config, DynamoDbAsyncClient dynamoDBAsync, Metrics metrics) {
+		// the clients are reused by warm invocations, both stores share the asynchronous client
+		this(config, DynamoDbClient.builder().region(config.getRegion()).build(),
+				config.buildWorkflowStore(dynamoDBAsync, metrics),
+				config.buildWorkflowSummaryStore(dynamoDBAsync, metrics),
+				S3Client.builder().region(config.getRegion()).build(), System.getenv("archive_bucket_name"),
+				Optional.ofNullable(System.getenv("archive_prefix")).orElse("archive"),
+				TimeUnit.DAYS.toMillis(
+						Long.parseLong(Optional.ofNullable(System.getenv("archive_after_days")).orElse("7"))),
+				TimeUnit.DAYS.toSeconds(
+						Long.parseLong(Optional.ofNullable(System.getenv("expire_after_days")).orElse("1"))),
+				Integer.parseInt(Optional.ofNullable(System.getenv("archive_max_runs")).orElse("50")), metrics);
+	}
+
+	WorkflowArchiver(MonitorConfig config, DynamoDbClient dynamoDB, WorkflowStore store,
+			WorkflowSummaryStore summaryStore, S3Client s3, String bucketName, String prefix, long archiveAfterMillis,
+			long expireAfterSeconds, int maxRuns, Metrics metrics) {
+		this.config = config;
+		this.dynamoDB = dynamoDB;
+		this.store = store;
+		this.summaryStore = summaryStore;
+		this.s3 = s3;
+		this.bucketName = bucketName;
+		this.prefix = prefix;
+		this.archiveAfterMillis = archiveAfterMillis;
+		this.expireAfterSeconds = expireAfterSeconds;
+		this.maxRuns = maxRuns;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public Map<String, Object> handleRequest(Map<String, Object> input, Context context) {
+		metrics.putDimension("Service", "WorkflowArchiver");
+		try {
+			Map<String, Object> output = new HashMap<String, Object>();
+			output.put("archivedRuns", archive(System.currentTimeMillis()));
+			return output;
+		} finally {
+			metrics.flush();
+		}
+	}
+
+	/**
+	 * This method archives up to maxRuns finished workflow runs
+	 *
+	 * @param nowMillis
+	 * @return the number of archived runs
+	 */
+	int archive(long nowMillis) {
+		WorkflowHistory history = new WorkflowHistory(dynamoDB, config.getDdbTableNameWFSummary(),
+				config.getDdbTableNameWFDetails(), metrics);
+		int archived = 0;
+		Map<String, AttributeValue> pageToken = null;
+		do {
+			HistoryPage page = history.runsByStatus("Completed", 0, nowMillis - archiveAfterMillis, PAGE_SIZE,
+					pageToken);
+			for (Map<String, AttributeValue> summary : page.getItems()) {
+				// archived runs stay in the index until TTL deletes them
+				if (summary.containsKey(WorkflowSummaryStore.ARCHIVE_KEY))
+					continue;
+				archiveRun(summary, nowMillis);
+				if (++archived == maxRuns)
+					return archived;
+			}
+			pageToken = page.getNextPageToken();
+		} while (pageToken != null);
+		return archived;
+	}
+
+	private void archiveRun(Map<String, AttributeValue> summary, long nowMillis) {
+		String workflowName = summary.get(config.getHashKeyWFSummary()).s();
+		long workflowRunId = Long.parseLong(summary.get(config.getRangeKeyWFSummary()).n());
+		long startTimeMillis = Long.parseLong(summary.get(WorkflowHistory.START_TIME_MILLIS).n());
+		List<Map<String, AttributeValue>> items = WorkflowStore.join(store.getTasks(workflowRunId, null));
+
+		Map<String, String> metadata = new LinkedHashMap<String, String>();
+		metadata.put("workflow_name", workflowName);
+		metadata.put("workflow_run_id", Long.toString(workflowRunId));
+		for (String attribute : new String[] { "status", "start_time", "update_time", "number_of_tasks",
+				"completed_tasks", "failed_tasks" }) {
+			AttributeValue value = summary.get(attribute);
+			if (value != null)
+				metadata.put(attribute, value.s() != null ? value.s() : value.n());
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			ColumnarFile.of(metadata, items).writeTo(bytes);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		String archiveKey = archiveKey(prefix, workflowName, workflowRunId, startTimeMillis);
+		PutObjectRequest request = PutObjectRequest.builder().bucket(bucketName).key(archiveKey)
+				.contentType("application/gzip").build();
+		metrics.time("S3PutObjectLatency", () -> s3.putObject(request, RequestBody.fromBytes(bytes.toByteArray())));
+
+		long expireAt = TimeUnit.MILLISECONDS.toSeconds(nowMillis) + expireAfterSeconds;
+		// finished runs no longer change, so their rows are written again as read, with the TTL attribute
+		Map<String, Map<String, AttributeValue>> expiring = new LinkedHashMap<String, Map<String, AttributeValue>>();
+		for (Map<String, AttributeValue> item : items) {
+			Map<String, AttributeValue> attributes = new HashMap<String, AttributeValue>(item);
+			attributes.put(WorkflowSummaryStore.EXPIRE_AT, AttributeValue.builder().n(Long.toString(expireAt)).build());
+			expiring.put(item.get(config.getRangeKeyWFDetails()).s(), attributes);
+		}
+		WorkflowStore.join(store.putTasks(workflowRunId, expiring));
+		WorkflowStore.join(summaryStore.markArchived(workflowName, workflowRunId, archiveKey, expireAt));
+		metrics.count("WorkflowRunsArchived");
+		metrics.count("WorkflowDetailsArchived", items.size());
+		System.out.printf("Archived %d items of workflow run %d to s3://%s/%s \n", items.size(), workflowRunId,
+				bucketName, archiveKey);
+	}
+
+	/**
+	 * This method returns the S3 object key of the archive of a workflow run,
+	 * partitioned by workflow name and start date
+	 *
+	 * @param prefix
+	 * @param workflowName
+	 * @param workflowRunId
+	 * @param startTimeMillis
+	 * @return
+	 */
+	static String archiveKey(String prefix, String workflowName, long workflowRunId, long startTimeMillis) {
+		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+		dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return prefix + "/workflow_name=" + workflowName + "/date=" + dateFormat.format(new Date(startTimeMillis))
+				+ "/run-" + workflowRunId + ArchiveReader.FILE_SUFFIX;
+	}
+}
@@ -0,0 +1,232 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.monitor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.ecs.EcsClient;
+import software.aws.ecs.java.starterkit.cache.ResultCache;
+import software.aws.ecs.java.starterkit.dag.TaskGraph;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.monitor.model.Iterator;
+import software.aws.ecs.java.starterkit.monitor.model.WorkflowStatus;
+import software.aws.ecs.java.starterkit.scheduler.DynamoDbSchedulerStore;
+import software.aws.ecs.java.starterkit.scheduler.FairShareScheduler;
+import software.aws.ecs.java.starterkit.scheduler.RunShare;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+import software.aws.ecs.java.starterkit.store.WorkflowSummaryStore;
+
+/**
+ * Derives the status of a workflow run from its rows in workflow_details, for
+ * ECSTaskMonitor and ECSFleetMonitor alike.
+ *
+ * A tick first fails the tasks which stopped without a final status, settles
+ * the speculative copies and moves the retries forward, then counts each task
+ * once: rows of markers, copies and attempts are left out. While the run is
+ * running, stragglers get a speculative copy.
+ *
+ */
+public class WorkflowEvaluator {
+
+	private static final long DEFAULT_DEAD_TASK_STALE_SECONDS = 600;
+	private static final long DEFAULT_STALLED_TASK_SECONDS = 120;
+
+	private final EcsClient ecs;
+	private final DynamoDbClient dynamoDB;
+	private final WorkflowSummaryStore summaryStore;
+	private final WorkflowStore store;
+	private final MonitorConfig config;
+	private final long deadTaskStaleSeconds;
+	private final long stalledTaskSeconds;
+	private final SpeculationConfig speculation;
+	private final ExecutorService describeExecutor;
+	private final Metrics metrics;
+
+	/**
+	 * @param ecs
+	 * @param dynamoDB             the client of the scheduler tables
+	 * @param summaryStore         the workflow summaries, which have the
+	 *                             workflow specs
+	 * @param store                the rows of the tasks
+	 * @param config
+	 * @param deadTaskStaleSeconds 0 disables dead-task detection
+	 * @param stalledTaskSeconds   a task whose heartbeats stopped for this long
+	 *                             is stalled, and checked for being dead
+	 * @param speculation
+	 * @param describeExecutor     runs the DescribeTasks batches of dead-task
+	 *                             detection
+	 * @param metrics
+	 */
+	public WorkflowEvaluator(EcsClient ecs, DynamoDbClient dynamoDB, WorkflowSummaryStore summaryStore,
+			WorkflowStore store, MonitorConfig config, long deadTaskStaleSeconds, long stalledTaskSeconds,
+			SpeculationConfig speculation, ExecutorService describeExecutor, Metrics metrics) {
+		this.ecs = ecs;
+		this.dynamoDB = dynamoDB;
+		this.summaryStore = summaryStore;
+		this.store = store;
+		this.config = config;
+		this.deadTaskStaleSeconds = deadTaskStaleSeconds;
+		this.stalledTaskSeconds = stalledTaskSeconds;
+		this.speculation = speculation;
+		this.describeExecutor = describeExecutor;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * This method builds a WorkflowEvaluator with the thresholds and the
+	 * speculation settings of the environment variables
+	 */
+	public static WorkflowEvaluator fromEnvironment(EcsClient ecs, DynamoDbClient dynamoDB,
+			WorkflowSummaryStore summaryStore, WorkflowStore store, MonitorConfig config,
+			ExecutorService describeExecutor, Metrics metrics) {
+		long deadTaskStaleSeconds = Long.parseLong(Optional.ofNullable(System.getenv("dead_task_stale_seconds"))
+				.orElse(Long.toString(DEFAULT_DEAD_TASK_STALE_SECONDS)));
+		long stalledTaskSeconds = Long.parseLong(Optional.ofNullable(System.getenv("stalled_task_seconds"))
+				.orElse(Long.toString(DEFAULT_STALLED_TASK_SECONDS)));
+		return new WorkflowEvaluator(ecs, dynamoDB, summaryStore, store, config, deadTaskStaleSeconds,
+				stalledTaskSeconds, SpeculationConfig.fromEnvironment(), describeExecutor, metrics);
+	}
+
+	/**
+	 * This method runs one monitor tick for a workflow run. The summary is not
+	 * written, the caller writes it with the progress attributes of the result.
+	 *
+	 * @param iterator
+	 * @param nowMillis
+	 * @return
+	 */
+	public WorkflowStatus evaluate(Iterator iterator, long nowMillis) {
+		String rangeKey = config.getRangeKeyWFDetails();
+		long workflowRunId = iterator.getWorkflowRunId();
+		List<Map<String, AttributeValue>> tasks = WorkflowStore.join(store.getTasks(workflowRunId, null));
+		System.out.printf("Number of Tasks retrieved from DDB: %d\n", tasks.size());
+		// tasks which stopped without a final status are failed
+		if (deadTaskStaleSeconds > 0) {
+			List<String> launchedArns = new ArrayList<String>(TaskRetrier.currentAttempts(tasks));
+			if (iterator.getEcsTaskArns() != null)
+				launchedArns.addAll(iterator.getEcsTaskArns());
+			tasks = new TaskReconciler(ecs, store, config, deadTaskStaleSeconds,
+					stalledTaskSeconds > 0 ? stalledTaskSeconds : deadTaskStaleSeconds, describeExecutor, metrics)
+					.reconcile(workflowRunId, tasks, launchedArns, nowMillis);
+		}
+		// count each task once, whichever of its speculative copies finished first
+		Speculator speculator = null;
+		List<Map<String, AttributeValue>> items = tasks;
+		if (speculation.isEnabled()) {
+			speculator = new Speculator(ecs, summaryStore, store, config, speculation, metrics);
+			tasks = speculator.resolve(workflowRunId, items);
+		}
+		// failed tasks are launched again as their retry policy allows, and count as running meanwhile
+		tasks = new TaskRetrier(ecs, summaryStore, store, config, metrics).retry(iterator.getWorkflowName(),
+				workflowRunId, tasks, nowMillis);
+
+		List<String> completedTasks = new ArrayList<String>();
+		List<String> failedTasks = new ArrayList<String>();
+		List<String> runningTasks = new ArrayList<String>();
+		int skippedTasks = 0;
+		for (Map<String, AttributeValue> item : tasks) {
+			String ecsTaskId = item.get(rangeKey).s();
+			String status = item.get("status") == null ? "" : item.get("status").s();
+			// node rows of a workflow with dependencies, only a skipped task has no row of its own
+			if (TaskGraph.isNodeId(ecsTaskId)) {
+				if (status.equals(TaskGraph.SKIPPED)) {
+					failedTasks.add(ecsTaskId);
+					skippedTasks++;
+				}
+				continue;
+			}
+			if (ResultCache.isCompleted(status))
+				completedTasks.add(ecsTaskId);
+			else if (TaskRetrier.isFailed(status))
+				failedTasks.add(ecsTaskId);
+			else
+				runningTasks.add(ecsTaskId);
+		}
+		WorkflowStatus workflowStatus = new WorkflowStatus();
+		workflowStatus.setWorkflowName(iterator.getWorkflowName());
+		workflowStatus.setWorkflowRunId(workflowRunId);
+		workflowStatus.setCompletedTasks(completedTasks);
+		workflowStatus.setFailedTasks(failedTasks);
+		workflowStatus.setRunningTasks(runningTasks);
+		workflowStatus.setSkippedTasks(skippedTasks);
+
+		// discovered inputs are counted as they are launched, the count is final once the launch completed
+		if (iterator.getExpectedTasks() == completedTasks.size() + failedTasks.size()
+				&& !Boolean.FALSE.equals(iterator.getLaunchComplete())) {
+			workflowStatus.setStatus("Completed");
+		} else {
+			workflowStatus.setStatus("Running");
+			if (speculator != null)
+				speculator.speculate(iterator.getWorkflowName(), workflowRunId, items, nowMillis);
+		}
+		System.out.printf(
+				"Workflow run %d: Completed tasks = %d, Failed tasks = %d, Running tasks = %d, Status = %s \n",
+				workflowRunId, completedTasks.size(), failedTasks.size(), runningTasks.size(),
+				workflowStatus.getStatus());
+		// throughput and remaining time from the heartbeats of the running tasks
+		WorkflowProgress progress = WorkflowProgress.of(tasks, items, rangeKey, iterator.getExpectedTasks(),
+				nowMillis, stalledTaskSeconds * 1000);
+		System.out.printf("Workflow progress: %d of %s bytes at %.0f bytes/s, ETA %s seconds, %d stalled tasks \n",
+				progress.getProcessedBytes(), Objects.toString(progress.getTotalBytes(), "unknown"),
+				progress.getThroughput(), Objects.toString(progress.getEtaSeconds(), "unknown"),
+				progress.getStalledTasks());
+		workflowStatus.setStalledTasks(progress.getStalledTasks());
+		workflowStatus.setSummaryAttributes(progress.toAttributes());
+		return workflowStatus;
+	}
+
+	/**
+	 * This method gives the slots of finished tasks back to the fair-share
+	 * scheduler, so the launchers of other workflow runs on the cluster can use
+	 * them. Skipped tasks never held a slot.
+	 *
+	 * @param iterator
+	 * @param workflowStatus the outcome of {@link #evaluate(Iterator, long)}
+	 */
+	public void releaseSlots(Iterator iterator, WorkflowStatus workflowStatus) {
+		if (iterator.getSchedulerTableName() == null)
+			return;
+		FairShareScheduler scheduler = new FairShareScheduler(
+				new DynamoDbSchedulerStore(dynamoDB, iterator.getSchedulerTableName(), metrics), metrics);
+		String clusterName = iterator.getClusterName();
+		String runKey = RunShare.runKey(iterator.getWorkflowName(), iterator.getWorkflowRunId());
+		scheduler.recordFinished(clusterName, runKey, workflowStatus.getCompletedTasks().size()
+				+ workflowStatus.getFailedTasks().size() - workflowStatus.getSkippedTasks());
+		if (workflowStatus.getStatus().equals("Completed"))
+			scheduler.removeRun(clusterName, runKey);
+	}
+
+	/**
+	 * This method returns the iterator of the next tick, with the continue flag
+	 * of the workflow run
+	 *
+	 * @param iterator
+	 * @param workflowStatus
+	 * @return
+	 */
+	public static Map<String, Object> nextIterator(Iterator iterator, WorkflowStatus workflowStatus) {
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put("workflowName", iterator.getWorkflowName());
+		map.put("workflowRunId", iterator.getWorkflowRunId());
+		map.put("ecsTaskArns", iterator.getEcsTaskArns());
+		map.put("numberOfTasks", iterator.getExpectedTasks());
+		// pending tasks are launched by the launcher between monitor ticks
+		map.put("launchComplete", !Boolean.FALSE.equals(iterator.getLaunchComplete()));
+		map.put("traceParent", iterator.getTraceParent());
+		if (iterator.getSchedulerTableName() != null) {
+			map.put("schedulerTableName", iterator.getSchedulerTableName());
+			map.put("clusterName", iterator.getClusterName());
+		}
+		map.put("continue", workflowStatus.getStatus().equals("Running"));
+		return map;
+	}
+}
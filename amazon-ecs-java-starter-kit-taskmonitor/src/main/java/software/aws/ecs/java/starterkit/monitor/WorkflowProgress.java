@@ -0,0 +1,181 @@
+// Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package software.aws.ecs.java.starterkit.monitor;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.aws.ecs.java.starterkit.cache.ResultCache;
+import software.aws.ecs.java.starterkit.dag.TaskGraph;
+
+/**
+ * The progress of a workflow run, aggregated from the heartbeats of its
+ * running tasks: the bytes processed, the throughput and the time left.
+ *
+ * A completed task processed its input bytes, a running task the bytes of its
+ * last heartbeat. The throughput adds up the rate of each running task since
+ * it started. The bytes left are the rest of the input of the running tasks,
+ * plus the average input for the tasks which are not launched yet or whose
+ * input size is unknown. A task being retried counts with its current attempt.
+ * A Running task whose last heartbeat is older than the stalled threshold is
+ * stalled.
+ *
+ */
+public class WorkflowProgress {
+
+	// written by ECS Task with each heartbeat
+	public static final String PROGRESS_BYTES = "progress_bytes";
+	public static final String HEARTBEAT_TIME_MILLIS = "heartbeat_time_millis";
+	static final String INPUT_BYTES = "input_bytes";
+
+	private final long processedBytes;
+	private final Long totalBytes;
+	private final double throughput;
+	private final Long etaSeconds;
+	private final int stalledTasks;
+
+	WorkflowProgress(long processedBytes, Long totalBytes, double throughput, Long etaSeconds, int stalledTasks) {
+		this.processedBytes = processedBytes;
+		this.totalBytes = totalBytes;
+		this.throughput = throughput;
+		this.etaSeconds = etaSeconds;
+		this.stalledTasks = stalledTasks;
+	}
+
+	/**
+	 * This method aggregates the progress of a workflow run
+	 *
+	 * @param tasks         the items counted by the monitor, one per task
+	 * @param items         all Workflow Details items of the run, with the rows
+	 *                      of the attempts
+	 * @param rangeKey
+	 * @param expectedTasks
+	 * @param nowMillis
+	 * @param stalledMillis 0 to find no stalled task
+	 * @return
+	 */
+	public static WorkflowProgress of(List<Map<String, AttributeValue>> tasks, List<Map<String, AttributeValue>> items,
+			String rangeKey, int expectedTasks, long nowMillis, long stalledMillis) {
+		Map<String, Map<String, AttributeValue>> attempts = new HashMap<String, Map<String, AttributeValue>>();
+		for (Map<String, AttributeValue> item : items) {
+			if (item.containsKey(TaskRetrier.RETRY_OF))
+				attempts.put(stringOf(item, rangeKey), item);
+		}
+		int taskRows = 0;
+		int knownInputs = 0;
+		long knownInputBytes = 0;
+		long processedBytes = 0;
+		long remainingBytes = 0;
+		int unknownInputs = 0;
+		long unknownInputProgress = 0;
+		double throughput = 0;
+		int stalledTasks = 0;
+		for (Map<String, AttributeValue> item : tasks) {
+			if (TaskGraph.isNodeId(stringOf(item, rangeKey)))
+				continue;
+			taskRows++;
+			String status = stringOf(item, "status");
+			Map<String, AttributeValue> row = item;
+			if (item.get("current_task_arn") != null && attempts.containsKey(stringOf(item, "current_task_arn")))
+				row = attempts.get(stringOf(item, "current_task_arn"));
+			Long inputBytes = numberOf(row, INPUT_BYTES) != null ? numberOf(row, INPUT_BYTES)
+					: numberOf(item, INPUT_BYTES);
+			if (inputBytes != null) {
+				knownInputs++;
+				knownInputBytes += inputBytes;
+			}
+			if (ResultCache.isCompleted(status)) {
+				processedBytes += inputBytes == null ? 0 : inputBytes;
+				continue;
+			}
+			if (TaskRetrier.isFailed(status))
+				continue;
+			long progressBytes = numberOf(row, PROGRESS_BYTES) == null ? 0 : numberOf(row, PROGRESS_BYTES);
+			processedBytes += progressBytes;
+			if (inputBytes != null) {
+				remainingBytes += Math.max(0, inputBytes - progressBytes);
+			} else {
+				unknownInputs++;
+				unknownInputProgress += progressBytes;
+			}
+			Long heartbeat = numberOf(row, HEARTBEAT_TIME_MILLIS);
+			Long start = numberOf(row, "start_time_millis");
+			if (heartbeat == null)
+				continue;
+			if (start != null && heartbeat > start)
+				throughput += progressBytes * 1000.0 / (heartbeat - start);
+			if (stalledMillis > 0 && "Running".equals(stringOf(row, "status")) && nowMillis - heartbeat > stalledMillis)
+				stalledTasks++;
+		}
+		// tasks not launched yet
+		unknownInputs += Math.max(0, expectedTasks - taskRows);
+		Long totalBytes = null;
+		Long etaSeconds = null;
+		if (unknownInputs == 0 || knownInputs > 0) {
+			if (unknownInputs > 0)
+				remainingBytes += Math.max(0, unknownInputs * (knownInputBytes / knownInputs) - unknownInputProgress);
+			totalBytes = processedBytes + remainingBytes;
+			if (remainingBytes == 0)
+				etaSeconds = 0L;
+			else if (throughput > 0)
+				etaSeconds = (long) Math.ceil(remainingBytes / throughput);
+		}
+		return new WorkflowProgress(processedBytes, totalBytes, throughput, etaSeconds, stalledTasks);
+	}
+
+	/**
+	 * This method returns the progress as attributes of the Workflow Summary
+	 * item; the total and the remaining time are left out when unknown
+	 *
+	 * @return
+	 */
+	public Map<String, AttributeValue> toAttributes() {
+		Map<String, AttributeValue> attributes = new LinkedHashMap<String, AttributeValue>();
+		attributes.put("processed_bytes", number(processedBytes));
+		attributes.put("throughput_bytes_per_second", number(Math.round(throughput)));
+		attributes.put("stalled_tasks", number(stalledTasks));
+		if (totalBytes != null)
+			attributes.put("total_bytes", number(totalBytes));
+		if (etaSeconds != null)
+			attributes.put("eta_seconds", number(etaSeconds));
+		return attributes;
+	}
+
+	public long getProcessedBytes() {
+		return processedBytes;
+	}
+
+	public Long getTotalBytes() {
+		return totalBytes;
+	}
+
+	public double getThroughput() {
+		return throughput;
+	}
+
+	public Long getEtaSeconds() {
+		return etaSeconds;
+	}
+
+	public int getStalledTasks() {
+		return stalledTasks;
+	}
+
+	private static AttributeValue number(long value) {
+		return AttributeValue.builder().n(Long.toString(value)).build();
+	}
+
+	private static Long numberOf(Map<String, AttributeValue> item, String attribute) {
+		AttributeValue value = item.get(attribute);
+		return value == null || value.n() == null ? null : Long.valueOf(value.n());
+	}
+
+	private static String stringOf(Map<String, AttributeValue> item, String attribute) {
+		AttributeValue value = item.get(attribute);
+		return value == null ? null : value.s();
+	}
+}
@@ -0,0 +1,17 @@
+package software.aws.ecs.java.starterkit.monitor.model;
+
+import java.util.List;
+
+public class FleetInput {
+
+	private List<Iterator> iterators;
+
+	public List<Iterator> getIterators() {
+		return iterators;
+	}
+
+	public void setIterators(List<Iterator> iterators) {
+		this.iterators = iterators;
+	}
+
+}
@@ -7,6 +7,11 @@ public class Iterator {
 	private String workflowName;
 	private long workflowRunId;
 	private  List<String> ecsTaskArns;
+	private String traceParent;
+	private int numberOfTasks;
+	private Boolean launchComplete;
+	private String schedulerTableName;
+	private String clusterName;
 	public String getWorkflowName() {
 		return workflowName;
 	}
@@ -25,4 +30,52 @@ public class Iterator {
 	public void setEcsTaskArns(List<String> ecsTaskArns) {
 		this.ecsTaskArns = ecsTaskArns;
 	}
+	public String getTraceParent() {
+		return traceParent;
+	}
+	public void setTraceParent(String traceParent) {
+		this.traceParent = traceParent;
+	}
+	public int getNumberOfTasks() {
+		return numberOfTasks;
+	}
+	public void setNumberOfTasks(int numberOfTasks) {
+		this.numberOfTasks = numberOfTasks;
+	}
+	/**
+	 * False while tasks of the workflow run are pending launch, null for
+	 * launchers which launch all tasks at once
+	 */
+	public Boolean getLaunchComplete() {
+		return launchComplete;
+	}
+	public void setLaunchComplete(Boolean launchComplete) {
+		this.launchComplete = launchComplete;
+	}
+	/**
+	 * Number of tasks the workflow run waits for. It is numberOfTasks when set,
+	 * since a launch split across invocations passes only the ARNs of its last
+	 * invocation, else the number of ECS task ARNs.
+	 */
+	public int getExpectedTasks() {
+		if (numberOfTasks > 0 || ecsTaskArns == null)
+			return numberOfTasks;
+		return ecsTaskArns.size();
+	}
+	/**
+	 * Table of the fair-share scheduler, null when the workflow run is not
+	 * scheduled
+	 */
+	public String getSchedulerTableName() {
+		return schedulerTableName;
+	}
+	public void setSchedulerTableName(String schedulerTableName) {
+		this.schedulerTableName = schedulerTableName;
+	}
+	public String getClusterName() {
+		return clusterName;
+	}
+	public void setClusterName(String clusterName) {
+		this.clusterName = clusterName;
+	}
 }
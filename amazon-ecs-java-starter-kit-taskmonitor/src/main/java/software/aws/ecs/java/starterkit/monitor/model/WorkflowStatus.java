@@ -1,14 +1,37 @@
 package software.aws.ecs.java.starterkit.monitor.model;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.aws.ecs.java.starterkit.store.SummaryUpdate;
 
 public class WorkflowStatus {
 
+	private String workflowName;
+	private long workflowRunId;
 	private String status;
 	private List<String> completedTasks;
 	private List<String> failedTasks;
 	private List<String> runningTasks;
+	private int skippedTasks;
+	private int stalledTasks;
+	// set on the summary along with the counts, such as the progress of the run
+	private Map<String, AttributeValue> summaryAttributes = Collections.<String, AttributeValue>emptyMap();
 	
+	public String getWorkflowName() {
+		return workflowName;
+	}
+	public void setWorkflowName(String workflowName) {
+		this.workflowName = workflowName;
+	}
+	public long getWorkflowRunId() {
+		return workflowRunId;
+	}
+	public void setWorkflowRunId(long workflowRunId) {
+		this.workflowRunId = workflowRunId;
+	}
 	public String getStatus() {
 		return status;
 	}
@@ -33,4 +56,34 @@ public class WorkflowStatus {
 	public void setRunningTasks(List<String> runningTasks) {
 		this.runningTasks = runningTasks;
 	}
+	public int getSkippedTasks() {
+		return skippedTasks;
+	}
+	public void setSkippedTasks(int skippedTasks) {
+		this.skippedTasks = skippedTasks;
+	}
+	public int getStalledTasks() {
+		return stalledTasks;
+	}
+	public void setStalledTasks(int stalledTasks) {
+		this.stalledTasks = stalledTasks;
+	}
+	public Map<String, AttributeValue> getSummaryAttributes() {
+		return summaryAttributes;
+	}
+	public void setSummaryAttributes(Map<String, AttributeValue> summaryAttributes) {
+		this.summaryAttributes = summaryAttributes;
+	}
+
+	/**
+	 * This method returns the update of the summary of the workflow run, with
+	 * the task counts and the summary attributes
+	 *
+	 * @param time
+	 * @return
+	 */
+	public SummaryUpdate toSummaryUpdate(String time) {
+		return new SummaryUpdate(workflowName, workflowRunId, status, time, completedTasks.size(),
+				failedTasks.size(), runningTasks.size(), summaryAttributes);
+	}
 }
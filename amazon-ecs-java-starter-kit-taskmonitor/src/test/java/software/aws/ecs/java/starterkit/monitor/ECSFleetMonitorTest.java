@@ -0,0 +1,217 @@
+package software.aws.ecs.java.starterkit.monitor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.ecs.EcsClient;
+import software.amazon.awssdk.services.ecs.model.StopTaskRequest;
+import software.amazon.awssdk.services.ecs.model.StopTaskResponse;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.monitor.model.FleetInput;
+import software.aws.ecs.java.starterkit.monitor.model.Iterator;
+import software.aws.ecs.java.starterkit.monitor.model.WorkflowStatus;
+import software.aws.ecs.java.starterkit.store.DynamoDbWorkflowSummaryStore;
+import software.aws.ecs.java.starterkit.store.InMemoryWorkflowStore;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+
+class ECSFleetMonitorTest {
+
+	private static final MonitorConfig CONFIG = new MonitorConfig("us-east-1", "workflow_summary", "workflow_name",
+			"workflow_run_id", "workflow_details", "workflow_run_id", "ecs_task_id");
+
+	@Test
+	void returnsContinueFlagPerWorkflowRun() {
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		dynamoDB.details(1, Arrays.asList(task("a", "Completed"), task("b", "Failed")));
+		dynamoDB.details(2, Arrays.asList(task("c", "Completed"), task("d", "Running")));
+		ECSFleetMonitor monitor = monitor(dynamoDB, new FakeEcs(), false);
+
+		FleetInput input = new FleetInput();
+		input.setIterators(Arrays.asList(iterator(1, "a", "b"), iterator(2, "c", "d")));
+		Map<String, Object> response = monitor.monitor(input);
+
+		@SuppressWarnings("unchecked")
+		List<Map<String, Object>> iterators = (List<Map<String, Object>>) response.get("iterators");
+		assertEquals(false, iterators.get(0).get("continue"));
+		assertEquals(true, iterators.get(1).get("continue"));
+		assertEquals(true, response.get("continue"));
+		assertEquals(1, dynamoDB.transactions.size());
+		assertEquals(2, dynamoDB.transactions.get(0).transactItems().size());
+	}
+
+	@Test
+	void discoversRunningWorkflowsAndBatchesSummaryUpdates() {
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		int runs = DynamoDbWorkflowSummaryStore.MAX_TRANSACT_ITEMS + 5;
+		for (int i = 0; i < runs; i++) {
+			Map<String, AttributeValue> summary = new HashMap<String, AttributeValue>();
+			summary.put("workflow_name", AttributeValue.builder().s("wf").build());
+			summary.put("workflow_run_id", AttributeValue.builder().n(Integer.toString(i)).build());
+			summary.put("number_of_tasks", AttributeValue.builder().n("1").build());
+			dynamoDB.summaries.add(summary);
+			dynamoDB.details(i, Arrays.asList(task("t" + i, "Completed")));
+		}
+		ECSFleetMonitor monitor = monitor(dynamoDB, new FakeEcs(), false);
+
+		Map<String, Object> response = monitor.monitor(new FleetInput());
+
+		assertEquals(false, response.get("continue"));
+		assertEquals(2, dynamoDB.transactions.size());
+		assertEquals(DynamoDbWorkflowSummaryStore.MAX_TRANSACT_ITEMS,
+				dynamoDB.transactions.get(0).transactItems().size());
+		assertEquals(5, dynamoDB.transactions.get(1).transactItems().size());
+	}
+
+	@Test
+	void countsSkippedNodesAsFailedAndIgnoresOtherNodes() {
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		dynamoDB.details(1, Arrays.asList(task("node/extract", "Launched"), task("a", "Failed"),
+				task("node/report", "Skipped")));
+		ECSFleetMonitor monitor = monitor(dynamoDB, new FakeEcs(), false);
+		Iterator iterator = iterator(1);
+		iterator.setNumberOfTasks(2);
+
+		WorkflowStatus workflowStatus = monitor.evaluate(iterator);
+		assertEquals("Completed", workflowStatus.getStatus());
+		assertEquals(Arrays.asList("a", "node/report"), workflowStatus.getFailedTasks());
+		assertEquals(0, workflowStatus.getRunningTasks().size());
+	}
+
+	@Test
+	void countsATaskBeingRetriedOnceAsRunning() {
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		Map<String, AttributeValue> retrying = task("a", TaskRetrier.RETRYING);
+		retrying.put("attempts", AttributeValue.builder().n("1").build());
+		retrying.put("current_task_arn", AttributeValue.builder().s("a2").build());
+		Map<String, AttributeValue> attempt = task("a2", "Running");
+		attempt.put(TaskRetrier.RETRY_OF, AttributeValue.builder().s("a").build());
+		dynamoDB.details(1, Arrays.asList(retrying, attempt, task("b", "Completed")));
+		ECSFleetMonitor monitor = monitor(dynamoDB, new FakeEcs(), false);
+
+		WorkflowStatus workflowStatus = monitor.evaluate(iterator(1, "a", "b"));
+		assertEquals("Running", workflowStatus.getStatus());
+		assertEquals(Arrays.asList("b"), workflowStatus.getCompletedTasks());
+		assertEquals(Arrays.asList("a"), workflowStatus.getRunningTasks());
+	}
+
+	@Test
+	void countsTheOriginalOfASpeculativePairWithTheOutcomeOfTheCopy() {
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		FakeEcs ecs = new FakeEcs();
+		Map<String, AttributeValue> copy = task("a-copy", "Completed");
+		copy.put("exec_time_in_seconds", AttributeValue.builder().n("30").build());
+		Map<String, AttributeValue> marker = task(Speculator.markerId("a"), Speculator.SPECULATING);
+		marker.put("original_task_arn", AttributeValue.builder().s("a").build());
+		marker.put("duplicate_task_arn", AttributeValue.builder().s("a-copy").build());
+		marker.put("cluster_name", AttributeValue.builder().s("cluster").build());
+		dynamoDB.details(1, Arrays.asList(task("a", "Running"), copy, marker));
+		ECSFleetMonitor monitor = monitor(dynamoDB, ecs, true);
+
+		WorkflowStatus workflowStatus = monitor.evaluate(iterator(1, "a"));
+		assertEquals("Completed", workflowStatus.getStatus());
+		assertEquals(Arrays.asList("a"), workflowStatus.getCompletedTasks());
+		assertEquals(0, workflowStatus.getRunningTasks().size());
+		assertEquals(Arrays.asList("a"), ecs.stopped);
+		assertEquals("Completed", WorkflowStore.join(dynamoDB.store.getTask(1, "a")).get("status").s());
+	}
+
+	private static ECSFleetMonitor monitor(FakeDynamoDb dynamoDB, FakeEcs ecs, boolean speculation) {
+		Metrics metrics = new Metrics("Test", s -> {
+		});
+		DynamoDbWorkflowSummaryStore summaryStore = new DynamoDbWorkflowSummaryStore(dynamoDB, "workflow_summary",
+				"workflow_name", "workflow_run_id", metrics);
+		// the iterators have no scheduler table, so no synchronous client is needed
+		WorkflowEvaluator evaluator = new WorkflowEvaluator(ecs, null, summaryStore, dynamoDB.store, CONFIG, 600, 120,
+				new SpeculationConfig(speculation ? 0.9 : 0, 1.5, 5), Executors.newSingleThreadExecutor(), metrics);
+		return new ECSFleetMonitor(CONFIG, summaryStore, 4, evaluator, metrics);
+	}
+
+	private static Iterator iterator(long workflowRunId, String... ecsTaskArns) {
+		Iterator iterator = new Iterator();
+		iterator.setWorkflowName("wf");
+		iterator.setWorkflowRunId(workflowRunId);
+		iterator.setEcsTaskArns(Arrays.asList(ecsTaskArns));
+		return iterator;
+	}
+
+	private static Map<String, AttributeValue> task(String ecsTaskId, String status) {
+		Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+		item.put("ecs_task_id", AttributeValue.builder().s(ecsTaskId).build());
+		item.put("status", AttributeValue.builder().s(status).build());
+		return item;
+	}
+
+	/**
+	 * In-memory stand-in for the ECS operations used by the fleet monitor
+	 */
+	private static class FakeEcs implements EcsClient {
+		final List<String> stopped = new ArrayList<String>();
+
+		@Override
+		public StopTaskResponse stopTask(StopTaskRequest request) {
+			stopped.add(request.task());
+			return StopTaskResponse.builder().build();
+		}
+
+		@Override
+		public String serviceName() {
+			return "ecs";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * In-memory stand-in for the DynamoDB operations of the workflow summaries
+	 * used by the fleet monitor, with the store of the workflow details
+	 */
+	private static class FakeDynamoDb implements DynamoDbAsyncClient {
+		final InMemoryWorkflowStore store = new InMemoryWorkflowStore("workflow_run_id", "ecs_task_id");
+		final List<Map<String, AttributeValue>> summaries = new ArrayList<Map<String, AttributeValue>>();
+		final List<TransactWriteItemsRequest> transactions = new ArrayList<TransactWriteItemsRequest>();
+
+		void details(long workflowRunId, List<Map<String, AttributeValue>> rows) {
+			for (Map<String, AttributeValue> row : rows) {
+				store.putTask(workflowRunId, row.get("ecs_task_id").s(), row);
+			}
+		}
+
+		@Override
+		public CompletableFuture<ScanResponse> scan(ScanRequest scanRequest) {
+			return CompletableFuture.completedFuture(ScanResponse.builder().items(summaries).build());
+		}
+
+		@Override
+		public synchronized CompletableFuture<TransactWriteItemsResponse> transactWriteItems(
+				TransactWriteItemsRequest request) {
+			transactions.add(request);
+			return CompletableFuture.completedFuture(TransactWriteItemsResponse.builder().build());
+		}
+
+		@Override
+		public String serviceName() {
+			return "dynamodb";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package software.aws.ecs.java.starterkit.monitor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.ecs.EcsClient;
+import software.amazon.awssdk.services.ecs.model.StopTaskRequest;
+import software.amazon.awssdk.services.ecs.model.StopTaskResponse;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.monitor.model.Iterator;
+import software.aws.ecs.java.starterkit.store.InMemoryWorkflowStore;
+import software.aws.ecs.java.starterkit.store.InMemoryWorkflowSummaryStore;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+
+class ECSTaskMonitorTest {
+
+	private static final MonitorConfig CONFIG = new MonitorConfig("us-east-1", "workflow_summary", "workflow_name",
+			"workflow_run_id", "workflow_details", "workflow_run_id", "ecs_task_id");
+
+	@Test
+	void completesARunWithARetriedTaskAndASpeculatedTask() {
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		FakeEcs ecs = new FakeEcs();
+		Map<String, AttributeValue> retrying = task("a", TaskRetrier.RETRYING);
+		retrying.put("attempts", AttributeValue.builder().n("1").build());
+		retrying.put("current_task_arn", AttributeValue.builder().s("a2").build());
+		Map<String, AttributeValue> attempt = task("a2", "Completed");
+		attempt.put(TaskRetrier.RETRY_OF, AttributeValue.builder().s("a").build());
+		attempt.put("exec_time_in_seconds", AttributeValue.builder().n("20").build());
+		Map<String, AttributeValue> copy = task("b-copy", "Completed");
+		copy.put("exec_time_in_seconds", AttributeValue.builder().n("30").build());
+		Map<String, AttributeValue> marker = task(Speculator.markerId("b"), Speculator.SPECULATING);
+		marker.put("original_task_arn", AttributeValue.builder().s("b").build());
+		marker.put("duplicate_task_arn", AttributeValue.builder().s("b-copy").build());
+		marker.put("cluster_name", AttributeValue.builder().s("cluster").build());
+		dynamoDB.details(1, Arrays.asList(retrying, attempt, task("b", "Running"), copy, marker));
+		ECSTaskMonitor monitor = monitor(dynamoDB, ecs);
+
+		Map<String, Object> response = monitor.monitor(iterator(1, "a", "b"));
+
+		assertEquals(false, response.get("continue"));
+		Map<String, AttributeValue> summary = WorkflowStore.join(dynamoDB.summaries.getSummary("wf", 1));
+		assertEquals("Completed", summary.get("status").s());
+		assertEquals("2", summary.get("completed_tasks").n());
+		assertEquals("0", summary.get("failed_tasks").n());
+		assertEquals("0", summary.get("running_tasks").n());
+		assertEquals("Completed", WorkflowStore.join(dynamoDB.store.getTask(1, "a")).get("status").s());
+		assertEquals("Completed", WorkflowStore.join(dynamoDB.store.getTask(1, "b")).get("status").s());
+		assertEquals(Arrays.asList("b"), ecs.stopped);
+	}
+
+	private static ECSTaskMonitor monitor(FakeDynamoDb dynamoDB, FakeEcs ecs) {
+		Metrics metrics = new Metrics("Test", s -> {
+		});
+		WorkflowEvaluator evaluator = new WorkflowEvaluator(ecs, dynamoDB, dynamoDB.summaries, dynamoDB.store,
+				CONFIG, 600, 120, new SpeculationConfig(0.9, 1.5, 5), Executors.newSingleThreadExecutor(), metrics);
+		return new ECSTaskMonitor(CONFIG, dynamoDB.summaries, evaluator, metrics);
+	}
+
+	private static Iterator iterator(long workflowRunId, String... ecsTaskArns) {
+		Iterator iterator = new Iterator();
+		iterator.setWorkflowName("wf");
+		iterator.setWorkflowRunId(workflowRunId);
+		iterator.setEcsTaskArns(Arrays.asList(ecsTaskArns));
+		iterator.setNumberOfTasks(ecsTaskArns.length);
+		return iterator;
+	}
+
+	private static Map<String, AttributeValue> task(String ecsTaskId, String status) {
+		Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+		item.put("ecs_task_id", AttributeValue.builder().s(ecsTaskId).build());
+		item.put("status", AttributeValue.builder().s(status).build());
+		return item;
+	}
+
+	/**
+	 * In-memory stand-in for the ECS operations used by the monitor
+	 */
+	private static class FakeEcs implements EcsClient {
+		final List<String> stopped = new ArrayList<String>();
+
+		@Override
+		public StopTaskResponse stopTask(StopTaskRequest request) {
+			stopped.add(request.task());
+			return StopTaskResponse.builder().build();
+		}
+
+		@Override
+		public String serviceName() {
+			return "ecs";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * DynamoDbClient of the monitor, with the stores of the workflow summaries
+	 * and the workflow details
+	 */
+	private static class FakeDynamoDb implements DynamoDbClient {
+		final InMemoryWorkflowStore store = new InMemoryWorkflowStore("workflow_run_id", "ecs_task_id");
+		final InMemoryWorkflowSummaryStore summaries = new InMemoryWorkflowSummaryStore("workflow_name",
+				"workflow_run_id");
+
+		void details(long workflowRunId, List<Map<String, AttributeValue>> rows) {
+			for (Map<String, AttributeValue> row : rows) {
+				store.putTask(workflowRunId, row.get("ecs_task_id").s(), row);
+			}
+		}
+
+		@Override
+		public String serviceName() {
+			return "dynamodb";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
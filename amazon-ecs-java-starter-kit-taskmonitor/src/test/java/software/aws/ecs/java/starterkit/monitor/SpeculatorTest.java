@@ -0,0 +1,189 @@
+package software.aws.ecs.java.starterkit.monitor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.ecs.EcsClient;
+import software.amazon.awssdk.services.ecs.model.DescribeTasksRequest;
+import software.amazon.awssdk.services.ecs.model.DescribeTasksResponse;
+import software.amazon.awssdk.services.ecs.model.LaunchType;
+import software.amazon.awssdk.services.ecs.model.ListTasksRequest;
+import software.amazon.awssdk.services.ecs.model.ListTasksResponse;
+import software.amazon.awssdk.services.ecs.model.RunTaskRequest;
+import software.amazon.awssdk.services.ecs.model.RunTaskResponse;
+import software.amazon.awssdk.services.ecs.model.StopTaskRequest;
+import software.amazon.awssdk.services.ecs.model.StopTaskResponse;
+import software.amazon.awssdk.services.ecs.model.Task;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.store.InMemoryWorkflowStore;
+import software.aws.ecs.java.starterkit.store.InMemoryWorkflowSummaryStore;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+
+class SpeculatorTest {
+
+	private static final MonitorConfig CONFIG = new MonitorConfig("us-east-1", "workflow_summary", "workflow_name",
+			"workflow_run_id", "workflow_details", "workflow_run_id", "ecs_task_id");
+	private static final long NOW = System.currentTimeMillis();
+
+	@Test
+	void launchesACopyOfTasksRunningPastThePercentile() {
+		FakeEcs ecs = new FakeEcs();
+		InMemoryWorkflowStore store = new InMemoryWorkflowStore("workflow_run_id", "ecs_task_id");
+		List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+		for (int i = 1; i <= 5; i++) {
+			Map<String, AttributeValue> completed = task("task/done" + i, "Completed", 0);
+			completed.put("exec_time_in_seconds", AttributeValue.builder().n(Integer.toString(i * 20)).build());
+			items.add(completed);
+		}
+		// the threshold is 100 seconds, the 90th percentile, times 1.5
+		items.add(task("task/slow", "Running", 151));
+		items.add(task("task/fresh", "Running", 149));
+
+		assertEquals(1, speculator(ecs, store).speculate("wf", 1, items, NOW));
+		assertEquals(1, ecs.runs.size());
+		RunTaskRequest request = ecs.runs.get(0);
+		assertEquals("s-slow", request.startedBy());
+		assertEquals("arn:task-definition", request.taskDefinition());
+		assertEquals(Arrays.asList("subnet-a", "subnet-b"),
+				request.networkConfiguration().awsvpcConfiguration().subnets());
+		Map<String, AttributeValue> marker = WorkflowStore.join(store.getTask(1, "speculative/task/slow"));
+		assertEquals("speculative/task/slow", marker.get("ecs_task_id").s());
+		assertEquals(Speculator.SPECULATING, marker.get("status").s());
+		assertEquals("task/copy", marker.get("duplicate_task_arn").s());
+
+		// a straggler gets one copy only
+		items.add(marker);
+		assertEquals(0, speculator(ecs, store).speculate("wf", 1, items, NOW));
+	}
+
+	@Test
+	void keepsTheCopyWhichFinishesFirstAndStopsTheOther() {
+		FakeEcs ecs = new FakeEcs();
+		InMemoryWorkflowStore store = new InMemoryWorkflowStore("workflow_run_id", "ecs_task_id");
+		Map<String, AttributeValue> copy = task("task/copy", "Completed", 30);
+		copy.put("exec_time_in_seconds", AttributeValue.builder().n("30").build());
+		List<Map<String, AttributeValue>> items = Arrays.asList(task("task/slow", "Running", 300), copy,
+				marker("task/slow", "task/copy"), task("task/other", "Running", 10));
+
+		List<Map<String, AttributeValue>> counted = speculator(ecs, store).resolve(1, items);
+
+		assertEquals(2, counted.size());
+		assertEquals("task/slow", counted.get(0).get("ecs_task_id").s());
+		assertEquals("Completed", counted.get(0).get("status").s());
+		assertEquals("task/slow", ecs.stops.get(0).task());
+		Map<String, AttributeValue> outcome = WorkflowStore.join(store.getTask(1, "task/slow"));
+		assertEquals("Completed", outcome.get("status").s());
+		assertEquals("30", outcome.get("exec_time_in_seconds").n());
+		Map<String, AttributeValue> resolved = WorkflowStore.join(store.getTask(1, "speculative/task/slow"));
+		assertEquals(Speculator.RESOLVED, resolved.get("status").s());
+		assertEquals("task/copy", resolved.get("winner_task_arn").s());
+	}
+
+	@Test
+	void countsAFailedTaskAsRunningWhileItsCopyRuns() {
+		FakeEcs ecs = new FakeEcs();
+		InMemoryWorkflowStore store = new InMemoryWorkflowStore("workflow_run_id", "ecs_task_id");
+		List<Map<String, AttributeValue>> items = Arrays.asList(task("task/slow", "Failed", 300),
+				task("task/copy", "Running", 30), marker("task/slow", "task/copy"));
+
+		List<Map<String, AttributeValue>> counted = speculator(ecs, store).resolve(1, items);
+
+		assertEquals(1, counted.size());
+		assertEquals("Running", counted.get(0).get("status").s());
+		assertTrue(ecs.stops.isEmpty());
+		assertTrue(WorkflowStore.join(store.getTasks(1, null)).isEmpty());
+	}
+
+	private static Speculator speculator(FakeEcs ecs, WorkflowStore store) {
+		Metrics metrics = new Metrics("Test", s -> {
+		});
+		return new Speculator(ecs, new FakeSummaryStore(), store, CONFIG,
+				new SpeculationConfig(0.9, 1.5, 5), metrics);
+	}
+
+	private static Map<String, AttributeValue> task(String ecsTaskId, String status, int runningSeconds) {
+		Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+		item.put("ecs_task_id", AttributeValue.builder().s(ecsTaskId).build());
+		item.put("status", AttributeValue.builder().s(status).build());
+		item.put("start_time_millis", AttributeValue.builder().n(Long.toString(NOW - runningSeconds * 1000L)).build());
+		return item;
+	}
+
+	private static Map<String, AttributeValue> marker(String original, String copy) {
+		Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+		item.put("ecs_task_id", AttributeValue.builder().s(Speculator.markerId(original)).build());
+		item.put("status", AttributeValue.builder().s(Speculator.SPECULATING).build());
+		item.put("original_task_arn", AttributeValue.builder().s(original).build());
+		item.put("duplicate_task_arn", AttributeValue.builder().s(copy).build());
+		item.put("cluster_name", AttributeValue.builder().s("cluster").build());
+		return item;
+	}
+
+	/**
+	 * In-memory stand-in for the ECS operations used by the speculator
+	 */
+	private static class FakeEcs implements EcsClient {
+		final List<RunTaskRequest> runs = new ArrayList<RunTaskRequest>();
+		final List<StopTaskRequest> stops = new ArrayList<StopTaskRequest>();
+
+		@Override
+		public DescribeTasksResponse describeTasks(DescribeTasksRequest request) {
+			return DescribeTasksResponse.builder().tasks(Task.builder().taskArn(request.tasks().get(0))
+					.clusterArn("arn:cluster").taskDefinitionArn("arn:task-definition")
+					.launchType(LaunchType.FARGATE).build()).build();
+		}
+
+		@Override
+		public ListTasksResponse listTasks(ListTasksRequest request) {
+			return ListTasksResponse.builder().build();
+		}
+
+		@Override
+		public RunTaskResponse runTask(RunTaskRequest request) {
+			runs.add(request);
+			return RunTaskResponse.builder().tasks(Task.builder().taskArn("task/copy").build()).build();
+		}
+
+		@Override
+		public StopTaskResponse stopTask(StopTaskRequest request) {
+			stops.add(request);
+			return StopTaskResponse.builder().build();
+		}
+
+		@Override
+		public String serviceName() {
+			return "ecs";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * In-memory stand-in for the workflow specs read by the speculator
+	 */
+	private static class FakeSummaryStore extends InMemoryWorkflowSummaryStore {
+
+		FakeSummaryStore() {
+			super("workflow_name", "workflow_run_id");
+		}
+
+		@Override
+		public CompletableFuture<String> getWorkflowSpecs(String workflowName, long workflowRunId) {
+			return CompletableFuture.completedFuture(
+					"{\"clusterName\":\"cluster\",\"subnetIdLiteral\":\"subnet-a,subnet-b\","
+							+ "\"securityGroupId\":\"sg-a\",\"separator\":\",\"}");
+		}
+	}
+}
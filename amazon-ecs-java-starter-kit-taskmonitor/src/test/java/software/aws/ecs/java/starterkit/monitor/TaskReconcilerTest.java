@@ -0,0 +1,195 @@
+package software.aws.ecs.java.starterkit.monitor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.ecs.EcsClient;
+import software.amazon.awssdk.services.ecs.model.Container;
+import software.amazon.awssdk.services.ecs.model.DescribeTasksRequest;
+import software.amazon.awssdk.services.ecs.model.DescribeTasksResponse;
+import software.amazon.awssdk.services.ecs.model.Failure;
+import software.amazon.awssdk.services.ecs.model.Task;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.store.InMemoryWorkflowStore;
+import software.aws.ecs.java.starterkit.store.TaskRows;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+
+class TaskReconcilerTest {
+
+	private static final MonitorConfig CONFIG = new MonitorConfig("us-east-1", "workflow_summary", "workflow_name",
+			"workflow_run_id", "workflow_details", "workflow_run_id", "ecs_task_id");
+	private static final long NOW = System.currentTimeMillis();
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdown();
+	}
+
+	@Test
+	void failsStaleTasksWhichStoppedWithoutAFinalStatus() {
+		FakeEcs ecs = new FakeEcs();
+		ecs.stopped.put(arn("oom"), Task.builder().taskArn(arn("oom")).lastStatus("STOPPED")
+				.stoppedReason("Essential container in task exited").containers(Container.builder()
+						.reason("OutOfMemoryError: Container killed due to memory usage").exitCode(137).build())
+				.build());
+		ecs.stopped.put(arn("never-started"), Task.builder().taskArn(arn("never-started")).lastStatus("STOPPED")
+				.stoppedReason("CannotPullContainerError").build());
+		ecs.stopped.put(arn("finished"), Task.builder().taskArn(arn("finished")).lastStatus("STOPPED").build());
+		ecs.missing.add(arn("forgotten"));
+		ecs.missing.add(arn("just-launched"));
+		InMemoryWorkflowStore store = new InMemoryWorkflowStore("workflow_run_id", "ecs_task_id");
+		// wrote its final status after the items were read
+		store.putTask(1, arn("finished"), Collections.singletonMap("status", TaskRows.string("Completed")));
+		List<Map<String, AttributeValue>> items = Arrays.asList(task(arn("oom"), "Running", 900),
+				task(arn("healthy"), "Running", 900), task(arn("fresh"), "Running", 60),
+				task(arn("forgotten"), "Running", 7200), task(arn("finished"), "Running", 900),
+				task(arn("done"), "Completed", 900));
+
+		List<Map<String, AttributeValue>> reconciled = reconciler(ecs, store).reconcile(1, items,
+				Arrays.asList(arn("oom"), arn("never-started"), arn("just-launched"), "cached/sk-1-0"), NOW);
+
+		Map<String, String> statuses = new HashMap<String, String>();
+		for (Map<String, AttributeValue> item : reconciled) {
+			statuses.put(item.get("ecs_task_id").s(), item.get("status").s());
+		}
+		assertEquals("Failed", statuses.get(arn("oom")));
+		assertEquals("Failed", statuses.get(arn("never-started")));
+		assertEquals("Failed", statuses.get(arn("forgotten")));
+		assertEquals("Running", statuses.get(arn("healthy")));
+		assertEquals("Running", statuses.get(arn("finished")));
+		assertFalse(statuses.containsKey(arn("just-launched")));
+		assertFalse(ecs.described.contains(arn("fresh")));
+		assertEquals(7, reconciled.size());
+
+		Map<String, AttributeValue> oom = WorkflowStore.join(store.getTask(1, arn("oom")));
+		assertEquals("137", oom.get("exit_code").n());
+		assertEquals("Essential container in task exited: OutOfMemoryError: Container killed due to memory usage",
+				oom.get("stop_reason").s());
+		assertEquals("Completed", WorkflowStore.join(store.getTask(1, arn("finished"))).get("status").s());
+	}
+
+	@Test
+	void describesTasksInBatchesOfAHundredPerCluster() {
+		FakeEcs ecs = new FakeEcs();
+		List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+		for (int i = 0; i < 250; i++) {
+			items.add(task(arn("task" + i), "Running", 900));
+		}
+		items.add(task("arn:aws:ecs:us-east-1:123456789012:task/other/task", "Running", 900));
+
+		reconciler(ecs, new InMemoryWorkflowStore("workflow_run_id", "ecs_task_id")).reconcile(1, items, null, NOW);
+
+		List<Integer> sizes = new ArrayList<Integer>();
+		for (DescribeTasksRequest request : ecs.requests) {
+			sizes.add(request.tasks().size());
+		}
+		Collections.sort(sizes);
+		assertEquals(Arrays.asList(1, 50, 100, 100), sizes);
+		assertEquals(1, ecs.requests.stream().filter(request -> "other".equals(request.cluster())).count());
+	}
+
+	@Test
+	void checksTasksSendingHeartbeatsOnceTheirHeartbeatsStop() {
+		FakeEcs ecs = new FakeEcs();
+		Map<String, AttributeValue> beating = task(arn("beating"), "Running", 900);
+		beating.put("heartbeat_time_millis", AttributeValue.builder().n(Long.toString(NOW - 30000)).build());
+		Map<String, AttributeValue> stalled = task(arn("stalled"), "Running", 200);
+		stalled.put("heartbeat_time_millis", AttributeValue.builder().n(Long.toString(NOW - 150000)).build());
+
+		reconciler(ecs, new InMemoryWorkflowStore("workflow_run_id", "ecs_task_id")).reconcile(1, Arrays.asList(beating, stalled), null, NOW);
+
+		assertEquals(Collections.singletonList(arn("stalled")), ecs.described);
+	}
+
+	@Test
+	void failsInProcessTasksOnceNoLauncherInvocationCanStillRunThem() {
+		FakeEcs ecs = new FakeEcs();
+		InMemoryWorkflowStore store = new InMemoryWorkflowStore("workflow_run_id", "ecs_task_id");
+		List<Map<String, AttributeValue>> items = Arrays.asList(task("inprocess/sk-1-0", "Running", 1000),
+				task("inprocess/sk-1-1", "Running", 600), task("inprocess/sk-1-2", "Completed", 1000));
+		for (Map<String, AttributeValue> item : items) {
+			store.putTask(1, item.get("ecs_task_id").s(), item);
+		}
+
+		List<Map<String, AttributeValue>> reconciled = reconciler(ecs, store).reconcile(1, items, null, NOW);
+
+		Map<String, String> statuses = new HashMap<String, String>();
+		for (Map<String, AttributeValue> item : reconciled) {
+			statuses.put(item.get("ecs_task_id").s(), item.get("status").s());
+		}
+		assertEquals("Failed", statuses.get("inprocess/sk-1-0"));
+		assertEquals("Running", statuses.get("inprocess/sk-1-1"));
+		assertEquals("Completed", statuses.get("inprocess/sk-1-2"));
+		assertEquals(TaskReconciler.IN_PROCESS_LOST_REASON,
+				WorkflowStore.join(store.getTask(1, "inprocess/sk-1-0")).get("stop_reason").s());
+		assertEquals(0, ecs.requests.size());
+	}
+
+	private TaskReconciler reconciler(FakeEcs ecs, WorkflowStore store) {
+		Metrics metrics = new Metrics("Test", s -> {
+		});
+		return new TaskReconciler(ecs, store, CONFIG, 600, 120, executor, metrics);
+	}
+
+	private static String arn(String id) {
+		return "arn:aws:ecs:us-east-1:123456789012:task/cluster/" + id;
+	}
+
+	private static Map<String, AttributeValue> task(String ecsTaskId, String status, int idleSeconds) {
+		Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+		item.put("ecs_task_id", AttributeValue.builder().s(ecsTaskId).build());
+		item.put("status", AttributeValue.builder().s(status).build());
+		item.put("start_time_millis", AttributeValue.builder().n(Long.toString(NOW - idleSeconds * 1000L)).build());
+		return item;
+	}
+
+	/**
+	 * In-memory stand-in for DescribeTasks, tasks not listed are running
+	 */
+	private static class FakeEcs implements EcsClient {
+		final Map<String, Task> stopped = new HashMap<String, Task>();
+		final List<String> missing = new ArrayList<String>();
+		final List<String> described = Collections.synchronizedList(new ArrayList<String>());
+		final List<DescribeTasksRequest> requests = Collections.synchronizedList(new ArrayList<DescribeTasksRequest>());
+
+		@Override
+		public DescribeTasksResponse describeTasks(DescribeTasksRequest request) {
+			requests.add(request);
+			described.addAll(request.tasks());
+			List<Task> tasks = new ArrayList<Task>();
+			List<Failure> failures = new ArrayList<Failure>();
+			for (String taskArn : request.tasks()) {
+				if (missing.contains(taskArn))
+					failures.add(Failure.builder().arn(taskArn).reason("MISSING").build());
+				else
+					tasks.add(stopped.getOrDefault(taskArn,
+							Task.builder().taskArn(taskArn).lastStatus("RUNNING").build()));
+			}
+			return DescribeTasksResponse.builder().tasks(tasks).failures(failures).build();
+		}
+
+		@Override
+		public String serviceName() {
+			return "ecs";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
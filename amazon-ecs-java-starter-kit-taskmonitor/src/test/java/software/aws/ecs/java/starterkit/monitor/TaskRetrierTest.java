@@ -0,0 +1,231 @@
+package software.aws.ecs.java.starterkit.monitor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.ecs.EcsClient;
+import software.amazon.awssdk.services.ecs.model.ContainerOverride;
+import software.amazon.awssdk.services.ecs.model.DescribeTasksRequest;
+import software.amazon.awssdk.services.ecs.model.DescribeTasksResponse;
+import software.amazon.awssdk.services.ecs.model.KeyValuePair;
+import software.amazon.awssdk.services.ecs.model.LaunchType;
+import software.amazon.awssdk.services.ecs.model.ListTasksRequest;
+import software.amazon.awssdk.services.ecs.model.ListTasksResponse;
+import software.amazon.awssdk.services.ecs.model.RunTaskRequest;
+import software.amazon.awssdk.services.ecs.model.RunTaskResponse;
+import software.amazon.awssdk.services.ecs.model.Task;
+import software.amazon.awssdk.services.ecs.model.TaskOverride;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.store.InMemoryWorkflowStore;
+import software.aws.ecs.java.starterkit.store.InMemoryWorkflowSummaryStore;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+
+class TaskRetrierTest {
+
+	private static final MonitorConfig CONFIG = new MonitorConfig("us-east-1", "workflow_summary", "workflow_name",
+			"workflow_run_id", "workflow_details", "workflow_run_id", "ecs_task_id");
+	private static final String SPECS = "{\"clusterName\":\"cluster\",\"subnetIdLiteral\":\"subnet-a\","
+			+ "\"securityGroupId\":\"sg-a\",\"separator\":\",\",\"retryPolicy\":{\"maxAttempts\":3,"
+			+ "\"retryableExitCodes\":[137]},\"taskList\":[{\"taskName\":\"strict\",\"retryPolicy\":{}}]}";
+	private static final long NOW = System.currentTimeMillis();
+
+	@Test
+	void launchesRetryableFailuresAgainWithTheirOverrides() {
+		FakeEcs ecs = new FakeEcs();
+		Map<String, AttributeValue> oom = task(arn("oom"), "Failed", "loose");
+		oom.put("exit_code", AttributeValue.builder().n("137").build());
+		Map<String, AttributeValue> strict = task(arn("strict"), "Failed", "strict");
+		strict.put("exit_code", AttributeValue.builder().n("137").build());
+		Map<String, AttributeValue> error = task(arn("error"), "Failed", "loose");
+		error.put("exit_code", AttributeValue.builder().n("1").build());
+
+		InMemoryWorkflowStore store = store(Arrays.asList(oom, strict, error));
+
+		List<Map<String, AttributeValue>> counted = retrier(ecs, store).retry("wf", 1,
+				Arrays.asList(oom, strict, error), NOW);
+
+		assertEquals(Arrays.asList("Running", "Failed", "Failed"), statuses(counted));
+		assertEquals(1, ecs.runs.size());
+		RunTaskRequest request = ecs.runs.get(0);
+		assertEquals("r2-oom", request.startedBy());
+		assertEquals("arn:task-definition", request.taskDefinition());
+		assertEquals(LaunchType.FARGATE, request.launchType());
+		ContainerOverride container = request.overrides().containerOverrides().get(0);
+		assertEquals("task", container.name());
+		assertTrue(container.environment().contains(KeyValuePair.builder().name("input").value("in/oom").build()));
+		assertTrue(container.environment().contains(KeyValuePair.builder().name("retry_of").value(arn("oom")).build()));
+		assertTrue(container.environment().contains(KeyValuePair.builder().name("attempt").value("2").build()));
+
+		// first the retry is scheduled, then its attempt is recorded
+		Map<String, AttributeValue> row = WorkflowStore.join(store.getTask(1, arn("oom")));
+		assertEquals(TaskRetrier.RETRYING, row.get("status").s());
+		assertEquals("2", row.get("attempts").n());
+		assertEquals(arn("attempt"), row.get("current_task_arn").s());
+		assertFalse(row.containsKey("next_attempt_time"));
+		assertEquals("Failed", WorkflowStore.join(store.getTask(1, arn("strict"))).get("status").s());
+	}
+
+	@Test
+	void recordsTheOutcomeOfTheLastAttempt() {
+		FakeEcs ecs = new FakeEcs();
+		Map<String, AttributeValue> recovered = retrying(arn("recovered"), arn("recovered-2"), 2);
+		Map<String, AttributeValue> exhausted = retrying(arn("exhausted"), arn("exhausted-3"), 3);
+		Map<String, AttributeValue> running = retrying(arn("running"), arn("running-2"), 2);
+		List<Map<String, AttributeValue>> items = Arrays.asList(recovered, exhausted, running,
+				attempt(arn("recovered-2"), "Completed", arn("recovered")),
+				attempt(arn("exhausted-3"), "Failed", arn("exhausted")),
+				attempt(arn("running-2"), "Running", arn("running")));
+
+		InMemoryWorkflowStore store = store(Arrays.asList(recovered, exhausted, running));
+
+		List<Map<String, AttributeValue>> counted = retrier(ecs, store).retry("wf", 1, items, NOW);
+
+		assertEquals(Arrays.asList("Completed", "Failed", "Running"), statuses(counted));
+		assertEquals(0, ecs.runs.size());
+		assertEquals(arn("recovered-2"),
+				WorkflowStore.join(store.getTask(1, arn("recovered"))).get("winner_task_arn").s());
+		assertEquals("Failed", WorkflowStore.join(store.getTask(1, arn("exhausted"))).get("status").s());
+		assertFalse(WorkflowStore.join(store.getTask(1, arn("running"))).containsKey("winner_task_arn"));
+		assertEquals(Arrays.asList(arn("recovered-2"), arn("exhausted-3"), arn("running-2")),
+				TaskRetrier.currentAttempts(items));
+	}
+
+	@Test
+	void resumesInterruptedTasksWhateverTheirExitCode() {
+		FakeEcs ecs = new FakeEcs();
+		// neither has the exit code 137 of the workflow policy, the strict task has a single attempt
+		Map<String, AttributeValue> spot = task(arn("spot"), TaskRetrier.INTERRUPTED, "loose");
+		Map<String, AttributeValue> strict = task(arn("strict"), TaskRetrier.INTERRUPTED, "strict");
+
+		InMemoryWorkflowStore store = store(Arrays.asList(spot, strict));
+
+		List<Map<String, AttributeValue>> counted = retrier(ecs, store).retry("wf", 1, Arrays.asList(spot, strict),
+				NOW);
+
+		assertEquals(Arrays.asList("Running", TaskRetrier.INTERRUPTED), statuses(counted));
+		assertTrue(TaskRetrier.isFailed(counted.get(1).get("status").s()));
+		assertEquals(1, ecs.runs.size());
+		assertEquals("r2-spot", ecs.runs.get(0).startedBy());
+		assertEquals(TaskRetrier.RETRYING, WorkflowStore.join(store.getTask(1, arn("spot"))).get("status").s());
+		assertEquals(TaskRetrier.INTERRUPTED,
+				WorkflowStore.join(store.getTask(1, arn("strict"))).get("status").s());
+	}
+
+	private TaskRetrier retrier(FakeEcs ecs, WorkflowStore store) {
+		Metrics metrics = new Metrics("Test", s -> {
+		});
+		return new TaskRetrier(ecs, new FakeSummaryStore(), store, CONFIG, metrics);
+	}
+
+	private static InMemoryWorkflowStore store(List<Map<String, AttributeValue>> rows) {
+		InMemoryWorkflowStore store = new InMemoryWorkflowStore("workflow_run_id", "ecs_task_id");
+		for (Map<String, AttributeValue> row : rows) {
+			store.putTask(1, row.get("ecs_task_id").s(), row);
+		}
+		return store;
+	}
+
+	private static List<String> statuses(List<Map<String, AttributeValue>> items) {
+		List<String> statuses = new ArrayList<String>();
+		for (Map<String, AttributeValue> item : items) {
+			statuses.add(item.get("status").s());
+		}
+		return statuses;
+	}
+
+	private static String arn(String id) {
+		return "arn:aws:ecs:us-east-1:123456789012:task/cluster/" + id;
+	}
+
+	private static Map<String, AttributeValue> task(String ecsTaskId, String status, String taskName) {
+		Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+		item.put("ecs_task_id", AttributeValue.builder().s(ecsTaskId).build());
+		item.put("status", AttributeValue.builder().s(status).build());
+		item.put("task_name", AttributeValue.builder().s(taskName).build());
+		return item;
+	}
+
+	private static Map<String, AttributeValue> retrying(String ecsTaskId, String currentTaskArn, int attempts) {
+		Map<String, AttributeValue> item = task(ecsTaskId, TaskRetrier.RETRYING, "loose");
+		item.put("attempts", AttributeValue.builder().n(Integer.toString(attempts)).build());
+		item.put("current_task_arn", AttributeValue.builder().s(currentTaskArn).build());
+		return item;
+	}
+
+	private static Map<String, AttributeValue> attempt(String ecsTaskId, String status, String retryOf) {
+		Map<String, AttributeValue> item = task(ecsTaskId, status, "loose");
+		item.put(TaskRetrier.RETRY_OF, AttributeValue.builder().s(retryOf).build());
+		if ("Failed".equals(status))
+			item.put("exit_code", AttributeValue.builder().n("137").build());
+		return item;
+	}
+
+	/**
+	 * In-memory stand-in for the ECS calls of the retrier, every task was
+	 * launched on Fargate with an input override
+	 */
+	private static class FakeEcs implements EcsClient {
+		final List<RunTaskRequest> runs = new ArrayList<RunTaskRequest>();
+
+		@Override
+		public DescribeTasksResponse describeTasks(DescribeTasksRequest request) {
+			String taskArn = request.tasks().get(0);
+			TaskOverride overrides = TaskOverride.builder()
+					.containerOverrides(ContainerOverride.builder().name("task").environment(KeyValuePair.builder()
+							.name("input").value("in/" + taskArn.substring(taskArn.lastIndexOf('/') + 1)).build())
+							.build())
+					.build();
+			return DescribeTasksResponse.builder()
+					.tasks(Task.builder().taskArn(taskArn).clusterArn("arn:aws:ecs:us-east-1:123456789012:cluster/cluster")
+							.taskDefinitionArn("arn:task-definition").launchType(LaunchType.FARGATE)
+							.overrides(overrides).build())
+					.build();
+		}
+
+		@Override
+		public ListTasksResponse listTasks(ListTasksRequest request) {
+			return ListTasksResponse.builder().build();
+		}
+
+		@Override
+		public RunTaskResponse runTask(RunTaskRequest request) {
+			runs.add(request);
+			return RunTaskResponse.builder().tasks(Task.builder().taskArn(arn("attempt")).build()).build();
+		}
+
+		@Override
+		public String serviceName() {
+			return "ecs";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * In-memory stand-in for the workflow specs of the retrier
+	 */
+	private static class FakeSummaryStore extends InMemoryWorkflowSummaryStore {
+
+		FakeSummaryStore() {
+			super("workflow_name", "workflow_run_id");
+		}
+
+		@Override
+		public CompletableFuture<String> getWorkflowSpecs(String workflowName, long workflowRunId) {
+			return CompletableFuture.completedFuture(SPECS);
+		}
+	}
+}
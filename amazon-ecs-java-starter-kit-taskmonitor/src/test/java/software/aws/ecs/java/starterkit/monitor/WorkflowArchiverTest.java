@@ -0,0 +1,148 @@
+package software.aws.ecs.java.starterkit.monitor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.io.ByteStreams;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.aws.ecs.java.starterkit.archive.ColumnarFile;
+import software.aws.ecs.java.starterkit.history.WorkflowHistory;
+import software.aws.ecs.java.starterkit.metrics.Metrics;
+import software.aws.ecs.java.starterkit.store.InMemoryWorkflowStore;
+import software.aws.ecs.java.starterkit.store.InMemoryWorkflowSummaryStore;
+import software.aws.ecs.java.starterkit.store.WorkflowStore;
+import software.aws.ecs.java.starterkit.store.WorkflowSummaryStore;
+
+class WorkflowArchiverTest {
+
+	private static final MonitorConfig CONFIG = new MonitorConfig("us-east-1", "workflow_summary", "workflow_name",
+			"workflow_run_id", "workflow_details", "workflow_run_id", "ecs_task_id");
+	// 2021-06-01T12:00:00Z
+	private static final long START = 1622548800000L;
+	private static final long NOW = START + 10L * 24 * 3600 * 1000;
+
+	@Test
+	void archivesFinishedRunsBeforeTheyExpire() throws IOException {
+		FakeDynamoDb dynamoDB = new FakeDynamoDb();
+		dynamoDB.summaries.add(summary(1, null));
+		dynamoDB.summaries.add(summary(2, "archive/workflow_name=wf/date=2021-06-01/run-2.json.gz"));
+		InMemoryWorkflowStore store = new InMemoryWorkflowStore("workflow_run_id", "ecs_task_id");
+		for (int i = 0; i < 30; i++) {
+			store.putTask(1, "task/" + i, detail());
+		}
+		FakeS3 s3 = new FakeS3();
+		Metrics metrics = new Metrics("Test", s -> {
+		});
+		InMemoryWorkflowSummaryStore summaryStore = new InMemoryWorkflowSummaryStore("workflow_name",
+				"workflow_run_id");
+		WorkflowArchiver archiver = new WorkflowArchiver(CONFIG, dynamoDB, store, summaryStore, s3, "bucket",
+				"archive", 7L * 24 * 3600 * 1000, 3600, 50, metrics);
+
+		assertEquals(1, archiver.archive(NOW));
+
+		assertEquals("archive/workflow_name=wf/date=2021-06-01/run-1.json.gz", s3.key);
+		ColumnarFile file = ColumnarFile.readFrom(new ByteArrayInputStream(s3.body));
+		assertEquals(30, file.getRowCount());
+		assertEquals("wf", file.getMetadata().get("workflow_name"));
+		QueryRequest index = dynamoDB.queries.get(0);
+		assertEquals(WorkflowHistory.SUMMARY_STATUS_INDEX, index.indexName());
+		assertEquals(Long.toString(NOW - 7L * 24 * 3600 * 1000), index.expressionAttributeValues().get(":to").n());
+
+		// the items expire only after the archive was written
+		List<Map<String, AttributeValue>> expiring = WorkflowStore.join(store.getTasks(1, null));
+		assertEquals(30, expiring.size());
+		assertEquals(Long.toString(NOW / 1000 + 3600), expiring.get(29).get(WorkflowSummaryStore.EXPIRE_AT).n());
+		assertTrue(expiring.get(29).containsKey("status"));
+		Map<String, AttributeValue> archived = WorkflowStore.join(summaryStore.getSummary("wf", 1));
+		assertEquals(s3.key, archived.get(WorkflowSummaryStore.ARCHIVE_KEY).s());
+		assertEquals(Long.toString(NOW / 1000 + 3600), archived.get(WorkflowSummaryStore.EXPIRE_AT).n());
+	}
+
+	private static Map<String, AttributeValue> summary(long workflowRunId, String archiveKey) {
+		Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+		item.put("workflow_name", AttributeValue.builder().s("wf").build());
+		item.put("workflow_run_id", AttributeValue.builder().n(Long.toString(workflowRunId)).build());
+		item.put("status", AttributeValue.builder().s("Completed").build());
+		item.put(WorkflowHistory.START_TIME_MILLIS, AttributeValue.builder().n(Long.toString(START)).build());
+		if (archiveKey != null)
+			item.put(WorkflowSummaryStore.ARCHIVE_KEY, AttributeValue.builder().s(archiveKey).build());
+		return item;
+	}
+
+	private static Map<String, AttributeValue> detail() {
+		Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+		item.put("status", AttributeValue.builder().s("Completed").build());
+		item.put("exec_time_in_seconds", AttributeValue.builder().n("42").build());
+		return item;
+	}
+
+	/**
+	 * In-memory stand-in for the status index of workflow_summary
+	 */
+	private static class FakeDynamoDb implements DynamoDbClient {
+		final List<Map<String, AttributeValue>> summaries = new ArrayList<Map<String, AttributeValue>>();
+		final List<QueryRequest> queries = new ArrayList<QueryRequest>();
+
+		@Override
+		public QueryResponse query(QueryRequest request) {
+			queries.add(request);
+			return QueryResponse.builder().items(summaries).build();
+		}
+
+		@Override
+		public String serviceName() {
+			return "dynamodb";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * S3Client which keeps the last object put
+	 */
+	private static class FakeS3 implements S3Client {
+		String key;
+		byte[] body;
+
+		@Override
+		public PutObjectResponse putObject(PutObjectRequest request, RequestBody requestBody) {
+			key = request.key();
+			try (InputStream inputStream = requestBody.contentStreamProvider().newStream()) {
+				body = ByteStreams.toByteArray(inputStream);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return PutObjectResponse.builder().build();
+		}
+
+		@Override
+		public String serviceName() {
+			return "s3";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
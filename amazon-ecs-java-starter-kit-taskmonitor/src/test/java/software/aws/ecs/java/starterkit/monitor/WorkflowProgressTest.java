@@ -0,0 +1,91 @@
+package software.aws.ecs.java.starterkit.monitor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+class WorkflowProgressTest {
+
+	private static final long NOW = 1_000_000_000L;
+	private static final long MIB = 1024 * 1024;
+
+	@Test
+	void estimatesTheTimeLeftFromTheHeartbeatsOfRunningTasks() {
+		// 10 MiB per second each, for 10 and 20 seconds
+		Map<String, AttributeValue> first = task("first", "Running", 200 * MIB, 100 * MIB, NOW - 10000, NOW);
+		Map<String, AttributeValue> second = task("second", "Running", 400 * MIB, 200 * MIB, NOW - 20000, NOW);
+		Map<String, AttributeValue> done = task("done", "Completed", 100 * MIB, null, null, null);
+		Map<String, AttributeValue> node = task("node/copy", "Completed", null, null, null, null);
+		List<Map<String, AttributeValue>> tasks = Arrays.asList(first, second, done, node);
+
+		// one task not launched yet, with the average input of 700 / 3 MiB
+		WorkflowProgress progress = WorkflowProgress.of(tasks, tasks, "ecs_task_id", 4, NOW, 120000);
+
+		assertEquals(400 * MIB, progress.getProcessedBytes());
+		assertEquals(20.0 * MIB, progress.getThroughput(), 1);
+		long remaining = 300 * MIB + 700 * MIB / 3;
+		assertEquals(400 * MIB + remaining, progress.getTotalBytes().longValue());
+		assertEquals((long) Math.ceil(remaining / (20.0 * MIB)), progress.getEtaSeconds().longValue());
+		assertEquals(0, progress.getStalledTasks());
+		assertEquals(Long.toString(20 * MIB), progress.toAttributes().get("throughput_bytes_per_second").n());
+	}
+
+	@Test
+	void countsARetriedTaskWithItsCurrentAttemptAndFindsStalledTasks() {
+		Map<String, AttributeValue> retried = task("retried", "Running", 100 * MIB, null, null, null);
+		retried.put("current_task_arn", AttributeValue.builder().s("attempt").build());
+		Map<String, AttributeValue> attempt = task("attempt", "Running", 100 * MIB, 60 * MIB, NOW - 300000,
+				NOW - 200000);
+		attempt.put(TaskRetrier.RETRY_OF, AttributeValue.builder().s("retried").build());
+		List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>(
+				Arrays.asList(retried, attempt));
+
+		WorkflowProgress progress = WorkflowProgress.of(Arrays.asList(retried), items, "ecs_task_id", 1, NOW, 120000);
+
+		assertEquals(60 * MIB, progress.getProcessedBytes());
+		assertEquals(100 * MIB, progress.getTotalBytes().longValue());
+		assertEquals(1, progress.getStalledTasks());
+	}
+
+	@Test
+	void leavesTheTimeLeftOutWithoutInputSizesOrHeartbeats() {
+		List<Map<String, AttributeValue>> tasks = Arrays.asList(task("silent", "Running", null, null, null, null));
+
+		WorkflowProgress progress = WorkflowProgress.of(tasks, tasks, "ecs_task_id", 2, NOW, 120000);
+
+		assertNull(progress.getTotalBytes());
+		assertNull(progress.getEtaSeconds());
+		assertFalse(progress.toAttributes().containsKey("eta_seconds"));
+		assertEquals("0", progress.toAttributes().get("processed_bytes").n());
+	}
+
+	private static Map<String, AttributeValue> task(String ecsTaskId, String status, Long inputBytes,
+			Long progressBytes, Long startTimeMillis, Long heartbeatTimeMillis) {
+		Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+		item.put("ecs_task_id", AttributeValue.builder().s(ecsTaskId).build());
+		item.put("status", AttributeValue.builder().s(status).build());
+		if (inputBytes != null)
+			item.put("input_bytes", number(inputBytes));
+		if (progressBytes != null)
+			item.put(WorkflowProgress.PROGRESS_BYTES, number(progressBytes));
+		if (startTimeMillis != null)
+			item.put("start_time_millis", number(startTimeMillis));
+		if (heartbeatTimeMillis != null)
+			item.put(WorkflowProgress.HEARTBEAT_TIME_MILLIS, number(heartbeatTimeMillis));
+		return item;
+	}
+
+	private static AttributeValue number(long value) {
+		return AttributeValue.builder().n(Long.toString(value)).build();
+	}
+}